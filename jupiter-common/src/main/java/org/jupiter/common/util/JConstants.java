@@ -71,6 +71,18 @@ public final class JConstants {
     public static final int DEFAULT_WARM_UP = SystemPropertyUtil.getInt("jupiter.load-balancer.warm-up", 10 * 60 * 1000);
     /** Load balancer 默认权重, 建议最大100 **/
     public static final int DEFAULT_WEIGHT = SystemPropertyUtil.getInt("jupiter.load-balancer.weight", 50);
+    /** Load balancer 权重表的刷新周期(毫秒), 预热, 熔断等引起的权重变化在下一个周期生效 **/
+    public static final int LOAD_BALANCER_WEIGHT_REFRESH_MILLIS = SystemPropertyUtil.getInt(
+            "jupiter.load-balancer.weight.refresh.millis", 1000);
+
+    /** 本机所在区域(机房/机架等, 不能包含 ':' 和 '/'), 服务提供者发布到注册中心, 服务消费者优先调用相同区域的服务 **/
+    public static final String LOCAL_ZONE = SystemPropertyUtil.get("jupiter.zone");
+    /** 区域感知路由: 本区域健康节点的比例(百分比)低于此值时, 请求溢出到其他区域 **/
+    public static final int ZONE_MIN_HEALTHY_PERCENT = SystemPropertyUtil.getInt("jupiter.zone.min.healthy.percent", 70);
+    /** 区域感知路由: 本区域进行中请求数占容量(并发限制)的比例(百分比)达到此值时, 请求溢出到其他区域 **/
+    public static final int ZONE_SPILL_CAPACITY_PERCENT = SystemPropertyUtil.getInt("jupiter.zone.spill.capacity.percent", 80);
+    /** 区域感知路由: 没有开启并发限制时, 每个服务节点的容量(进行中请求数), 用于计算本区域的容量 **/
+    public static final int ZONE_SPILL_GROUP_CAPACITY = SystemPropertyUtil.getInt("jupiter.zone.spill.group.capacity", 200);
 
     /** Suggest that the count of connections **/
     public static final int DEFAULT_CONNECTION_COUNT = SystemPropertyUtil.getInt("jupiter.suggest.connection.count", AVAILABLE_PROCESSORS);
@@ -84,6 +96,128 @@ public final class JConstants {
     /** Processor.executor 最大线程数的限制 **/
     public static final int PROCESSOR_MAX_NUM_WORKS = SystemPropertyUtil.getInt(
             "jupiter.processor.executor.max.num.workers", 256);
+    /** 公平调度: 每个(服务, 调用方应用)队列的最大长度, 超过后请求被拒绝 **/
+    public static final int PROCESSOR_FAIR_QUEUE_MAX_DEPTH = SystemPropertyUtil.getInt(
+            "jupiter.processor.fair.queue.max.depth", 1024);
+    /** 公平调度: 队列数量的上限, 达到上限后未配置配额的应用合并到服务的默认队列 **/
+    public static final int PROCESSOR_FAIR_MAX_FLOWS = SystemPropertyUtil.getInt(
+            "jupiter.processor.fair.max.flows", 4096);
+    /** 公平调度: 队列空闲超过该时间(毫秒)后可以被清理 **/
+    public static final long PROCESSOR_FAIR_FLOW_IDLE_MILLIS = SystemPropertyUtil.getLong(
+            "jupiter.processor.fair.flow.idle.millis", 60000);
+    /** 限流: 每个限流器的限流单元数量的上限, 达到上限后新的key合并到同一个限流单元 **/
+    public static final int FLOW_CONTROL_MAX_UNITS = SystemPropertyUtil.getInt(
+            "jupiter.flow.control.max.units", 4096);
+    /** 限流: 限流单元空闲超过该时间(毫秒)后可以被清理, 单独设置过限制的单元不会被清理 **/
+    public static final long FLOW_CONTROL_UNIT_IDLE_MILLIS = SystemPropertyUtil.getLong(
+            "jupiter.flow.control.unit.idle.millis", 60000);
+    /** 过载保护(CoDel): 请求排队时间的目标值(毫秒), 默认为0(关闭), 开启后过载时排队超过2倍目标值的请求被拒绝 **/
+    public static final int PROCESSOR_CODEL_TARGET_MILLIS = SystemPropertyUtil.getInt(
+            "jupiter.processor.codel.target.millis", 0);
+    /** 过载保护(CoDel): 观察最小排队时间的周期(毫秒) **/
+    public static final int PROCESSOR_CODEL_INTERVAL_MILLIS = SystemPropertyUtil.getInt(
+            "jupiter.processor.codel.interval.millis", 1000);
+    /** 内存预算: 全局已解码但未处理完的请求字节数上限, 默认为最大堆内存的1/4 **/
+    public static final long PROCESSOR_BYTES_BUDGET = SystemPropertyUtil.getLong(
+            "jupiter.processor.bytes.budget", Runtime.getRuntime().maxMemory() >> 2);
+    /** 内存预算: 单个连接已解码但未处理完的请求字节数上限 **/
+    public static final long PROCESSOR_BYTES_BUDGET_PER_CONNECTION = SystemPropertyUtil.getLong(
+            "jupiter.processor.bytes.budget.per.connection", 64 * 1024 * 1024);
+    /** 内存预算: 是否根据GC后的老年代使用率收紧预算(默认关闭) **/
+    public static final boolean PROCESSOR_BYTES_BUDGET_HEAP_PRESSURE = SystemPropertyUtil.getBoolean(
+            "jupiter.processor.bytes.budget.heap.pressure", false);
+    /** 执行位置: 在IO线程执行的方法单次耗时超过该值(微秒)即视为一次阻塞 **/
+    public static final int PROCESSOR_INLINE_BLOCKING_THRESHOLD_MICROS = SystemPropertyUtil.getInt(
+            "jupiter.processor.inline.blocking.threshold.micros", 2000);
+    /** 执行位置: 在IO线程执行的方法在一个窗口内的阻塞次数达到该值后降级到共享线程池 **/
+    public static final int PROCESSOR_INLINE_MAX_BLOCKING_TIMES = SystemPropertyUtil.getInt(
+            "jupiter.processor.inline.max.blocking.times", 3);
+    /** 执行位置: 统计阻塞次数的时间窗口(毫秒), 窗口过期后阻塞次数重新计算 **/
+    public static final long PROCESSOR_INLINE_BLOCKING_WINDOW_MILLIS = SystemPropertyUtil.getLong(
+            "jupiter.processor.inline.blocking.window.millis", 10000);
+    /** 执行位置: 降级的时长(毫秒), 到期后恢复在IO线程执行, 再次降级时时长翻倍 **/
+    public static final long PROCESSOR_INLINE_DEMOTION_MILLIS = SystemPropertyUtil.getLong(
+            "jupiter.processor.inline.demotion.millis", 60000);
+    /** 结果缓存: 可被缓存的单个响应的最大字节数, 更大的结果不缓存 **/
+    public static final int PROVIDER_RESULT_CACHE_MAX_VALUE_SIZE = SystemPropertyUtil.getInt(
+            "jupiter.provider.result.cache.max.value.size", 64 * 1024);
+
+    /** 批量写: 一个批量协议帧中最多合并的消息数 **/
+    public static final int BATCH_MAX_SIZE = SystemPropertyUtil.getInt("jupiter.batch.max.size", 32);
+    /** 批量写: 等待更多消息合并的时间窗口(微秒), 0表示只合并IO线程处理之前已经到达的消息 **/
+    public static final int BATCH_DELAY_MICROS = SystemPropertyUtil.getInt("jupiter.batch.delay.micros", 0);
+
+    /** 熔断: 连续失败次数达到此值时摘除节点 **/
+    public static final int CIRCUIT_BREAKER_CONSECUTIVE_FAILURES = SystemPropertyUtil.getInt(
+            "jupiter.circuit-breaker.consecutive.failures", 5);
+    /** 熔断: 统计窗口内失败率(百分比)达到此值时摘除节点 **/
+    public static final int CIRCUIT_BREAKER_FAILURE_RATE = SystemPropertyUtil.getInt(
+            "jupiter.circuit-breaker.failure.rate", 50);
+    /** 熔断: 统计窗口内请求数达到此值才会按失败率判断 **/
+    public static final int CIRCUIT_BREAKER_MIN_REQUESTS = SystemPropertyUtil.getInt(
+            "jupiter.circuit-breaker.min.requests", 20);
+    /** 熔断: 失败率统计窗口(毫秒) **/
+    public static final int CIRCUIT_BREAKER_WINDOW_MILLIS = SystemPropertyUtil.getInt(
+            "jupiter.circuit-breaker.window.millis", 10 * 1000);
+    /** 熔断: 响应时间超过此值视为失败(毫秒), 0表示不按响应时间判断 **/
+    public static final int CIRCUIT_BREAKER_SLOW_CALL_MILLIS = SystemPropertyUtil.getInt(
+            "jupiter.circuit-breaker.slow.call.millis", 0);
+    /** 熔断: 基础摘除时间(毫秒), 连续多次被摘除时按次数递增 **/
+    public static final int CIRCUIT_BREAKER_EJECTION_MILLIS = SystemPropertyUtil.getInt(
+            "jupiter.circuit-breaker.ejection.millis", 30 * 1000);
+    /** 熔断: 半开状态下连续探测成功此次数后重新接纳节点 **/
+    public static final int CIRCUIT_BREAKER_PROBE_SUCCESSES = SystemPropertyUtil.getInt(
+            "jupiter.circuit-breaker.probe.successes", 3);
+    /** 熔断: 重新接纳后权重逐渐恢复的时间(毫秒) **/
+    public static final int CIRCUIT_BREAKER_RECOVERY_MILLIS = SystemPropertyUtil.getInt(
+            "jupiter.circuit-breaker.recovery.millis", 60 * 1000);
+
+    /** 并发限制: 每个服务节点初始的并发限制 **/
+    public static final int CONCURRENCY_LIMIT_INITIAL = SystemPropertyUtil.getInt(
+            "jupiter.concurrency-limit.initial", 20);
+    /** 并发限制: 每个服务节点最大的并发限制 **/
+    public static final int CONCURRENCY_LIMIT_MAX = SystemPropertyUtil.getInt(
+            "jupiter.concurrency-limit.max", 1000);
+    /** 并发限制: 无负载RTT(最小RTT)的重新采样周期(毫秒) **/
+    public static final int CONCURRENCY_LIMIT_RTT_RESET_MILLIS = SystemPropertyUtil.getInt(
+            "jupiter.concurrency-limit.rtt.reset.millis", 60 * 1000);
+
+    /** 连接池: 是否根据负载动态调整到每个服务节点的连接数, 默认关闭, 连接数固定为服务提供者建议的连接数 **/
+    public static final boolean CONNECTION_POOL_DYNAMIC = SystemPropertyUtil.getBoolean(
+            "jupiter.connection.pool.dynamic", false);
+    /** 连接池: 到每个服务节点的最少连接数 **/
+    public static final int CONNECTION_POOL_MIN = SystemPropertyUtil.getInt("jupiter.connection.pool.min", 1);
+    /** 连接池: 到每个服务节点的最多连接数(不小于服务提供者建议的连接数) **/
+    public static final int CONNECTION_POOL_MAX = SystemPropertyUtil.getInt(
+            "jupiter.connection.pool.max", AVAILABLE_PROCESSORS << 1);
+    /** 连接池: 平均每个连接上进行中的请求数超过此值时扩容 **/
+    public static final int CONNECTION_POOL_HIGH_IN_FLIGHT = SystemPropertyUtil.getInt(
+            "jupiter.connection.pool.high.in.flight", 64);
+    /** 连接池: 缩容后平均每个连接上进行中的请求数仍低于此值时才会缩容 **/
+    public static final int CONNECTION_POOL_LOW_IN_FLIGHT = SystemPropertyUtil.getInt(
+            "jupiter.connection.pool.low.in.flight", 4);
+    /** 连接池: 单个连接待写出的字节数超过此值时扩容 **/
+    public static final int CONNECTION_POOL_HIGH_PENDING_BYTES = SystemPropertyUtil.getInt(
+            "jupiter.connection.pool.high.pending.bytes", 256 * 1024);
+    /** 连接池: 同一个服务节点两次调整连接数的最小间隔(毫秒) **/
+    public static final int CONNECTION_POOL_RESIZE_INTERVAL_MILLIS = SystemPropertyUtil.getInt(
+            "jupiter.connection.pool.resize.interval.millis", 5 * 1000);
+    /** 连接池: 持续空闲此时间(毫秒)后才会缩容 **/
+    public static final int CONNECTION_POOL_IDLE_MILLIS = SystemPropertyUtil.getInt(
+            "jupiter.connection.pool.idle.millis", 60 * 1000);
+    /** 连接池: 每秒最多新建/关闭的连接数(所有服务节点) **/
+    public static final int CONNECTION_POOL_MAX_CHANGES_PER_SECOND = SystemPropertyUtil.getInt(
+            "jupiter.connection.pool.max.changes.per.second", 16);
+
+    /** 同时建立中的连接数上限(收到注册中心通知时并行建立连接) **/
+    public static final int CONNECTION_ESTABLISH_PARALLELISM = SystemPropertyUtil.getInt(
+            "jupiter.connection.establish.parallelism", 64);
+
+    /** 延迟连接: 订阅服务时不立即建立连接, 服务节点第一次被选中时才建立连接 **/
+    public static final boolean CONNECTION_LAZY = SystemPropertyUtil.getBoolean("jupiter.connection.lazy", false);
+    /** 延迟连接: 服务节点超过此时间(毫秒)没有被使用时关闭它的所有连接, 0表示不关闭 **/
+    public static final int CONNECTION_IDLE_REAP_MILLIS = SystemPropertyUtil.getInt(
+            "jupiter.connection.idle.reap.millis", 10 * 60 * 1000);
 
     /** Metrics csv reporter */
     public static final boolean METRIC_CSV_REPORTER = SystemPropertyUtil.getBoolean("jupiter.metric.csv.reporter", false);
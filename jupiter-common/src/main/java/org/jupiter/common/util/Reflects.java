@@ -17,6 +17,7 @@
 package org.jupiter.common.util;
 
 import net.sf.cglib.reflect.FastClass;
+import net.sf.cglib.reflect.FastMethod;
 import org.jupiter.common.util.internal.JUnsafe;
 import org.objenesis.Objenesis;
 import org.objenesis.ObjenesisStd;
@@ -128,15 +129,7 @@ public final class Reflects {
      * @return the result of dispatching the method represented by this object on {@code obj} with parameters
      */
     public static Object fastInvoke(Object obj, String methodName, Class<?>[] parameterTypes, Object[] args) {
-        Class<?> clazz = obj.getClass();
-        FastClass fastClass = fastClassCache.get(clazz);
-        if (fastClass == null) {
-            FastClass newFastClass = FastClass.create(clazz);
-            fastClass = fastClassCache.putIfAbsent(clazz, newFastClass);
-            if (fastClass == null) {
-                fastClass = newFastClass;
-            }
-        }
+        FastClass fastClass = fastClass(obj.getClass());
 
         Object value = null;
         try {
@@ -147,6 +140,31 @@ public final class Reflects {
         return value;
     }
 
+    /**
+     * Returns cglib's {@link FastMethod} of the specified public method, the method index is
+     * resolved only once, {@link FastMethod#invoke(Object, Object[])} is a direct call with
+     * no name and signature matching.
+     *
+     * @param clazz          the class which the method belongs to
+     * @param methodName     the method name
+     * @param parameterTypes the parameter types for the method
+     */
+    public static FastMethod fastMethod(Class<?> clazz, String methodName, Class<?>[] parameterTypes) {
+        return fastClass(clazz).getMethod(methodName, parameterTypes);
+    }
+
+    private static FastClass fastClass(Class<?> clazz) {
+        FastClass fastClass = fastClassCache.get(clazz);
+        if (fastClass == null) {
+            FastClass newFastClass = FastClass.create(clazz);
+            fastClass = fastClassCache.putIfAbsent(clazz, newFastClass);
+            if (fastClass == null) {
+                fastClass = newFastClass;
+            }
+        }
+        return fastClass;
+    }
+
     /**
      * Returns a {@code Field} object that reflects the specified declared field
      * of the {@code Class} or interface represented by this {@code Class} object.
@@ -16,12 +16,14 @@
 
 package org.jupiter.common.util;
 
+import net.sf.cglib.reflect.FastMethod;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
+import java.lang.reflect.InvocationTargetException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -46,6 +48,8 @@ public class MethodInvokeBenchmark {
     }
 
     static final Class[] params = new Class[] { String.class };
+    // 预先解析好的方法, 调用时不再按方法名及参数类型查找
+    static final FastMethod fastMethod = Reflects.fastMethod(ReflectClass1.class, "method", params);
 
     @Benchmark
     public void cglibFastInvoke() {
@@ -53,6 +57,12 @@ public class MethodInvokeBenchmark {
         Reflects.fastInvoke(obj, "method", params, new Object[] { "Jupiter" });
     }
 
+    @Benchmark
+    public void cglibFastMethodInvoke() throws InvocationTargetException {
+        ReflectClass1 obj = new ReflectClass1();
+        fastMethod.invoke(obj, new Object[] { "Jupiter" });
+    }
+
     @Benchmark
     public void jdkReflectInvoke() {
         ReflectClass1 obj = new ReflectClass1();
@@ -40,6 +40,7 @@ import org.jupiter.transport.JProtocolHeader;
 import org.jupiter.transport.exception.ConnectFailedException;
 import org.jupiter.common.util.Signal;
 import org.jupiter.transport.exception.IoSignals;
+import org.jupiter.transport.netty.NettyConnection;
 import org.jupiter.transport.netty.NettyTcpConnector;
 import org.jupiter.transport.netty.channel.NettyChannel;
 import org.jupiter.transport.netty.handler.AcknowledgeEncoder;
@@ -137,8 +138,8 @@ public class ConfigClient extends NettyTcpConnector {
             }};
         watchdog.setReconnect(true);
 
+        final ChannelFuture future;
         try {
-            ChannelFuture future;
             synchronized (bootstrapLock()) {
                 boot.handler(new ChannelInitializer<NioSocketChannel>() {
 
@@ -158,13 +159,7 @@ public class ConfigClient extends NettyTcpConnector {
             throw new ConnectFailedException("connects to [" + address + "] fails", t);
         }
 
-        return new JConnection(address) {
-
-            @Override
-            public void setReconnect(boolean reconnect) {
-                watchdog.setReconnect(reconnect);
-            }
-        };
+        return new NettyConnection(address, future, watchdog);
     }
 
     /**
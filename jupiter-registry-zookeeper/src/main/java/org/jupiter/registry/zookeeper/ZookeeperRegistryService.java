@@ -135,13 +135,7 @@ public class ZookeeperRegistryService extends AbstractRegistryService {
 
                     logger.info("Register: {}.", meta);
                 }
-            }).forPath(
-                    String.format("%s/%s:%s:%s:%s",
-                            directory,
-                            meta.getHost(),
-                            String.valueOf(meta.getPort()),
-                            String.valueOf(meta.getWeight()),
-                            String.valueOf(meta.getConnCount())));
+            }).forPath(registerMetaPath(directory, meta));
         } catch (Exception e) {
             logger.warn("Create register meta: {} path failed.", meta, stackTrace(e));
         }
@@ -173,13 +167,7 @@ public class ZookeeperRegistryService extends AbstractRegistryService {
 
                     logger.info("Unregister: {}.", meta);
                 }
-            }).forPath(
-                    String.format("%s/%s:%s:%s:%s",
-                            directory,
-                            meta.getHost(),
-                            String.valueOf(meta.getPort()),
-                            String.valueOf(meta.getWeight()),
-                            String.valueOf(meta.getConnCount())));
+            }).forPath(registerMetaPath(directory, meta));
         } catch (Exception e) {
             logger.warn("Delete register meta: {} path failed.", meta, stackTrace(e));
         }
@@ -230,6 +218,18 @@ public class ZookeeperRegistryService extends AbstractRegistryService {
         configClient.close();
     }
 
+    private static String registerMetaPath(String directory, RegisterMeta meta) {
+        String path = String.format("%s/%s:%s:%s:%s",
+                directory,
+                meta.getHost(),
+                String.valueOf(meta.getPort()),
+                String.valueOf(meta.getWeight()),
+                String.valueOf(meta.getConnCount()));
+        // zone是可选的, 没有zone时与之前的格式兼容
+        String zone = meta.getZone();
+        return Strings.isNotBlank(zone) ? path + ':' + zone : path;
+    }
+
     private static RegisterMeta parseRegisterMeta(String data) {
         String[] array_0 = Strings.split(data, '/');
         RegisterMeta meta = new RegisterMeta();
@@ -242,6 +242,9 @@ public class ZookeeperRegistryService extends AbstractRegistryService {
         meta.setPort(Integer.parseInt(array_1[1]));
         meta.setWeight(Integer.parseInt(array_1[2]));
         meta.setConnCount(Integer.parseInt(array_1[3]));
+        if (array_1.length > 4) {
+            meta.setZone(array_1[4]);
+        }
 
         return meta;
     }
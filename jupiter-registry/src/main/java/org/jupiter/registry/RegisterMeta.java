@@ -36,6 +36,8 @@ public class RegisterMeta {
     private volatile int weight;
     // 建议连接数 hashCode()与equals()不把connCount计算在内
     private volatile int connCount;
+    // 所在区域(机房/机架等), hashCode()与equals()不把zone计算在内
+    private volatile String zone;
 
     public String getHost() {
         return address.getHost();
@@ -101,6 +103,14 @@ public class RegisterMeta {
         this.connCount = connCount;
     }
 
+    public String getZone() {
+        return zone;
+    }
+
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -126,6 +136,7 @@ public class RegisterMeta {
                 ", serviceMeta=" + serviceMeta +
                 ", weight=" + weight +
                 ", connCount=" + connCount +
+                ", zone=" + zone +
                 '}';
     }
 
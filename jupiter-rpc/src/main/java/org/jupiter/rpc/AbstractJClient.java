@@ -16,24 +16,28 @@
 
 package org.jupiter.rpc;
 
-import org.jupiter.common.concurrent.atomic.AtomicUpdater;
+import org.jupiter.common.concurrent.ConcurrentSet;
+import org.jupiter.common.concurrent.NamedThreadFactory;
 import org.jupiter.common.util.JServiceLoader;
+import org.jupiter.common.util.Lists;
 import org.jupiter.common.util.Maps;
 import org.jupiter.common.util.SystemClock;
 import org.jupiter.common.util.internal.logging.InternalLogger;
 import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
 import org.jupiter.registry.*;
+import org.jupiter.rpc.channel.CopyOnWriteGroupList;
 import org.jupiter.rpc.channel.DirectoryJChannelGroup;
 import org.jupiter.rpc.channel.JChannel;
 import org.jupiter.rpc.channel.JChannelGroup;
 import org.jupiter.rpc.load.balance.LoadBalancer;
 
 import java.util.Collection;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
 
-import static org.jupiter.common.util.JConstants.UNKNOWN_APP_NAME;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.jupiter.common.util.JConstants.*;
 import static org.jupiter.common.util.Preconditions.checkNotNull;
 import static org.jupiter.registry.RegisterMeta.Address;
 import static org.jupiter.registry.RegisterMeta.ServiceMeta;
@@ -48,8 +52,8 @@ public abstract class AbstractJClient implements JClient {
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractJClient.class);
 
-    private static final AtomicReferenceFieldUpdater<CopyOnWriteArrayList, Object[]> copyOnWriteArrayListUpdater
-            = AtomicUpdater.newAtomicReferenceFieldUpdater(CopyOnWriteArrayList.class, Object[].class, "array");
+    private static final long DEAD_GROUP_SCAN_INTERVAL = 1; // seconds
+    private static final long ZONE_REFRESH_INTERVAL = 1; // seconds
 
     // SPI
     private final RegistryService registryService = JServiceLoader.load(RegistryService.class);
@@ -58,6 +62,12 @@ public abstract class AbstractJClient implements JClient {
 
     private final DirectoryJChannelGroup directoryGroup = new DirectoryJChannelGroup();
     private final ConcurrentMap<UnresolvedAddress, JChannelGroup> addressGroups = Maps.newConcurrentHashMap();
+    // 区域感知路由, 每个directory中本区域的group
+    private final ConcurrentMap<String, ZoneSnapshot> zoneSnapshots = Maps.newConcurrentHashMap();
+    // 开启了并发限制的directory, 区域容量按group的并发限制计算
+    private final ConcurrentSet<String> concurrencyLimitedDirectories = new ConcurrentSet<>();
+    // 所有client共用一个调度线程, client关闭时取消自己的任务
+    private final List<ScheduledFuture<?>> scheduledTasks = Lists.newArrayList();
 
     private final String appName;
 
@@ -67,6 +77,14 @@ public abstract class AbstractJClient implements JClient {
 
     public AbstractJClient(String appName) {
         this.appName = appName;
+
+        ScheduledExecutorService scanner = ScannerHolder.scanner;
+        scheduledTasks.add(scanner.scheduleWithFixedDelay(
+                new DeadGroupScanner(directoryGroup), DEAD_GROUP_SCAN_INTERVAL, DEAD_GROUP_SCAN_INTERVAL, SECONDS));
+        if (LOCAL_ZONE != null) {
+            scheduledTasks.add(scanner.scheduleWithFixedDelay(
+                    new ZoneRefresher(zoneSnapshots), ZONE_REFRESH_INTERVAL, ZONE_REFRESH_INTERVAL, SECONDS));
+        }
     }
 
     @Override
@@ -118,14 +136,37 @@ public abstract class AbstractJClient implements JClient {
     }
 
     @Override
-    public CopyOnWriteArrayList<JChannelGroup> directory(Directory directory) {
+    public int addChannelGroups(Directory directory, Collection<JChannelGroup> groups) {
+        if (groups.isEmpty()) {
+            return 0;
+        }
+        int added = directory(directory).addAllAbsent(groups);
+        if (added > 0) {
+            logger.info("Added {} channel groups: {} to {}.", added, groups, directory.directory());
+        }
+        return added;
+    }
+
+    @Override
+    public int removeChannelGroups(Directory directory, Collection<JChannelGroup> groups) {
+        if (groups.isEmpty()) {
+            return 0;
+        }
+        int removed = directory(directory).removeAll(groups);
+        if (removed > 0) {
+            logger.warn("Removed {} channel groups: {} in directory: {}.", removed, groups, directory.directory());
+        }
+        return removed;
+    }
+
+    @Override
+    public CopyOnWriteGroupList directory(Directory directory) {
         return directoryGroup.list(directory);
     }
 
     @Override
     public boolean isDirectoryAvailable(Directory directory) {
-        CopyOnWriteArrayList<JChannelGroup> groups = directory(directory);
-        for (JChannelGroup g : groups) {
+        for (JChannelGroup g : directory(directory)) {
             if (g.isAvailable()) {
                 return true;
             }
@@ -133,36 +174,72 @@ public abstract class AbstractJClient implements JClient {
         return false;
     }
 
+    @Override
+    public void markConcurrencyLimited(Directory directory) {
+        String _directory = directory.directory();
+        concurrencyLimitedDirectories.add(_directory);
+        ZoneSnapshot snapshot = zoneSnapshots.get(_directory);
+        if (snapshot != null) {
+            snapshot.concurrencyLimited = true;
+        }
+    }
+
     @Override
     public JChannel select(Directory directory) {
-        CopyOnWriteArrayList<JChannelGroup> groupList = directory(directory);
-        // snapshot of groupList
-        Object[] elements = copyOnWriteArrayListUpdater.get(groupList);
+        return selectGroup(directory, null, null).next();
+    }
 
-        JChannelGroup group = loadBalancer.select(elements);
+    @Override
+    public JChannelGroup selectGroup(Directory directory, LoadBalancer<JChannelGroup> loadBalancer, Object hashKey) {
+        CopyOnWriteGroupList groupList = directory(directory);
+        Object[] elements = zoneAwareElements(directory, groupList.snapshot());
 
-        if (group.isAvailable()) {
-            return group.next();
-        }
+        LoadBalancer<JChannelGroup> _loadBalancer = loadBalancer == null ? this.loadBalancer : loadBalancer;
+        JChannelGroup group = _loadBalancer.select(elements, directory, hashKey);
 
-        // group死期到(无可用channel), 时间超过预定限制
-        long deadline = group.deadlineMillis();
-        if (deadline > 0 && SystemClock.millisClock().now() > deadline) {
-            boolean removed = groupList.remove(group);
+        if (group.isAvailable() && group.circuitBreaker().allowRequest()) {
+            if (group.ensureConnected()) {
+                return group;
+            }
+            // 延迟连接的group刚开始建立连接, 优先选择已经建立连接的group, 避免本次调用等待
+            JChannelGroup connected = selectConnectedGroup(groupList.snapshot());
+            return connected != null ? connected : group;
+        }
 
-            logger.warn("Removed group: {} in directory: {}, {}.",
-                    group, directory.directory(), removed ? "succeed" : "failed");
+        // 死期已到的group由DeadGroupScanner定期移除, 这里从随机位置开始找一个可用的group, 避免流量集中在第一个
+        Object[] allElements = groupList.snapshot();
+        int length = allElements.length;
+        int offset = length > 1 ? ThreadLocalRandom.current().nextInt(length) : 0;
+        for (int i = 0; i < length; i++) {
+            JChannelGroup g = (JChannelGroup) allElements[(offset + i) % length];
+            if (g.isAvailable() && g.circuitBreaker().allowRequest()) {
+                return g;
+            }
         }
 
-        for (JChannelGroup g : groupList) {
+        // 全部被熔断时不再遵守熔断, 避免整个服务不可用
+        for (int i = 0; i < length; i++) {
+            JChannelGroup g = (JChannelGroup) allElements[(offset + i) % length];
             if (g.isAvailable()) {
-                return g.next();
+                return g;
             }
         }
 
         throw new IllegalStateException("no channel");
     }
 
+    private static JChannelGroup selectConnectedGroup(Object[] elements) {
+        int length = elements.length;
+        int offset = length > 1 ? ThreadLocalRandom.current().nextInt(length) : 0;
+        for (int i = 0; i < length; i++) {
+            JChannelGroup g = (JChannelGroup) elements[(offset + i) % length];
+            if (!g.isEmpty() && g.circuitBreaker().allowRequest()) {
+                return g;
+            }
+        }
+        return null;
+    }
+
     @Override
     public Collection<RegisterMeta> lookup(Directory directory) {
         ServiceMeta serviceMeta = transform2ServiceMeta(directory);
@@ -186,6 +263,146 @@ public abstract class AbstractJClient implements JClient {
 
     protected abstract JChannelGroup newChannelGroup(UnresolvedAddress address);
 
+    /**
+     * The zone of {@code group} was updated in place, the zone snapshots
+     * are rebuilt on the next selection.
+     */
+    protected void onZoneChanged(JChannelGroup group) {
+        zoneSnapshots.clear();
+    }
+
+    /**
+     * Cancels the periodic tasks of this client.
+     */
+    protected void cancelScheduledTasks() {
+        for (ScheduledFuture<?> task : scheduledTasks) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * 优先选择与本机相同区域的group, 本区域健康节点比例过低或容量不足时溢出到全部区域.
+     *
+     * 划分只在directory的成员或者group的区域发生变化后进行, 是否溢出由 {@link ZoneRefresher} 定期计算,
+     * 选择group时只读取结果.
+     */
+    private Object[] zoneAwareElements(Directory directory, Object[] elements) {
+        if (LOCAL_ZONE == null || elements.length < 2) {
+            return elements;
+        }
+
+        String _directory = directory.directory();
+        ZoneSnapshot snapshot = zoneSnapshots.get(_directory);
+        if (snapshot == null || snapshot.elements != elements) {
+            snapshot = new ZoneSnapshot(elements, concurrencyLimitedDirectories.contains(_directory));
+            zoneSnapshots.put(_directory, snapshot);
+        }
+        return snapshot.spill ? elements : snapshot.localElements;
+    }
+
+    /**
+     * 定期移除死期已到(长时间没有可用channel)的group, 不在选择group的调用路径上.
+     */
+    private static class DeadGroupScanner implements Runnable {
+
+        private final DirectoryJChannelGroup directoryGroup;
+
+        DeadGroupScanner(DirectoryJChannelGroup directoryGroup) {
+            this.directoryGroup = directoryGroup;
+        }
+
+        @Override
+        public void run() {
+            long now = SystemClock.millisClock().now();
+            for (Map.Entry<String, CopyOnWriteGroupList> entry : directoryGroup.groups().entrySet()) {
+                CopyOnWriteGroupList groupList = entry.getValue();
+                for (JChannelGroup group : groupList) {
+                    if (group.isAvailable()) {
+                        continue;
+                    }
+                    long deadline = group.deadlineMillis();
+                    if (deadline > 0 && now > deadline) {
+                        boolean removed = groupList.remove(group);
+
+                        logger.warn("Removed group: {} in directory: {}, {}.",
+                                group, entry.getKey(), removed ? "succeed" : "failed");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 定期根据本区域group的健康状况与负载, 重新计算是否溢出到全部区域.
+     */
+    private static class ZoneRefresher implements Runnable {
+
+        private final ConcurrentMap<String, ZoneSnapshot> zoneSnapshots;
+
+        ZoneRefresher(ConcurrentMap<String, ZoneSnapshot> zoneSnapshots) {
+            this.zoneSnapshots = zoneSnapshots;
+        }
+
+        @Override
+        public void run() {
+            for (ZoneSnapshot snapshot : zoneSnapshots.values()) {
+                snapshot.refresh();
+            }
+        }
+    }
+
+    private static class ScannerHolder {
+        static final ScheduledExecutorService scanner =
+                Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("group.scanner", true));
+    }
+
+    private static class ZoneSnapshot {
+
+        final Object[] elements;
+        final Object[] localElements;
+
+        volatile boolean concurrencyLimited;
+        volatile boolean spill;
+
+        ZoneSnapshot(Object[] elements, boolean concurrencyLimited) {
+            this.elements = elements;
+            this.concurrencyLimited = concurrencyLimited;
+
+            List<Object> localList = Lists.newArrayList();
+            for (Object element : elements) {
+                if (LOCAL_ZONE.equals(((JChannelGroup) element).getZone())) {
+                    localList.add(element);
+                }
+            }
+            localElements = localList.toArray();
+            refresh();
+        }
+
+        void refresh() {
+            int localCount = localElements.length;
+            if (localCount == 0 || localCount == elements.length) {
+                spill = true;
+                return;
+            }
+
+            boolean _concurrencyLimited = concurrencyLimited;
+            int healthy = 0;
+            long inFlight = 0;
+            long capacity = 0;
+            for (Object element : localElements) {
+                JChannelGroup group = (JChannelGroup) element;
+                if (group.isAvailable() && !group.circuitBreaker().isEjected()) {
+                    healthy++;
+                    inFlight += group.inFlight();
+                    // 没有开启并发限制时, 并发限制只是估算值, 请求数可能远超过它, 使用配置的容量
+                    capacity += _concurrencyLimited ? group.concurrencyLimiter().limit() : ZONE_SPILL_GROUP_CAPACITY;
+                }
+            }
+            spill = healthy * 100 < localCount * ZONE_MIN_HEALTHY_PERCENT
+                    || inFlight * 100 >= capacity * ZONE_SPILL_CAPACITY_PERCENT;
+        }
+    }
+
     private static ServiceMeta transform2ServiceMeta(Directory directory) {
         ServiceMeta serviceMeta = new ServiceMeta();
         serviceMeta.setGroup(checkNotNull(directory.getGroup(), "group"));
@@ -25,8 +25,13 @@ import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
 import org.jupiter.registry.RegisterMeta;
 import org.jupiter.registry.RegistryService;
 import org.jupiter.rpc.flow.control.FlowController;
+import org.jupiter.rpc.model.metadata.Identifiers;
 import org.jupiter.rpc.model.metadata.ServiceMetadata;
+import org.jupiter.rpc.model.metadata.ServiceMethod;
 import org.jupiter.rpc.model.metadata.ServiceWrapper;
+import org.jupiter.rpc.provider.RequestCollapser;
+import org.jupiter.rpc.provider.ResultCache;
+import org.jupiter.rpc.provider.processor.FairScheduler;
 
 import java.lang.reflect.Method;
 import java.util.List;
@@ -35,6 +40,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 
 import static org.jupiter.common.util.JConstants.DEFAULT_CONNECTION_COUNT;
+import static org.jupiter.common.util.JConstants.LOCAL_ZONE;
 import static org.jupiter.common.util.JConstants.DEFAULT_WEIGHT;
 import static org.jupiter.common.util.Preconditions.checkArgument;
 import static org.jupiter.common.util.Preconditions.checkNotNull;
@@ -54,6 +60,11 @@ public abstract class AbstractJServer implements JServer {
     private final RegistryService registryService = JServiceLoader.load(RegistryService.class);
 
     private volatile FlowController<JRequest> flowController;
+    private volatile FairScheduler fairScheduler;
+    // DEDICATED方法的具名executor
+    private final ConcurrentMap<String, Executor> namedExecutors = Maps.newConcurrentHashMap();
+    private volatile boolean ioThreadRouting;
+    private volatile int ioThreadRoutingVersion = -1; // 计算ioThreadRouting时的ServiceMethod.placementVersion()
 
     @Override
     public void connectToConfigServer(String connectString) {
@@ -70,6 +81,36 @@ public abstract class AbstractJServer implements JServer {
         this.flowController = flowController;
     }
 
+    @Override
+    public FairScheduler getFairScheduler() {
+        return fairScheduler;
+    }
+
+    @Override
+    public void setFairScheduler(FairScheduler fairScheduler) {
+        this.fairScheduler = fairScheduler;
+    }
+
+    @Override
+    public Executor getNamedExecutor(String name) {
+        return namedExecutors.get(name);
+    }
+
+    @Override
+    public void setNamedExecutor(String name, Executor executor) {
+        namedExecutors.put(checkNotNull(name, "name"), checkNotNull(executor, "executor"));
+    }
+
+    @Override
+    public boolean hasIoThreadRouting() {
+        int version = ServiceMethod.placementVersion();
+        if (version != ioThreadRoutingVersion) {
+            // 有方法的执行位置被设置, 降级或者恢复
+            updateIoThreadRouting(version);
+        }
+        return ioThreadRouting;
+    }
+
     @Override
     public ServiceRegistry serviceRegistry() {
         return new DefaultServiceRegistry();
@@ -80,9 +121,18 @@ public abstract class AbstractJServer implements JServer {
         return providerContainer.lookupService(directory.directory());
     }
 
+    @Override
+    public ServiceWrapper lookupService(int serviceId) {
+        return providerContainer.lookupService(serviceId);
+    }
+
     @Override
     public ServiceWrapper removeService(Directory directory) {
-        return providerContainer.removeService(directory.directory());
+        ServiceWrapper serviceWrapper = providerContainer.removeService(directory.directory());
+        if (serviceWrapper != null) {
+            updateIoThreadRouting(ServiceMethod.placementVersion());
+        }
+        return serviceWrapper;
     }
 
     @Override
@@ -90,6 +140,27 @@ public abstract class AbstractJServer implements JServer {
         return providerContainer.getAllServices();
     }
 
+    private void updateIoThreadRouting(int version) {
+        boolean routing = false;
+        for (ServiceWrapper wrapper : providerContainer.getAllServices()) {
+            if (wrapper.getExecutor() != null) {
+                routing = true;
+                break;
+            }
+            for (ServiceMethod method : wrapper.getMethods()) {
+                if (method.getPlacement() != Placement.DEFAULT) {
+                    routing = true;
+                    break;
+                }
+            }
+            if (routing) {
+                break;
+            }
+        }
+        ioThreadRouting = routing;
+        ioThreadRoutingVersion = version;
+    }
+
     @Override
     public void publish(ServiceWrapper serviceWrapper) {
         publish(serviceWrapper, -1, -1);
@@ -106,6 +177,7 @@ public abstract class AbstractJServer implements JServer {
         meta.setServiceProviderName(metadata.getServiceProviderName());
         meta.setWeight(weight <= 0 ? DEFAULT_WEIGHT : weight);
         meta.setConnCount(connCount <= 0 ? DEFAULT_CONNECTION_COUNT : connCount);
+        meta.setZone(LOCAL_ZONE);
 
         registryService.register(meta);
     }
@@ -138,6 +210,8 @@ public abstract class AbstractJServer implements JServer {
         serviceWrapper.setFlowController(flowController);
 
         providerContainer.registerService(serviceWrapper.getMetadata().directory(), serviceWrapper);
+        // 服务私有的executor不改变方法的执行位置, 需要单独重新计算
+        updateIoThreadRouting(ServiceMethod.placementVersion());
 
         return serviceWrapper;
     }
@@ -147,6 +221,12 @@ public abstract class AbstractJServer implements JServer {
         private Object serviceProvider;
         protected Executor executor;
         protected FlowController<JRequest> flowController;
+        // methodName -> 结果缓存配置
+        private final Map<String, ResultCacheSpec> resultCacheSpecs = Maps.newHashMap();
+        // 开启请求合并的方法名
+        private final List<String> singleFlightMethodNames = Lists.newArrayList();
+        // methodName -> 执行位置
+        private final Map<String, PlacementSpec> placementSpecs = Maps.newHashMap();
 
         @Override
         public ServiceRegistry provider(Object serviceProvider) {
@@ -166,6 +246,31 @@ public abstract class AbstractJServer implements JServer {
             return this;
         }
 
+        @Override
+        public ServiceRegistry resultCache(String methodName, long ttlMillis, int maxEntries) {
+            resultCacheSpecs.put(checkNotNull(methodName, "methodName"), new ResultCacheSpec(ttlMillis, maxEntries));
+            return this;
+        }
+
+        @Override
+        public ServiceRegistry singleFlight(String methodName) {
+            singleFlightMethodNames.add(checkNotNull(methodName, "methodName"));
+            return this;
+        }
+
+        @Override
+        public ServiceRegistry placement(String methodName, Placement placement) {
+            checkArgument(placement != Placement.DEDICATED, "DEDICATED placement requires an executor name");
+            placementSpecs.put(checkNotNull(methodName, "methodName"), new PlacementSpec(placement, null));
+            return this;
+        }
+
+        @Override
+        public ServiceRegistry placement(String methodName, String executorName) {
+            placementSpecs.put(checkNotNull(methodName, "methodName"), new PlacementSpec(Placement.DEDICATED, executorName));
+            return this;
+        }
+
         @Override
         public ServiceWrapper register() {
             checkNotNull(serviceProvider, "serviceProvider");
@@ -174,6 +279,7 @@ public abstract class AbstractJServer implements JServer {
             ServiceProvider annotation = null;
             String providerName = null;
             Map<String, List<Class<?>[]>> methodsParameterTypes = Maps.newHashMap();
+            List<Method> annotatedMethods = Lists.newArrayList();
             if (interfaces != null) {
                 for (Class<?> providerInterface : interfaces) {
                     annotation = providerInterface.getAnnotation(ServiceProvider.class);
@@ -193,6 +299,12 @@ public abstract class AbstractJServer implements JServer {
                             methodsParameterTypes.put(methodName, list);
                         }
                         list.add(method.getParameterTypes());
+
+                        if (method.getAnnotation(CacheResult.class) != null
+                                || method.getAnnotation(SingleFlight.class) != null
+                                || method.getAnnotation(ExecuteOn.class) != null) {
+                            annotatedMethods.add(method);
+                        }
                     }
                     break;
                 }
@@ -205,7 +317,87 @@ public abstract class AbstractJServer implements JServer {
             checkNotNull(group, "group");
             checkNotNull(version, "version");
 
-            return registerService(group, version, providerName, serviceProvider, methodsParameterTypes, executor, flowController);
+            ServiceWrapper serviceWrapper = registerService(
+                    group, version, providerName, serviceProvider, methodsParameterTypes, executor, flowController);
+
+            // result cache & single-flight & placement
+            for (Method m : annotatedMethods) {
+                ServiceMethod method = serviceWrapper.getMethod(Identifiers.methodId(m.getName(), m.getParameterTypes()));
+                CacheResult cacheResult = m.getAnnotation(CacheResult.class);
+                if (cacheResult != null) {
+                    method.setResultCache(new ResultCache(method.getCallInfo(), cacheResult.ttlMillis(), cacheResult.maxEntries()));
+                }
+                if (m.getAnnotation(SingleFlight.class) != null) {
+                    method.setCollapser(new RequestCollapser(method.getCallInfo()));
+                }
+                ExecuteOn executeOn = m.getAnnotation(ExecuteOn.class);
+                if (executeOn != null) {
+                    setPlacement(method, executeOn.value(), executeOn.executor());
+                }
+            }
+            for (Map.Entry<String, ResultCacheSpec> entry : resultCacheSpecs.entrySet()) {
+                ResultCacheSpec spec = entry.getValue();
+                for (ServiceMethod method : getMethods(serviceWrapper, methodsParameterTypes, entry.getKey())) {
+                    method.setResultCache(new ResultCache(method.getCallInfo(), spec.ttlMillis, spec.maxEntries));
+                }
+            }
+            for (String methodName : singleFlightMethodNames) {
+                for (ServiceMethod method : getMethods(serviceWrapper, methodsParameterTypes, methodName)) {
+                    method.setCollapser(new RequestCollapser(method.getCallInfo()));
+                }
+            }
+            for (Map.Entry<String, PlacementSpec> entry : placementSpecs.entrySet()) {
+                PlacementSpec spec = entry.getValue();
+                for (ServiceMethod method : getMethods(serviceWrapper, methodsParameterTypes, entry.getKey())) {
+                    setPlacement(method, spec.placement, spec.executorName);
+                }
+            }
+
+            return serviceWrapper;
+        }
+
+        private void setPlacement(ServiceMethod method, Placement placement, String executorName) {
+            Executor executor = null;
+            if (placement == Placement.DEDICATED) {
+                executor = getNamedExecutor(executorName);
+                checkArgument(executor != null, "executor not found: " + executorName);
+            }
+            method.setPlacement(placement, executor);
+        }
+
+        // 同名的所有重载方法
+        private List<ServiceMethod> getMethods(
+                ServiceWrapper serviceWrapper, Map<String, List<Class<?>[]>> methodsParameterTypes, String methodName) {
+
+            List<Class<?>[]> parameterTypesList = methodsParameterTypes.get(methodName);
+            checkArgument(parameterTypesList != null, "method not found: " + methodName);
+            List<ServiceMethod> methods = Lists.newArrayListWithCapacity(parameterTypesList.size());
+            for (Class<?>[] parameterTypes : parameterTypesList) {
+                methods.add(serviceWrapper.getMethod(Identifiers.methodId(methodName, parameterTypes)));
+            }
+            return methods;
+        }
+    }
+
+    static final class ResultCacheSpec {
+
+        final long ttlMillis;
+        final int maxEntries;
+
+        ResultCacheSpec(long ttlMillis, int maxEntries) {
+            this.ttlMillis = ttlMillis;
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    static final class PlacementSpec {
+
+        final Placement placement;
+        final String executorName;
+
+        PlacementSpec(Placement placement, String executorName) {
+            this.placement = placement;
+            this.executorName = executorName;
         }
     }
 
@@ -218,6 +410,8 @@ public abstract class AbstractJServer implements JServer {
 
         ServiceWrapper lookupService(String uniqueKey);
 
+        ServiceWrapper lookupService(int serviceId);
+
         ServiceWrapper removeService(String uniqueKey);
 
         List<ServiceWrapper> getAllServices();
@@ -226,10 +420,18 @@ public abstract class AbstractJServer implements JServer {
     class DefaultServiceProviderContainer implements ServiceProviderContainer {
 
         private final ConcurrentMap<String, ServiceWrapper> serviceProviders = Maps.newConcurrentHashMap();
+        private final ConcurrentMap<Integer, ServiceWrapper> serviceProvidersById = Maps.newConcurrentHashMap();
 
         @Override
-        public void registerService(String uniqueKey, ServiceWrapper serviceWrapper) {
+        public synchronized void registerService(String uniqueKey, ServiceWrapper serviceWrapper) {
+            int serviceId = serviceWrapper.getServiceId();
+            ServiceWrapper exists = serviceProvidersById.get(serviceId);
+            if (exists != null && !exists.getMetadata().equals(serviceWrapper.getMetadata())) {
+                throw new IllegalStateException(
+                        "duplicate service id: " + serviceId + ", " + exists.getMetadata() + ", " + serviceWrapper.getMetadata());
+            }
             serviceProviders.put(uniqueKey, serviceWrapper);
+            serviceProvidersById.put(serviceId, serviceWrapper);
 
             logger.debug("ServiceProvider [{}, {}] is registered.", uniqueKey, serviceWrapper.getServiceProvider());
         }
@@ -240,11 +442,17 @@ public abstract class AbstractJServer implements JServer {
         }
 
         @Override
-        public ServiceWrapper removeService(String uniqueKey) {
+        public ServiceWrapper lookupService(int serviceId) {
+            return serviceProvidersById.get(serviceId);
+        }
+
+        @Override
+        public synchronized ServiceWrapper removeService(String uniqueKey) {
             ServiceWrapper provider = serviceProviders.remove(uniqueKey);
             if (provider == null) {
                 logger.warn("ServiceProvider [{}] not found.", uniqueKey);
             } else {
+                serviceProvidersById.remove(provider.getServiceId(), provider);
                 logger.debug("ServiceProvider [{}, {}] is removed.", uniqueKey, provider.getServiceProvider());
             }
             return provider;
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注在服务接口的幂等方法上, 服务端按(方法, 参数的编码字节)缓存序列化后的响应,
+ * 命中缓存时不再反序列化参数, 调用方法和序列化结果.
+ *
+ * 只有正常返回的结果会被缓存, 异常不会被缓存.
+ *
+ * jupiter
+ * org.jupiter.rpc
+ *
+ * @author jiachun.fjc
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CacheResult {
+
+    /**
+     * 缓存项的存活时间(毫秒).
+     */
+    long ttlMillis() default 1000;
+
+    /**
+     * 缓存项的最大数量, 超过后淘汰最久未被访问的缓存项.
+     */
+    int maxEntries() default 1024;
+}
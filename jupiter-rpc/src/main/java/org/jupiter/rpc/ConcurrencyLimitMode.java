@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc;
+
+/**
+ * 客户端自适应并发限制, 见 {@link org.jupiter.rpc.channel.ConcurrencyLimiter}.
+ *
+ * jupiter
+ * org.jupiter.rpc
+ *
+ * @author jiachun.fjc
+ */
+public enum ConcurrencyLimitMode {
+    NONE,       // 不限制
+    FAIL_FAST,  // 超出限制时本地直接失败
+    REROUTE     // 超出限制时发送到其他未超出限制的节点, 都超出限制时本地直接失败
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc;
+
+import java.util.List;
+
+/**
+ * 合并到一个协议帧中的多个 {@link JRequest} 或多个 {@link JResponse}.
+ *
+ * jupiter
+ * org.jupiter.rpc
+ *
+ * @author jiachun.fjc
+ */
+public class JBatch extends BytesHolder {
+
+    private final List<? extends BytesHolder> messages;
+
+    public JBatch(List<? extends BytesHolder> messages) {
+        this.messages = messages;
+    }
+
+    public List<? extends BytesHolder> messages() {
+        return messages;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (BytesHolder m : messages) {
+            size += m.size();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "JBatch{" +
+                "messages=" + messages.size() +
+                ", size=" + size() +
+                '}';
+    }
+}
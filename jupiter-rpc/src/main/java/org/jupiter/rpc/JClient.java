@@ -20,11 +20,12 @@ import org.jupiter.registry.NotifyListener;
 import org.jupiter.registry.OfflineListener;
 import org.jupiter.registry.RegisterMeta;
 import org.jupiter.registry.Registry;
+import org.jupiter.rpc.channel.CopyOnWriteGroupList;
 import org.jupiter.rpc.channel.JChannel;
 import org.jupiter.rpc.channel.JChannelGroup;
+import org.jupiter.rpc.load.balance.LoadBalancer;
 
 import java.util.Collection;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * jupiter
@@ -59,10 +60,22 @@ public interface JClient extends Registry {
      */
     boolean removeChannelGroup(Directory directory, JChannelGroup group);
 
+    /**
+     * Adds {@link JChannelGroup}s by {@link Directory}, the group list of
+     * the directory is rebuilt only once, returns the count of added groups.
+     */
+    int addChannelGroups(Directory directory, Collection<JChannelGroup> groups);
+
+    /**
+     * Removes {@link JChannelGroup}s by {@link Directory}, the group list of
+     * the directory is rebuilt only once, returns the count of removed groups.
+     */
+    int removeChannelGroups(Directory directory, Collection<JChannelGroup> groups);
+
     /**
      * Returns list of {@link JChannelGroup}s by the same {@link Directory}.
      */
-    CopyOnWriteArrayList<JChannelGroup> directory(Directory directory);
+    CopyOnWriteGroupList directory(Directory directory);
 
     /**
      * Returns {@code true} if has available {@link JChannelGroup}s
@@ -75,6 +88,20 @@ public interface JClient extends Registry {
      */
     JChannel select(Directory directory);
 
+    /**
+     * Selects a {@link JChannelGroup} from the specified load balancer,
+     * the default load balancer is used if {@code loadBalancer} is null,
+     * {@code hashKey} is only used by the key-aware load balancers.
+     */
+    JChannelGroup selectGroup(Directory directory, LoadBalancer<JChannelGroup> loadBalancer, Object hashKey);
+
+    /**
+     * Marks that the calls to the directory are limited by the adaptive concurrency limit of
+     * each {@link JChannelGroup}, the zone-aware routing takes the limits as the capacity then,
+     * otherwise a configured capacity is used.
+     */
+    void markConcurrencyLimited(Directory directory);
+
     /**
      * Find a service in the local scope.
      */
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc;
+
+import org.jupiter.common.util.Lists;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+
+import java.util.EventListener;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 服务方法的异步返回值.
+ *
+ * 服务提供者的方法声明返回 {@link JPromise} 时, 调用线程在方法返回后立即被释放,
+ * 直到promise被 {@link #complete(Object)} 或 {@link #failure(Throwable)} 时才序列化并写回响应,
+ * 等待下游rpc或IO的聚合服务因此不再需要占用大量的处理线程.
+ *
+ * 请求携带了调用方的超时时间时, 到期仍未完成的promise会被服务端以
+ * {@link org.jupiter.rpc.exception.TimeoutException} 失败, 之后的 {@link #complete(Object)} 返回false.
+ *
+ * 消费者以同步方式调用返回 {@link JPromise} 的方法时, 得到的是一个已经完成的promise.
+ *
+ * jupiter
+ * org.jupiter.rpc
+ *
+ * @author jiachun.fjc
+ */
+public class JPromise<V> {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(JPromise.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition doneCondition = lock.newCondition();
+
+    private volatile boolean done;
+    private V value;
+    private Throwable cause;
+    private List<Listener<V>> listeners; // guarded by lock
+
+    /**
+     * Returns a promise that has already completed with {@code value}.
+     */
+    public static <V> JPromise<V> completed(V value) {
+        JPromise<V> promise = new JPromise<>();
+        promise.complete(value);
+        return promise;
+    }
+
+    /**
+     * Returns a promise that has already failed with {@code cause}.
+     */
+    public static <V> JPromise<V> failed(Throwable cause) {
+        JPromise<V> promise = new JPromise<>();
+        promise.failure(cause);
+        return promise;
+    }
+
+    /**
+     * Completes this promise with {@code value}, returns false if it was already done.
+     */
+    public boolean complete(V value) {
+        return setDone(value, null);
+    }
+
+    /**
+     * Fails this promise with {@code cause}, returns false if it was already done.
+     */
+    public boolean failure(Throwable cause) {
+        if (cause == null) {
+            throw new NullPointerException("cause");
+        }
+        return setDone(null, cause);
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Adds a listener, it is notified immediately if this promise is already done.
+     */
+    public JPromise<V> addListener(Listener<V> listener) {
+        if (listener == null) {
+            throw new NullPointerException("listener");
+        }
+
+        if (!done) {
+            final ReentrantLock _lock = lock;
+            _lock.lock();
+            try {
+                if (!done) {
+                    if (listeners == null) {
+                        listeners = Lists.newArrayListWithCapacity(2);
+                    }
+                    listeners.add(listener);
+                    return this;
+                }
+            } finally {
+                _lock.unlock();
+            }
+        }
+        notifyListener(listener);
+        return this;
+    }
+
+    public V get() throws InterruptedException, ExecutionException {
+        if (!done) {
+            final ReentrantLock _lock = lock;
+            _lock.lock();
+            try {
+                while (!done) {
+                    doneCondition.await();
+                }
+            } finally {
+                _lock.unlock();
+            }
+        }
+        return report();
+    }
+
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done) {
+            long remainingNanos = unit.toNanos(timeout);
+            final ReentrantLock _lock = lock;
+            _lock.lock();
+            try {
+                while (!done) {
+                    if (remainingNanos <= 0L) {
+                        throw new TimeoutException();
+                    }
+                    remainingNanos = doneCondition.awaitNanos(remainingNanos);
+                }
+            } finally {
+                _lock.unlock();
+            }
+        }
+        return report();
+    }
+
+    private V report() throws ExecutionException {
+        if (cause != null) {
+            throw new ExecutionException(cause);
+        }
+        return value;
+    }
+
+    private boolean setDone(V value, Throwable cause) {
+        List<Listener<V>> _listeners;
+        final ReentrantLock _lock = lock;
+        _lock.lock();
+        try {
+            if (done) {
+                return false;
+            }
+            this.value = value;
+            this.cause = cause;
+            done = true;
+            _listeners = listeners;
+            listeners = null;
+            doneCondition.signalAll();
+        } finally {
+            _lock.unlock();
+        }
+
+        if (_listeners != null) {
+            for (Listener<V> l : _listeners) {
+                notifyListener(l);
+            }
+        }
+        return true;
+    }
+
+    private void notifyListener(Listener<V> listener) {
+        try {
+            if (cause == null) {
+                listener.complete(value);
+            } else {
+                listener.failure(cause);
+            }
+        } catch (Throwable t) {
+            logger.error("An exception has been caught while notifying the listener {}.", listener, t);
+        }
+    }
+
+    public interface Listener<V> extends EventListener {
+
+        /**
+         * Returns result when the promise completes.
+         */
+        void complete(V value) throws Exception;
+
+        /**
+         * Returns an exception message when the promise fails.
+         */
+        void failure(Throwable cause);
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.jupiter.rpc;
 
+import org.jupiter.rpc.flow.control.RequestBytesBudget;
 import org.jupiter.rpc.model.metadata.MessageWrapper;
 
 import java.util.concurrent.atomic.AtomicLong;
@@ -36,6 +37,10 @@ public class JRequest extends BytesHolder {
     private MessageWrapper message; // 请求数据
 
     private transient long timestamp;
+    private transient boolean batched; // 是否来自批量请求
+    private transient RequestBytesBudget.Account budgetAccount; // 请求字节数计入的预算账户
+    private transient int budgetBytes;
+    private transient boolean overBudget; // 计入时超出了全局预算
 
     public JRequest() {
         this(invokeIdGenerator.getAndIncrement());
@@ -65,6 +70,38 @@ public class JRequest extends BytesHolder {
         this.timestamp = timestamp;
     }
 
+    public boolean batched() {
+        return batched;
+    }
+
+    public void batched(boolean batched) {
+        this.batched = batched;
+    }
+
+    /**
+     * Charges the bytes of this request to the budget account.
+     */
+    public void charge(RequestBytesBudget.Account account, int bytes) {
+        budgetAccount = account;
+        budgetBytes = bytes;
+        overBudget = !account.acquire(bytes);
+    }
+
+    public boolean overBudget() {
+        return overBudget;
+    }
+
+    /**
+     * Releases the charged bytes when the request is done, it takes effect only once.
+     */
+    public void releaseBudget() {
+        RequestBytesBudget.Account account = budgetAccount;
+        if (account != null) {
+            budgetAccount = null;
+            account.release(budgetBytes);
+        }
+    }
+
     @Override
     public String toString() {
         return "JRequest{" +
@@ -19,6 +19,7 @@ package org.jupiter.rpc;
 import org.jupiter.registry.Registry;
 import org.jupiter.rpc.flow.control.FlowController;
 import org.jupiter.rpc.model.metadata.ServiceWrapper;
+import org.jupiter.rpc.provider.processor.FairScheduler;
 
 import java.util.List;
 import java.util.concurrent.Executor;
@@ -53,6 +54,30 @@ public interface JServer extends Registry {
          */
         ServiceRegistry flowController(FlowController<JRequest> flowController);
 
+        /**
+         * Caches the results of the idempotent method(all overloads) named {@code methodName},
+         * overrides the {@link CacheResult} annotation on the service interface.
+         */
+        ServiceRegistry resultCache(String methodName, long ttlMillis, int maxEntries);
+
+        /**
+         * Collapses the identical concurrent calls of the idempotent method(all overloads)
+         * named {@code methodName}, same as the {@link SingleFlight} annotation.
+         */
+        ServiceRegistry singleFlight(String methodName);
+
+        /**
+         * Sets the {@link Placement} of the method(all overloads) named {@code methodName},
+         * overrides the {@link ExecuteOn} annotation on the service interface.
+         */
+        ServiceRegistry placement(String methodName, Placement placement);
+
+        /**
+         * Places the method(all overloads) named {@code methodName} on the named executor,
+         * see {@link #setNamedExecutor(String, Executor)}.
+         */
+        ServiceRegistry placement(String methodName, String executorName);
+
         /**
          * Register this provider to local scope.
          */
@@ -69,6 +94,37 @@ public interface JServer extends Registry {
      */
     void setFlowController(FlowController<JRequest> flowController);
 
+    /**
+     * Returns the {@link FairScheduler} in front of the processor's workers if have one.
+     */
+    FairScheduler getFairScheduler();
+
+    /**
+     * Sets a {@link FairScheduler} in front of the processor's workers, the providers
+     * with a private {@link Executor} are not scheduled by it.
+     */
+    void setFairScheduler(FairScheduler fairScheduler);
+
+    /**
+     * Returns the named {@link Executor} for the {@link Placement#DEDICATED} methods.
+     */
+    Executor getNamedExecutor(String name);
+
+    /**
+     * Sets a named {@link Executor} for the {@link Placement#DEDICATED} methods,
+     * it must be set before the methods are registered.
+     */
+    void setNamedExecutor(String name, Executor executor);
+
+    /**
+     * Returns true if any registered method is placed other than {@link Placement#DEFAULT}, or any
+     * registered service has a private {@link Executor}, the requests of these methods are routed on
+     * the I/O thread then and handed off to their own executors directly. It's recomputed when the
+     * placement of a method changes (including the demotion and the promotion) or a service is
+     * registered or removed.
+     */
+    boolean hasIoThreadRouting();
+
     /**
      * To obtains a service registry.
      */
@@ -79,6 +135,11 @@ public interface JServer extends Registry {
      */
     ServiceWrapper lookupService(Directory directory);
 
+    /**
+     * Lookup the service by service id.
+     */
+    ServiceWrapper lookupService(int serviceId);
+
     /**
      * Removes the registered service.
      */
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc;
+
+/**
+ * 服务方法的执行位置.
+ *
+ * jupiter
+ * org.jupiter.rpc
+ *
+ * @author jiachun.fjc
+ */
+public enum Placement {
+    DEFAULT,    // 服务私有的executor, 没有时使用共享线程池
+    INLINE,     // 直接在IO线程执行, 只适用于不阻塞的方法, 被观察到阻塞后降级为SHARED
+    SHARED,     // 处理器的共享线程池
+    DEDICATED   // 注册到server上的一个具名executor
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.channel;
+
+import org.jupiter.common.concurrent.atomic.AtomicUpdater;
+import org.jupiter.common.util.SystemClock;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.jupiter.common.util.JConstants.*;
+
+/**
+ * {@link JChannelGroup} 的熔断器(离群摘除).
+ *
+ * CLOSED: 正常接收请求, 连续失败或统计窗口内失败率过高时摘除节点(OPEN);
+ * OPEN: 不再接收请求, 摘除时间随连续被摘除的次数递增;
+ * HALF_OPEN: 摘除时间到期后同一时间只放行一个探测请求, 连续探测成功后重新接纳(CLOSED), 失败则再次摘除;
+ * 重新接纳后权重在一段时间内逐渐恢复.
+ *
+ * 所有统计都是无锁的近似值.
+ *
+ * jupiter
+ * org.jupiter.rpc.channel
+ *
+ * @author jiachun.fjc
+ */
+public class CircuitBreaker {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(CircuitBreaker.class);
+
+    private static final AtomicReferenceFieldUpdater<CircuitBreaker, State> stateUpdater =
+            AtomicUpdater.newAtomicReferenceFieldUpdater(CircuitBreaker.class, State.class, "state");
+    private static final AtomicIntegerFieldUpdater<CircuitBreaker> consecutiveFailuresUpdater =
+            AtomicUpdater.newAtomicIntegerFieldUpdater(CircuitBreaker.class, "consecutiveFailures");
+    private static final AtomicIntegerFieldUpdater<CircuitBreaker> windowRequestsUpdater =
+            AtomicUpdater.newAtomicIntegerFieldUpdater(CircuitBreaker.class, "windowRequests");
+    private static final AtomicIntegerFieldUpdater<CircuitBreaker> windowFailuresUpdater =
+            AtomicUpdater.newAtomicIntegerFieldUpdater(CircuitBreaker.class, "windowFailures");
+    private static final AtomicIntegerFieldUpdater<CircuitBreaker> probeSuccessesUpdater =
+            AtomicUpdater.newAtomicIntegerFieldUpdater(CircuitBreaker.class, "probeSuccesses");
+    private static final AtomicLongFieldUpdater<CircuitBreaker> windowStartUpdater =
+            AtomicUpdater.newAtomicLongFieldUpdater(CircuitBreaker.class, "windowStart");
+    private static final AtomicLongFieldUpdater<CircuitBreaker> probeTimestampUpdater =
+            AtomicUpdater.newAtomicLongFieldUpdater(CircuitBreaker.class, "probeTimestamp");
+
+    private static final int MAX_EJECTION_MULTIPLIER = 10;
+    // 探测请求没有结果(如发送前出错)时, 超过这个时间允许重新探测
+    private static final long PROBE_TIMEOUT_MILLIS = DEFAULT_TIMEOUT << 1;
+
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final JChannelGroup group;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openUntil;                // OPEN状态的截止时间
+    private volatile long recoveryTimestamp;        // 重新接纳的时间, 0表示不在恢复期
+    private volatile int ejectionCount;             // 连续被摘除的次数
+    @SuppressWarnings("unused")
+    private volatile int consecutiveFailures;
+    @SuppressWarnings("unused")
+    private volatile int windowRequests;
+    @SuppressWarnings("unused")
+    private volatile int windowFailures;
+    @SuppressWarnings("unused")
+    private volatile long windowStart = SystemClock.millisClock().now();
+    @SuppressWarnings("unused")
+    private volatile int probeSuccesses;
+    @SuppressWarnings("unused")
+    private volatile long probeTimestamp;           // 正在进行的探测请求的发出时间, 0表示没有
+
+    public CircuitBreaker(JChannelGroup group) {
+        this.group = group;
+    }
+
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public State state() {
+        return state;
+    }
+
+    public int ejectionCount() {
+        return ejectionCount;
+    }
+
+    /**
+     * Returns true if a request is allowed to be sent to the group,
+     * in HALF_OPEN state only one probe request is allowed at a time.
+     */
+    public boolean allowRequest() {
+        State _state = state;
+        if (_state == State.CLOSED) {
+            return true;
+        }
+
+        long now = SystemClock.millisClock().now();
+        if (_state == State.OPEN) {
+            if (now < openUntil) {
+                return false;
+            }
+            if (transition(State.OPEN, State.HALF_OPEN)) {
+                probeSuccessesUpdater.set(this, 0);
+            } else if (state != State.HALF_OPEN) {
+                return allowRequest();
+            }
+        }
+
+        // HALF_OPEN
+        long probe = probeTimestamp;
+        return (probe == 0 || now - probe > PROBE_TIMEOUT_MILLIS)
+                && probeTimestampUpdater.compareAndSet(this, probe, now);
+    }
+
+    /**
+     * Returns true if the group should not be selected now.
+     */
+    public boolean isEjected() {
+        switch (state) {
+            case OPEN:
+                return SystemClock.millisClock().now() < openUntil;
+            case HALF_OPEN:
+                return probeTimestamp != 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 被摘除时权重为0, 可以探测时为1, 重新接纳后的恢复期内权重线性增长.
+     */
+    public int admissionWeight(int weight) {
+        if (weight <= 0) {
+            return weight;
+        }
+
+        switch (state) {
+            case CLOSED:
+                long recovery = recoveryTimestamp;
+                if (recovery > 0) {
+                    long elapsed = SystemClock.millisClock().now() - recovery;
+                    if (elapsed < CIRCUIT_BREAKER_RECOVERY_MILLIS) {
+                        int recoveryWeight = (int) (((float) elapsed / CIRCUIT_BREAKER_RECOVERY_MILLIS) * weight);
+                        return recoveryWeight < 1 ? 1 : recoveryWeight;
+                    }
+                    // 完整度过恢复期, 不再累计摘除次数
+                    recoveryTimestamp = 0;
+                    ejectionCount = 0;
+                }
+                return weight;
+            default:
+                return isEjected() ? 0 : 1;
+        }
+    }
+
+    /**
+     * Invoked when a request on the group completes.
+     */
+    public void onComplete(boolean success, long latencyNanos) {
+        boolean failed = !success
+                || (CIRCUIT_BREAKER_SLOW_CALL_MILLIS > 0
+                        && NANOSECONDS.toMillis(latencyNanos) > CIRCUIT_BREAKER_SLOW_CALL_MILLIS);
+
+        switch (state) {
+            case CLOSED:
+                break;
+            case HALF_OPEN:
+                if (failed) {
+                    eject(State.HALF_OPEN);
+                } else if (probeSuccessesUpdater.incrementAndGet(this) >= CIRCUIT_BREAKER_PROBE_SUCCESSES) {
+                    close();
+                }
+                probeTimestampUpdater.set(this, 0);
+                return;
+            default:
+                // 摘除前发出的请求, 忽略
+                return;
+        }
+
+        int consecutive;
+        if (failed) {
+            consecutive = consecutiveFailuresUpdater.incrementAndGet(this);
+        } else {
+            consecutive = 0;
+            if (consecutiveFailures != 0) {
+                consecutiveFailuresUpdater.set(this, 0);
+            }
+        }
+
+        long now = SystemClock.millisClock().now();
+        long start = windowStart;
+        if (now - start >= CIRCUIT_BREAKER_WINDOW_MILLIS && windowStartUpdater.compareAndSet(this, start, now)) {
+            windowRequestsUpdater.set(this, 0);
+            windowFailuresUpdater.set(this, 0);
+        }
+        int requests = windowRequestsUpdater.incrementAndGet(this);
+        int failures = failed ? windowFailuresUpdater.incrementAndGet(this) : windowFailures;
+
+        if (consecutive >= CIRCUIT_BREAKER_CONSECUTIVE_FAILURES
+                || (requests >= CIRCUIT_BREAKER_MIN_REQUESTS
+                        && failures * 100L >= (long) requests * CIRCUIT_BREAKER_FAILURE_RATE)) {
+            eject(State.CLOSED);
+        }
+    }
+
+    private void eject(State from) {
+        int count = ejectionCount + 1;
+        long ejectionMillis = (long) CIRCUIT_BREAKER_EJECTION_MILLIS * Math.min(count, MAX_EJECTION_MULTIPLIER);
+        openUntil = SystemClock.millisClock().now() + ejectionMillis;
+        if (transition(from, State.OPEN)) {
+            ejectionCount = count;
+            recoveryTimestamp = 0;
+            resetStats();
+
+            logger.warn("Ejected channel group: {} for {} millis, ejection count: {}.", group, ejectionMillis, count);
+        }
+    }
+
+    private void close() {
+        if (transition(State.HALF_OPEN, State.CLOSED)) {
+            recoveryTimestamp = SystemClock.millisClock().now();
+            resetStats();
+
+            logger.info("Re-admitted channel group: {}.", group);
+        }
+    }
+
+    private void resetStats() {
+        consecutiveFailuresUpdater.set(this, 0);
+        windowStartUpdater.set(this, SystemClock.millisClock().now());
+        windowRequestsUpdater.set(this, 0);
+        windowFailuresUpdater.set(this, 0);
+    }
+
+    private boolean transition(State from, State to) {
+        if (!stateUpdater.compareAndSet(this, from, to)) {
+            return false;
+        }
+        for (Listener l : listeners) {
+            try {
+                l.onStateChanged(group, from, to);
+            } catch (Throwable t) {
+                logger.warn("Listener {} notify failed, {}.", l, t);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker{" +
+                "state=" + state +
+                ", ejectionCount=" + ejectionCount +
+                ", consecutiveFailures=" + consecutiveFailures +
+                ", windowRequests=" + windowRequests +
+                ", windowFailures=" + windowFailures +
+                '}';
+    }
+
+    public enum State {
+        CLOSED,     // 正常
+        OPEN,       // 已摘除
+        HALF_OPEN   // 探测中
+    }
+
+    /**
+     * Listener of the state changes, e.g. ejection and re-admission.
+     */
+    public interface Listener {
+
+        void onStateChanged(JChannelGroup group, State from, State to);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.channel;
+
+import org.jupiter.common.concurrent.atomic.AtomicUpdater;
+import org.jupiter.common.util.SystemClock;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import static org.jupiter.common.util.JConstants.*;
+
+/**
+ * {@link JChannelGroup} 的自适应并发限制(TCP Vegas算法).
+ *
+ * 以最小RTT作为无负载RTT, 估算服务端的排队长度: queue = limit * (1 - rttNoLoad / rtt),
+ * 排队较短时增大限制, 排队较长时减小限制, 请求失败(超时, 服务端繁忙等)时按比例减小限制;
+ * 无负载RTT定期重新采样, 以适应服务端能力的变化.
+ *
+ * jupiter
+ * org.jupiter.rpc.channel
+ *
+ * @author jiachun.fjc
+ */
+public class ConcurrencyLimiter {
+
+    private static final AtomicIntegerFieldUpdater<ConcurrencyLimiter> limitUpdater =
+            AtomicUpdater.newAtomicIntegerFieldUpdater(ConcurrencyLimiter.class, "limit");
+    private static final AtomicLongFieldUpdater<ConcurrencyLimiter> rttNoLoadUpdater =
+            AtomicUpdater.newAtomicLongFieldUpdater(ConcurrencyLimiter.class, "rttNoLoad");
+
+    private static final double DECREASE_FACTOR = 0.9;
+
+    private volatile int limit = CONCURRENCY_LIMIT_INITIAL;
+    private volatile long rttNoLoad;            // 纳秒, 0表示还没有样本
+    private volatile long rttNoLoadTimestamp;
+
+    public int limit() {
+        return limit;
+    }
+
+    public long rttNoLoad() {
+        return rttNoLoad;
+    }
+
+    /**
+     * Returns true if a new request is acceptable with the current in-flight requests.
+     */
+    public boolean isAcceptable(int inFlight) {
+        return inFlight < limit;
+    }
+
+    /**
+     * Updates the limit with a RTT sample.
+     *
+     * @param rttNanos  the round-trip time of the request
+     * @param inFlight  the in-flight requests when the request completes
+     * @param dropped   true if the request failed because of timeout or overload
+     */
+    public void onSample(long rttNanos, int inFlight, boolean dropped) {
+        if (rttNanos <= 0) {
+            return;
+        }
+
+        long now = SystemClock.millisClock().now();
+        long _rttNoLoad;
+        for (;;) {
+            _rttNoLoad = rttNoLoad;
+            boolean reset = now - rttNoLoadTimestamp > CONCURRENCY_LIMIT_RTT_RESET_MILLIS;
+            if (_rttNoLoad != 0 && _rttNoLoad <= rttNanos && !reset) {
+                break;
+            }
+            if (rttNoLoadUpdater.compareAndSet(this, _rttNoLoad, rttNanos)) {
+                if (reset) {
+                    rttNoLoadTimestamp = now;
+                }
+                _rttNoLoad = rttNanos;
+                break;
+            }
+        }
+
+        for (;;) {
+            int current = limit;
+            int next = nextLimit(current, _rttNoLoad, rttNanos, inFlight, dropped);
+            if (next == current || limitUpdater.compareAndSet(this, current, next)) {
+                break;
+            }
+        }
+    }
+
+    private static int nextLimit(int current, long rttNoLoad, long rtt, int inFlight, boolean dropped) {
+        if (dropped) {
+            return Math.max(1, (int) (current * DECREASE_FACTOR));
+        }
+        // 请求量没有达到限制的一半时, 无法判断能否承受更高的并发
+        if (inFlight * 2 < current) {
+            return current;
+        }
+
+        int log = Math.max(1, (int) Math.log10(current));
+        int queue = (int) Math.ceil(current * (1.0 - (double) rttNoLoad / rtt));
+        if (queue <= 3 * log) {
+            return Math.min(CONCURRENCY_LIMIT_MAX, current + log);
+        }
+        if (queue >= 6 * log) {
+            return Math.max(1, current - log);
+        }
+        return current;
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimiter{" +
+                "limit=" + limit +
+                ", rttNoLoad=" + rttNoLoad +
+                '}';
+    }
+}
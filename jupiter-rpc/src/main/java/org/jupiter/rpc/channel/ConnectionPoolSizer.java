@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.channel;
+
+import static org.jupiter.common.util.JConstants.*;
+
+/**
+ * 根据负载决定到一个服务节点的连接数应该扩容还是缩容.
+ *
+ * 任意连接不可写, 单个连接待写出的字节数过多, 平均每个连接上进行中的请求数过多,
+ * 或者有数据积压在发送缓冲区且响应时间明显高于无负载RTT时扩容;
+ * 持续空闲一段时间, 并且缩容后每个连接上的请求数仍然很少时缩容.
+ * 同一个服务节点两次调整之间至少间隔 {@link org.jupiter.common.util.JConstants#CONNECTION_POOL_RESIZE_INTERVAL_MILLIS},
+ * 避免连接频繁的建立和关闭.
+ *
+ * jupiter
+ * org.jupiter.rpc.channel
+ *
+ * @author jiachun.fjc
+ */
+public class ConnectionPoolSizer {
+
+    public static final int SHRINK = -1;
+    public static final int KEEP = 0;
+    public static final int GROW = 1;
+
+    // 响应时间超过无负载RTT的此倍数时认为请求在排队
+    private static final int LATENCY_INFLATION_FACTOR = 2;
+
+    private volatile int minSize = CONNECTION_POOL_MIN;
+    private volatile int maxSize = CONNECTION_POOL_MAX;
+
+    private long lastResizeMillis;
+    private long idleSinceMillis = -1;
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setBounds(int minSize, int maxSize) {
+        this.minSize = Math.max(1, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+    }
+
+    /**
+     * Returns {@link #GROW}, {@link #SHRINK} or {@link #KEEP}.
+     *
+     * @param size              the count of active connections
+     * @param inFlight          the in-flight requests of all connections
+     * @param maxPendingBytes   the max pending outbound bytes of a connection
+     * @param unwritable        true if any connection is not writable
+     * @param latencyEwma       the moving average of latency (nanos)
+     * @param rttNoLoad         the no-load RTT (nanos), 0 if unknown
+     * @param now               current time millis
+     */
+    public synchronized int evaluate(
+            int size, int inFlight, long maxPendingBytes, boolean unwritable, long latencyEwma, long rttNoLoad, long now) {
+
+        if (size < 1) {
+            idleSinceMillis = -1;
+            return KEEP;
+        }
+
+        boolean queueing = maxPendingBytes > 0
+                && rttNoLoad > 0 && latencyEwma > rttNoLoad * LATENCY_INFLATION_FACTOR;
+        boolean congested = unwritable
+                || maxPendingBytes > CONNECTION_POOL_HIGH_PENDING_BYTES
+                || inFlight > CONNECTION_POOL_HIGH_IN_FLIGHT * size
+                || queueing;
+        boolean idle = !congested
+                && maxPendingBytes == 0
+                && inFlight < CONNECTION_POOL_LOW_IN_FLIGHT * (size - 1);
+
+        if (idle) {
+            if (idleSinceMillis < 0) {
+                idleSinceMillis = now;
+            }
+        } else {
+            idleSinceMillis = -1;
+        }
+
+        if (now - lastResizeMillis < CONNECTION_POOL_RESIZE_INTERVAL_MILLIS) {
+            return KEEP;
+        }
+
+        int decision = KEEP;
+        if (size < minSize || (congested && size < maxSize)) {
+            decision = GROW;
+        } else if (size > maxSize || (idle && size > minSize && now - idleSinceMillis >= CONNECTION_POOL_IDLE_MILLIS)) {
+            decision = SHRINK;
+        }
+
+        if (decision != KEEP) {
+            lastResizeMillis = now;
+            idleSinceMillis = -1;
+        }
+        return decision;
+    }
+}
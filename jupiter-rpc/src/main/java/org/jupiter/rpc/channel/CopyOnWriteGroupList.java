@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.channel;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 一个服务目录下的 {@link JChannelGroup} 列表, 写时复制.
+ *
+ * {@link #snapshot()} 直接返回内部数组, 不做拷贝, 同一个快照的引用在列表发生变化之前保持不变,
+ * 负载均衡等组件可以据此缓存由快照计算出的数据(如权重表).
+ *
+ * jupiter
+ * org.jupiter.rpc.channel
+ *
+ * @author jiachun.fjc
+ */
+public class CopyOnWriteGroupList implements Iterable<JChannelGroup> {
+
+    private static final Object[] EMPTY_ARRAY = new Object[0];
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile Object[] array = EMPTY_ARRAY;
+
+    /**
+     * Returns the current elements, the array must not be modified.
+     */
+    public Object[] snapshot() {
+        return array;
+    }
+
+    public int size() {
+        return array.length;
+    }
+
+    public boolean isEmpty() {
+        return array.length == 0;
+    }
+
+    public boolean contains(JChannelGroup group) {
+        return indexOf(array, group) >= 0;
+    }
+
+    public boolean addIfAbsent(JChannelGroup group) {
+        final ReentrantLock _lock = lock;
+        _lock.lock();
+        try {
+            Object[] elements = array;
+            if (indexOf(elements, group) >= 0) {
+                return false;
+            }
+            Object[] newElements = Arrays.copyOf(elements, elements.length + 1);
+            newElements[elements.length] = group;
+            array = newElements;
+            return true;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of groups added.
+     */
+    public int addAllAbsent(Collection<JChannelGroup> groups) {
+        final ReentrantLock _lock = lock;
+        _lock.lock();
+        try {
+            Object[] elements = array;
+            Object[] newElements = Arrays.copyOf(elements, elements.length + groups.size());
+            int size = elements.length;
+            for (JChannelGroup group : groups) {
+                if (indexOf(newElements, size, group) < 0) {
+                    newElements[size++] = group;
+                }
+            }
+            int added = size - elements.length;
+            if (added > 0) {
+                array = Arrays.copyOf(newElements, size);
+            }
+            return added;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    public boolean remove(JChannelGroup group) {
+        final ReentrantLock _lock = lock;
+        _lock.lock();
+        try {
+            Object[] elements = array;
+            int index = indexOf(elements, group);
+            if (index < 0) {
+                return false;
+            }
+            Object[] newElements = new Object[elements.length - 1];
+            System.arraycopy(elements, 0, newElements, 0, index);
+            System.arraycopy(elements, index + 1, newElements, index, elements.length - index - 1);
+            array = newElements;
+            return true;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of groups removed.
+     */
+    public int removeAll(Collection<JChannelGroup> groups) {
+        final ReentrantLock _lock = lock;
+        _lock.lock();
+        try {
+            Object[] elements = array;
+            Object[] newElements = new Object[elements.length];
+            int size = 0;
+            for (Object element : elements) {
+                if (!groups.contains(element)) {
+                    newElements[size++] = element;
+                }
+            }
+            int removed = elements.length - size;
+            if (removed > 0) {
+                array = Arrays.copyOf(newElements, size);
+            }
+            return removed;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Iterates over a snapshot, not affected by the concurrent modifications.
+     */
+    @Override
+    public Iterator<JChannelGroup> iterator() {
+        final Object[] elements = array;
+        return new Iterator<JChannelGroup>() {
+
+            private int cursor;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < elements.length;
+            }
+
+            @Override
+            public JChannelGroup next() {
+                if (cursor >= elements.length) {
+                    throw new NoSuchElementException();
+                }
+                return (JChannelGroup) elements[cursor++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(array);
+    }
+
+    private static int indexOf(Object[] elements, Object o) {
+        return indexOf(elements, elements.length, o);
+    }
+
+    private static int indexOf(Object[] elements, int size, Object o) {
+        for (int i = 0; i < size; i++) {
+            if (o.equals(elements[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -19,8 +19,9 @@ package org.jupiter.rpc.channel;
 import org.jupiter.common.util.Maps;
 import org.jupiter.rpc.Directory;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * jupiter
@@ -30,14 +31,14 @@ import java.util.concurrent.CopyOnWriteArrayList;
  */
 public class DirectoryJChannelGroup {
 
-    private final ConcurrentMap<String, CopyOnWriteArrayList<JChannelGroup>> groups = Maps.newConcurrentHashMap();
+    private final ConcurrentMap<String, CopyOnWriteGroupList> groups = Maps.newConcurrentHashMap();
 
-    public CopyOnWriteArrayList<JChannelGroup> list(Directory directory) {
+    public CopyOnWriteGroupList list(Directory directory) {
         String _directory = directory.directory();
 
-        CopyOnWriteArrayList<JChannelGroup> groupList = groups.get(_directory);
+        CopyOnWriteGroupList groupList = groups.get(_directory);
         if (groupList == null) {
-            CopyOnWriteArrayList<JChannelGroup> newGroupList = new CopyOnWriteArrayList<>();
+            CopyOnWriteGroupList newGroupList = new CopyOnWriteGroupList();
             groupList = groups.putIfAbsent(_directory, newGroupList);
             if (groupList == null) {
                 groupList = newGroupList;
@@ -46,4 +47,11 @@ public class DirectoryJChannelGroup {
 
         return groupList;
     }
+
+    /**
+     * Returns an unmodifiable view of all directories and their group lists.
+     */
+    public Map<String, CopyOnWriteGroupList> groups() {
+        return Collections.unmodifiableMap(groups);
+    }
 }
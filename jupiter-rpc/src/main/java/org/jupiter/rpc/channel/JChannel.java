@@ -16,6 +16,8 @@
 
 package org.jupiter.rpc.channel;
 
+import org.jupiter.rpc.BytesHolder;
+
 import java.net.SocketAddress;
 
 /**
@@ -101,4 +103,10 @@ public interface JChannel {
      * Requests to write a message on the channel.
      */
     JChannel write(Object msg, JFutureListener<JChannel> listener);
+
+    /**
+     * Requests to write a message on the channel, the message may be merged with
+     * other messages written in a short window into one batch frame.
+     */
+    JChannel batchWrite(BytesHolder msg, JFutureListener<JChannel> listener);
 }
@@ -80,6 +80,12 @@ public interface JChannelGroup {
      */
     boolean isAvailable();
 
+    /**
+     * Returns true if this group has connected {@link JChannel}s, otherwise starts
+     * connecting in background if this group connects lazily and returns false.
+     */
+    boolean ensureConnected();
+
     /**
      * Wait until the {@link JChannel}s are available or timeout,
      * if available return true, otherwise return false.
@@ -96,6 +102,16 @@ public interface JChannelGroup {
      */
     void setWeight(int weight);
 
+    /**
+     * The zone(datacenter, rack, etc.) of this group, null if unknown.
+     */
+    String getZone();
+
+    /**
+     * Sets the zone of this group.
+     */
+    void setZone(String zone);
+
     /**
      * Warm-up time.
      */
@@ -120,4 +136,51 @@ public interface JChannelGroup {
      * Deadline millis.
      */
     long deadlineMillis();
+
+    /**
+     * Number of the in-flight requests on this group.
+     */
+    int inFlight();
+
+    /**
+     * Exponentially weighted moving average of the response latency in nanoseconds,
+     * returns 0 if no response has been received.
+     */
+    long latencyEwma();
+
+    /**
+     * Invoked when a request is sent to this group.
+     */
+    void onRequestStart();
+
+    /**
+     * Atomically counts a request as started only if the in-flight requests are
+     * under {@code limit}, returns false (and counts nothing) otherwise.
+     *
+     * A successful call stands for {@link #onRequestStart()}, the request must be
+     * finished by {@link #onRequestComplete(long, boolean)} or {@link #onRequestCancel()}.
+     */
+    boolean tryRequestStart(int limit);
+
+    /**
+     * Invoked when a request on this group completes (or times out),
+     * {@code success} is false if the provider failed to process the request.
+     */
+    void onRequestComplete(long latencyNanos, boolean success);
+
+    /**
+     * Invoked when a request on this group is abandoned (e.g. the losing copy
+     * of a hedged request), counted as neither success nor failure.
+     */
+    void onRequestCancel();
+
+    /**
+     * The circuit breaker of this group.
+     */
+    CircuitBreaker circuitBreaker();
+
+    /**
+     * The adaptive concurrency limiter of this group.
+     */
+    ConcurrencyLimiter concurrencyLimiter();
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.channel;
+
+import org.jupiter.rpc.load.balance.LeastActiveLoadBalancer;
+
+/**
+ * Least active load balancer for channel groups.
+ *
+ * jupiter
+ * org.jupiter.rpc.channel
+ *
+ * @author jiachun.fjc
+ */
+public class JChannelGroupLeastActiveLoadBalancer extends LeastActiveLoadBalancer<JChannelGroup> {
+
+    @Override
+    protected int getWeight(JChannelGroup group) {
+        return JChannelGroupLoadBalancer.effectiveWeight(group);
+    }
+
+    @Override
+    protected int getActive(JChannelGroup group) {
+        // 不可用或被熔断的group视为无限繁忙
+        return JChannelGroupLoadBalancer.isSelectable(group) ? group.inFlight() : Integer.MAX_VALUE;
+    }
+}
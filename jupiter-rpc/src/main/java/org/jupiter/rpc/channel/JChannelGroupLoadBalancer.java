@@ -31,6 +31,24 @@ public class JChannelGroupLoadBalancer extends RandomLoadBalancer<JChannelGroup>
 
     @Override
     protected int getWeight(JChannelGroup group) {
+        return effectiveWeight(group);
+    }
+
+    /**
+     * 预热期内权重随启动时间线性增长, 并受熔断器的限制.
+     */
+    static int effectiveWeight(JChannelGroup group) {
+        return group.circuitBreaker().admissionWeight(warmUpWeight(group));
+    }
+
+    /**
+     * 有可用的channel并且没有被熔断器摘除.
+     */
+    static boolean isSelectable(JChannelGroup group) {
+        return group.isAvailable() && !group.circuitBreaker().isEjected();
+    }
+
+    private static int warmUpWeight(JChannelGroup group) {
         int weight = group.getWeight();
         if (weight > 0) {
             long timestamp = group.getTimestamp();
@@ -19,13 +19,23 @@ package org.jupiter.rpc.consumer;
 import org.jupiter.common.util.Lists;
 import org.jupiter.common.util.Maps;
 import org.jupiter.rpc.*;
+import org.jupiter.rpc.channel.JChannelGroup;
+import org.jupiter.rpc.channel.JChannelGroupConsistentHashLoadBalancer;
+import org.jupiter.rpc.channel.JChannelGroupLeastActiveLoadBalancer;
+import org.jupiter.rpc.channel.JChannelGroupLoadBalancer;
+import org.jupiter.rpc.channel.JChannelGroupP2cEwmaLoadBalancer;
 import org.jupiter.rpc.consumer.dispatcher.DefaultBroadcastDispatcher;
 import org.jupiter.rpc.consumer.dispatcher.DefaultRoundDispatcher;
 import org.jupiter.rpc.consumer.dispatcher.Dispatcher;
+import org.jupiter.rpc.consumer.dispatcher.HedgingPolicy;
 import org.jupiter.rpc.consumer.invoker.CallbackGenericInvoker;
 import org.jupiter.rpc.consumer.invoker.FutureGenericInvoker;
 import org.jupiter.rpc.consumer.invoker.GenericInvoker;
 import org.jupiter.rpc.consumer.invoker.SyncGenericInvoker;
+import org.jupiter.rpc.load.balance.ArgumentHashKeyExtractor;
+import org.jupiter.rpc.load.balance.HashKeyExtractor;
+import org.jupiter.rpc.load.balance.LoadBalancer;
+import org.jupiter.rpc.load.balance.LoadBalancerType;
 import org.jupiter.rpc.model.metadata.ServiceMetadata;
 
 import java.util.Collections;
@@ -62,6 +72,12 @@ public class GenericProxyFactory {
     private Map<String, Integer> methodsSpecialTimeoutMillis;
     private JListener listener;
     private List<ConsumerHook> hooks;
+    private boolean batching;
+    private HedgingPolicy hedgingPolicy;
+    private Map<String, HedgingPolicy> methodsSpecialHedgingPolicy;
+    private LoadBalancerType loadBalancerType;
+    private HashKeyExtractor hashKeyExtractor;
+    private ConcurrencyLimitMode concurrencyLimitMode = ConcurrencyLimitMode.NONE;
 
     public static GenericProxyFactory factory() {
         GenericProxyFactory factory = new GenericProxyFactory();
@@ -69,6 +85,7 @@ public class GenericProxyFactory {
         factory.addresses = Lists.newArrayList();
         factory.hooks = Lists.newArrayList();
         factory.methodsSpecialTimeoutMillis = Maps.newTreeMap();
+        factory.methodsSpecialHedgingPolicy = Maps.newTreeMap();
 
         return factory;
     }
@@ -165,6 +182,67 @@ public class GenericProxyFactory {
         return this;
     }
 
+    /**
+     * Merges the requests written to the same channel in a short window into one batch frame,
+     * see {@link org.jupiter.common.util.JConstants#BATCH_MAX_SIZE}
+     * and {@link org.jupiter.common.util.JConstants#BATCH_DELAY_MICROS}, the default is false.
+     */
+    public GenericProxyFactory batching(boolean batching) {
+        this.batching = batching;
+        return this;
+    }
+
+    /**
+     * Hedged(backup) requests policy, only for idempotent methods.
+     */
+    public GenericProxyFactory hedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+        return this;
+    }
+
+    /**
+     * Method special hedged(backup) requests policy, only for idempotent methods.
+     */
+    public GenericProxyFactory methodSpecialHedgingPolicy(String methodName, HedgingPolicy hedgingPolicy) {
+        methodsSpecialHedgingPolicy.put(methodName, checkNotNull(hedgingPolicy));
+        return this;
+    }
+
+    /**
+     * Sets the type of load balancer, the default is the load balancer of connector,
+     * see {@link JClient#select(Directory)}.
+     */
+    public GenericProxyFactory loadBalancerType(LoadBalancerType loadBalancerType) {
+        this.loadBalancerType = checkNotNull(loadBalancerType);
+        return this;
+    }
+
+    /**
+     * Uses the argument at {@code index} as the hash key of
+     * {@link LoadBalancerType#CONSISTENT_HASH}, the default is the first argument.
+     */
+    public GenericProxyFactory hashKeyArgIndex(int index) {
+        this.hashKeyExtractor = new ArgumentHashKeyExtractor(index);
+        return this;
+    }
+
+    /**
+     * Sets the hash key extractor of {@link LoadBalancerType#CONSISTENT_HASH}.
+     */
+    public GenericProxyFactory hashKeyExtractor(HashKeyExtractor hashKeyExtractor) {
+        this.hashKeyExtractor = checkNotNull(hashKeyExtractor);
+        return this;
+    }
+
+    /**
+     * Sets the mode of the adaptive concurrency limit per provider,
+     * the default is {@link ConcurrencyLimitMode#NONE}.
+     */
+    public GenericProxyFactory concurrencyLimitMode(ConcurrencyLimitMode concurrencyLimitMode) {
+        this.concurrencyLimitMode = checkNotNull(concurrencyLimitMode);
+        return this;
+    }
+
     /**
      * Asynchronous callback listener.
      */
@@ -210,6 +288,24 @@ public class GenericProxyFactory {
             dispatcher.setMethodsSpecialTimeoutMillis(methodsSpecialTimeoutMillis);
         }
         dispatcher.setHooks(hooks);
+        dispatcher.setBatching(batching);
+        dispatcher.setConcurrencyLimitMode(concurrencyLimitMode);
+        if (concurrencyLimitMode != ConcurrencyLimitMode.NONE) {
+            client.markConcurrencyLimited(metadata);
+        }
+        if (hedgingPolicy != null) {
+            dispatcher.setHedgingPolicy(hedgingPolicy);
+        }
+        if (!methodsSpecialHedgingPolicy.isEmpty()) {
+            dispatcher.setMethodsSpecialHedgingPolicy(methodsSpecialHedgingPolicy);
+        }
+        if (loadBalancerType != null) {
+            dispatcher.setLoadBalancer(asLoadBalancer(loadBalancerType));
+            if (loadBalancerType == LoadBalancerType.CONSISTENT_HASH) {
+                dispatcher.setHashKeyExtractor(
+                        hashKeyExtractor != null ? hashKeyExtractor : new ArgumentHashKeyExtractor(0));
+            }
+        }
 
         switch (invokeMode) {
             case SYNC:
@@ -234,4 +330,19 @@ public class GenericProxyFactory {
                 throw new IllegalStateException("DispatchMode: " + dispatchMode);
         }
     }
+
+    protected LoadBalancer<JChannelGroup> asLoadBalancer(LoadBalancerType loadBalancerType) {
+        switch (loadBalancerType) {
+            case RANDOM:
+                return new JChannelGroupLoadBalancer();
+            case LEAST_ACTIVE:
+                return new JChannelGroupLeastActiveLoadBalancer();
+            case P2C_EWMA:
+                return new JChannelGroupP2cEwmaLoadBalancer();
+            case CONSISTENT_HASH:
+                return new JChannelGroupConsistentHashLoadBalancer();
+            default:
+                throw new IllegalStateException("LoadBalancerType: " + loadBalancerType);
+        }
+    }
 }
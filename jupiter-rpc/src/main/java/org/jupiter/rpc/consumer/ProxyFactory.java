@@ -18,15 +18,26 @@ package org.jupiter.rpc.consumer;
 
 import org.jupiter.common.util.Lists;
 import org.jupiter.common.util.Maps;
-import org.jupiter.common.util.Reflects;
 import org.jupiter.common.util.Strings;
 import org.jupiter.rpc.*;
+import org.jupiter.rpc.channel.JChannelGroup;
+import org.jupiter.rpc.channel.JChannelGroupConsistentHashLoadBalancer;
+import org.jupiter.rpc.channel.JChannelGroupLeastActiveLoadBalancer;
+import org.jupiter.rpc.channel.JChannelGroupLoadBalancer;
+import org.jupiter.rpc.channel.JChannelGroupP2cEwmaLoadBalancer;
 import org.jupiter.rpc.consumer.dispatcher.DefaultBroadcastDispatcher;
 import org.jupiter.rpc.consumer.dispatcher.DefaultRoundDispatcher;
 import org.jupiter.rpc.consumer.dispatcher.Dispatcher;
+import org.jupiter.rpc.consumer.dispatcher.HedgingPolicy;
 import org.jupiter.rpc.consumer.invoker.CallbackInvoker;
 import org.jupiter.rpc.consumer.invoker.FutureInvoker;
 import org.jupiter.rpc.consumer.invoker.SyncInvoker;
+import org.jupiter.rpc.consumer.proxy.Proxies;
+import org.jupiter.rpc.model.metadata.ArgsCodec;
+import org.jupiter.rpc.load.balance.ArgumentHashKeyExtractor;
+import org.jupiter.rpc.load.balance.HashKeyExtractor;
+import org.jupiter.rpc.load.balance.LoadBalancer;
+import org.jupiter.rpc.load.balance.LoadBalancerType;
 import org.jupiter.rpc.model.metadata.ServiceMetadata;
 
 import java.util.Collections;
@@ -59,6 +70,12 @@ public class ProxyFactory<I> {
     private Map<String, Integer> methodsSpecialTimeoutMillis;
     private JListener listener;
     private List<ConsumerHook> hooks;
+    private boolean batching;
+    private HedgingPolicy hedgingPolicy;
+    private Map<String, HedgingPolicy> methodsSpecialHedgingPolicy;
+    private LoadBalancerType loadBalancerType;
+    private HashKeyExtractor hashKeyExtractor;
+    private ConcurrencyLimitMode concurrencyLimitMode = ConcurrencyLimitMode.NONE;
 
     public static <I> ProxyFactory<I> factory(Class<I> interfaceClass) {
         ProxyFactory<I> factory = new ProxyFactory<>(interfaceClass);
@@ -66,6 +83,7 @@ public class ProxyFactory<I> {
         factory.addresses = Lists.newArrayList();
         factory.hooks = Lists.newArrayList();
         factory.methodsSpecialTimeoutMillis = Maps.newTreeMap();
+        factory.methodsSpecialHedgingPolicy = Maps.newTreeMap();
 
         return factory;
     }
@@ -131,6 +149,67 @@ public class ProxyFactory<I> {
         return this;
     }
 
+    /**
+     * Merges the requests written to the same channel in a short window into one batch frame,
+     * see {@link org.jupiter.common.util.JConstants#BATCH_MAX_SIZE}
+     * and {@link org.jupiter.common.util.JConstants#BATCH_DELAY_MICROS}, the default is false.
+     */
+    public ProxyFactory<I> batching(boolean batching) {
+        this.batching = batching;
+        return this;
+    }
+
+    /**
+     * Hedged(backup) requests policy, only for idempotent methods.
+     */
+    public ProxyFactory<I> hedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+        return this;
+    }
+
+    /**
+     * Method special hedged(backup) requests policy, only for idempotent methods.
+     */
+    public ProxyFactory<I> methodSpecialHedgingPolicy(String methodName, HedgingPolicy hedgingPolicy) {
+        methodsSpecialHedgingPolicy.put(methodName, checkNotNull(hedgingPolicy));
+        return this;
+    }
+
+    /**
+     * Sets the type of load balancer, the default is the load balancer of connector,
+     * see {@link JClient#select(Directory)}.
+     */
+    public ProxyFactory<I> loadBalancerType(LoadBalancerType loadBalancerType) {
+        this.loadBalancerType = checkNotNull(loadBalancerType);
+        return this;
+    }
+
+    /**
+     * Uses the argument at {@code index} as the hash key of
+     * {@link LoadBalancerType#CONSISTENT_HASH}, the default is the first argument.
+     */
+    public ProxyFactory<I> hashKeyArgIndex(int index) {
+        this.hashKeyExtractor = new ArgumentHashKeyExtractor(index);
+        return this;
+    }
+
+    /**
+     * Sets the hash key extractor of {@link LoadBalancerType#CONSISTENT_HASH}.
+     */
+    public ProxyFactory<I> hashKeyExtractor(HashKeyExtractor hashKeyExtractor) {
+        this.hashKeyExtractor = checkNotNull(hashKeyExtractor);
+        return this;
+    }
+
+    /**
+     * Sets the mode of the adaptive concurrency limit per provider,
+     * the default is {@link ConcurrencyLimitMode#NONE}.
+     */
+    public ProxyFactory<I> concurrencyLimitMode(ConcurrencyLimitMode concurrencyLimitMode) {
+        this.concurrencyLimitMode = checkNotNull(concurrencyLimitMode);
+        return this;
+    }
+
     /**
      * Asynchronous callback listener.
      */
@@ -177,17 +256,36 @@ public class ProxyFactory<I> {
         if (!methodsSpecialTimeoutMillis.isEmpty()) {
             dispatcher.setMethodsSpecialTimeoutMillis(methodsSpecialTimeoutMillis);
         }
+        dispatcher.setMethodsArgsCodec(ArgsCodec.methodsArgsCodec(interfaceClass));
         dispatcher.setHooks(hooks);
+        dispatcher.setBatching(batching);
+        dispatcher.setConcurrencyLimitMode(concurrencyLimitMode);
+        if (concurrencyLimitMode != ConcurrencyLimitMode.NONE) {
+            client.markConcurrencyLimited(metadata);
+        }
+        if (hedgingPolicy != null) {
+            dispatcher.setHedgingPolicy(hedgingPolicy);
+        }
+        if (!methodsSpecialHedgingPolicy.isEmpty()) {
+            dispatcher.setMethodsSpecialHedgingPolicy(methodsSpecialHedgingPolicy);
+        }
+        if (loadBalancerType != null) {
+            dispatcher.setLoadBalancer(asLoadBalancer(loadBalancerType));
+            if (loadBalancerType == LoadBalancerType.CONSISTENT_HASH) {
+                dispatcher.setHashKeyExtractor(
+                        hashKeyExtractor != null ? hashKeyExtractor : new ArgumentHashKeyExtractor(0));
+            }
+        }
 
-        // invocation handler
+        // invoker, 代理类由javassist生成
         switch (invokeMode) {
             case SYNC:
-                return Reflects.newProxy(interfaceClass, new SyncInvoker(client, dispatcher));
+                return Proxies.newProxy(interfaceClass, new SyncInvoker(client, dispatcher));
             case FUTURE:
-                return Reflects.newProxy(interfaceClass, new FutureInvoker(client, dispatcher));
+                return Proxies.newProxy(interfaceClass, new FutureInvoker(client, dispatcher));
             case CALLBACK:
                 dispatcher.setListener(checkNotNull(listener, "listener"));
-                return Reflects.newProxy(interfaceClass, new CallbackInvoker(client, dispatcher));
+                return Proxies.newProxy(interfaceClass, new CallbackInvoker(client, dispatcher));
             default:
                 throw new IllegalStateException("InvokeMode: " + invokeMode);
         }
@@ -203,4 +301,19 @@ public class ProxyFactory<I> {
                 throw new IllegalStateException("DispatchMode: " + dispatchMode);
         }
     }
+
+    protected LoadBalancer<JChannelGroup> asLoadBalancer(LoadBalancerType loadBalancerType) {
+        switch (loadBalancerType) {
+            case RANDOM:
+                return new JChannelGroupLoadBalancer();
+            case LEAST_ACTIVE:
+                return new JChannelGroupLeastActiveLoadBalancer();
+            case P2C_EWMA:
+                return new JChannelGroupP2cEwmaLoadBalancer();
+            case CONSISTENT_HASH:
+                return new JChannelGroupConsistentHashLoadBalancer();
+            default:
+                throw new IllegalStateException("LoadBalancerType: " + loadBalancerType);
+        }
+    }
 }
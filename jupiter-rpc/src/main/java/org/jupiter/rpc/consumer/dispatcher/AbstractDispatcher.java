@@ -17,11 +17,21 @@
 package org.jupiter.rpc.consumer.dispatcher;
 
 import org.jupiter.common.util.Maps;
+import org.jupiter.rpc.ConcurrencyLimitMode;
 import org.jupiter.rpc.ConsumerHook;
+import org.jupiter.rpc.JClient;
 import org.jupiter.rpc.JListener;
 import org.jupiter.rpc.JRequest;
 import org.jupiter.rpc.channel.JChannel;
+import org.jupiter.rpc.channel.JChannelGroup;
+import org.jupiter.rpc.channel.JFutureListener;
 import org.jupiter.rpc.consumer.future.InvokeFuture;
+import org.jupiter.rpc.load.balance.HashKeyExtractor;
+import org.jupiter.rpc.load.balance.LoadBalancer;
+import org.jupiter.rpc.model.metadata.ArgsCodec;
+import org.jupiter.rpc.model.metadata.ArgsWrapper;
+import org.jupiter.rpc.model.metadata.Identifiers;
+import org.jupiter.rpc.model.metadata.MessageWrapper;
 import org.jupiter.rpc.model.metadata.ServiceMetadata;
 
 import java.util.List;
@@ -38,14 +48,44 @@ import static org.jupiter.common.util.JConstants.DEFAULT_TIMEOUT;
 public abstract class AbstractDispatcher implements Dispatcher {
 
     protected final ServiceMetadata metadata;
+    protected final int serviceId;
 
     private ConsumerHook[] hooks;
     private JListener listener;
     private int timeoutMillis = DEFAULT_TIMEOUT;
     private Map<String, Integer> methodsSpecialTimeoutMillis = Maps.newHashMap();
+    private Map<Integer, ArgsCodec> methodsArgsCodec = Maps.newHashMap();
+    private boolean batching;
+    private HedgingPolicy hedgingPolicy;
+    private Map<String, HedgingPolicy> methodsSpecialHedgingPolicy = Maps.newHashMap();
+    private LoadBalancer<JChannelGroup> loadBalancer;
+    private HashKeyExtractor hashKeyExtractor;
+    private ConcurrencyLimitMode concurrencyLimitMode = ConcurrencyLimitMode.NONE;
 
     public AbstractDispatcher(ServiceMetadata metadata) {
         this.metadata = metadata;
+        serviceId = Identifiers.serviceId(metadata);
+    }
+
+    @Override
+    public InvokeFuture dispatch(JClient proxy, String method, Object[] args) {
+        return dispatch(proxy, Identifiers.NONE, method, args);
+    }
+
+    @Override
+    public InvokeFuture dispatch(JClient proxy, int methodId, String method, Object[] args) {
+        return dispatch(proxy, method, newMessage(methodId, method, args), args);
+    }
+
+    @Override
+    public InvokeFuture dispatchEncoded(JClient proxy, int methodId, String method, byte[] argsBytes) {
+        return dispatch(proxy, method, newMessage(methodId, method, argsBytes), null);
+    }
+
+    @Override
+    public boolean isArgsRequired() {
+        // 提取hash key和hook都可能需要访问参数
+        return hashKeyExtractor != null || hooks != null;
     }
 
     @Override
@@ -94,5 +134,114 @@ public abstract class AbstractDispatcher implements Dispatcher {
         this.methodsSpecialTimeoutMillis.putAll(methodsSpecialTimeoutMillis);
     }
 
+    @Override
+    public void setMethodsArgsCodec(Map<Integer, ArgsCodec> methodsArgsCodec) {
+        this.methodsArgsCodec.putAll(methodsArgsCodec);
+    }
+
+    @Override
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    @Override
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    @Override
+    public HedgingPolicy getMethodSpecialHedgingPolicy(String methodName) {
+        HedgingPolicy methodSpecialHedgingPolicy = methodsSpecialHedgingPolicy.get(methodName);
+        if (methodSpecialHedgingPolicy != null) {
+            return methodSpecialHedgingPolicy;
+        }
+        return hedgingPolicy;
+    }
+
+    @Override
+    public void setMethodsSpecialHedgingPolicy(Map<String, HedgingPolicy> methodsSpecialHedgingPolicy) {
+        this.methodsSpecialHedgingPolicy.putAll(methodsSpecialHedgingPolicy);
+    }
+
+    @Override
+    public LoadBalancer<JChannelGroup> getLoadBalancer() {
+        return loadBalancer;
+    }
+
+    @Override
+    public void setLoadBalancer(LoadBalancer<JChannelGroup> loadBalancer) {
+        this.loadBalancer = loadBalancer;
+    }
+
+    @Override
+    public HashKeyExtractor getHashKeyExtractor() {
+        return hashKeyExtractor;
+    }
+
+    @Override
+    public void setHashKeyExtractor(HashKeyExtractor hashKeyExtractor) {
+        this.hashKeyExtractor = hashKeyExtractor;
+    }
+
+    @Override
+    public ConcurrencyLimitMode getConcurrencyLimitMode() {
+        return concurrencyLimitMode;
+    }
+
+    @Override
+    public void setConcurrencyLimitMode(ConcurrencyLimitMode concurrencyLimitMode) {
+        this.concurrencyLimitMode = concurrencyLimitMode;
+    }
+
+    @Override
+    public boolean isBatching() {
+        return batching;
+    }
+
+    @Override
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    protected void write(JChannel channel, JRequest request, JFutureListener<JChannel> listener) {
+        if (batching) {
+            channel.batchWrite(request, listener);
+        } else {
+            channel.write(request, listener);
+        }
+    }
+
+    protected MessageWrapper newMessage(int methodId, String methodName, Object[] args) {
+        MessageWrapper message;
+        ArgsCodec codec = null;
+        if (methodId == Identifiers.NONE) {
+            message = new MessageWrapper(metadata);
+            message.setMethodName(methodName);
+        } else {
+            // 携带数字标识, 不再传输服务名与方法名
+            message = new MessageWrapper(serviceId, methodId);
+            codec = methodsArgsCodec.get(methodId);
+        }
+        // 参数编码后放在路由字段之后, 服务端接纳请求之后才会解码
+        message.setArgs(args);
+        message.setArgsBytes(ArgsWrapper.encode(codec, args));
+        message.setTimeoutMillis(getMethodSpecialTimeoutMillis(methodName));
+        return message;
+    }
+
+    protected MessageWrapper newMessage(int methodId, String methodName, byte[] argsBytes) {
+        // 生成的代理类总是携带数字标识, 参数已经按照方法的codec编码
+        MessageWrapper message = new MessageWrapper(serviceId, methodId);
+        message.setArgsBytes(argsBytes);
+        message.setTimeoutMillis(getMethodSpecialTimeoutMillis(methodName));
+        return message;
+    }
+
+    /**
+     * Dispatches the {@code message}, {@code args} is null if the args have been encoded
+     * by the generated proxy, see {@link #isArgsRequired()}.
+     */
+    protected abstract InvokeFuture dispatch(JClient proxy, String methodName, MessageWrapper message, Object[] args);
+
     protected abstract InvokeFuture asFuture(JChannel channel, JRequest request, int timeoutMillis);
 }
@@ -34,7 +34,6 @@ import java.util.List;
 
 import static org.jupiter.rpc.DispatchMode.BROADCAST;
 import static org.jupiter.rpc.Status.CLIENT_ERROR;
-import static org.jupiter.serialization.SerializerHolder.serializerImpl;
 
 /**
  * 组播方式派发消息
@@ -53,15 +52,12 @@ public class DefaultBroadcastDispatcher extends AbstractDispatcher {
     }
 
     @Override
-    public InvokeFuture dispatch(JClient proxy, String methodName, Object[] args) {
+    protected InvokeFuture dispatch(JClient proxy, String methodName, MessageWrapper message, Object[] args) {
         final ServiceMetadata _metadata = metadata; // stack copy
 
-        MessageWrapper message = new MessageWrapper(_metadata);
         message.setAppName(proxy.appName());
-        message.setMethodName(methodName);
-        message.setArgs(args);
 
-        List<JChannelGroup> groupList = proxy.directory(_metadata);
+        List<JChannelGroup> groupList = Lists.newArrayList(proxy.directory(_metadata));
         List<JChannel> channels = Lists.transform(groupList, new Function<JChannelGroup, JChannel>() {
 
             @Override
@@ -72,9 +68,9 @@ public class DefaultBroadcastDispatcher extends AbstractDispatcher {
 
         final JRequest request = new JRequest();
         request.message(message);
-        request.bytes(serializerImpl().writeObject(message));
+        request.bytes(MessageWrapper.encode(message));
 
-        int timeoutMillis = getMethodSpecialTimeoutMillis(methodName);
+        int timeoutMillis = message.getTimeoutMillis();
         final ConsumerHook[] _hooks = getHooks();
         JListener _listener = getListener();
         for (JChannel ch : channels) {
@@ -82,7 +78,7 @@ public class DefaultBroadcastDispatcher extends AbstractDispatcher {
                     .hooks(_hooks)
                     .listener(_listener);
 
-            ch.write(request, new JFutureListener<JChannel>() {
+            write(ch, request, new JFutureListener<JChannel>() {
 
                 @Override
                 public void operationSuccess(JChannel channel) throws Exception {
@@ -16,20 +16,28 @@
 
 package org.jupiter.rpc.consumer.dispatcher;
 
+import org.jupiter.common.concurrent.NamedThreadFactory;
 import org.jupiter.common.util.StringBuilderHelper;
 import org.jupiter.common.util.internal.logging.InternalLogger;
 import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
 import org.jupiter.rpc.*;
 import org.jupiter.rpc.channel.JChannel;
+import org.jupiter.rpc.channel.JChannelGroup;
 import org.jupiter.rpc.channel.JFutureListener;
 import org.jupiter.rpc.consumer.future.DefaultInvokeFuture;
 import org.jupiter.rpc.consumer.future.InvokeFuture;
+import org.jupiter.rpc.exception.ConcurrencyLimitException;
+import org.jupiter.rpc.load.balance.HashKeyExtractor;
 import org.jupiter.rpc.model.metadata.MessageWrapper;
 import org.jupiter.rpc.model.metadata.ResultWrapper;
 import org.jupiter.rpc.model.metadata.ServiceMetadata;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.jupiter.rpc.Status.CLIENT_ERROR;
-import static org.jupiter.serialization.SerializerHolder.serializerImpl;
 
 /**
  * 单播方式派发消息
@@ -48,53 +56,82 @@ public class DefaultRoundDispatcher extends AbstractDispatcher {
     }
 
     @Override
-    public InvokeFuture dispatch(JClient proxy, String methodName, Object[] args) {
+    protected InvokeFuture dispatch(JClient proxy, String methodName, MessageWrapper message, Object[] args) {
         final ServiceMetadata _metadata = metadata; // stack copy
 
-        MessageWrapper message = new MessageWrapper(_metadata);
         message.setAppName(proxy.appName());
-        message.setMethodName(methodName);
-        message.setArgs(args);
 
-        JChannel channel = proxy.select(_metadata);
+        HashKeyExtractor hashKeyExtractor = getHashKeyExtractor();
+        Object hashKey = hashKeyExtractor == null ? null : hashKeyExtractor.extract(methodName, args);
+        JChannelGroup group = proxy.selectGroup(_metadata, getLoadBalancer(), hashKey);
+        // 选中group的同时原子地占用一个并发名额, 避免并发的调用同时通过检查后超出限制
+        boolean reserved = false;
+        ConcurrencyLimitMode concurrencyLimitMode = getConcurrencyLimitMode();
+        if (concurrencyLimitMode != ConcurrencyLimitMode.NONE) {
+            if (!tryReserve(group)) {
+                group = concurrencyLimitMode == ConcurrencyLimitMode.REROUTE ? reserveUnderLimitGroup(proxy) : null;
+                if (group == null) {
+                    throw new ConcurrencyLimitException(_metadata.directory() + '#' + methodName);
+                }
+            }
+            reserved = true;
+        }
+
         final JRequest request = new JRequest();
+        final ConsumerHook[] _hooks = getHooks();
+        final InvokeFuture future;
+        JChannel channel;
+        try {
+            channel = group.next();
 
-        // tracing
-        if (TracingEye.isTracingNeeded()) {
-            String traceId = TracingEye.getCurrent();
-            if (traceId == null) {
-                traceId = TracingEye.generateTraceId();
-            }
-            message.setTraceId(traceId);
-
-            if (logger.isInfoEnabled()) {
-                String directory = _metadata.directory(); // 避免StringBuilderHelper被嵌套使用
-                String traceInfo = StringBuilderHelper.get()
-                        .append("[Consumer] - TraceId: ")
-                        .append(traceId)
-                        .append(", invokeId: ")
-                        .append(request.invokeId())
-                        .append(", callInfo: ")
-                        .append(directory)
-                        .append('#')
-                        .append(methodName)
-                        .append(", on ")
-                        .append(channel).toString();
-
-                logger.info(traceInfo);
+            // tracing
+            if (TracingEye.isTracingNeeded()) {
+                String traceId = TracingEye.getCurrent();
+                if (traceId == null) {
+                    traceId = TracingEye.generateTraceId();
+                }
+                message.setTraceId(traceId);
+
+                if (logger.isInfoEnabled()) {
+                    String directory = _metadata.directory(); // 避免StringBuilderHelper被嵌套使用
+                    String traceInfo = StringBuilderHelper.get()
+                            .append("[Consumer] - TraceId: ")
+                            .append(traceId)
+                            .append(", invokeId: ")
+                            .append(request.invokeId())
+                            .append(", callInfo: ")
+                            .append(directory)
+                            .append('#')
+                            .append(methodName)
+                            .append(", on ")
+                            .append(channel).toString();
+
+                    logger.info(traceInfo);
+                }
             }
-        }
 
-        request.message(message);
-        request.bytes(serializerImpl().writeObject(message));
+            request.message(message);
+            request.bytes(MessageWrapper.encode(message));
 
-        int timeoutMillis = getMethodSpecialTimeoutMillis(methodName);
-        final ConsumerHook[] _hooks = getHooks();
-        final InvokeFuture future = asFuture(channel, request, timeoutMillis)
-                .hooks(_hooks)
-                .listener(getListener());
+            int timeoutMillis = message.getTimeoutMillis();
+            future = asFuture(channel, request, timeoutMillis)
+                    .hooks(_hooks)
+                    .listener(getListener());
+        } catch (Throwable t) {
+            if (reserved) {
+                group.onRequestCancel();
+            }
+            throw t;
+        }
+        if (future instanceof DefaultInvokeFuture) {
+            // 占用的名额随请求完成(包括写失败)归还
+            ((DefaultInvokeFuture) future).group(group, reserved);
+        } else if (reserved) {
+            // 无法跟踪请求何时完成, 立即归还
+            group.onRequestCancel();
+        }
 
-        channel.write(request, new JFutureListener<JChannel>() {
+        write(channel, request, new JFutureListener<JChannel>() {
 
             @Override
             public void operationSuccess(JChannel channel) throws Exception {
@@ -111,6 +148,11 @@ public class DefaultRoundDispatcher extends AbstractDispatcher {
             public void operationFailure(JChannel channel, Throwable cause) throws Exception {
                 logger.warn("Writes {} fail on {}, {}.", request, channel, cause);
 
+                if (future instanceof DefaultInvokeFuture) {
+                    // 没有发送出去, 归还占用的并发名额
+                    ((DefaultInvokeFuture) future).writeFailed();
+                }
+
                 ResultWrapper result = new ResultWrapper();
                 result.setError(cause);
 
@@ -119,11 +161,113 @@ public class DefaultRoundDispatcher extends AbstractDispatcher {
             }
         });
 
+        // hedging
+        HedgingPolicy hedgingPolicy = getMethodSpecialHedgingPolicy(methodName);
+        if (hedgingPolicy != null && future instanceof DefaultInvokeFuture) {
+            hedge(proxy, channel, request, (DefaultInvokeFuture) future, hedgingPolicy, methodName);
+        }
+
         return future;
     }
 
+    private void hedge(final JClient proxy,
+                       final JChannel channel,
+                       final JRequest request,
+                       final DefaultInvokeFuture future,
+                       final HedgingPolicy policy,
+                       String methodName) {
+
+        long delayMillis = policy.onRequest(methodName);
+        future.latencyHistogram(policy.latencyHistogram(methodName));
+        if (delayMillis <= 0) {
+            return;
+        }
+
+        HedgingTimerHolder.timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                if (future.isDone()) {
+                    return;
+                }
+                JChannelGroup hedgeGroup = selectAnotherGroup(proxy, channel);
+                if (hedgeGroup == null || !policy.tryAcquire()) {
+                    return;
+                }
+                JChannel hedgeChannel = hedgeGroup.next();
+
+                // 相同的请求数据, 新的invokeId
+                final JRequest hedgeRequest = new JRequest();
+                hedgeRequest.message(request.message());
+                hedgeRequest.bytes(request.bytes());
+                if (!future.hedge(hedgeRequest, hedgeChannel, hedgeGroup)) {
+                    return;
+                }
+
+                write(hedgeChannel, hedgeRequest, new JFutureListener<JChannel>() {
+
+                    @Override
+                    public void operationSuccess(JChannel channel) throws Exception {
+                        logger.debug("Hedged request {} sent out on {}.", request.invokeId(), channel);
+                    }
+
+                    @Override
+                    public void operationFailure(JChannel channel, Throwable cause) throws Exception {
+                        // 原始请求仍在进行, 只撤销对冲请求
+                        logger.warn("Writes hedged request {} fail on {}, {}.", request.invokeId(), channel, cause);
+
+                        future.hedgeFailed(hedgeRequest);
+                    }
+                });
+            }
+        }, delayMillis, MILLISECONDS);
+    }
+
+    private JChannelGroup selectAnotherGroup(JClient proxy, JChannel channel) {
+        Object[] elements = proxy.directory(metadata).snapshot();
+        int length = elements.length;
+        if (length < 2) {
+            return null;
+        }
+
+        int offset = ThreadLocalRandom.current().nextInt(length);
+        for (int i = 0; i < length; i++) {
+            JChannelGroup group = (JChannelGroup) elements[(offset + i) % length];
+            if (group.isAvailable() && !group.channels().contains(channel)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    private JChannelGroup reserveUnderLimitGroup(JClient proxy) {
+        Object[] elements = proxy.directory(metadata).snapshot();
+        int length = elements.length;
+        if (length == 0) {
+            return null;
+        }
+
+        int offset = ThreadLocalRandom.current().nextInt(length);
+        for (int i = 0; i < length; i++) {
+            JChannelGroup group = (JChannelGroup) elements[(offset + i) % length];
+            if (group.isAvailable() && !group.circuitBreaker().isEjected() && tryReserve(group)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    private static boolean tryReserve(JChannelGroup group) {
+        return group.tryRequestStart(group.concurrencyLimiter().limit());
+    }
+
     @Override
     protected InvokeFuture asFuture(JChannel channel, JRequest request, int timeoutMillis) {
         return new DefaultInvokeFuture(channel, request, timeoutMillis);
     }
+
+    private static class HedgingTimerHolder {
+        static final ScheduledExecutorService timer =
+                Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("hedging.timer", true));
+    }
 }
@@ -16,10 +16,15 @@
 
 package org.jupiter.rpc.consumer.dispatcher;
 
+import org.jupiter.rpc.ConcurrencyLimitMode;
 import org.jupiter.rpc.JClient;
 import org.jupiter.rpc.JListener;
 import org.jupiter.rpc.ConsumerHook;
+import org.jupiter.rpc.channel.JChannelGroup;
 import org.jupiter.rpc.consumer.future.InvokeFuture;
+import org.jupiter.rpc.load.balance.HashKeyExtractor;
+import org.jupiter.rpc.load.balance.LoadBalancer;
+import org.jupiter.rpc.model.metadata.ArgsCodec;
 
 import java.util.List;
 import java.util.Map;
@@ -36,6 +41,21 @@ public interface Dispatcher {
 
     InvokeFuture dispatch(JClient proxy, String method, Object[] args);
 
+    /**
+     * 方法标识由生成的代理类提供, 见 {@link org.jupiter.rpc.model.metadata.Identifiers}.
+     */
+    InvokeFuture dispatch(JClient proxy, int methodId, String method, Object[] args);
+
+    /**
+     * 参数已经由生成的代理类按照方法的 {@link ArgsCodec} 编码, 只在 {@link #isArgsRequired()} 为false时使用.
+     */
+    InvokeFuture dispatchEncoded(JClient proxy, int methodId, String method, byte[] argsBytes);
+
+    /**
+     * 派发时是否需要装箱后的参数(如提取hash key), 为false时生成的代理类直接编码有类型的参数.
+     */
+    boolean isArgsRequired();
+
     ConsumerHook[] getHooks();
 
     void setHooks(List<ConsumerHook> hooks);
@@ -51,4 +71,33 @@ public interface Dispatcher {
     int getMethodSpecialTimeoutMillis(String methodName);
 
     void setMethodsSpecialTimeoutMillis(Map<String, Integer> methodsSpecialTimeoutMillis);
+
+    void setMethodsArgsCodec(Map<Integer, ArgsCodec> methodsArgsCodec);
+
+    HedgingPolicy getHedgingPolicy();
+
+    void setHedgingPolicy(HedgingPolicy hedgingPolicy);
+
+    HedgingPolicy getMethodSpecialHedgingPolicy(String methodName);
+
+    void setMethodsSpecialHedgingPolicy(Map<String, HedgingPolicy> methodsSpecialHedgingPolicy);
+
+    /**
+     * 为null时使用 {@link JClient} 默认的负载均衡器.
+     */
+    LoadBalancer<JChannelGroup> getLoadBalancer();
+
+    void setLoadBalancer(LoadBalancer<JChannelGroup> loadBalancer);
+
+    HashKeyExtractor getHashKeyExtractor();
+
+    void setHashKeyExtractor(HashKeyExtractor hashKeyExtractor);
+
+    ConcurrencyLimitMode getConcurrencyLimitMode();
+
+    void setConcurrencyLimitMode(ConcurrencyLimitMode concurrencyLimitMode);
+
+    boolean isBatching();
+
+    void setBatching(boolean batching);
 }
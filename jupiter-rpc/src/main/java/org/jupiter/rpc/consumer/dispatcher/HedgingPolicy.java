@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.consumer.dispatcher;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.SystemClock;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.jupiter.common.util.Preconditions.checkArgument;
+
+/**
+ * 对冲请求(backup request)策略, 只应该用于幂等的方法.
+ *
+ * 请求发出后经过一段延迟仍未收到响应时, 向另一个 {@link org.jupiter.rpc.channel.JChannelGroup} 再发送一份相同的请求,
+ * 先返回的响应生效, 另一个响应被丢弃.
+ *
+ * 延迟可以是固定值, 也可以是这个方法最近调用耗时的某个分位数(如p95).
+ * 对冲预算限制额外的请求量: 每个请求积累 budgetRatio 个令牌, 每个对冲请求消耗1个令牌.
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.dispatcher
+ *
+ * @author jiachun.fjc
+ */
+public class HedgingPolicy {
+
+    // 令牌以 1/1000 为单位
+    private static final long TOKEN_UNIT = 1000;
+    // 分位数的缓存时间, 计算分位数需要对采样数据排序, 不能每次请求都计算
+    private static final long QUANTILE_REFRESH_MILLIS = 1000;
+    // 样本数不足时不做对冲
+    private static final long MIN_SAMPLES = 100;
+
+    private final long delayMillis;
+    private final double quantile;
+    private final long tokensPerRequest;
+    private final long maxTokens;
+
+    private final AtomicLong tokens = new AtomicLong();
+    private final ConcurrentMap<String, MethodLatency> methodsLatency = Maps.newConcurrentHashMap();
+
+    /**
+     * 固定延迟 {@code delayMillis} 毫秒后发出对冲请求.
+     *
+     * @param budgetRatio 对冲请求占总请求的最大比例, 如0.05
+     */
+    public static HedgingPolicy fixedDelay(long delayMillis, double budgetRatio) {
+        checkArgument(delayMillis > 0, "delayMillis must be positive");
+        return new HedgingPolicy(delayMillis, 0, budgetRatio);
+    }
+
+    /**
+     * 延迟为这个方法最近调用耗时的 {@code quantile} 分位数, 如0.95.
+     *
+     * @param budgetRatio 对冲请求占总请求的最大比例, 如0.05
+     */
+    public static HedgingPolicy quantileDelay(double quantile, double budgetRatio) {
+        checkArgument(quantile > 0 && quantile < 1, "quantile must be in (0, 1)");
+        return new HedgingPolicy(0, quantile, budgetRatio);
+    }
+
+    private HedgingPolicy(long delayMillis, double quantile, double budgetRatio) {
+        checkArgument(budgetRatio > 0 && budgetRatio <= 1, "budgetRatio must be in (0, 1]");
+
+        this.delayMillis = delayMillis;
+        this.quantile = quantile;
+        tokensPerRequest = (long) (budgetRatio * TOKEN_UNIT);
+        // 最多积攒100个对冲请求, 避免空闲一段时间后突发大量对冲
+        maxTokens = 100 * TOKEN_UNIT;
+    }
+
+    /**
+     * 每个请求调用一次, 积累对冲预算, 返回对冲的延迟毫秒数, 返回值小于等于0表示暂时不做对冲.
+     */
+    public long onRequest(String methodName) {
+        for (;;) {
+            long current = tokens.get();
+            if (current >= maxTokens) {
+                break;
+            }
+            if (tokens.compareAndSet(current, Math.min(maxTokens, current + tokensPerRequest))) {
+                break;
+            }
+        }
+
+        if (delayMillis > 0) {
+            return delayMillis;
+        }
+        return latency(methodName).quantileMillis();
+    }
+
+    /**
+     * 消耗一个对冲请求的预算, 预算不足返回false.
+     */
+    public boolean tryAcquire() {
+        for (;;) {
+            long current = tokens.get();
+            if (current < TOKEN_UNIT) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - TOKEN_UNIT)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 方法的耗时采样, 只有按分位数计算延迟时才需要.
+     */
+    public Histogram latencyHistogram(String methodName) {
+        return delayMillis > 0 ? null : latency(methodName).histogram;
+    }
+
+    private MethodLatency latency(String methodName) {
+        MethodLatency latency = methodsLatency.get(methodName);
+        if (latency == null) {
+            MethodLatency newLatency = new MethodLatency();
+            latency = methodsLatency.putIfAbsent(methodName, newLatency);
+            if (latency == null) {
+                latency = newLatency;
+            }
+        }
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingPolicy{" +
+                (delayMillis > 0 ? "delayMillis=" + delayMillis : "quantile=" + quantile) +
+                ", budgetRatio=" + ((double) tokensPerRequest / TOKEN_UNIT) +
+                '}';
+    }
+
+    final class MethodLatency {
+
+        final Histogram histogram = new Histogram(new ExponentiallyDecayingReservoir());
+
+        private volatile long cachedQuantileMillis;
+        private volatile long lastRefreshMillis;
+
+        long quantileMillis() {
+            long now = SystemClock.millisClock().now();
+            if (now - lastRefreshMillis > QUANTILE_REFRESH_MILLIS) {
+                lastRefreshMillis = now;
+                if (histogram.getCount() < MIN_SAMPLES) {
+                    cachedQuantileMillis = 0;
+                } else {
+                    // 毫秒精度, 至少1毫秒
+                    cachedQuantileMillis = Math.max(1, (long) Math.ceil(histogram.getSnapshot().getValue(quantile)));
+                }
+            }
+            return cachedQuantileMillis;
+        }
+    }
+}
@@ -16,17 +16,23 @@
 
 package org.jupiter.rpc.consumer.future;
 
+import com.codahale.metrics.Histogram;
+import org.jupiter.common.concurrent.atomic.AtomicUpdater;
 import org.jupiter.common.util.Maps;
 import org.jupiter.common.util.SystemClock;
 import org.jupiter.common.util.internal.logging.InternalLogger;
 import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
 import org.jupiter.rpc.*;
 import org.jupiter.rpc.channel.JChannel;
+import org.jupiter.rpc.channel.JChannelGroup;
 import org.jupiter.rpc.exception.RemoteException;
 import org.jupiter.rpc.exception.TimeoutException;
 import org.jupiter.rpc.model.metadata.ResultWrapper;
 
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -49,6 +55,9 @@ public class DefaultInvokeFuture extends InvokeFuture {
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(DefaultInvokeFuture.class);
 
+    private static final AtomicReferenceFieldUpdater<DefaultInvokeFuture, JResponse> responseUpdater =
+            AtomicUpdater.newAtomicReferenceFieldUpdater(DefaultInvokeFuture.class, JResponse.class, "response");
+
     // 单播场景的future, Long作为Key hashCode和equals效率都更高
     private static final ConcurrentMap<Long, DefaultInvokeFuture> roundFutures = Maps.newConcurrentHashMap();
     // 组播场景的future, 组播都是一个invokeId, 所以要把Key再加一个前缀
@@ -67,6 +76,10 @@ public class DefaultInvokeFuture extends InvokeFuture {
     private volatile JResponse response;
     private volatile JListener listener;
     private volatile ConsumerHook[] hooks;
+    private volatile Histogram latencyHistogram;
+    // 原始请求与对冲请求各自的发送记录
+    private volatile Attempt primary;
+    private volatile Attempt hedged;
 
     public DefaultInvokeFuture(JChannel channel, JRequest request, int timeoutMillis) {
         this(channel, request, timeoutMillis, ROUND);
@@ -97,7 +110,11 @@ public class DefaultInvokeFuture extends InvokeFuture {
             return false;
         }
 
-        future.doReceived(response);
+        if (!future.doReceived(response)) {
+            // 对冲请求中较晚返回的一方, 直接丢弃
+            logger.debug("A hedged response [{}] discarded on {}.", response, channel);
+            return false;
+        }
         return true;
     }
 
@@ -137,6 +154,77 @@ public class DefaultInvokeFuture extends InvokeFuture {
         return this;
     }
 
+    /**
+     * Records the latency of this invocation to the histogram on success.
+     */
+    public DefaultInvokeFuture latencyHistogram(Histogram latencyHistogram) {
+        this.latencyHistogram = latencyHistogram;
+        return this;
+    }
+
+    /**
+     * Tracks the in-flight count and the latency of the {@link JChannelGroup}
+     * which this invocation is sent to, used by the load balancers.
+     */
+    public DefaultInvokeFuture group(JChannelGroup group) {
+        return group(group, false);
+    }
+
+    /**
+     * Same as {@link #group(JChannelGroup)}, {@code started} is true if the request
+     * has already been counted by {@link JChannelGroup#tryRequestStart(int)}.
+     */
+    public DefaultInvokeFuture group(JChannelGroup group, boolean started) {
+        primary = new Attempt(invokeId, channel, group, started);
+        return this;
+    }
+
+    /**
+     * A hedged(backup) request of this invocation sent on {@code hedgeChannel},
+     * the first response of the original request and hedged request wins.
+     *
+     * Returns false if this invocation is already done, then the hedged request
+     * should not be sent.
+     */
+    public boolean hedge(JRequest hedgeRequest, JChannel hedgeChannel, JChannelGroup hedgeGroup) {
+        if (isDone()) {
+            return false;
+        }
+
+        Attempt attempt = new Attempt(hedgeRequest.invokeId(), hedgeChannel, hedgeGroup, false);
+        hedged = attempt;
+        roundFutures.put(attempt.invokeId, this);
+        if (isDone()) {
+            // 与响应并发, 可能错过了doReceived中的清理
+            cancel(attempt);
+            roundFutures.remove(attempt.invokeId, this);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The hedged request failed to be sent out, the original request is still in progress.
+     */
+    public void hedgeFailed(JRequest hedgeRequest) {
+        Attempt attempt = hedged;
+        if (attempt != null && attempt.invokeId == hedgeRequest.invokeId()) {
+            cancel(attempt);
+            roundFutures.remove(attempt.invokeId, this);
+        }
+    }
+
+    /**
+     * The original request failed to be sent out, releases it from the group
+     * without a latency sample.
+     */
+    public void writeFailed() {
+        Attempt attempt = primary;
+        if (attempt != null) {
+            cancel(attempt);
+        }
+    }
+
     @Override
     public void chalkUpSentTimestamp() {
         sentTimestamp = SystemClock.millisClock().now();
@@ -171,8 +259,29 @@ public class DefaultInvokeFuture extends InvokeFuture {
         return response != null;
     }
 
-    private void doReceived(JResponse response) {
-        this.response = response;
+    private boolean doReceived(JResponse response) {
+        if (!responseUpdater.compareAndSet(this, null, response)) {
+            return false;
+        }
+
+        Histogram _latencyHistogram = latencyHistogram;
+        if (_latencyHistogram != null && response.status() == OK.value()) {
+            _latencyHistogram.update(SystemClock.millisClock().now() - startTimestamp);
+        }
+
+        // 胜出的一方按照自己的耗时计入统计, 落败的一方既不算成功也不算失败
+        Attempt _primary = primary;
+        Attempt _hedged = hedged;
+        boolean hedgeWins = isHedgeResponse(response, _hedged);
+        Attempt winAttempt = hedgeWins ? _hedged : _primary;
+        if (winAttempt != null && winAttempt.settle()) {
+            winAttempt.complete(!isProviderFailure(response.status()));
+        }
+        // 落败一方的invokeId保留到超时, 使其迟到的响应被识别为对冲请求而丢弃, 之后由TimeoutFutureScanner清理
+        Attempt loseAttempt = hedgeWins ? _primary : _hedged;
+        if (loseAttempt != null) {
+            cancel(loseAttempt);
+        }
 
         // If there is a listener, that is considered to be an asynchronous call,
         // and attempts to elide conditional wake-ups when the lock is uncontended.
@@ -191,9 +300,35 @@ public class DefaultInvokeFuture extends InvokeFuture {
         // call hook's after method
         if (hooks != null) {
             for (ConsumerHook h : hooks) {
-                h.after(request, channel);
+                h.after(request, winner());
             }
         }
+        return true;
+    }
+
+    private boolean isHedgeResponse(JResponse response, Attempt _hedged) {
+        return _hedged != null && response.id() == _hedged.invokeId && response.id() != invokeId;
+    }
+
+    /**
+     * 返回响应的channel, 对冲请求胜出时是对冲请求所在的channel.
+     */
+    private JChannel winner() {
+        Attempt _hedged = hedged;
+        return isHedgeResponse(response, _hedged) ? _hedged.channel : channel;
+    }
+
+    private void cancel(Attempt attempt) {
+        if (attempt.settle()) {
+            attempt.cancel();
+        }
+    }
+
+    /**
+     * 业务异常(SERVICE_ERROR)与错误请求(BAD_REQUEST)不代表服务提供者不健康.
+     */
+    private static boolean isProviderFailure(byte status) {
+        return status != OK.value() && status != SERVICE_ERROR.value() && status != BAD_REQUEST.value();
     }
 
     private Object resultFromResponse() throws Throwable {
@@ -204,7 +339,7 @@ public class DefaultInvokeFuture extends InvokeFuture {
             return wrapper.getResult();
         }
 
-        throw new RemoteException(_response.toString(), channel.remoteAddress());
+        throw new RemoteException(_response.toString(), winner().remoteAddress());
     }
 
     private void notifyListener(JListener listener) {
@@ -213,13 +348,55 @@ public class DefaultInvokeFuture extends InvokeFuture {
         ResultWrapper wrapper = _response.result();
         if (status == OK.value()) {
             try {
-                JResult result = new JResult(channel.remoteAddress(), wrapper.getResult());
+                JResult result = new JResult(winner().remoteAddress(), wrapper.getResult());
                 listener.complete(request, result);
             } catch (Throwable t) {
                 listener.failure(request, t);
             }
         } else {
-            listener.failure(request, new RemoteException(_response.toString(), channel.remoteAddress()));
+            listener.failure(request, new RemoteException(_response.toString(), winner().remoteAddress()));
+        }
+    }
+
+    /**
+     * 一次发送(原始请求或对冲请求)在 {@link JChannelGroup} 上的记录, 只能结算一次.
+     */
+    private static final class Attempt {
+
+        private static final AtomicIntegerFieldUpdater<Attempt> settledUpdater =
+                AtomicUpdater.newAtomicIntegerFieldUpdater(Attempt.class, "settled");
+
+        final long invokeId;
+        final JChannel channel;
+        final JChannelGroup group;
+        final long startNanos;
+
+        volatile int settled = 0;
+
+        Attempt(long invokeId, JChannel channel, JChannelGroup group, boolean started) {
+            this.invokeId = invokeId;
+            this.channel = channel;
+            this.group = group;
+            startNanos = System.nanoTime();
+            if (group != null && !started) {
+                group.onRequestStart();
+            }
+        }
+
+        boolean settle() {
+            return settledUpdater.compareAndSet(this, 0, 1);
+        }
+
+        void complete(boolean success) {
+            if (group != null) {
+                group.onRequestComplete(System.nanoTime() - startNanos, success);
+            }
+        }
+
+        void cancel() {
+            if (group != null) {
+                group.onRequestCancel();
+            }
         }
     }
 
@@ -233,12 +410,18 @@ public class DefaultInvokeFuture extends InvokeFuture {
             for (;;) {
                 try {
                     // 单播
-                    for (DefaultInvokeFuture future : roundFutures.values()) {
-                        if (future == null || future.isDone()) {
+                    for (Map.Entry<Long, DefaultInvokeFuture> entry : roundFutures.entrySet()) {
+                        DefaultInvokeFuture future = entry.getValue();
+                        if (future == null) {
                             continue;
                         }
                         if (SystemClock.millisClock().now() - future.startTimestamp > future.timeoutMillis) {
-                            processingTimeoutFuture(future);
+                            if (future.isDone()) {
+                                // 对冲请求中没有返回的一方
+                                roundFutures.remove(entry.getKey(), future);
+                            } else if (entry.getKey() == future.invokeId) {
+                                processingTimeoutFuture(future);
+                            }
                         }
                     }
 
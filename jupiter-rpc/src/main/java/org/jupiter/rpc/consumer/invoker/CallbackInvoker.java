@@ -19,20 +19,22 @@ package org.jupiter.rpc.consumer.invoker;
 import org.jupiter.common.util.Reflects;
 import org.jupiter.rpc.JClient;
 import org.jupiter.rpc.consumer.dispatcher.Dispatcher;
+import org.jupiter.rpc.model.metadata.Identifiers;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 
 /**
  * Asynchronous call, {@link CallbackInvoker#invoke(Object, Method, Object[])}
- * returns a default value of the corresponding method.
+ * returns a default value of the corresponding method, {@link CallbackInvoker#$invoke(int, String, Object[])}
+ * returns null and leaves the default value to the generated proxy.
  *
  * jupiter
  * org.jupiter.rpc.consumer.invoker
  *
  * @author jiachun.fjc
  */
-public class CallbackInvoker implements InvocationHandler {
+public class CallbackInvoker implements InvocationHandler, ProxyInvoker {
 
     private final JClient client;
     private final Dispatcher dispatcher;
@@ -44,7 +46,24 @@ public class CallbackInvoker implements InvocationHandler {
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        dispatcher.dispatch(client, method.getName(), args);
+        $invoke(Identifiers.NONE, method.getName(), args);
         return Reflects.getTypeDefaultValue(method.getReturnType());
     }
+
+    @Override
+    public Object $invoke(int methodId, String methodName, Object[] args) throws Throwable {
+        dispatcher.dispatch(client, methodId, methodName, args);
+        return null;
+    }
+
+    @Override
+    public Object $invokeEncoded(int methodId, String methodName, byte[] argsBytes) throws Throwable {
+        dispatcher.dispatchEncoded(client, methodId, methodName, argsBytes);
+        return null;
+    }
+
+    @Override
+    public boolean isArgsRequired() {
+        return dispatcher.isArgsRequired();
+    }
 }
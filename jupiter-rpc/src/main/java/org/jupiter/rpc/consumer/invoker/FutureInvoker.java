@@ -20,6 +20,7 @@ import org.jupiter.common.util.Reflects;
 import org.jupiter.rpc.JClient;
 import org.jupiter.rpc.consumer.dispatcher.Dispatcher;
 import org.jupiter.rpc.consumer.future.JFuture;
+import org.jupiter.rpc.model.metadata.Identifiers;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
@@ -28,14 +29,15 @@ import static org.jupiter.common.util.Preconditions.checkNotNull;
 
 /**
  * Asynchronous call, {@link FutureInvoker#invoke(Object, Method, Object[])}
- * returns a default value of the corresponding method.
+ * returns a default value of the corresponding method, {@link FutureInvoker#$invoke(int, String, Object[])}
+ * returns null and leaves the default value to the generated proxy.
  *
  * jupiter
  * org.jupiter.rpc.consumer.invoker
  *
  * @author jiachun.fjc
  */
-public class FutureInvoker implements InvocationHandler {
+public class FutureInvoker implements InvocationHandler, ProxyInvoker {
 
     private static final ThreadLocal<JFuture> futureThreadLocal = new ThreadLocal<>();
 
@@ -55,8 +57,26 @@ public class FutureInvoker implements InvocationHandler {
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        JFuture future = dispatcher.dispatch(client, method.getName(), args);
-        futureThreadLocal.set(future);
+        $invoke(Identifiers.NONE, method.getName(), args);
         return Reflects.getTypeDefaultValue(method.getReturnType());
     }
+
+    @Override
+    public Object $invoke(int methodId, String methodName, Object[] args) throws Throwable {
+        JFuture future = dispatcher.dispatch(client, methodId, methodName, args);
+        futureThreadLocal.set(future);
+        return null;
+    }
+
+    @Override
+    public Object $invokeEncoded(int methodId, String methodName, byte[] argsBytes) throws Throwable {
+        JFuture future = dispatcher.dispatchEncoded(client, methodId, methodName, argsBytes);
+        futureThreadLocal.set(future);
+        return null;
+    }
+
+    @Override
+    public boolean isArgsRequired() {
+        return dispatcher.isArgsRequired();
+    }
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.consumer.invoker;
+
+/**
+ * 生成的代理类的调用入口, 方法标识在生成代理类时已经确定(重载方法在此时就已区分开).
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.invoker
+ *
+ * @author jiachun.fjc
+ */
+public interface ProxyInvoker {
+
+    Object $invoke(int methodId, String methodName, Object[] args) throws Throwable;
+
+    /**
+     * 参数已经由生成的代理类按照方法的 {@link org.jupiter.rpc.model.metadata.ArgsCodec} 编码,
+     * 只在 {@link #isArgsRequired()} 为false时使用.
+     */
+    Object $invokeEncoded(int methodId, String methodName, byte[] argsBytes) throws Throwable;
+
+    /**
+     * 为true时生成的代理类必须把参数装箱后交给 {@link #$invoke(int, String, Object[])}.
+     */
+    boolean isArgsRequired();
+}
@@ -19,6 +19,7 @@ package org.jupiter.rpc.consumer.invoker;
 import org.jupiter.rpc.JClient;
 import org.jupiter.rpc.consumer.dispatcher.Dispatcher;
 import org.jupiter.rpc.consumer.future.InvokeFuture;
+import org.jupiter.rpc.model.metadata.Identifiers;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
@@ -26,12 +27,15 @@ import java.lang.reflect.Method;
 /**
  * Synchronous call.
  *
+ * {@link SyncInvoker#$invoke(int, String, Object[])} is the entrance of generated proxies,
+ * {@link SyncInvoker#invoke(Object, Method, Object[])} is the entrance of jdk proxies.
+ *
  * jupiter
  * org.jupiter.rpc.consumer.invoker
  *
  * @author jiachun.fjc
  */
-public class SyncInvoker implements InvocationHandler {
+public class SyncInvoker implements InvocationHandler, ProxyInvoker {
 
     private final JClient client;
     private final Dispatcher dispatcher;
@@ -43,7 +47,23 @@ public class SyncInvoker implements InvocationHandler {
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        InvokeFuture future = dispatcher.dispatch(client, method.getName(), args);
+        return $invoke(Identifiers.NONE, method.getName(), args);
+    }
+
+    @Override
+    public Object $invoke(int methodId, String methodName, Object[] args) throws Throwable {
+        InvokeFuture future = dispatcher.dispatch(client, methodId, methodName, args);
         return future.getResult();
     }
+
+    @Override
+    public Object $invokeEncoded(int methodId, String methodName, byte[] argsBytes) throws Throwable {
+        InvokeFuture future = dispatcher.dispatchEncoded(client, methodId, methodName, argsBytes);
+        return future.getResult();
+    }
+
+    @Override
+    public boolean isArgsRequired() {
+        return dispatcher.isArgsRequired();
+    }
 }
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.consumer.proxy;
+
+import javassist.*;
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.internal.JUnsafe;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.rpc.JPromise;
+import org.jupiter.rpc.consumer.invoker.ProxyInvoker;
+import org.jupiter.rpc.consumer.invoker.SyncInvoker;
+import org.jupiter.rpc.model.metadata.ArgsCodec;
+import org.jupiter.rpc.model.metadata.ArgsCodecGenerator;
+import org.jupiter.rpc.model.metadata.ArgsOutput;
+import org.jupiter.rpc.model.metadata.Identifiers;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.jupiter.common.util.Preconditions.checkArgument;
+import static org.jupiter.common.util.Preconditions.checkNotNull;
+
+/**
+ * 基于javassist生成服务接口的代理类, 每个接口只生成一次.
+ *
+ * 生成的代理类直接实现服务接口, 每个方法把方法标识与方法名作为常量直接交给 {@link ProxyInvoker},
+ * 不再经过jdk {@link java.lang.reflect.Proxy} 的 {@link Method} 反射派发和 {@link Method#getName()}.
+ * 参数能够由 {@link ArgsCodec} 编码的方法直接按照声明的类型编码参数, 不再装箱为 Object[]
+ * (除非 {@link ProxyInvoker#isArgsRequired()}).
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.proxy
+ *
+ * @author jiachun.fjc
+ */
+public final class Proxies {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Proxies.class);
+
+    private static final String INVOKER_CLASS_NAME = ProxyInvoker.class.getName();
+    private static final String SYNC_INVOKER_CLASS_NAME = SyncInvoker.class.getName();
+    private static final String PROMISE_CLASS_NAME = JPromise.class.getName();
+    private static final String OUTPUT_CLASS_NAME = ArgsOutput.class.getName();
+
+    private static final AtomicInteger classIdGenerator = new AtomicInteger(0);
+    private static final ConcurrentMap<Class<?>, Class<?>> proxyClassCache = Maps.newConcurrentHashMap();
+
+    /**
+     * Returns a proxy instance that implements {@code interfaceType} by dispatching
+     * method invocations to {@code invoker}, the class of proxy is generated by javassist.
+     */
+    public static <T> T newProxy(Class<T> interfaceType, ProxyInvoker invoker) {
+        checkNotNull(invoker, "invoker");
+        checkArgument(interfaceType.isInterface(), interfaceType + " is not an interface");
+
+        Object proxy = null;
+        try {
+            proxy = getProxyClass(interfaceType).getConstructor(ProxyInvoker.class).newInstance(invoker);
+        } catch (Exception e) {
+            JUnsafe.throwException(e);
+        }
+        return interfaceType.cast(proxy);
+    }
+
+    /**
+     * Returns the generated proxy class of {@code interfaceType}.
+     */
+    public static Class<?> getProxyClass(Class<?> interfaceType) {
+        Class<?> proxyClass = proxyClassCache.get(interfaceType);
+        if (proxyClass == null) {
+            synchronized (proxyClassCache) {
+                proxyClass = proxyClassCache.get(interfaceType);
+                if (proxyClass == null) {
+                    proxyClass = generateProxyClass(interfaceType);
+                    proxyClassCache.put(interfaceType, proxyClass);
+                }
+            }
+        }
+        return proxyClass;
+    }
+
+    private static Class<?> generateProxyClass(Class<?> interfaceType) {
+        ClassLoader loader = interfaceType.getClassLoader();
+        if (loader == null) {
+            loader = Thread.currentThread().getContextClassLoader();
+        }
+
+        ClassPool pool = new ClassPool(true);
+        pool.appendClassPath(new LoaderClassPath(loader));
+        pool.appendClassPath(new ClassClassPath(Proxies.class));
+
+        // 与接口同包, 以便能够实现包级可见的接口
+        String proxyClassName = interfaceType.getName() + "$JupiterProxy" + classIdGenerator.getAndIncrement();
+        try {
+            CtClass ctClass = pool.makeClass(proxyClassName);
+            ctClass.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
+            ctClass.addInterface(pool.get(interfaceType.getName()));
+
+            ctClass.addField(CtField.make("private final " + INVOKER_CLASS_NAME + " invoker;", ctClass));
+            CtConstructor ctConstructor = new CtConstructor(new CtClass[] { pool.get(INVOKER_CLASS_NAME) }, ctClass);
+            ctConstructor.setModifiers(Modifier.PUBLIC);
+            ctConstructor.setBody("{ this.invoker = $1; }");
+            ctClass.addConstructor(ctConstructor);
+
+            Set<String> signatures = new HashSet<>();
+            for (Method method : interfaceType.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                // 多个父接口可能声明了相同的方法
+                if (!signatures.add(method.getName() + getDescriptor(method))) {
+                    continue;
+                }
+
+                CtClass[] parameterTypes = toCtClasses(pool, method.getParameterTypes());
+                String encoderName = null;
+                if (ArgsCodec.isSupported(method.getParameterTypes())) {
+                    // 按照声明的类型直接编码参数的静态方法, 参数与接口方法相同
+                    encoderName = "$encode" + signatures.size();
+                    CtMethod encoder = new CtMethod(pool.get(byte[].class.getName()), encoderName, parameterTypes, ctClass);
+                    encoder.setModifiers(Modifier.PRIVATE | Modifier.STATIC);
+                    encoder.setBody(encoderBody(method));
+                    ctClass.addMethod(encoder);
+                }
+
+                CtMethod ctMethod = new CtMethod(
+                        toCtClass(pool, method.getReturnType()),
+                        method.getName(),
+                        parameterTypes,
+                        ctClass);
+                ctMethod.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
+                ctMethod.setExceptionTypes(toCtClasses(pool, method.getExceptionTypes()));
+                ctMethod.setBody(methodBody(method, encoderName));
+                ctClass.addMethod(ctMethod);
+            }
+
+            Class<?> proxyClass = ctClass.toClass(loader, interfaceType.getProtectionDomain());
+            ctClass.detach();
+
+            logger.debug("Generated proxy class: {} for {}.", proxyClassName, interfaceType);
+
+            return proxyClass;
+        } catch (Exception e) {
+            throw new IllegalStateException("generates proxy class for " + interfaceType + " failed", e);
+        }
+    }
+
+    private static String encoderBody(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        String[] exprs = new String[parameterTypes.length];
+        for (int i = 0; i < exprs.length; i++) {
+            exprs[i] = "$" + (i + 1);
+        }
+        return "{ " + OUTPUT_CLASS_NAME + " out = new " + OUTPUT_CLASS_NAME + "(); "
+                + ArgsCodecGenerator.encodeSource(parameterTypes, exprs, "out")
+                + "return out.toByteArray(); }";
+    }
+
+    private static String methodBody(Method method, String encoderName) {
+        // 方法标识与方法名作为常量写入常量池, $args即装箱后的参数数组
+        int methodId = Identifiers.methodId(method.getName(), method.getParameterTypes());
+        String invokeExpr = "this.invoker.$invoke(" + methodId + ", \"" + method.getName() + "\", $args)";
+        String invokeEncodedExpr = null;
+        if (encoderName != null) {
+            // 直接编码有类型的参数, invoker需要装箱后的参数时才使用$args
+            invokeEncodedExpr = "this.invoker.$invokeEncoded("
+                    + methodId + ", \"" + method.getName() + "\", " + encoderName + "($$))";
+        }
+
+        Class<?> returnType = method.getReturnType();
+        if (returnType == void.class) {
+            if (invokeEncodedExpr == null) {
+                return "{ " + invokeExpr + "; }";
+            }
+            return "{ if (this.invoker.isArgsRequired()) { " + invokeExpr + "; } else { " + invokeEncodedExpr + "; } }";
+        }
+        if (invokeEncodedExpr != null) {
+            invokeExpr = "(this.invoker.isArgsRequired() ? " + invokeExpr + " : " + invokeEncodedExpr + ")";
+        }
+
+        StringBuilder buf = new StringBuilder("{ Object r = ").append(invokeExpr).append("; ");
+        if (returnType == JPromise.class) {
+            // 服务端异步返回的JPromise在网络上传输的是它完成时的值, 同步调用时包装为一个已完成的promise
+            return buf.append("if (this.invoker instanceof ").append(SYNC_INVOKER_CLASS_NAME).append(") { ")
+                    .append("return ").append(PROMISE_CLASS_NAME).append(".completed(r); } ")
+                    .append("return null; }").toString();
+        }
+        if (returnType.isPrimitive()) {
+            // 异步调用(FUTURE, CALLBACK)会返回null, 需要返回对应类型的默认值
+            buf.append("if (r == null) { return ").append(primitiveDefaultValue(returnType)).append("; } ");
+        }
+        return buf.append("return ($r) r; }").toString();
+    }
+
+    private static String primitiveDefaultValue(Class<?> clazz) {
+        if (clazz == boolean.class) {
+            return "false";
+        }
+        if (clazz == long.class) {
+            return "0L";
+        }
+        if (clazz == float.class) {
+            return "0.0F";
+        }
+        if (clazz == double.class) {
+            return "0.0D";
+        }
+        return "(" + clazz.getName() + ") 0";
+    }
+
+    private static String getDescriptor(Method method) {
+        StringBuilder buf = new StringBuilder("(");
+        for (Class<?> type : method.getParameterTypes()) {
+            buf.append(type.getName()).append(';');
+        }
+        return buf.append(')').toString();
+    }
+
+    private static CtClass[] toCtClasses(ClassPool pool, Class<?>[] classes) throws NotFoundException {
+        CtClass[] ctClasses = new CtClass[classes.length];
+        for (int i = 0; i < classes.length; i++) {
+            ctClasses[i] = toCtClass(pool, classes[i]);
+        }
+        return ctClasses;
+    }
+
+    private static CtClass toCtClass(ClassPool pool, Class<?> clazz) throws NotFoundException {
+        if (clazz.isArray()) {
+            return pool.get(toCtClass(pool, clazz.getComponentType()).getName() + "[]");
+        }
+        return pool.get(clazz.getName());
+    }
+
+    private Proxies() {}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.exception;
+
+/**
+ * The client-side concurrency limit of providers has been reached,
+ * the request is rejected locally without being sent.
+ *
+ * For efficiency this exception will not have a stack trace.
+ *
+ * jupiter
+ * org.jupiter.rpc.exception
+ *
+ * @author jiachun.fjc
+ */
+public class ConcurrencyLimitException extends RuntimeException {
+
+    private static final long serialVersionUID = -2857317438176950391L;
+
+    public ConcurrencyLimitException() {}
+
+    public ConcurrencyLimitException(String message) {
+        super(message);
+    }
+
+    public ConcurrencyLimitException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public ConcurrencyLimitException(Throwable cause) {
+        super(cause);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
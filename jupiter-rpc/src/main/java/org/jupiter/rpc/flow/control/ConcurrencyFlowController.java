@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.flow.control;
+
+import org.jupiter.common.concurrent.atomic.AtomicUpdater;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import static org.jupiter.common.util.Preconditions.checkArgument;
+
+/**
+ * 最大并发限流, 正在处理中的请求数不超过 [maxInFlight].
+ *
+ * 放行时返回一个许可, 请求的响应被写出(或发送失败)时由 {@link ControlResult#release()} 归还.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public class ConcurrencyFlowController extends KeyedFlowController<ConcurrencyFlowController.InFlight> {
+
+    private volatile int defaultMaxInFlight;
+
+    public ConcurrencyFlowController(FlowControlKey key, int maxInFlight) {
+        super(key);
+        checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+        defaultMaxInFlight = maxInFlight;
+    }
+
+    /**
+     * Re-tunes the default max in-flight of all the keys that have not been tuned individually,
+     * the requests already in flight are not affected.
+     */
+    public void setDefaultMaxInFlight(final int maxInFlight) {
+        checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+        defaultMaxInFlight = maxInFlight;
+        tuneDefaults(new Tuning<InFlight>() {
+
+            @Override
+            public void tune(InFlight unit) {
+                unit.maxInFlight = maxInFlight;
+            }
+        });
+    }
+
+    /**
+     * Re-tunes the max in-flight of the key.
+     */
+    public void setMaxInFlight(String key, final int maxInFlight) {
+        checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+        tune(key, new Tuning<InFlight>() {
+
+            @Override
+            public void tune(InFlight unit) {
+                unit.maxInFlight = maxInFlight;
+            }
+        });
+    }
+
+    /**
+     * Returns the number of requests in flight of the key.
+     */
+    public int inFlight(String key) {
+        return unit(key).inFlight.get();
+    }
+
+    @Override
+    protected InFlight newUnit() {
+        return new InFlight(defaultMaxInFlight);
+    }
+
+    @Override
+    protected boolean isPurgeable(InFlight unit) {
+        // 还有许可没有归还时不清理, 否则新的单元从0开始计数会超出限制
+        return unit.inFlight.get() == 0;
+    }
+
+    @Override
+    protected ControlResult flowControl(String k, InFlight unit) {
+        return unit.tryAcquire() ? new Permit(unit) : reject(k, "too many requests in flight");
+    }
+
+    public static final class InFlight extends KeyedFlowController.Unit {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        volatile int maxInFlight;
+
+        InFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        boolean tryAcquire() {
+            final int limit = maxInFlight;
+            for (;;) {
+                int current = inFlight.get();
+                if (current >= limit) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    static final class Permit extends ControlResult {
+
+        private static final AtomicIntegerFieldUpdater<Permit> releasedUpdater =
+                AtomicUpdater.newAtomicIntegerFieldUpdater(Permit.class, "released");
+
+        private final InFlight unit;
+        @SuppressWarnings("unused")
+        private volatile int released = 0;
+
+        Permit(InFlight unit) {
+            super(true);
+            this.unit = unit;
+        }
+
+        @Override
+        public void release() {
+            // 只归还一次
+            if (releasedUpdater.compareAndSet(this, 0, 1)) {
+                unit.inFlight.decrementAndGet();
+            }
+        }
+    }
+}
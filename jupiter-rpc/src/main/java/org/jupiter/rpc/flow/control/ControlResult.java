@@ -49,6 +49,12 @@ public class ControlResult {
         return message;
     }
 
+    /**
+     * Releases what the allowed request holds in the {@link FlowController}, it is called
+     * after the response was written out or failed.
+     */
+    public void release() {}
+
     @Override
     public String toString() {
         return "ControlResult{" +
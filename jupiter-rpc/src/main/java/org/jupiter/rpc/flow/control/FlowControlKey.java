@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.flow.control;
+
+import org.jupiter.rpc.JRequest;
+import org.jupiter.rpc.model.metadata.MessageWrapper;
+
+/**
+ * 限流的维度, 决定请求计入哪一个限流单元.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public enum FlowControlKey {
+    APP {           // 按调用方应用名称
+        @Override
+        public String keyOf(MessageWrapper msg) {
+            String appName = msg.getAppName();
+            return appName == null ? UNKNOWN : appName;
+        }
+    },
+    SERVICE {       // 按服务(group-version-name)
+        @Override
+        public String keyOf(MessageWrapper msg) {
+            return msg.getMetadata().directory();
+        }
+    },
+    METHOD {        // 按服务的方法(group-version-name#method)
+        @Override
+        public String keyOf(MessageWrapper msg) {
+            return msg.getMetadata().directory() + '#' + msg.getMethodName();
+        }
+    };
+
+    static final String UNKNOWN = "UNKNOWN";
+
+    public abstract String keyOf(MessageWrapper msg);
+
+    public String keyOf(JRequest request) {
+        return keyOf(request.message());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.flow.control;
+
+import org.jupiter.common.util.Lists;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+
+import static org.jupiter.common.util.Preconditions.checkNotNull;
+
+/**
+ * 根据GC之后老年代的使用率(排除了尚未回收的垃圾)收紧 {@link RequestBytesBudget}.
+ *
+ * GC后使用率低于70%时不限制, 之后每升高10%预算减半, 最低收紧到10%.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public class HeapPressureMonitor implements Runnable {
+
+    private final RequestBytesBudget budget;
+    private final List<MemoryPoolMXBean> pools = Lists.newArrayList();
+
+    public HeapPressureMonitor(RequestBytesBudget budget) {
+        this.budget = checkNotNull(budget, "budget");
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            // 只有支持collection usage的堆内存区域才能观察到GC后的使用量,
+            // 新生代GC后存活区的使用率本来就很高, 只观察老年代
+            String name = pool.getName();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()
+                    && !name.contains("Eden") && !name.contains("Survivor")) {
+                pools.add(pool);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        budget.setPressureFactor(factorOf(usageAfterGc()));
+    }
+
+    /**
+     * Returns the max ratio of used/max after the last GC among the heap pools.
+     */
+    public double usageAfterGc() {
+        double ratio = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage == null) {
+                continue;
+            }
+            long max = usage.getMax() > 0 ? usage.getMax() : usage.getCommitted();
+            if (max > 0) {
+                ratio = Math.max(ratio, (double) usage.getUsed() / max);
+            }
+        }
+        return ratio;
+    }
+
+    static double factorOf(double usageAfterGc) {
+        if (usageAfterGc < 0.7D) {
+            return 1.0D;
+        }
+        if (usageAfterGc < 0.8D) {
+            return 0.5D;
+        }
+        if (usageAfterGc < 0.9D) {
+            return 0.25D;
+        }
+        return 0.1D;
+    }
+}
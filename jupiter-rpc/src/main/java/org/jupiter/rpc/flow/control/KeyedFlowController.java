@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.flow.control;
+
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.SystemClock;
+import org.jupiter.rpc.JRequest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.jupiter.common.util.JConstants.FLOW_CONTROL_MAX_UNITS;
+import static org.jupiter.common.util.JConstants.FLOW_CONTROL_UNIT_IDLE_MILLIS;
+import static org.jupiter.common.util.Preconditions.checkArgument;
+import static org.jupiter.common.util.Preconditions.checkNotNull;
+
+/**
+ * 按 {@link FlowControlKey} 分别限流的 {@link FlowController}, 每个key一个限流单元, 第一次遇到时以默认的限制创建.
+ *
+ * 限流单元的限制可以在运行时调整, 单独设置过的key不再跟随默认限制的调整.
+ * 判断是否放行的路径上没有锁, 只有CAS.
+ *
+ * key来自调用方(应用名称, 方法名称), 限流单元的数量有上限: 达到上限时先清理空闲的单元(单独设置过的除外),
+ * 仍然没有空间时新的key合并到同一个限流单元.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public abstract class KeyedFlowController<S extends KeyedFlowController.Unit> implements FlowController<JRequest> {
+
+    // 最近使用时间的精度, 避免每个请求都写同一个缓存行
+    private static final long LAST_USED_TICK_MILLIS = 1000;
+    // 达到上限后新的key合并到的限流单元
+    static final String OVERFLOW_KEY = "OVERFLOW";
+
+    private final FlowControlKey key;
+    private final ConcurrentMap<String, S> units = Maps.newConcurrentHashMap();
+    private final int maxUnits;
+    private final long unitIdleMillis;
+
+    private volatile long nextPurgeMillis;
+
+    protected KeyedFlowController(FlowControlKey key) {
+        this(key, FLOW_CONTROL_MAX_UNITS, FLOW_CONTROL_UNIT_IDLE_MILLIS);
+    }
+
+    protected KeyedFlowController(FlowControlKey key, int maxUnits, long unitIdleMillis) {
+        checkArgument(maxUnits > 0, "maxUnits must be positive");
+        checkArgument(unitIdleMillis >= 0, "unitIdleMillis must not be negative");
+        this.key = checkNotNull(key, "key");
+        this.maxUnits = maxUnits;
+        this.unitIdleMillis = unitIdleMillis;
+    }
+
+    public FlowControlKey getKey() {
+        return key;
+    }
+
+    @Override
+    public ControlResult flowControl(JRequest request) {
+        String k = key.keyOf(request);
+        long now = SystemClock.millisClock().now();
+        S unit = units.get(k);
+        if (unit == null) {
+            if (units.size() >= maxUnits) {
+                purgeIdleUnits(now);
+                if (units.size() >= maxUnits) {
+                    k = OVERFLOW_KEY;
+                }
+            }
+            unit = unit(k);
+        }
+        if (now - unit.lastUsedMillis >= LAST_USED_TICK_MILLIS) {
+            unit.lastUsedMillis = now;
+        }
+        return flowControl(k, unit);
+    }
+
+    /**
+     * Returns the unit of the key, creates one with the default limit if absent.
+     */
+    protected S unit(String k) {
+        S unit = units.get(k);
+        if (unit == null) {
+            S newUnit = newUnit();
+            unit = units.putIfAbsent(k, newUnit);
+            if (unit == null) {
+                unit = newUnit;
+            }
+        }
+        return unit;
+    }
+
+    /**
+     * Returns the number of the units.
+     */
+    public int size() {
+        return units.size();
+    }
+
+    /**
+     * Returns true if the unit can be purged when it's idle, e.g. no request is in flight.
+     */
+    protected boolean isPurgeable(S unit) {
+        return true;
+    }
+
+    // 清理空闲太久的限流单元, 同一个周期内最多扫描一次;
+    // 与放行并发时, 刚被清理的单元上可能还会放行一个请求, 之后的请求计入新的单元
+    private void purgeIdleUnits(long now) {
+        if (now < nextPurgeMillis) {
+            return;
+        }
+        nextPurgeMillis = now + unitIdleMillis;
+
+        for (Map.Entry<String, S> entry : units.entrySet()) {
+            S unit = entry.getValue();
+            if (unit.pinned || now - unit.lastUsedMillis < unitIdleMillis || !isPurgeable(unit)) {
+                continue;
+            }
+            units.remove(entry.getKey(), unit);
+        }
+    }
+
+    /**
+     * Applies {@code tuning} to all the units that have not been tuned individually.
+     */
+    protected void tuneDefaults(Tuning<S> tuning) {
+        for (Map.Entry<String, S> entry : units.entrySet()) {
+            S unit = entry.getValue();
+            if (!unit.pinned) {
+                tuning.tune(unit);
+            }
+        }
+    }
+
+    /**
+     * Applies {@code tuning} to the unit of the key, the unit no longer follows the default limit.
+     */
+    protected void tune(String k, Tuning<S> tuning) {
+        S unit = unit(k);
+        unit.pinned = true;
+        tuning.tune(unit);
+    }
+
+    protected abstract S newUnit();
+
+    protected abstract ControlResult flowControl(String k, S unit);
+
+    protected static ControlResult reject(String k, String reason) {
+        return new ControlResult(false, reason + ": " + k);
+    }
+
+    public abstract static class Unit {
+
+        volatile boolean pinned;
+        volatile long lastUsedMillis = SystemClock.millisClock().now();
+    }
+
+    protected interface Tuning<S> {
+
+        void tune(S unit);
+    }
+}
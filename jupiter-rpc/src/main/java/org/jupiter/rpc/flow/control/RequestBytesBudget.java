@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.flow.control;
+
+import org.jupiter.common.concurrent.ConcurrentSet;
+import org.jupiter.common.concurrent.NamedThreadFactory;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.jupiter.common.util.JConstants.*;
+import static org.jupiter.common.util.Preconditions.checkArgument;
+
+/**
+ * 已解码但未处理完的请求字节数的预算, 分为全局(进程)预算和每个连接的预算.
+ *
+ * 请求体被解码时计入所在连接的 {@link Account}, 请求处理完成(响应写出, 被拒绝或处理失败)时归还:
+ * 1. 连接超出自己的预算, 或全局超出预算时占用多于平均份额的连接, 暂停读取(由 {@link Throttle} 实现);
+ * 2. 全局超出预算时新解码的请求被拒绝;
+ * 3. 暂停的连接在自己占用的字节数降到预算的一半, 且全局降到预算的3/4以下时恢复读取.
+ *
+ * 内存压力(见 {@link HeapPressureMonitor})会按比例收紧全局和每个连接的预算, 需要显式开启
+ * (jupiter.processor.bytes.budget.heap.pressure), 由acceptor启动并在acceptor关闭时停止.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public class RequestBytesBudget {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(RequestBytesBudget.class);
+
+    private static volatile RequestBytesBudget global;
+
+    private final long limit;
+    private final long perConnectionLimit;
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicInteger numOfAccounts = new AtomicInteger();
+    private final ConcurrentSet<Account> pausedAccounts = new ConcurrentSet<>();
+
+    private volatile double pressureFactor = 1.0D;
+
+    // 共享同一个预算的acceptor共用一个监控线程, 最后一个acceptor关闭时停止
+    private int monitorRefCount;
+    private ScheduledExecutorService monitorExecutor;
+
+    /**
+     * Returns the process-wide budget shared by all acceptors.
+     */
+    public static RequestBytesBudget global() {
+        RequestBytesBudget budget = global;
+        if (budget == null) {
+            synchronized (RequestBytesBudget.class) {
+                budget = global;
+                if (budget == null) {
+                    global = budget = new RequestBytesBudget(PROCESSOR_BYTES_BUDGET, PROCESSOR_BYTES_BUDGET_PER_CONNECTION);
+                }
+            }
+        }
+        return budget;
+    }
+
+    public RequestBytesBudget(long limit, long perConnectionLimit) {
+        checkArgument(limit > 0, "limit must be positive");
+        checkArgument(perConnectionLimit > 0, "perConnectionLimit must be positive");
+        this.limit = limit;
+        this.perConnectionLimit = perConnectionLimit;
+    }
+
+    /**
+     * Starts the {@link HeapPressureMonitor} of this budget, each call must be paired
+     * with a {@link #stopHeapPressureMonitor()}.
+     */
+    public synchronized void startHeapPressureMonitor() {
+        if (monitorRefCount++ == 0) {
+            monitorExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new NamedThreadFactory("heap.pressure.monitor", true));
+            monitorExecutor.scheduleWithFixedDelay(new HeapPressureMonitor(this), 1, 1, SECONDS);
+        }
+    }
+
+    /**
+     * Stops the {@link HeapPressureMonitor} when the last user is gone, and restores the
+     * configured limits.
+     */
+    public synchronized void stopHeapPressureMonitor() {
+        if (monitorRefCount == 0) {
+            return;
+        }
+        if (--monitorRefCount == 0) {
+            monitorExecutor.shutdownNow();
+            monitorExecutor = null;
+            setPressureFactor(1.0D);
+        }
+    }
+
+    public Account newAccount(Throttle throttle) {
+        numOfAccounts.incrementAndGet();
+        return new Account(throttle);
+    }
+
+    public long used() {
+        return used.get();
+    }
+
+    public long effectiveLimit() {
+        return (long) (limit * pressureFactor);
+    }
+
+    public long effectivePerConnectionLimit() {
+        return (long) (perConnectionLimit * pressureFactor);
+    }
+
+    public double getPressureFactor() {
+        return pressureFactor;
+    }
+
+    /**
+     * Tightens the budget to {@code factor} (0, 1] of the configured limits.
+     */
+    public void setPressureFactor(double factor) {
+        checkArgument(factor > 0 && factor <= 1, "factor out of range: " + factor);
+        double old = pressureFactor;
+        if (old != factor) {
+            pressureFactor = factor;
+
+            logger.warn("Request bytes budget factor changed from {} to {}, limit: {}.", old, factor, effectiveLimit());
+
+            if (factor > old) {
+                resumeAccounts();
+            }
+        }
+    }
+
+    private void resumeAccounts() {
+        if (pausedAccounts.isEmpty() || used.get() >= (effectiveLimit() >> 2) * 3) {
+            return;
+        }
+        for (Account account : pausedAccounts) {
+            account.tryResume();
+        }
+    }
+
+    /**
+     * Pauses and resumes reading on a connection.
+     */
+    public interface Throttle {
+
+        void pause();
+
+        void resume();
+    }
+
+    /**
+     * The budget account of a connection.
+     */
+    public final class Account {
+
+        private final Throttle throttle;
+        private final AtomicLong used = new AtomicLong();
+        private final AtomicBoolean paused = new AtomicBoolean(false);
+
+        Account(Throttle throttle) {
+            this.throttle = throttle;
+        }
+
+        /**
+         * Charges the bytes of a decoded request to this account, returns false if the
+         * global budget is exceeded and the request should be rejected, the bytes are
+         * charged anyway and must be released.
+         */
+        public boolean acquire(int bytes) {
+            long mine = used.addAndGet(bytes);
+            long total = RequestBytesBudget.this.used.addAndGet(bytes);
+
+            boolean overGlobal = total > effectiveLimit();
+            // 超出全局预算时, 占用多于平均份额的连接是最"吵"的连接
+            if (mine > effectivePerConnectionLimit() || (overGlobal && mine * numOfAccounts.get() >= total)) {
+                pause();
+            }
+            return !overGlobal;
+        }
+
+        public void release(int bytes) {
+            used.addAndGet(-bytes);
+            RequestBytesBudget.this.used.addAndGet(-bytes);
+
+            resumeAccounts();
+        }
+
+        public long used() {
+            return used.get();
+        }
+
+        public boolean isPaused() {
+            return paused.get();
+        }
+
+        /**
+         * Closes this account when the connection is closed.
+         */
+        public void close() {
+            numOfAccounts.decrementAndGet();
+            if (paused.compareAndSet(true, false)) {
+                pausedAccounts.remove(this);
+            }
+        }
+
+        private void pause() {
+            if (paused.compareAndSet(false, true)) {
+                pausedAccounts.add(this);
+                throttle.pause();
+
+                logger.warn("Paused reading on {}, request bytes: {}, global: {}/{}.",
+                        throttle, used.get(), RequestBytesBudget.this.used.get(), effectiveLimit());
+            }
+        }
+
+        void tryResume() {
+            if (used.get() <= (effectivePerConnectionLimit() >> 1) && paused.compareAndSet(true, false)) {
+                pausedAccounts.remove(this);
+                throttle.resume();
+
+                logger.info("Resumed reading on {}, request bytes: {}, global: {}/{}.",
+                        throttle, used.get(), RequestBytesBudget.this.used.get(), effectiveLimit());
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.flow.control;
+
+import org.jupiter.common.util.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.jupiter.common.util.Preconditions.checkArgument;
+
+/**
+ * 滑动窗口QPS限流, 最近1秒内(10个100毫秒的桶)放行的请求数不超过 [maxQps].
+ *
+ * 每个桶是一个long, 高位是桶的编号, 低 {@link #COUNT_BITS} 位是桶内的计数, 过期桶的重置和计数在一次CAS中完成.
+ * 其它桶的计数在CAS之前读取, 所以跨桶的并发请求可能会有少量的超发, 同一个桶内是精确的.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public class SlidingWindowFlowController extends KeyedFlowController<SlidingWindowFlowController.Window> {
+
+    private static final int NUM_OF_BUCKETS = 10;
+    private static final long BUCKET_MILLIS = 100;
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private volatile int defaultMaxQps;
+
+    public SlidingWindowFlowController(FlowControlKey key, int maxQps) {
+        super(key);
+        checkMaxQps(maxQps);
+        defaultMaxQps = maxQps;
+    }
+
+    /**
+     * Re-tunes the default max qps of all the keys that have not been tuned individually.
+     */
+    public void setDefaultMaxQps(final int maxQps) {
+        checkMaxQps(maxQps);
+        defaultMaxQps = maxQps;
+        tuneDefaults(new Tuning<Window>() {
+
+            @Override
+            public void tune(Window unit) {
+                unit.maxQps = maxQps;
+            }
+        });
+    }
+
+    /**
+     * Re-tunes the max qps of the key.
+     */
+    public void setMaxQps(String key, final int maxQps) {
+        checkMaxQps(maxQps);
+        tune(key, new Tuning<Window>() {
+
+            @Override
+            public void tune(Window unit) {
+                unit.maxQps = maxQps;
+            }
+        });
+    }
+
+    @Override
+    protected Window newUnit() {
+        return new Window(defaultMaxQps);
+    }
+
+    @Override
+    protected ControlResult flowControl(String k, Window unit) {
+        return unit.tryAcquire(SystemClock.millisClock().now()) ? ControlResult.ALLOWED : reject(k, "qps exceeded");
+    }
+
+    private static void checkMaxQps(int maxQps) {
+        checkArgument(maxQps > 0 && maxQps <= COUNT_MASK, "maxQps out of range: " + maxQps);
+    }
+
+    public static final class Window extends KeyedFlowController.Unit {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(NUM_OF_BUCKETS);
+        volatile int maxQps;
+
+        Window(int maxQps) {
+            this.maxQps = maxQps;
+        }
+
+        boolean tryAcquire(long nowMillis) {
+            final long bucketId = nowMillis / BUCKET_MILLIS;
+            final int index = (int) (bucketId % NUM_OF_BUCKETS);
+            final int limit = maxQps;
+
+            long others = 0;
+            for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+                if (i == index) {
+                    continue;
+                }
+                long b = buckets.get(i);
+                if (bucketId - (b >>> COUNT_BITS) < NUM_OF_BUCKETS) {
+                    others += b & COUNT_MASK;
+                }
+            }
+
+            for (;;) {
+                long b = buckets.get(index);
+                long count = (b >>> COUNT_BITS) == bucketId ? b & COUNT_MASK : 0;
+                if (others + count >= limit) {
+                    return false;
+                }
+                if (buckets.compareAndSet(index, b, (bucketId << COUNT_BITS) | (count + 1))) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.flow.control;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.jupiter.common.util.Preconditions.checkArgument;
+
+/**
+ * 令牌桶限流, 每秒产生 [permitsPerSecond] 个令牌, 桶中最多积攒 [burst] 个.
+ *
+ * 以GCRA(generic cell rate algorithm)实现: 每个限流单元只维护一个"理论到达时间", 放行一个请求就把它推后
+ * 一个令牌的间隔, 理论到达时间超出当前时间一个桶的容量时拒绝, 判断和更新是对一个 {@link AtomicLong} 的CAS.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public class TokenBucketFlowController extends KeyedFlowController<TokenBucketFlowController.Bucket> {
+
+    private volatile double defaultPermitsPerSecond;
+    private volatile int defaultBurst;
+
+    public TokenBucketFlowController(FlowControlKey key, double permitsPerSecond, int burst) {
+        super(key);
+        checkRate(permitsPerSecond, burst);
+        defaultPermitsPerSecond = permitsPerSecond;
+        defaultBurst = burst;
+    }
+
+    /**
+     * Re-tunes the default rate of all the keys that have not been tuned individually.
+     */
+    public void setDefaultRate(final double permitsPerSecond, final int burst) {
+        checkRate(permitsPerSecond, burst);
+        defaultPermitsPerSecond = permitsPerSecond;
+        defaultBurst = burst;
+        tuneDefaults(new Tuning<Bucket>() {
+
+            @Override
+            public void tune(Bucket unit) {
+                unit.setRate(permitsPerSecond, burst);
+            }
+        });
+    }
+
+    /**
+     * Re-tunes the rate of the key.
+     */
+    public void setRate(String key, final double permitsPerSecond, final int burst) {
+        checkRate(permitsPerSecond, burst);
+        tune(key, new Tuning<Bucket>() {
+
+            @Override
+            public void tune(Bucket unit) {
+                unit.setRate(permitsPerSecond, burst);
+            }
+        });
+    }
+
+    @Override
+    protected Bucket newUnit() {
+        return new Bucket(defaultPermitsPerSecond, defaultBurst);
+    }
+
+    @Override
+    protected ControlResult flowControl(String k, Bucket unit) {
+        return unit.tryAcquire(System.nanoTime()) ? ControlResult.ALLOWED : reject(k, "token bucket exhausted");
+    }
+
+    private static void checkRate(double permitsPerSecond, int burst) {
+        checkArgument(permitsPerSecond > 0, "permitsPerSecond must be positive");
+        checkArgument(burst > 0, "burst must be positive");
+    }
+
+    public static final class Bucket extends KeyedFlowController.Unit {
+
+        private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+        private volatile long intervalNanos;
+        private volatile long toleranceNanos;
+
+        Bucket(double permitsPerSecond, int burst) {
+            setRate(permitsPerSecond, burst);
+        }
+
+        void setRate(double permitsPerSecond, int burst) {
+            long oldInterval = intervalNanos;
+            long interval = Math.max(1L, (long) (SECONDS.toNanos(1) / permitsPerSecond));
+            intervalNanos = interval;
+            toleranceNanos = interval * burst;
+
+            if (oldInterval > 0 && oldInterval != interval) {
+                // 已经透支的令牌数按新的速率换算, 否则调高速率后仍要按旧的速率偿还
+                for (;;) {
+                    long tat = theoreticalArrival.get();
+                    long now = System.nanoTime();
+                    long debt = tat - now;
+                    if (debt <= 0) {
+                        break;
+                    }
+                    long newTat = now + (long) ((double) debt / oldInterval * interval);
+                    if (theoreticalArrival.compareAndSet(tat, newTat)) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        boolean tryAcquire(long now) {
+            final long interval = intervalNanos;
+            final long tolerance = toleranceNanos;
+            for (;;) {
+                long tat = theoreticalArrival.get();
+                // 桶是满的(已经空闲了足够长的时间)时从当前时间开始计算
+                long newTat = (tat - now < 0 ? now : tat) + interval;
+                if (newTat - now > tolerance) {
+                    return false;
+                }
+                if (theoreticalArrival.compareAndSet(tat, newTat)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.load.balance;
+
+import static org.jupiter.common.util.Preconditions.checkArgument;
+
+/**
+ * 以指定位置的参数作为hash key, 参数个数不足时返回null.
+ *
+ * jupiter
+ * org.jupiter.rpc.load.balance
+ *
+ * @author jiachun.fjc
+ */
+public class ArgumentHashKeyExtractor implements HashKeyExtractor {
+
+    private final int index;
+
+    public ArgumentHashKeyExtractor(int index) {
+        checkArgument(index >= 0, "index must be non-negative");
+        this.index = index;
+    }
+
+    @Override
+    public Object extract(String methodName, Object[] args) {
+        return args != null && args.length > index ? args[index] : null;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.load.balance;
+
+import org.jupiter.common.concurrent.NamedThreadFactory;
+import org.jupiter.common.concurrent.atomic.AtomicUpdater;
+import org.jupiter.common.util.MD5Util;
+import org.jupiter.common.util.Maps;
+import org.jupiter.rpc.Directory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import static org.jupiter.common.util.Preconditions.checkArgument;
+
+/**
+ * Consistent hash load balancer, 基于虚拟节点的哈希环.
+ *
+ * 虚拟节点的位置只与元素自身的标识({@link #nodeKey(Object)})有关, 元素增减时只有相邻区间的key会被迁移;
+ * 哈希环根据元素数组的快照构建, 快照变化后由后台线程重建, 重建完成前继续使用旧的哈希环.
+ *
+ * 一个实例只应服务于同一组元素(同一个服务目录).
+ *
+ * jupiter
+ * org.jupiter.rpc.load.balance
+ *
+ * @author jiachun.fjc
+ */
+public abstract class ConsistentHashLoadBalancer<T> implements LoadBalancer<T> {
+
+    private static final AtomicIntegerFieldUpdater<ConsistentHashLoadBalancer> rebuildingUpdater =
+            AtomicUpdater.newAtomicIntegerFieldUpdater(ConsistentHashLoadBalancer.class, "rebuilding");
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final int virtualNodes;
+
+    private volatile Ring ring;
+    @SuppressWarnings("unused")
+    private volatile int rebuilding = 0; // 0: false, 1: true
+
+    public ConsistentHashLoadBalancer() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashLoadBalancer(int virtualNodes) {
+        checkArgument(virtualNodes > 0, "virtualNodes must be positive");
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * 没有hash key时随机选择.
+     */
+    @Override
+    public T select(Object[] elements) {
+        return select(elements, null);
+    }
+
+    @Override
+    public T select(Object[] elements, Directory directory, Object hashKey) {
+        return select(elements, hashKey);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T select(Object[] elements, Object key) {
+        int length = elements.length;
+        if (length == 0) {
+            throw new IllegalArgumentException("empty elements for select");
+        }
+        if (length == 1) {
+            return (T) elements[0];
+        }
+        if (key == null) {
+            return (T) elements[ThreadLocalRandom.current().nextInt(length)];
+        }
+
+        Ring _ring = ring;
+        if (_ring == null) {
+            // 第一次调用, 只能同步构建
+            ring = _ring = new Ring(elements);
+        } else if (_ring.elements != elements) {
+            rebuild(elements);
+        }
+        return _ring.select(hash(key));
+    }
+
+    /**
+     * The identity of the element on the hash ring, it should be stable across processes.
+     */
+    protected abstract String nodeKey(T t);
+
+    protected boolean isAvailable(T t) {
+        return true;
+    }
+
+    private void rebuild(final Object[] elements) {
+        if (rebuildingUpdater.compareAndSet(this, 0, 1)) {
+            RingBuilderHolder.executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        ring = new Ring(elements);
+                    } finally {
+                        rebuildingUpdater.set(ConsistentHashLoadBalancer.this, 0);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * key的hashCode需要在不同进程间保持一致(如String, Long), 才能将同一个key路由到同一个元素.
+     */
+    private static long hash(Object key) {
+        // murmur3 fmix64
+        long h = key.hashCode();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private final class Ring {
+
+        final Object[] elements; // 构建时的快照
+        final long[] hashes;
+        final Object[] nodes;
+
+        @SuppressWarnings("unchecked")
+        Ring(Object[] elements) {
+            this.elements = elements;
+
+            TreeMap<Long, Object> sortedNodes = Maps.newTreeMap();
+            for (Object element : elements) {
+                String nodeKey = nodeKey((T) element);
+                // 每个md5摘要产生两个虚拟节点
+                for (int i = 0; i < (virtualNodes + 1) / 2; i++) {
+                    String md5 = MD5Util.getMD5(nodeKey + '#' + i);
+                    sortedNodes.put(parseLong(md5, 0), element);
+                    sortedNodes.put(parseLong(md5, 16), element);
+                }
+            }
+
+            hashes = new long[sortedNodes.size()];
+            nodes = new Object[sortedNodes.size()];
+            int i = 0;
+            for (Map.Entry<Long, Object> entry : sortedNodes.entrySet()) {
+                hashes[i] = entry.getKey();
+                nodes[i] = entry.getValue();
+                i++;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        T select(long hash) {
+            int length = hashes.length;
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            // 顺时针方向找到第一个可用的元素
+            for (int i = 0; i < length; i++) {
+                T t = (T) nodes[(index + i) % length];
+                if (isAvailable(t)) {
+                    return t;
+                }
+            }
+            return (T) nodes[index % length];
+        }
+    }
+
+    private static long parseLong(String hex, int offset) {
+        long high = Long.parseLong(hex.substring(offset, offset + 8), 16);
+        long low = Long.parseLong(hex.substring(offset + 8, offset + 16), 16);
+        return (high << 32) | low;
+    }
+
+    private static class RingBuilderHolder {
+        static final ExecutorService executor =
+                Executors.newSingleThreadExecutor(new NamedThreadFactory("consistent.hash.ring.builder", true));
+    }
+}
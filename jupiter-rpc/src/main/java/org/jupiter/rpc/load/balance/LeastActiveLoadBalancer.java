@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.load.balance;
+
+import org.jupiter.rpc.Directory;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Least active load balancer, 选择进行中请求数最少的元素, 请求数相同时按权重随机.
+ *
+ * jupiter
+ * org.jupiter.rpc.load.balance
+ *
+ * @author jiachun.fjc
+ */
+public abstract class LeastActiveLoadBalancer<T> implements LoadBalancer<T> {
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T select(Object[] elements) {
+        int length = elements.length;
+        if (length == 0) {
+            throw new IllegalArgumentException("empty elements for select");
+        }
+        if (length == 1) {
+            return (T) elements[0];
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        int leastActive = Integer.MAX_VALUE;
+        int leastCount = 0;
+        int totalWeight = 0;
+        T selected = null;
+        T selectedByWeight = null;
+        // 单次遍历, 对请求数最少的元素做蓄水池抽样, 不需要额外的数组
+        for (Object element : elements) {
+            T t = (T) element;
+            int active = getActive(t);
+            if (active > leastActive) {
+                continue;
+            }
+            int weight = getWeight(t);
+            if (active < leastActive) {
+                leastActive = active;
+                leastCount = 1;
+                totalWeight = weight;
+                selected = t;
+                selectedByWeight = weight > 0 ? t : null;
+            } else {
+                if (random.nextInt(++leastCount) == 0) {
+                    selected = t;
+                }
+                if (weight > 0 && random.nextInt(totalWeight += weight) < weight) {
+                    selectedByWeight = t;
+                }
+            }
+        }
+
+        // 总权重大于0则按权重随机, 否则等概率随机
+        return selectedByWeight != null ? selectedByWeight : selected;
+    }
+
+    @Override
+    public T select(Object[] elements, Directory directory, Object hashKey) {
+        return select(elements);
+    }
+
+    protected abstract int getWeight(T t);
+
+    protected abstract int getActive(T t);
+}
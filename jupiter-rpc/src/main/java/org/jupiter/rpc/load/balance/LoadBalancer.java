@@ -16,6 +16,8 @@
 
 package org.jupiter.rpc.load.balance;
 
+import org.jupiter.rpc.Directory;
+
 /**
  * Load balancer.
  *
@@ -30,4 +32,13 @@ public interface LoadBalancer<T> {
      * Select one in elements array.
      */
     T select(Object[] elements);
+
+    /**
+     * Select one in elements array of the {@code directory}, a key-aware load balancer
+     * (e.g. consistent hash) routes the same {@code hashKey} to the same element,
+     * others just ignore it.
+     *
+     * @param hashKey the routing key of the request, may be null
+     */
+    T select(Object[] elements, Directory directory, Object hashKey);
 }
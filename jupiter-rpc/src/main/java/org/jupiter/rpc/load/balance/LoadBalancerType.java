@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.load.balance;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.load.balance
+ *
+ * @author jiachun.fjc
+ */
+public enum LoadBalancerType {
+    RANDOM,         // 加权随机
+    LEAST_ACTIVE,   // 最少进行中请求
+    P2C_EWMA,       // 两次随机选择, 比较EWMA响应时间与进行中请求数
+    CONSISTENT_HASH // 一致性哈希, 见 HashKeyExtractor
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.load.balance;
+
+import org.jupiter.rpc.Directory;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Power of two choices load balancer, 随机选出两个元素, 取 EWMA响应时间 * (进行中请求数 + 1) / 权重 较小的一个.
+ *
+ * 相比于遍历全部元素, 两个随机选择可以避免大量客户端同时涌向同一个"最优"的元素.
+ *
+ * jupiter
+ * org.jupiter.rpc.load.balance
+ *
+ * @author jiachun.fjc
+ */
+public abstract class P2cEwmaLoadBalancer<T> implements LoadBalancer<T> {
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T select(Object[] elements) {
+        int length = elements.length;
+        if (length == 0) {
+            throw new IllegalArgumentException("empty elements for select");
+        }
+        if (length == 1) {
+            return (T) elements[0];
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(length);
+        int j = random.nextInt(length - 1);
+        if (j >= i) {
+            j++;
+        }
+
+        T first = (T) elements[i];
+        T second = (T) elements[j];
+        return cost(first) <= cost(second) ? first : second;
+    }
+
+    @Override
+    public T select(Object[] elements, Directory directory, Object hashKey) {
+        return select(elements);
+    }
+
+    private double cost(T t) {
+        int weight = getWeight(t);
+        if (weight <= 0) {
+            return Double.MAX_VALUE;
+        }
+        // 没有响应时间样本(ewma为0)的元素代价最低, 会优先获得请求用来探测
+        return (getLatencyEwma(t) + 1.0) * (getActive(t) + 1.0) / weight;
+    }
+
+    protected abstract int getWeight(T t);
+
+    protected abstract int getActive(T t);
+
+    /**
+     * Exponentially weighted moving average of the latency.
+     */
+    protected abstract long getLatencyEwma(T t);
+}
@@ -14,13 +14,24 @@
  * limitations under the License.
  */
 
+
 package org.jupiter.rpc.load.balance;
 
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.SystemClock;
+import org.jupiter.rpc.Directory;
+
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ThreadLocalRandom;
 
+import static org.jupiter.common.util.JConstants.LOAD_BALANCER_WEIGHT_REFRESH_MILLIS;
+
 /**
  * Random load balancer with weight.
  *
+ * 每个服务目录缓存一张累积权重表, 与构建时目录的元素快照绑定, 只在快照变化(成员变化)
+ * 或者刷新周期到达(权重变化, 预热)时重建, 选择时只需要在累积权重数组上二分查找, 没有内存分配.
+ *
  * jupiter
  * org.jupiter.rpc.load.balance
  *
@@ -28,6 +39,11 @@ import java.util.concurrent.ThreadLocalRandom;
  */
 public abstract class RandomLoadBalancer<T> implements LoadBalancer<T> {
 
+    // key为服务目录, 不同目录的权重表互不覆盖
+    private final ConcurrentMap<String, WeightTable> tables = Maps.newConcurrentHashMap();
+    // 没有指定服务目录时使用
+    private volatile WeightTable table;
+
     @SuppressWarnings("unchecked")
     @Override
     public T select(Object[] elements) {
@@ -39,35 +55,95 @@ public abstract class RandomLoadBalancer<T> implements LoadBalancer<T> {
             return (T) elements[0];
         }
 
-        int totalWeight = 0;
-        int[] weightSnapshots = new int[length];
-        for (int i = 0; i < length; i++) {
-            totalWeight += (weightSnapshots[i] = getWeight((T) elements[i]));
+        long now = SystemClock.millisClock().now();
+        WeightTable _table = table;
+        if (isStale(_table, elements, now)) {
+            table = _table = new WeightTable(elements, now + LOAD_BALANCER_WEIGHT_REFRESH_MILLIS);
         }
+        return _table.select();
+    }
 
-        boolean allSameWeight = true;
-        for (int i = 1; i < length; i++) {
-            if (weightSnapshots[0] != weightSnapshots[i]) {
-                allSameWeight = false;
-                break;
-            }
+    @SuppressWarnings("unchecked")
+    @Override
+    public T select(Object[] elements, Directory directory, Object hashKey) {
+        if (directory == null) {
+            return select(elements);
         }
 
-        ThreadLocalRandom random = ThreadLocalRandom.current();
-        // 如果权重不相同且总权重大于0, 则按总权重数随机
-        if (!allSameWeight && totalWeight > 0) {
-            int offset = random.nextInt(totalWeight);
-            // 确定随机值落在哪个片
+        int length = elements.length;
+        if (length == 0) {
+            throw new IllegalArgumentException("empty elements for select");
+        }
+        if (length == 1) {
+            return (T) elements[0];
+        }
+
+        String _directory = directory.directory();
+        long now = SystemClock.millisClock().now();
+        WeightTable _table = tables.get(_directory);
+        if (isStale(_table, elements, now)) {
+            _table = new WeightTable(elements, now + LOAD_BALANCER_WEIGHT_REFRESH_MILLIS);
+            tables.put(_directory, _table);
+        }
+        return _table.select();
+    }
+
+    private boolean isStale(WeightTable table, Object[] elements, long now) {
+        return table == null || table.elements != elements || now >= table.expireAt;
+    }
+
+    protected abstract int getWeight(T t);
+
+    private final class WeightTable {
+
+        final Object[] elements;
+        final int[] cumulativeWeights; // 为null时等概率随机
+        final long expireAt;
+
+        @SuppressWarnings("unchecked")
+        WeightTable(Object[] elements, long expireAt) {
+            this.elements = elements;
+            this.expireAt = expireAt;
+
+            int length = elements.length;
+            int[] cumulative = new int[length];
+            int totalWeight = 0;
+            boolean allSameWeight = true;
+            int firstWeight = getWeight((T) elements[0]);
             for (int i = 0; i < length; i++) {
-                offset -= weightSnapshots[i];
-                if (offset < 0) {
-                    return (T) elements[i];
+                int weight = i == 0 ? firstWeight : getWeight((T) elements[i]);
+                if (weight != firstWeight) {
+                    allSameWeight = false;
                 }
+                totalWeight += weight;
+                cumulative[i] = totalWeight;
             }
+
+            // 如果权重不相同且总权重大于0, 则按总权重数随机
+            cumulativeWeights = !allSameWeight && totalWeight > 0 ? cumulative : null;
         }
 
-        return (T) elements[random.nextInt(length)];
-    }
+        @SuppressWarnings("unchecked")
+        T select() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int[] _cumulativeWeights = cumulativeWeights;
+            if (_cumulativeWeights == null) {
+                return (T) elements[random.nextInt(elements.length)];
+            }
 
-    protected abstract int getWeight(T t);
+            int offset = random.nextInt(_cumulativeWeights[_cumulativeWeights.length - 1]);
+            // 确定随机值落在哪个片: 第一个累积权重大于offset的元素
+            int low = 0;
+            int high = _cumulativeWeights.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (_cumulativeWeights[mid] > offset) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return (T) elements[low];
+        }
+    }
 }
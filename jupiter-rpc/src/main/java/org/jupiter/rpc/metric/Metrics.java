@@ -37,21 +37,26 @@ public class Metrics {
     private static final MetricRegistry metricRegistry = new MetricRegistry();
     private static final ScheduledReporter scheduledReporter;
     static {
-        if (METRIC_CSV_REPORTER) {
-            scheduledReporter = CsvReporter.forRegistry(metricRegistry).build(new File(METRIC_CSV_REPORTER_DIRECTORY));
-        } else {
-            ScheduledReporter _reporter;
-            try {
-                _reporter = Slf4jReporter.forRegistry(metricRegistry)
-                                            .withLoggingLevel(Slf4jReporter.LoggingLevel.WARN)
-                                            .build();
-            } catch (NoClassDefFoundError e) {
-                // No Slf4j
-                _reporter = ConsoleReporter.forRegistry(metricRegistry).build();
+        ScheduledReporter _reporter;
+        try {
+            if (METRIC_CSV_REPORTER) {
+                _reporter = CsvReporter.forRegistry(metricRegistry).build(new File(METRIC_CSV_REPORTER_DIRECTORY));
+            } else {
+                try {
+                    _reporter = Slf4jReporter.forRegistry(metricRegistry)
+                                                .withLoggingLevel(Slf4jReporter.LoggingLevel.WARN)
+                                                .build();
+                } catch (NoClassDefFoundError e) {
+                    // No Slf4j
+                    _reporter = ConsoleReporter.forRegistry(metricRegistry).build();
+                }
             }
-            scheduledReporter = _reporter;
+            _reporter.start(METRIC_REPORT_PERIOD, MINUTES);
+        } catch (NoClassDefFoundError e) {
+            // ScheduledReporter本身依赖Slf4j, 没有Slf4j时只统计不输出报告
+            _reporter = null;
         }
-        scheduledReporter.start(METRIC_REPORT_PERIOD, MINUTES);
+        scheduledReporter = _reporter;
     }
 
     /**
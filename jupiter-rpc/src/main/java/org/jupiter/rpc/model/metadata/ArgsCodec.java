@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.model.metadata;
+
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 根据方法签名生成的参数编解码器.
+ *
+ * 方法参数全部为基本类型, 基本类型的包装类型或{@link String}时, 按照参数顺序直接写入字节数组 (see {@link ArgsOutput}),
+ * 不再经过序列化框架对 Object[] 中每个元素的多态编码(写入类型信息).
+ *
+ * 参数中有其他类型的方法不使用codec, 仍然由序列化框架编码 Object[].
+ *
+ * 每种签名的codec由javassist生成(see {@link ArgsCodecGenerator}), 按照参数顺序直接调用对应类型的读写方法;
+ * 生成失败时退回到按参数类型表逐个编解码的实现, 两者的编码完全相同. 生成的代理类和服务端的 {@link TypedInvoker}
+ * 使用同样的格式直接编解码有类型的参数, 不再经过装箱后的 Object[], 这里的 {@link #encode(Object[])} 和
+ * {@link #decode(byte[])} 用于仍然需要 Object[] 的调用(如按参数提取hash key, 按方法名调用).
+ *
+ * jupiter
+ * org.jupiter.rpc.model.metadata
+ *
+ * @author jiachun.fjc
+ */
+public abstract class ArgsCodec {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ArgsCodec.class);
+
+    // 参数类型签名 --> codec, codec是无状态的, 同一种签名共用一个
+    private static final ConcurrentMap<String, ArgsCodec> codecCache = Maps.newConcurrentHashMap();
+
+    private final int length;
+
+    protected ArgsCodec(int length) {
+        this.length = length;
+    }
+
+    /**
+     * 返回参数类型对应的codec, 有不支持的参数类型时返回null.
+     */
+    public static ArgsCodec of(Class<?>[] parameterTypes) {
+        if (!isSupported(parameterTypes)) {
+            return null;
+        }
+
+        String signature = ArgsCodecGenerator.signature(parameterTypes);
+        ArgsCodec codec = codecCache.get(signature);
+        if (codec == null) {
+            try {
+                codec = ArgsCodecGenerator.newArgsCodec(parameterTypes);
+            } catch (Throwable t) {
+                logger.warn("Generates args codec for {} failed, fall back to the table codec: {}.", signature, t);
+
+                codec = new TableArgsCodec(parameterTypes);
+            }
+            ArgsCodec old = codecCache.putIfAbsent(signature, codec);
+            if (old != null) {
+                codec = old;
+            }
+        }
+        return codec;
+    }
+
+    /**
+     * 方法的参数是否都能由codec编码.
+     */
+    public static boolean isSupported(Class<?>[] parameterTypes) {
+        if (parameterTypes.length == 0) {
+            return false;
+        }
+        for (Class<?> clazz : parameterTypes) {
+            if (Type.of(clazz) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * methodId --> codec, 只包含能够使用codec的方法.
+     */
+    public static Map<Integer, ArgsCodec> methodsArgsCodec(Class<?> interfaceClass) {
+        Map<Integer, ArgsCodec> codecs = Maps.newHashMap();
+        for (Method method : interfaceClass.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            ArgsCodec codec = of(parameterTypes);
+            if (codec != null) {
+                codecs.put(Identifiers.methodId(method.getName(), parameterTypes), codec);
+            }
+        }
+        return codecs;
+    }
+
+    public byte[] encode(Object[] args) {
+        if (args == null || args.length != length) {
+            throw new IllegalArgumentException("args length mismatch, expected: " + length);
+        }
+
+        ArgsOutput out = new ArgsOutput();
+        encode(out, args);
+        return out.toByteArray();
+    }
+
+    public Object[] decode(byte[] bytes) {
+        ArgsInput in = new ArgsInput(bytes);
+        Object[] args = decode(in);
+        in.checkEnd();
+        return args;
+    }
+
+    /**
+     * 按照参数顺序写入 {@code args}, 参数个数已经检查过.
+     */
+    protected abstract void encode(ArgsOutput out, Object[] args);
+
+    /**
+     * 按照参数顺序读出全部参数.
+     */
+    protected abstract Object[] decode(ArgsInput in);
+
+    /**
+     * 按参数类型表逐个编解码, 生成codec失败时使用.
+     */
+    static final class TableArgsCodec extends ArgsCodec {
+
+        private final Type[] types;
+        private final boolean[] nullable;
+
+        TableArgsCodec(Class<?>[] parameterTypes) {
+            super(parameterTypes.length);
+            int length = parameterTypes.length;
+            types = new Type[length];
+            nullable = new boolean[length];
+            for (int i = 0; i < length; i++) {
+                types[i] = Type.of(parameterTypes[i]);
+                nullable[i] = !parameterTypes[i].isPrimitive();
+            }
+        }
+
+        @Override
+        protected void encode(ArgsOutput out, Object[] args) {
+            final Type[] _types = types; // stack copy
+
+            for (int i = 0; i < _types.length; i++) {
+                Object arg = args[i];
+                if (nullable[i]) {
+                    if (arg == null) {
+                        out.writeNull();
+                        continue;
+                    }
+                    out.writeNotNull();
+                }
+                _types[i].write(out, arg);
+            }
+        }
+
+        @Override
+        protected Object[] decode(ArgsInput in) {
+            final Type[] _types = types; // stack copy
+
+            Object[] args = new Object[_types.length];
+            for (int i = 0; i < _types.length; i++) {
+                if (nullable[i] && !in.readNotNull()) {
+                    continue;
+                }
+                args[i] = _types[i].read(in);
+            }
+            return args;
+        }
+    }
+
+    enum Type {
+        BOOLEAN(boolean.class, Boolean.class, "Boolean") {
+            @Override
+            void write(ArgsOutput out, Object value) {
+                out.writeBoolean((Boolean) value);
+            }
+
+            @Override
+            Object read(ArgsInput in) {
+                return in.readBoolean();
+            }
+        },
+        BYTE(byte.class, Byte.class, "Byte") {
+            @Override
+            void write(ArgsOutput out, Object value) {
+                out.writeByte((Byte) value);
+            }
+
+            @Override
+            Object read(ArgsInput in) {
+                return in.readByte();
+            }
+        },
+        SHORT(short.class, Short.class, "Short") {
+            @Override
+            void write(ArgsOutput out, Object value) {
+                out.writeShort((Short) value);
+            }
+
+            @Override
+            Object read(ArgsInput in) {
+                return in.readShort();
+            }
+        },
+        CHAR(char.class, Character.class, "Char") {
+            @Override
+            void write(ArgsOutput out, Object value) {
+                out.writeChar((Character) value);
+            }
+
+            @Override
+            Object read(ArgsInput in) {
+                return in.readChar();
+            }
+        },
+        INT(int.class, Integer.class, "Int") {
+            @Override
+            void write(ArgsOutput out, Object value) {
+                out.writeInt((Integer) value);
+            }
+
+            @Override
+            Object read(ArgsInput in) {
+                return in.readInt();
+            }
+        },
+        LONG(long.class, Long.class, "Long") {
+            @Override
+            void write(ArgsOutput out, Object value) {
+                out.writeLong((Long) value);
+            }
+
+            @Override
+            Object read(ArgsInput in) {
+                return in.readLong();
+            }
+        },
+        FLOAT(float.class, Float.class, "Float") {
+            @Override
+            void write(ArgsOutput out, Object value) {
+                out.writeFloat((Float) value);
+            }
+
+            @Override
+            Object read(ArgsInput in) {
+                return in.readFloat();
+            }
+        },
+        DOUBLE(double.class, Double.class, "Double") {
+            @Override
+            void write(ArgsOutput out, Object value) {
+                out.writeDouble((Double) value);
+            }
+
+            @Override
+            Object read(ArgsInput in) {
+                return in.readDouble();
+            }
+        },
+        STRING(null, String.class, "String") {
+            @Override
+            void write(ArgsOutput out, Object value) {
+                out.writeString((String) value);
+            }
+
+            @Override
+            Object read(ArgsInput in) {
+                return in.readString();
+            }
+        };
+
+        final Class<?> primitiveType;   // STRING为null
+        final Class<?> wrapperType;
+        final String suffix;            // ArgsOutput#writeXxx, ArgsInput#readXxx的后缀
+
+        Type(Class<?> primitiveType, Class<?> wrapperType, String suffix) {
+            this.primitiveType = primitiveType;
+            this.wrapperType = wrapperType;
+            this.suffix = suffix;
+        }
+
+        abstract void write(ArgsOutput out, Object value);
+
+        abstract Object read(ArgsInput in);
+
+        static Type of(Class<?> clazz) {
+            for (Type type : values()) {
+                if (clazz == type.wrapperType || clazz == type.primitiveType) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+}
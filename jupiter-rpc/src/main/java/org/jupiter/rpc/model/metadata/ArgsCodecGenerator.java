@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.model.metadata;
+
+import javassist.*;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于javassist生成按照 {@link ArgsCodec} 格式直接编解码有类型参数的代码.
+ *
+ * 每个参数按照声明的类型直接调用 {@link ArgsOutput} / {@link ArgsInput} 对应的读写方法, 不再按参数类型表派发:
+ * <ul>
+ *     <li>每种参数签名一个 {@link ArgsCodec} 的子类, 用于 Object[] 形式的参数</li>
+ *     <li>生成的代理类直接编码方法的参数 (see {@link #encodeSource(Class[], String[], String)})</li>
+ *     <li>服务端每个方法一个 {@link TypedInvoker}, 解码到局部变量后直接调用服务方法</li>
+ * </ul>
+ *
+ * jupiter
+ * org.jupiter.rpc.model.metadata
+ *
+ * @author jiachun.fjc
+ */
+public final class ArgsCodecGenerator {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ArgsCodecGenerator.class);
+
+    private static final String OUTPUT_CLASS_NAME = ArgsOutput.class.getName();
+    private static final String INPUT_CLASS_NAME = ArgsInput.class.getName();
+
+    private static final AtomicInteger classIdGenerator = new AtomicInteger(0);
+
+    /**
+     * Returns the statements that write the arguments {@code exprs} of {@code parameterTypes}
+     * to the {@link ArgsOutput} named {@code out}, the parameter types must be supported by
+     * {@link ArgsCodec#isSupported(Class[])}.
+     */
+    public static String encodeSource(Class<?>[] parameterTypes, String[] exprs, String out) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> clazz = parameterTypes[i];
+            ArgsCodec.Type type = type(clazz);
+            String expr = exprs[i];
+            String write = out + ".write" + type.suffix + "(";
+            if (clazz.isPrimitive()) {
+                buf.append(write).append(expr).append("); ");
+                continue;
+            }
+            String value = type == ArgsCodec.Type.STRING ? expr : expr + "." + type.primitiveType.getName() + "Value()";
+            buf.append("if (").append(expr).append(" == null) { ")
+                    .append(out).append(".writeNull(); } else { ")
+                    .append(out).append(".writeNotNull(); ")
+                    .append(write).append(value).append("); } ");
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns the statements that read the arguments of {@code parameterTypes} from the
+     * {@link ArgsInput} named {@code in} into the local variables {@code locals}.
+     */
+    public static String decodeSource(Class<?>[] parameterTypes, String[] locals, String in) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> clazz = parameterTypes[i];
+            ArgsCodec.Type type = type(clazz);
+            String local = locals[i];
+            String read = in + ".read" + type.suffix + "()";
+            if (clazz.isPrimitive()) {
+                buf.append(clazz.getName()).append(' ').append(local).append(" = ").append(read).append("; ");
+                continue;
+            }
+            String value = type == ArgsCodec.Type.STRING ? read : clazz.getName() + ".valueOf(" + read + ")";
+            buf.append(clazz.getName()).append(' ').append(local).append(" = null; ")
+                    .append("if (").append(in).append(".readNotNull()) { ")
+                    .append(local).append(" = ").append(value).append("; } ");
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Generates the {@link ArgsCodec} of {@code parameterTypes}.
+     */
+    static ArgsCodec newArgsCodec(Class<?>[] parameterTypes) throws Exception {
+        int length = parameterTypes.length;
+        String[] locals = names("a", length);
+
+        // 从 Object[] 中取出有类型的参数
+        StringBuilder encode = new StringBuilder("{ ");
+        for (int i = 0; i < length; i++) {
+            Class<?> clazz = parameterTypes[i];
+            String element = "$2[" + i + "]";
+            if (clazz.isPrimitive()) {
+                Class<?> wrapperType = type(clazz).wrapperType;
+                encode.append(clazz.getName()).append(' ').append(locals[i]).append(" = ((")
+                        .append(wrapperType.getName()).append(") ").append(element).append(").")
+                        .append(clazz.getName()).append("Value(); ");
+            } else {
+                encode.append(clazz.getName()).append(' ').append(locals[i]).append(" = (")
+                        .append(clazz.getName()).append(") ").append(element).append("; ");
+            }
+        }
+        encode.append(encodeSource(parameterTypes, locals, "$1")).append('}');
+
+        StringBuilder decode = new StringBuilder("{ ")
+                .append(decodeSource(parameterTypes, locals, "$1"))
+                .append("Object[] args = new Object[").append(length).append("]; ");
+        for (int i = 0; i < length; i++) {
+            decode.append("args[").append(i).append("] = ").append(box(parameterTypes[i], locals[i])).append("; ");
+        }
+        decode.append("return args; }");
+
+        Class<?> codecClass = ArgsCodec.class;
+        ClassPool pool = newClassPool(codecClass.getClassLoader());
+        // 与ArgsCodec同包, 以便调用包级可见的构造函数
+        String className = codecClass.getName() + "$Generated" + classIdGenerator.getAndIncrement();
+        CtClass ctClass = pool.makeClass(className, pool.get(codecClass.getName()));
+        ctClass.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
+
+        CtConstructor ctConstructor = new CtConstructor(new CtClass[0], ctClass);
+        ctConstructor.setModifiers(Modifier.PUBLIC);
+        ctConstructor.setBody("{ super(" + length + "); }");
+        ctClass.addConstructor(ctConstructor);
+
+        CtMethod encodeMethod = new CtMethod(
+                CtClass.voidType,
+                "encode",
+                new CtClass[] { pool.get(OUTPUT_CLASS_NAME), pool.get(Object[].class.getName()) },
+                ctClass);
+        encodeMethod.setModifiers(Modifier.PROTECTED);
+        encodeMethod.setBody(encode.toString());
+        ctClass.addMethod(encodeMethod);
+
+        CtMethod decodeMethod = new CtMethod(
+                pool.get(Object[].class.getName()),
+                "decode",
+                new CtClass[] { pool.get(INPUT_CLASS_NAME) },
+                ctClass);
+        decodeMethod.setModifiers(Modifier.PROTECTED);
+        decodeMethod.setBody(decode.toString());
+        ctClass.addMethod(decodeMethod);
+
+        Class<?> clazz = ctClass.toClass(codecClass.getClassLoader(), codecClass.getProtectionDomain());
+        ctClass.detach();
+
+        logger.debug("Generated args codec: {} for {}.", className, signature(parameterTypes));
+
+        return (ArgsCodec) clazz.newInstance();
+    }
+
+    /**
+     * Generates the {@link TypedInvoker} of {@code method} on {@code providerClass}, the parameter
+     * types of {@code method} must be supported by {@link ArgsCodec#isSupported(Class[])}.
+     */
+    public static TypedInvoker newTypedInvoker(Class<?> providerClass, Method method) throws Exception {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        String[] locals = names("a", parameterTypes.length);
+
+        StringBuilder call = new StringBuilder("((").append(providerClass.getName()).append(") $1).")
+                .append(method.getName()).append('(');
+        for (int i = 0; i < locals.length; i++) {
+            if (i > 0) {
+                call.append(", ");
+            }
+            call.append(locals[i]);
+        }
+        call.append(')');
+
+        Class<?> returnType = method.getReturnType();
+        StringBuilder body = new StringBuilder("{ ")
+                .append(INPUT_CLASS_NAME).append(" in = new ").append(INPUT_CLASS_NAME).append("($2); ")
+                .append(decodeSource(parameterTypes, locals, "in"))
+                .append("in.checkEnd(); ")
+                .append("try { ");
+        if (returnType == void.class) {
+            body.append(call).append("; return null; ");
+        } else {
+            body.append("return ").append(box(returnType, call.toString())).append("; ");
+        }
+        // 与反射调用一致, 服务方法抛出的异常包装为InvocationTargetException
+        body.append("} catch (Throwable t) { throw new java.lang.reflect.InvocationTargetException(t); } }");
+
+        ClassLoader loader = providerClass.getClassLoader();
+        if (loader == null) {
+            loader = Thread.currentThread().getContextClassLoader();
+        }
+        ClassPool pool = newClassPool(loader);
+        // 与服务提供者同包, 以便调用包级可见的服务提供者类
+        String className = providerClass.getName() + "$JupiterInvoker" + classIdGenerator.getAndIncrement();
+        CtClass ctClass = pool.makeClass(className);
+        ctClass.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
+        ctClass.addInterface(pool.get(TypedInvoker.class.getName()));
+
+        CtMethod ctMethod = new CtMethod(
+                pool.get(Object.class.getName()),
+                "invoke",
+                new CtClass[] { pool.get(Object.class.getName()), pool.get(byte[].class.getName()) },
+                ctClass);
+        ctMethod.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
+        ctMethod.setExceptionTypes(new CtClass[] { pool.get("java.lang.reflect.InvocationTargetException") });
+        ctMethod.setBody(body.toString());
+        ctClass.addMethod(ctMethod);
+
+        Class<?> clazz = ctClass.toClass(loader, providerClass.getProtectionDomain());
+        ctClass.detach();
+
+        logger.debug("Generated typed invoker: {} for {}.", className, method);
+
+        return (TypedInvoker) clazz.newInstance();
+    }
+
+    static String signature(Class<?>[] parameterTypes) {
+        StringBuilder buf = new StringBuilder("(");
+        for (Class<?> type : parameterTypes) {
+            buf.append(type.getName()).append(';');
+        }
+        return buf.append(')').toString();
+    }
+
+    private static ArgsCodec.Type type(Class<?> clazz) {
+        ArgsCodec.Type type = ArgsCodec.Type.of(clazz);
+        if (type == null) {
+            throw new IllegalArgumentException("unsupported parameter type: " + clazz);
+        }
+        return type;
+    }
+
+    // 基本类型的值装箱, 其他类型原样返回
+    private static String box(Class<?> clazz, String expr) {
+        if (!clazz.isPrimitive()) {
+            return expr;
+        }
+        return type(clazz).wrapperType.getName() + ".valueOf(" + expr + ")";
+    }
+
+    private static String[] names(String prefix, int length) {
+        String[] names = new String[length];
+        for (int i = 0; i < length; i++) {
+            names[i] = prefix + i;
+        }
+        return names;
+    }
+
+    private static ClassPool newClassPool(ClassLoader loader) {
+        ClassPool pool = new ClassPool(true);
+        if (loader != null) {
+            pool.appendClassPath(new LoaderClassPath(loader));
+        }
+        pool.appendClassPath(new ClassClassPath(ArgsCodecGenerator.class));
+        return pool;
+    }
+
+    private ArgsCodecGenerator() {}
+}
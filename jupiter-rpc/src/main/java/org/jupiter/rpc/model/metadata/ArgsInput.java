@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.model.metadata;
+
+import static org.jupiter.common.util.JConstants.UTF8;
+
+/**
+ * {@link ArgsCodec} 编码格式的读取端, 与 {@link ArgsOutput} 对应.
+ *
+ * 字节不完整或者有多余的字节时抛出 {@link IllegalArgumentException}.
+ *
+ * jupiter
+ * org.jupiter.rpc.model.metadata
+ *
+ * @author jiachun.fjc
+ */
+public final class ArgsInput {
+
+    private final byte[] buf;
+    private int position;
+
+    public ArgsInput(byte[] buf) {
+        this.buf = buf;
+    }
+
+    /**
+     * 读取包装类型和String前面的null标记, 返回false时参数为null, 不再读取它的值.
+     */
+    public boolean readNotNull() {
+        return readByte() != ArgsOutput.NULL;
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public byte readByte() {
+        checkRemaining(1);
+        return buf[position++];
+    }
+
+    public short readShort() {
+        return (short) unzigzag(readVarInt());
+    }
+
+    public char readChar() {
+        return (char) readVarInt();
+    }
+
+    public int readInt() {
+        return unzigzag(readVarInt());
+    }
+
+    public long readLong() {
+        return unzigzag(readVarLong());
+    }
+
+    public float readFloat() {
+        return Float.intBitsToFloat(readFixed32());
+    }
+
+    public double readDouble() {
+        return Double.longBitsToDouble(readFixed64());
+    }
+
+    public String readString() {
+        int length = readVarInt();
+        checkRemaining(length);
+        int offset = position;
+        position += length;
+        return new String(buf, offset, length, UTF8);
+    }
+
+    /**
+     * 所有参数读取完之后调用, 有多余的字节时抛出 {@link IllegalArgumentException}.
+     */
+    public void checkEnd() {
+        if (position != buf.length) {
+            throw new IllegalArgumentException("illegal args bytes, " + (buf.length - position) + " bytes left");
+        }
+    }
+
+    private int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varlong");
+    }
+
+    private int readFixed32() {
+        checkRemaining(4);
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value |= (buf[position++] & 0xFF) << (i << 3);
+        }
+        return value;
+    }
+
+    private long readFixed64() {
+        checkRemaining(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value |= (long) (buf[position++] & 0xFF) << (i << 3);
+        }
+        return value;
+    }
+
+    private void checkRemaining(int required) {
+        if (required < 0 || buf.length - position < required) {
+            throw new IllegalArgumentException("illegal args bytes, truncated");
+        }
+    }
+
+    static int unzigzag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    static long unzigzag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
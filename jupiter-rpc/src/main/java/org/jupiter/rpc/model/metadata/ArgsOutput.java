@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.model.metadata;
+
+import static org.jupiter.common.util.JConstants.UTF8;
+
+/**
+ * {@link ArgsCodec} 编码格式的写入端.
+ *
+ * int/long/short使用zigzag + varint编码, char使用varint, 其他基本类型定长编码, String为长度(varint)加UTF-8字节,
+ * 包装类型和String前面多一个字节的null标记 (see {@link #writeNull()}, {@link #writeNotNull()}).
+ *
+ * 生成的codec, 代理类和调用器直接调用这些方法, 所以是public的.
+ *
+ * jupiter
+ * org.jupiter.rpc.model.metadata
+ *
+ * @author jiachun.fjc
+ */
+public final class ArgsOutput {
+
+    static final byte NULL = 0;
+    static final byte NOT_NULL = 1;
+
+    private byte[] buf = new byte[32];
+    private int position;
+
+    public void writeNull() {
+        writeByte(NULL);
+    }
+
+    public void writeNotNull() {
+        writeByte(NOT_NULL);
+    }
+
+    public void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        buf[position++] = (byte) value;
+    }
+
+    public void writeShort(short value) {
+        writeVarInt(zigzag(value));
+    }
+
+    public void writeChar(char value) {
+        writeVarInt(value);
+    }
+
+    public void writeInt(int value) {
+        writeVarInt(zigzag(value));
+    }
+
+    public void writeLong(long value) {
+        writeVarLong(zigzag(value));
+    }
+
+    public void writeFloat(float value) {
+        writeFixed32(Float.floatToRawIntBits(value));
+    }
+
+    public void writeDouble(double value) {
+        writeFixed64(Double.doubleToRawLongBits(value));
+    }
+
+    public void writeString(String value) {
+        byte[] bytes = value.getBytes(UTF8);
+        writeVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, position, bytes.length);
+        position += bytes.length;
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[position];
+        System.arraycopy(buf, 0, bytes, 0, position);
+        return bytes;
+    }
+
+    private void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buf[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[position++] = (byte) value;
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[position++] = (byte) value;
+    }
+
+    private void writeFixed32(int value) {
+        ensureCapacity(4);
+        for (int i = 0; i < 4; i++) {
+            buf[position++] = (byte) (value >>> (i << 3));
+        }
+    }
+
+    private void writeFixed64(long value) {
+        ensureCapacity(8);
+        for (int i = 0; i < 8; i++) {
+            buf[position++] = (byte) (value >>> (i << 3));
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (position + required > buf.length) {
+            byte[] newBuf = new byte[Math.max(buf.length << 1, position + required)];
+            System.arraycopy(buf, 0, newBuf, 0, position);
+            buf = newBuf;
+        }
+    }
+
+    static int zigzag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+}
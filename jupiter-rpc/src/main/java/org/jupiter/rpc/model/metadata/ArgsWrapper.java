@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.model.metadata;
+
+import java.io.Serializable;
+
+import static org.jupiter.serialization.SerializerHolder.serializerImpl;
+
+/**
+ * 无法使用 {@link ArgsCodec} 的方法参数经由序列化器编码时的载体.
+ *
+ * 方法参数总是以字节数组的形式跟在 {@link MessageWrapper} 的路由字段之后传输,
+ * 服务端可以只解析路由字段, 请求被接纳后再解码参数.
+ *
+ * jupiter
+ * org.jupiter.rpc.model.metadata
+ *
+ * @author jiachun.fjc
+ */
+public class ArgsWrapper implements Serializable {
+
+    private static final long serialVersionUID = -4383529733611427263L;
+
+    private Object[] args;
+
+    public ArgsWrapper() {}
+
+    public ArgsWrapper(Object[] args) {
+        this.args = args;
+    }
+
+    public Object[] getArgs() {
+        return args;
+    }
+
+    public void setArgs(Object[] args) {
+        this.args = args;
+    }
+
+    /**
+     * 使用 {@code codec} 编码方法参数, {@code codec} 为null时使用序列化器.
+     */
+    public static byte[] encode(ArgsCodec codec, Object[] args) {
+        if (codec != null) {
+            return codec.encode(args);
+        }
+        return serializerImpl().writeObject(new ArgsWrapper(args));
+    }
+
+    /**
+     * {@link #encode(ArgsCodec, Object[])} 的逆操作.
+     */
+    public static Object[] decode(ArgsCodec codec, byte[] bytes) {
+        if (codec != null) {
+            return codec.decode(bytes);
+        }
+        return serializerImpl().readObject(bytes, ArgsWrapper.class).getArgs();
+    }
+}
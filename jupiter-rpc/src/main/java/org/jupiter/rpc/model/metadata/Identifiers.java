@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.model.metadata;
+
+import org.jupiter.common.util.MD5Util;
+import org.jupiter.rpc.Directory;
+
+/**
+ * 服务和方法的数字标识, consumer与provider根据相同的服务接口各自计算, 结果是稳定的.
+ *
+ * 请求中携带数字标识代替字符串形式的服务名与方法名, provider直接定位到服务以及方法的精确签名,
+ * 省去每次请求的字符串拼接/hash与重载方法匹配.
+ *
+ * 0为保留值, 表示请求中没有携带数字标识(如泛化调用).
+ *
+ * jupiter
+ * org.jupiter.rpc.model.metadata
+ *
+ * @author jiachun.fjc
+ */
+public final class Identifiers {
+
+    public static final int NONE = 0;
+
+    /**
+     * 服务标识, 由 group-version-providerName 计算得出.
+     */
+    public static int serviceId(Directory directory) {
+        return hash(directory.directory());
+    }
+
+    /**
+     * 方法标识, 由方法名与参数类型计算得出, 重载的方法有不同的标识.
+     */
+    public static int methodId(String methodName, Class<?>[] parameterTypes) {
+        StringBuilder buf = new StringBuilder(methodName).append('(');
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                buf.append(',');
+            }
+            buf.append(parameterTypes[i].getName());
+        }
+        return hash(buf.append(')').toString());
+    }
+
+    private static int hash(String key) {
+        // MD5的前32位, 比String#hashCode分布更均匀
+        int h = (int) Long.parseLong(MD5Util.getMD5(key).substring(0, 8), 16);
+        return h == NONE ? 1 : h;
+    }
+
+    private Identifiers() {}
+}
@@ -19,9 +19,21 @@ package org.jupiter.rpc.model.metadata;
 import java.io.Serializable;
 import java.util.Arrays;
 
+import static org.jupiter.common.util.Preconditions.checkArgument;
+import static org.jupiter.serialization.SerializerHolder.serializerImpl;
+
 /**
  * Request data wrapper.
  *
+ * 除方法参数外都是路由字段(服务, 方法, 应用, trace, 超时时间), 方法参数总是编码为 {@link #argsBytes}
+ * 跟在路由字段之后, 服务端只需解析路由字段即可完成查找服务, 限流和过载保护, 请求被接纳后再解码参数.
+ *
+ * 请求体的格式为 [格式标志(4字节)][服务标识(4字节)][方法标识(4字节)][路由字段长度(4字节)][路由字段][方法参数]
+ * (see {@link #encode(MessageWrapper)}), 格式标志为 'J' 'R' 加格式版本, 整个请求体是一个序列化对象的旧格式
+ * 会因为标志不符被拒绝(BAD_REQUEST), 而不是被错误地解析. 序列化器只编码路由字段, 方法参数只在
+ * {@link ArgsWrapper#encode(ArgsCodec, Object[])} 或生成的代理类中编码一次, 之后原样拼接在路由字段之后,
+ * 不会作为字段再经过一次序列化器. 定长的服务和方法标识使IO线程不需要反序列化就可以查到方法的执行位置.
+ *
  * jupiter
  * org.jupiter.rpc.model.metadata
  *
@@ -29,23 +41,47 @@ import java.util.Arrays;
  */
 public class MessageWrapper implements Serializable {
 
-    private static final long serialVersionUID = 1009813828866652852L;
+    private static final long serialVersionUID = 4226407468447235563L;
+
+    // 请求体格式的版本
+    private static final byte LAYOUT_VERSION = 1;
+    // 'J' 'R' + 保留字节 + 版本
+    static final int LAYOUT_SIGN = ('J' << 24) | ('R' << 16) | LAYOUT_VERSION;
+
+    private static final int SIGN_OFFSET = 0;
+    private static final int SERVICE_ID_OFFSET = 4;
+    private static final int METHOD_ID_OFFSET = 8;
+    private static final int ROUTING_LENGTH_OFFSET = 12;
+    static final int HEAD_LENGTH = 16;
 
     // 应用名称
     private String appName;
     // metadata
-    private final ServiceMetadata metadata;
+    private ServiceMetadata metadata;
     // 方法名称
     private String methodName;
-    // 方法参数
-    private Object[] args;
+    // 服务标识, 携带标识时不再传输metadata (see Identifiers), 在请求头中传输, 不参与序列化
+    private transient int serviceId;
+    // 方法标识, 携带标识时不再传输methodName (see Identifiers), 在请求头中传输, 不参与序列化
+    private transient int methodId;
+    // 方法参数, 不参与序列化
+    private transient Object[] args;
+    // 编码后的方法参数 (see ArgsWrapper), 拼接在路由字段之后传输, 不参与序列化
+    private transient byte[] argsBytes;
     // TraceId
     private String traceId;
+    // 调用方的超时时间(毫秒), 服务端据此丢弃调用方已经放弃的请求, 0表示未知
+    private int timeoutMillis;
 
     public MessageWrapper(ServiceMetadata metadata) {
         this.metadata = metadata;
     }
 
+    public MessageWrapper(int serviceId, int methodId) {
+        this.serviceId = serviceId;
+        this.methodId = methodId;
+    }
+
     public String getAppName() {
         return appName;
     }
@@ -58,6 +94,10 @@ public class MessageWrapper implements Serializable {
         return metadata;
     }
 
+    public void setMetadata(ServiceMetadata metadata) {
+        this.metadata = metadata;
+    }
+
     public String getGroup() {
         return metadata.getGroup();
     }
@@ -78,6 +118,14 @@ public class MessageWrapper implements Serializable {
         this.methodName = methodName;
     }
 
+    public int getServiceId() {
+        return serviceId;
+    }
+
+    public int getMethodId() {
+        return methodId;
+    }
+
     public Object[] getArgs() {
         return args;
     }
@@ -86,6 +134,14 @@ public class MessageWrapper implements Serializable {
         this.args = args;
     }
 
+    public byte[] getArgsBytes() {
+        return argsBytes;
+    }
+
+    public void setArgsBytes(byte[] argsBytes) {
+        this.argsBytes = argsBytes;
+    }
+
     public String getTraceId() {
         return traceId;
     }
@@ -94,14 +150,97 @@ public class MessageWrapper implements Serializable {
         this.traceId = traceId;
     }
 
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 将路由字段与编码后的方法参数拼接为请求体.
+     */
+    public static byte[] encode(MessageWrapper message) {
+        byte[] routing = serializerImpl().writeObject(message);
+        byte[] args = message.argsBytes;
+        int routingLength = routing.length;
+        int argsLength = args == null ? 0 : args.length;
+
+        byte[] bytes = new byte[HEAD_LENGTH + routingLength + argsLength];
+        putInt(bytes, SIGN_OFFSET, LAYOUT_SIGN);
+        putInt(bytes, SERVICE_ID_OFFSET, message.serviceId);
+        putInt(bytes, METHOD_ID_OFFSET, message.methodId);
+        putInt(bytes, ROUTING_LENGTH_OFFSET, routingLength);
+        System.arraycopy(routing, 0, bytes, HEAD_LENGTH, routingLength);
+        if (argsLength > 0) {
+            System.arraycopy(args, 0, bytes, HEAD_LENGTH + routingLength, argsLength);
+        }
+        return bytes;
+    }
+
+    /**
+     * {@link #encode(MessageWrapper)} 的逆操作, 只解析路由字段, 方法参数保持编码后的形式,
+     * 没有方法参数时为null. 格式不符时抛出 {@link IllegalArgumentException}.
+     */
+    public static MessageWrapper decode(byte[] bytes) {
+        checkArgument(isLayoutOf(bytes), "unsupported request layout");
+        int routingLength = getInt(bytes, ROUTING_LENGTH_OFFSET);
+        // 用long避免routingLength很大时溢出
+        long argsOffset = (long) HEAD_LENGTH + routingLength;
+        checkArgument(routingLength >= 0 && argsOffset <= bytes.length, "illegal routing length");
+
+        MessageWrapper message = serializerImpl().readObject(
+                Arrays.copyOfRange(bytes, HEAD_LENGTH, (int) argsOffset), MessageWrapper.class);
+        message.serviceId = getInt(bytes, SERVICE_ID_OFFSET);
+        message.methodId = getInt(bytes, METHOD_ID_OFFSET);
+        message.argsBytes = argsOffset == bytes.length ? null : Arrays.copyOfRange(bytes, (int) argsOffset, bytes.length);
+        return message;
+    }
+
+    /**
+     * 不反序列化, 直接从请求体中读取服务标识, 没有时(或格式不符时)返回 {@link Identifiers#NONE}.
+     */
+    public static int serviceId(byte[] bytes) {
+        return isLayoutOf(bytes) ? getInt(bytes, SERVICE_ID_OFFSET) : Identifiers.NONE;
+    }
+
+    /**
+     * 不反序列化, 直接从请求体中读取方法标识, 没有时(或格式不符时)返回 {@link Identifiers#NONE}.
+     */
+    public static int methodId(byte[] bytes) {
+        return isLayoutOf(bytes) ? getInt(bytes, METHOD_ID_OFFSET) : Identifiers.NONE;
+    }
+
+    private static boolean isLayoutOf(byte[] bytes) {
+        return bytes.length >= HEAD_LENGTH && getInt(bytes, SIGN_OFFSET) == LAYOUT_SIGN;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24)
+                | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8)
+                | (bytes[offset + 3] & 0xff);
+    }
+
     @Override
     public String toString() {
         return "MessageWrapper{" +
                 "appName='" + appName + '\'' +
                 ", metadata=" + metadata +
                 ", methodName='" + methodName + '\'' +
+                ", serviceId=" + serviceId +
+                ", methodId=" + methodId +
                 ", args=" + Arrays.toString(args) +
                 ", traceId='" + traceId + '\'' +
+                ", timeoutMillis=" + timeoutMillis +
                 '}';
     }
 }
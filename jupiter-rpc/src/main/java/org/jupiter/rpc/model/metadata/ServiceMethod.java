@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.model.metadata;
+
+import com.codahale.metrics.Timer;
+import net.sf.cglib.reflect.FastMethod;
+import org.jupiter.common.util.Reflects;
+import org.jupiter.common.util.internal.JUnsafe;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.rpc.JPromise;
+import org.jupiter.rpc.Placement;
+import org.jupiter.rpc.metric.Metrics;
+import org.jupiter.rpc.provider.RequestCollapser;
+import org.jupiter.rpc.provider.ResultCache;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.jupiter.common.util.Preconditions.checkArgument;
+import static org.jupiter.common.util.Preconditions.checkNotNull;
+
+/**
+ * 服务提供者的一个方法, 在注册服务时预先编译好, 调用时不再按方法名和参数类型查找.
+ *
+ * jupiter
+ * org.jupiter.rpc.model.metadata
+ *
+ * @author jiachun.fjc
+ */
+public class ServiceMethod {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ServiceMethod.class);
+
+    // 任意方法的执行位置变化(设置, 降级, 恢复)时递增, 用于重新计算是否有方法在IO线程执行
+    private static final AtomicInteger placementVersion = new AtomicInteger();
+    // 再次降级时降级时长翻倍, 最多翻到初始时长的倍数
+    private static final int MAX_DEMOTION_FACTOR = 32;
+
+    private final int methodId;
+    private final String name;
+    private final Class<?>[] parameterTypes;
+    private final ArgsCodec argsCodec;      // 方法不能使用codec时为null
+    private final FastMethod invoker;
+    private final TypedInvoker typedInvoker; // 方法不能使用codec或者生成失败时为null
+    private final boolean async;            // 返回值为JPromise, 响应在promise完成时写回
+    private final String callInfo;          // directory#methodName
+    private final Timer timer;
+
+    private volatile ResultCache resultCache; // 幂等方法的结果缓存, 没有时为null
+    private volatile RequestCollapser collapser; // 幂等方法的请求合并, 没有时为null
+
+    private volatile Placement placement = Placement.DEFAULT;
+    private volatile Executor placementExecutor;    // DEDICATED时的executor
+    // INLINE方法被观察到阻塞后的降级状态, 阻塞很少发生, 以下状态都在synchronized中修改
+    private volatile boolean demoted;
+    private volatile long promotionNanos;           // 降级到期, 恢复INLINE的时间
+    private long demotionNanos;                     // 本次降级的时长
+    private int inlineBlockingTimes;                // 当前窗口内被观察到阻塞的次数
+    private long blockingWindowStartNanos;
+
+    public ServiceMethod(ServiceMetadata metadata, Class<?> providerClass, String name, Class<?>[] parameterTypes) {
+        this.methodId = Identifiers.methodId(name, parameterTypes);
+        this.name = name;
+        this.parameterTypes = parameterTypes;
+        argsCodec = ArgsCodec.of(parameterTypes);
+        invoker = Reflects.fastMethod(providerClass, name, parameterTypes);
+        typedInvoker = argsCodec == null ? null : newTypedInvoker(providerClass, invoker);
+        async = JPromise.class.isAssignableFrom(invoker.getReturnType());
+        callInfo = metadata.directory() + '#' + name;
+        timer = Metrics.timer(callInfo);
+    }
+
+    public int getMethodId() {
+        return methodId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<?>[] getParameterTypes() {
+        return parameterTypes;
+    }
+
+    public ArgsCodec getArgsCodec() {
+        return argsCodec;
+    }
+
+    /**
+     * Returns true if the method can be invoked with the args bytes encoded by
+     * {@link #getArgsCodec()} directly, see {@link #invoke(Object, byte[])}.
+     */
+    public boolean isTypedInvocable() {
+        return typedInvoker != null;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public String getCallInfo() {
+        return callInfo;
+    }
+
+    public Timer getTimer() {
+        return timer;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public RequestCollapser getCollapser() {
+        return collapser;
+    }
+
+    public void setCollapser(RequestCollapser collapser) {
+        this.collapser = collapser;
+    }
+
+    public Placement getPlacement() {
+        return placement;
+    }
+
+    public Executor getPlacementExecutor() {
+        return placementExecutor;
+    }
+
+    public synchronized void setPlacement(Placement placement, Executor executor) {
+        checkNotNull(placement, "placement");
+        checkArgument(placement != Placement.DEDICATED || executor != null, "DEDICATED placement requires an executor");
+
+        this.placementExecutor = executor;
+        this.placement = placement;
+        demoted = false;
+        demotionNanos = 0;
+        inlineBlockingTimes = 0;
+        placementVersion.incrementAndGet();
+    }
+
+    /**
+     * Returns true if the method is placed {@link Placement#INLINE} but demoted to {@link Placement#SHARED}.
+     */
+    public boolean isDemoted() {
+        return demoted;
+    }
+
+    /**
+     * Records a blocking execution on the I/O thread, demotes the method to {@link Placement#SHARED}
+     * and returns true when the method has been observed to block {@code maxTimes} times within
+     * {@code windowNanos}. The demotion lasts {@code demotionNanos}, and doubles each time the method
+     * is demoted again after {@link #tryPromote(long)}.
+     */
+    public synchronized boolean recordInlineBlocking(int maxTimes, long windowNanos, long demotionNanos, long nowNanos) {
+        if (placement != Placement.INLINE) {
+            return false; // 已经被降级
+        }
+        if (inlineBlockingTimes == 0 || nowNanos - blockingWindowStartNanos > windowNanos) {
+            // 偶尔的阻塞随窗口过期
+            inlineBlockingTimes = 0;
+            blockingWindowStartNanos = nowNanos;
+        }
+        if (++inlineBlockingTimes < maxTimes) {
+            return false;
+        }
+
+        inlineBlockingTimes = 0;
+        this.demotionNanos = this.demotionNanos == 0
+                ? demotionNanos : Math.min(this.demotionNanos << 1, demotionNanos * MAX_DEMOTION_FACTOR);
+        promotionNanos = nowNanos + this.demotionNanos;
+        demoted = true;
+        placement = Placement.SHARED;
+        placementVersion.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Promotes a demoted method back to {@link Placement#INLINE} if the demotion has expired,
+     * returns true if promoted.
+     */
+    public boolean tryPromote(long nowNanos) {
+        if (!demoted || nowNanos - promotionNanos < 0) {
+            return false;
+        }
+        synchronized (this) {
+            if (!demoted) {
+                return false;
+            }
+            demoted = false;
+            placement = Placement.INLINE;
+            placementVersion.incrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * Returns a number that changes whenever the placement of any method changes.
+     */
+    public static int placementVersion() {
+        return placementVersion.get();
+    }
+
+    /**
+     * Invokes the method on {@code provider}, the {@link InvocationTargetException}
+     * is thrown as it is, same as {@link Reflects#fastInvoke(Object, String, Class[], Object[])}.
+     */
+    public Object invoke(Object provider, Object[] args) {
+        Object value = null;
+        try {
+            value = invoker.invoke(provider, args);
+        } catch (InvocationTargetException e) {
+            JUnsafe.throwException(e);
+        }
+        return value;
+    }
+
+    /**
+     * Invokes the method on {@code provider} with the args bytes encoded by {@link #getArgsCodec()},
+     * the args are decoded into typed locals and passed to the method without boxing, only available
+     * when {@link #isTypedInvocable()}.
+     */
+    public Object invoke(Object provider, byte[] argsBytes) {
+        Object value = null;
+        try {
+            value = typedInvoker.invoke(provider, argsBytes);
+        } catch (InvocationTargetException e) {
+            JUnsafe.throwException(e);
+        }
+        return value;
+    }
+
+    private static TypedInvoker newTypedInvoker(Class<?> providerClass, FastMethod invoker) {
+        try {
+            return ArgsCodecGenerator.newTypedInvoker(providerClass, invoker.getJavaMethod());
+        } catch (Throwable t) {
+            // 退回到解码为 Object[] 后反射调用
+            logger.warn("Generates typed invoker for {} failed: {}.", invoker.getJavaMethod(), t);
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceMethod{" +
+                "methodId=" + methodId +
+                ", callInfo=" + callInfo +
+                ", async=" + async +
+                ", placement=" + placement +
+                ", demoted=" + demoted +
+                '}';
+    }
+}
@@ -16,15 +16,21 @@
 
 package org.jupiter.rpc.model.metadata;
 
+import org.jupiter.common.util.Lists;
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.Pow2;
 import org.jupiter.rpc.JRequest;
 import org.jupiter.rpc.flow.control.FlowController;
 
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
 
 import static org.jupiter.common.util.Preconditions.checkNotNull;
+import static org.jupiter.common.util.Reflects.findMatchingParameterTypes;
 
 /**
  * Wrapper provider object and service metadata.
@@ -41,7 +47,17 @@ public class ServiceWrapper implements Serializable {
     private final ServiceMetadata metadata;
     private final Object serviceProvider;
 
+    private final int serviceId;
+
     private transient Map<String, List<Class<?>[]>> methodsParameterTypes;
+    // 所有的方法
+    private transient List<ServiceMethod> methods;
+    // methodName --> 同名(重载)的方法, 用于没有方法标识的请求
+    private transient Map<String, ServiceMethod[]> methodsByName;
+    // 方法分派表: 以methodId为key的开放寻址表(线性探测), 查找只需要数组下标及int比较
+    private transient int[] dispatchKeys;
+    private transient ServiceMethod[] dispatchMethods;
+    private transient int dispatchMask;
 
     private volatile Executor executor;
     private volatile FlowController<JRequest> flowController;
@@ -49,9 +65,51 @@ public class ServiceWrapper implements Serializable {
     public ServiceWrapper(String group, String version, String name,
                           Object serviceProvider, Map<String, List<Class<?>[]>> methodsParameterTypes) {
         metadata = new ServiceMetadata(group, version, name);
+        serviceId = Identifiers.serviceId(metadata);
 
         this.methodsParameterTypes = checkNotNull(methodsParameterTypes, "methodsParameterTypes");
         this.serviceProvider = checkNotNull(serviceProvider, "serviceProvider");
+
+        // 注册时编译方法分派表
+        List<ServiceMethod> methods = Lists.newArrayList();
+        methodsByName = Maps.newHashMap();
+        for (Map.Entry<String, List<Class<?>[]>> entry : methodsParameterTypes.entrySet()) {
+            String methodName = entry.getKey();
+            List<Class<?>[]> parameterTypesList = entry.getValue();
+            ServiceMethod[] overloads = new ServiceMethod[parameterTypesList.size()];
+            for (int i = 0; i < overloads.length; i++) {
+                overloads[i] = new ServiceMethod(metadata, serviceProvider.getClass(), methodName, parameterTypesList.get(i));
+                methods.add(overloads[i]);
+            }
+            methodsByName.put(methodName, overloads);
+        }
+        this.methods = Collections.unmodifiableList(methods);
+
+        int capacity = Pow2.roundToPowerOfTwo(Math.max(2, methods.size() << 1));
+        dispatchKeys = new int[capacity];
+        dispatchMethods = new ServiceMethod[capacity];
+        dispatchMask = capacity - 1;
+        for (ServiceMethod method : methods) {
+            int methodId = method.getMethodId();
+            int index = methodId & dispatchMask;
+            while (dispatchKeys[index] != Identifiers.NONE) {
+                ServiceMethod old = dispatchMethods[index];
+                if (dispatchKeys[index] == methodId) {
+                    if (old.getName().equals(method.getName())
+                            && Arrays.equals(old.getParameterTypes(), method.getParameterTypes())) {
+                        break;
+                    }
+                    throw new IllegalStateException("duplicate method id: " + methodId + " in " + metadata);
+                }
+                index = (index + 1) & dispatchMask;
+            }
+            dispatchKeys[index] = methodId;
+            dispatchMethods[index] = method;
+        }
+    }
+
+    public int getServiceId() {
+        return serviceId;
     }
 
     public ServiceMetadata getMetadata() {
@@ -82,6 +140,59 @@ public class ServiceWrapper implements Serializable {
         return methodsParameterTypes.get(methodName);
     }
 
+    public List<ServiceMethod> getMethods() {
+        return methods;
+    }
+
+    /**
+     * 根据方法标识查找方法, 没有找到返回null.
+     */
+    public ServiceMethod getMethod(int methodId) {
+        final int[] keys = dispatchKeys;
+        final int mask = dispatchMask;
+        int index = methodId & mask;
+        for (;;) {
+            int key = keys[index];
+            if (key == methodId) {
+                return dispatchMethods[index];
+            }
+            if (key == Identifiers.NONE) {
+                return null;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * 根据方法名查找没有重载的方法, 方法有重载或者没有找到返回null.
+     */
+    public ServiceMethod getMethod(String methodName) {
+        ServiceMethod[] overloads = methodsByName.get(methodName);
+        return overloads != null && overloads.length == 1 ? overloads[0] : null;
+    }
+
+    /**
+     * 根据方法名及参数匹配方法(重载的方法按参数类型匹配), 没有找到返回null.
+     */
+    public ServiceMethod getMethod(String methodName, Object[] args) {
+        ServiceMethod[] overloads = methodsByName.get(methodName);
+        if (overloads == null) {
+            return null;
+        }
+        if (overloads.length == 1) {
+            return overloads[0];
+        }
+
+        List<Class<?>[]> parameterTypesList = methodsParameterTypes.get(methodName);
+        Class<?>[] parameterTypes = findMatchingParameterTypes(parameterTypesList, args);
+        for (ServiceMethod method : overloads) {
+            if (method.getParameterTypes() == parameterTypes) {
+                return method;
+            }
+        }
+        return null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
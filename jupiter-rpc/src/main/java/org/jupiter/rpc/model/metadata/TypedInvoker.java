@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.model.metadata;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * 根据服务方法签名生成的调用器 (see {@link ArgsCodecGenerator#newTypedInvoker(Class, java.lang.reflect.Method)}),
+ * 从 {@link ArgsCodec} 编码的参数字节直接解码出有类型的局部变量并调用服务方法, 不再经过装箱后的 Object[]
+ * 和反射调用时的拆箱.
+ *
+ * jupiter
+ * org.jupiter.rpc.model.metadata
+ *
+ * @author jiachun.fjc
+ */
+public interface TypedInvoker {
+
+    /**
+     * Decodes {@code argsBytes} and invokes the method on {@code provider}, the exception thrown
+     * by the method is wrapped in an {@link InvocationTargetException}, an illegal {@code argsBytes}
+     * causes an {@link IllegalArgumentException}.
+     */
+    Object invoke(Object provider, byte[] argsBytes) throws InvocationTargetException;
+}
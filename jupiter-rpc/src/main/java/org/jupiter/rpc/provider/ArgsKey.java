@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.provider;
+
+import java.util.Arrays;
+
+/**
+ * 以方法参数的编码字节作为key, 同一个方法的参数可能以 {@link org.jupiter.rpc.model.metadata.ArgsCodec}
+ * 或者序列化器两种方式编码, 相同的参数在两种编码下的字节不同, 所以需要区分.
+ *
+ * jupiter
+ * org.jupiter.rpc.provider
+ *
+ * @author jiachun.fjc
+ */
+final class ArgsKey {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    final byte[] bytes;
+    final boolean codecEncoded;
+    final int hash;
+
+    ArgsKey(byte[] bytes, boolean codecEncoded) {
+        this.bytes = bytes == null ? EMPTY : bytes;
+        this.codecEncoded = codecEncoded;
+        hash = Arrays.hashCode(this.bytes) * 31 + (codecEncoded ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ArgsKey key = (ArgsKey) o;
+
+        return codecEncoded == key.codecEncoded && hash == key.hash && Arrays.equals(bytes, key.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
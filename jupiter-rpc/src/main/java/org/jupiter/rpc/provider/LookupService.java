@@ -33,4 +33,9 @@ public interface LookupService {
      * Lookup the service.
      */
     ServiceWrapper lookupService(Directory directory);
+
+    /**
+     * Lookup the service by service id.
+     */
+    ServiceWrapper lookupService(int serviceId);
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.provider;
+
+import com.codahale.metrics.Meter;
+import org.jupiter.common.util.Lists;
+import org.jupiter.common.util.Maps;
+import org.jupiter.rpc.metric.Metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 服务端一个方法的请求合并(single-flight).
+ *
+ * 方法参数的编码字节相同的并发请求只执行一次方法, 第一个到达的请求(leader)执行,
+ * 执行期间到达的相同请求(follower)作为 {@link Waiter} 挂在同一个 {@link Flight} 上,
+ * leader完成后把同一份序列化好的结果分发给每个follower, 各自以自己的invokeId写回到自己的channel.
+ *
+ * 只适用于幂等方法.
+ *
+ * jupiter
+ * org.jupiter.rpc.provider
+ *
+ * @author jiachun.fjc
+ */
+public class RequestCollapser {
+
+    private final ConcurrentMap<ArgsKey, Flight> flights = Maps.newConcurrentHashMap();
+
+    private final Meter collapsedMeter;
+
+    public RequestCollapser(String name) {
+        collapsedMeter = Metrics.meter(RequestCollapser.class, name, "collapsed");
+    }
+
+    /**
+     * Joins the in-flight call with the same arguments if there is one, then {@code waiter}
+     * will be notified when the call is done and {@code null} is returned; otherwise
+     * returns a new {@link Flight}, the caller is the leader and must complete it.
+     */
+    public Flight join(byte[] args, boolean codecEncoded, Waiter waiter) {
+        ArgsKey key = new ArgsKey(args, codecEncoded);
+        Flight flight = null;
+        for (;;) {
+            Flight inFlight = flights.get(key);
+            if (inFlight == null) {
+                if (flight == null) {
+                    flight = new Flight(key);
+                }
+                inFlight = flights.putIfAbsent(key, flight);
+                if (inFlight == null) {
+                    return flight;
+                }
+            }
+            if (inFlight.addWaiter(waiter)) {
+                collapsedMeter.mark();
+                return null;
+            }
+            // leader已经完成, 正在从map中移除
+            flights.remove(key, inFlight);
+        }
+    }
+
+    /**
+     * Returns the number of in-flight calls.
+     */
+    public int size() {
+        return flights.size();
+    }
+
+    /**
+     * 等待leader执行结果的follower.
+     */
+    public interface Waiter {
+
+        /**
+         * The call completed with the serialized result.
+         */
+        void complete(byte[] resultBytes);
+
+        /**
+         * The call failed.
+         */
+        void failure(Throwable cause);
+    }
+
+    /**
+     * 一次正在执行的调用.
+     */
+    public final class Flight {
+
+        private final ArgsKey key;
+        private List<Waiter> waiters = Lists.newArrayList();   // guarded by this, null when done
+
+        Flight(ArgsKey key) {
+            this.key = key;
+        }
+
+        /**
+         * Completes the call, notifies all waiters with {@code resultBytes}.
+         */
+        public void complete(byte[] resultBytes) {
+            for (Waiter w : finish()) {
+                w.complete(resultBytes);
+            }
+        }
+
+        /**
+         * Fails the call, notifies all waiters with {@code cause}.
+         */
+        public void failure(Throwable cause) {
+            for (Waiter w : finish()) {
+                w.failure(cause);
+            }
+        }
+
+        private synchronized boolean addWaiter(Waiter waiter) {
+            if (waiters == null) {
+                return false;
+            }
+            waiters.add(waiter);
+            return true;
+        }
+
+        private List<Waiter> finish() {
+            // 先从map中移除, 之后到达的相同请求会成为新的leader
+            flights.remove(key, this);
+
+            List<Waiter> _waiters;
+            synchronized (this) {
+                _waiters = waiters;
+                waiters = null;
+            }
+            return _waiters == null ? Collections.<Waiter>emptyList() : _waiters;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.provider;
+
+import com.codahale.metrics.Meter;
+import org.jupiter.rpc.metric.Metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.jupiter.common.util.JConstants.PROVIDER_RESULT_CACHE_MAX_VALUE_SIZE;
+import static org.jupiter.common.util.Preconditions.checkArgument;
+
+/**
+ * 服务端一个方法的结果缓存.
+ *
+ * 以方法参数的编码字节作为key, 不需要反序列化参数, 也不需要参数对象实现hashCode/equals;
+ * value是已经序列化好的 {@link org.jupiter.rpc.model.metadata.ResultWrapper}, 命中时直接写回.
+ *
+ * 分段的LRU, 每个分段各自加锁, 缓存项超过存活时间后在下一次访问时被移除.
+ *
+ * jupiter
+ * org.jupiter.rpc.provider
+ *
+ * @author jiachun.fjc
+ */
+public class ResultCache {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final long ttlNanos;
+    private final int maxValueSize;
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    private final Meter hitMeter;
+    private final Meter missMeter;
+    private final Meter evictionMeter;
+
+    public ResultCache(String name, long ttlMillis, int maxEntries) {
+        this(name, ttlMillis, maxEntries, PROVIDER_RESULT_CACHE_MAX_VALUE_SIZE);
+    }
+
+    public ResultCache(String name, long ttlMillis, int maxEntries, int maxValueSize) {
+        checkArgument(ttlMillis > 0, "ttlMillis must be positive");
+        checkArgument(maxEntries > 0, "maxEntries must be positive");
+
+        ttlNanos = ttlMillis * 1000000L;
+        this.maxValueSize = maxValueSize;
+
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && (segmentCount << 1) <= maxEntries) {
+            segmentCount <<= 1;
+        }
+        int segmentCapacity = (maxEntries + segmentCount - 1) / segmentCount;
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        segmentMask = segmentCount - 1;
+
+        hitMeter = Metrics.meter(ResultCache.class, name, "hit");
+        missMeter = Metrics.meter(ResultCache.class, name, "miss");
+        evictionMeter = Metrics.meter(ResultCache.class, name, "eviction");
+    }
+
+    /**
+     * Returns the cached response bytes, or {@code null} if absent or expired.
+     *
+     * @param args         the encoded arguments
+     * @param codecEncoded whether {@code args} is encoded by an {@link org.jupiter.rpc.model.metadata.ArgsCodec},
+     *                     the same arguments have different bytes in the two encodings
+     */
+    public byte[] get(byte[] args, boolean codecEncoded) {
+        ArgsKey key = new ArgsKey(args, codecEncoded);
+        Segment segment = segmentFor(key);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && System.nanoTime() - entry.expireNanos >= 0) {
+                segment.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            missMeter.mark();
+            return null;
+        }
+        hitMeter.mark();
+        return entry.value;
+    }
+
+    /**
+     * Caches the response bytes, a response larger than the limit is ignored.
+     */
+    public void put(byte[] args, boolean codecEncoded, byte[] value) {
+        if (value == null || value.length > maxValueSize) {
+            return;
+        }
+        ArgsKey key = new ArgsKey(args, codecEncoded);
+        Entry entry = new Entry(value, System.nanoTime() + ttlNanos);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private Segment segmentFor(ArgsKey key) {
+        int h = key.hash;
+        return segments[(h ^ (h >>> 16)) & segmentMask];
+    }
+
+    static final class Entry {
+
+        final byte[] value;
+        final long expireNanos;
+
+        Entry(byte[] value, long expireNanos) {
+            this.value = value;
+            this.expireNanos = expireNanos;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    final class Segment extends LinkedHashMap<ArgsKey, Entry> {
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true); // access-order
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ArgsKey, Entry> eldest) {
+            if (size() > capacity) {
+                evictionMeter.mark();
+                return true;
+            }
+            return false;
+        }
+    }
+}
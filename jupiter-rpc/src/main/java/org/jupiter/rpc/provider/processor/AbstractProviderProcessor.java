@@ -38,6 +38,8 @@ public abstract class AbstractProviderProcessor implements ProviderProcessor {
 
     @Override
     public void handleException(JChannel channel, JRequest request, Throwable cause) {
+        request.releaseBudget();
+
         ResultWrapper result = new ResultWrapper();
         result.setError(cause);
 
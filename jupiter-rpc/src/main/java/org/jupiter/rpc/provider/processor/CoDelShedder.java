@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.provider.processor;
+
+import org.jupiter.common.concurrent.atomic.AtomicUpdater;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.jupiter.common.util.Preconditions.checkArgument;
+
+/**
+ * 基于请求排队时间(sojourn time)的过载保护, CoDel(controlled delay)的线程池版本.
+ *
+ * 在每个观察周期内记录最小的排队时间, 如果一整个周期内最小的排队时间都超过了目标值, 说明队列无法自行消化,
+ * 下一个周期处于过载状态; 过载状态下排队时间超过目标值2倍的请求直接被拒绝, 不再浪费线程处理调用方可能已经放弃的请求.
+ * 短暂的突发流量不会使最小排队时间持续超标, 所以不会被误判为过载.
+ *
+ * 经典CoDel在出队时按照间隔逐渐加快丢弃, 需要在所有处理线程之间加锁, 这里每个请求只做一次CAS.
+ *
+ * jupiter
+ * org.jupiter.rpc.provider.processor
+ *
+ * @author jiachun.fjc
+ */
+public class CoDelShedder {
+
+    private static final AtomicLongFieldUpdater<CoDelShedder> intervalEndUpdater =
+            AtomicUpdater.newAtomicLongFieldUpdater(CoDelShedder.class, "intervalEnd");
+    private static final AtomicLongFieldUpdater<CoDelShedder> minDelayUpdater =
+            AtomicUpdater.newAtomicLongFieldUpdater(CoDelShedder.class, "minDelay");
+
+    private final long targetNanos;
+    private final long intervalNanos;
+
+    private volatile long intervalEnd;
+    private volatile long minDelay = Long.MAX_VALUE; // 当前周期内最小的排队时间
+    private volatile boolean overloaded;
+
+    public CoDelShedder(long targetMillis, long intervalMillis) {
+        checkArgument(targetMillis > 0, "targetMillis must be positive");
+        checkArgument(intervalMillis > 0, "intervalMillis must be positive");
+        targetNanos = MILLISECONDS.toNanos(targetMillis);
+        intervalNanos = MILLISECONDS.toNanos(intervalMillis);
+        intervalEnd = System.nanoTime() + intervalNanos;
+    }
+
+    /**
+     * Returns true if the request that has waited {@code sojournNanos} in the queue should be shed.
+     */
+    public boolean shouldShed(long sojournNanos, long nowNanos) {
+        long end = intervalEnd;
+        if (nowNanos - end >= 0 && intervalEndUpdater.compareAndSet(this, end, nowNanos + intervalNanos)) {
+            // 新的观察周期从当前请求开始
+            long min = minDelayUpdater.getAndSet(this, sojournNanos);
+            overloaded = min != Long.MAX_VALUE && min > targetNanos;
+        } else {
+            for (;;) {
+                long min = minDelay;
+                if (sojournNanos >= min || minDelayUpdater.compareAndSet(this, min, sojournNanos)) {
+                    break;
+                }
+            }
+        }
+        return overloaded && sojournNanos > (targetNanos << 1);
+    }
+
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+
+    @Override
+    public String toString() {
+        return "CoDelShedder{" +
+                "targetNanos=" + targetNanos +
+                ", intervalNanos=" + intervalNanos +
+                ", overloaded=" + overloaded +
+                '}';
+    }
+}
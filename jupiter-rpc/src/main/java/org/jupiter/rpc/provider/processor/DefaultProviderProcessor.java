@@ -17,18 +17,26 @@
 package org.jupiter.rpc.provider.processor;
 
 import org.jupiter.common.util.JServiceLoader;
+import org.jupiter.common.util.Maps;
 import org.jupiter.rpc.Directory;
 import org.jupiter.rpc.JRequest;
 import org.jupiter.rpc.JServer;
+import org.jupiter.rpc.Placement;
 import org.jupiter.rpc.channel.JChannel;
 import org.jupiter.rpc.executor.ExecutorFactory;
 import org.jupiter.rpc.flow.control.ControlResult;
 import org.jupiter.rpc.flow.control.FlowController;
+import org.jupiter.rpc.model.metadata.MessageWrapper;
+import org.jupiter.rpc.model.metadata.ServiceMethod;
 import org.jupiter.rpc.model.metadata.ServiceWrapper;
 import org.jupiter.rpc.provider.processor.task.MessageTask;
 
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+import static org.jupiter.common.util.JConstants.PROCESSOR_CODEL_INTERVAL_MILLIS;
+import static org.jupiter.common.util.JConstants.PROCESSOR_CODEL_TARGET_MILLIS;
 import static org.jupiter.common.util.JConstants.PROCESSOR_CORE_NUM_WORKERS;
 
 /**
@@ -41,17 +49,23 @@ public class DefaultProviderProcessor extends AbstractProviderProcessor {
 
     private final JServer server;
     private final Executor executor;
+    private final CoDelShedder loadShedder;
+    private final ConcurrentMap<Executor, CoDelShedder> executorShedders = Maps.newConcurrentHashMap();
 
     public DefaultProviderProcessor(JServer server) {
-        this.server = server;
-
-        ExecutorFactory factory = (ExecutorFactory) JServiceLoader.load(ProviderExecutorFactory.class);
-        executor = factory.newExecutor(PROCESSOR_CORE_NUM_WORKERS);
+        this(server, ((ExecutorFactory) JServiceLoader.load(ProviderExecutorFactory.class))
+                .newExecutor(PROCESSOR_CORE_NUM_WORKERS));
     }
 
     public DefaultProviderProcessor(JServer server, Executor executor) {
         this.server = server;
         this.executor = executor;
+        // 没有executor时请求直接在IO线程处理, 不会排队
+        if (executor != null && PROCESSOR_CODEL_TARGET_MILLIS > 0) {
+            loadShedder = new CoDelShedder(PROCESSOR_CODEL_TARGET_MILLIS, PROCESSOR_CODEL_INTERVAL_MILLIS);
+        } else {
+            loadShedder = null;
+        }
     }
 
     @Override
@@ -59,9 +73,39 @@ public class DefaultProviderProcessor extends AbstractProviderProcessor {
         MessageTask task = new MessageTask(this, channel, request);
         if (executor == null) {
             task.run();
+        } else if (server.getFairScheduler() != null || routesOnIoThread(request)) {
+            // 公平调度的队列在线程池之前, 或者方法不在共享线程池执行, 先在IO线程完成路由(不解码参数)
+            task.route();
         } else {
-            executor.execute(task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.rejected();
+            }
+        }
+    }
+
+    // 按请求体中的服务和方法标识查找方法分派表, 指定了执行位置的方法和有私有executor的服务在IO线程路由,
+    // 之后直接交给各自的executor(或在IO线程执行), 不经过共享线程池
+    private boolean routesOnIoThread(JRequest request) {
+        if (!server.hasIoThreadRouting()) {
+            return false;
         }
+        byte[] bytes = request.bytes();
+        ServiceWrapper service = server.lookupService(MessageWrapper.serviceId(bytes));
+        if (service == null) {
+            return false;
+        }
+        if (service.getExecutor() != null) {
+            return true;
+        }
+        ServiceMethod method = service.getMethod(MessageWrapper.methodId(bytes));
+        return method != null && method.getPlacement() != Placement.DEFAULT;
+    }
+
+    @Override
+    public void handleRejected(JChannel channel, JRequest request) {
+        new MessageTask(this, channel, request).rejected();
     }
 
     @Override
@@ -69,6 +113,41 @@ public class DefaultProviderProcessor extends AbstractProviderProcessor {
         return server.lookupService(directory);
     }
 
+    @Override
+    public ServiceWrapper lookupService(int serviceId) {
+        return server.lookupService(serviceId);
+    }
+
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public FairScheduler getFairScheduler() {
+        return server.getFairScheduler();
+    }
+
+    @Override
+    public CoDelShedder getLoadShedder(Executor executor) {
+        if (executor == this.executor) {
+            return loadShedder;
+        }
+        if (executor == null || PROCESSOR_CODEL_TARGET_MILLIS <= 0) {
+            return null;
+        }
+        // 服务私有的线程池和DEDICATED方法的线程池各自排队, 各自判断是否过载
+        CoDelShedder shedder = executorShedders.get(executor);
+        if (shedder == null) {
+            CoDelShedder newShedder = new CoDelShedder(PROCESSOR_CODEL_TARGET_MILLIS, PROCESSOR_CODEL_INTERVAL_MILLIS);
+            shedder = executorShedders.putIfAbsent(executor, newShedder);
+            if (shedder == null) {
+                shedder = newShedder;
+            }
+        }
+        return shedder;
+    }
+
     @Override
     public ControlResult flowControl(JRequest request) {
         FlowController<JRequest> controller = server.getFlowController();
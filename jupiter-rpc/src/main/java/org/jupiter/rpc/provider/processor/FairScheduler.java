@@ -0,0 +1,509 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.provider.processor;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.jupiter.common.concurrent.RejectedRunnable;
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.rpc.metric.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.jupiter.common.util.JConstants.PROCESSOR_FAIR_FLOW_IDLE_MILLIS;
+import static org.jupiter.common.util.JConstants.PROCESSOR_FAIR_MAX_FLOWS;
+import static org.jupiter.common.util.JConstants.PROCESSOR_FAIR_QUEUE_MAX_DEPTH;
+import static org.jupiter.common.util.Preconditions.checkArgument;
+
+/**
+ * 处理线程前的公平调度器.
+ *
+ * 请求按(服务, 调用方应用)分到各自的队列, 队列之间以赤字轮询(deficit round-robin)的方式被处理线程取出执行,
+ * 每一轮一个队列最多执行 [服务权重 * 应用权重] 个请求; 同时按服务和按应用分别限制最大并发(舱壁隔离),
+ * 达到并发上限的队列暂不参与调度, 直到它有请求执行完成.
+ *
+ * 队列在处理线程之前: {@link #submit(String, String, Runnable, Executor)} 把请求放入队列后只向线程池提交
+ * 一个取任务的令牌, 处理线程拿到令牌后按调度顺序从队列中取出请求执行(不一定是与令牌一起放入的那个),
+ * 直到没有可执行的请求为止, 所以线程池队列中的先后顺序不再决定请求的执行顺序, 某个应用的突发请求也只会
+ * 堆积在它自己的队列中. 没有线程池时 {@link #execute(String, String, Runnable)} 在当前线程完成同样的过程.
+ *
+ * 队列的数量有上限, 达到上限时先清理空闲太久的队列, 仍然没有空位时, 没有配置 {@link #appQuota} 的应用的请求
+ * 合并到服务的默认队列中 (与未携带应用名称的请求共用), 调用方应用名称再多也不会无限制地创建队列和统计指标.
+ *
+ * 每个队列的长度和排队时间分别以 "FairScheduler.depth.[服务].[应用]" 和
+ * "FairScheduler.wait.[服务].[应用]" 注册到 {@link Metrics}, 队列被清理时一并移除.
+ *
+ * jupiter
+ * org.jupiter.rpc.provider.processor
+ *
+ * @author jiachun.fjc
+ */
+public class FairScheduler {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(FairScheduler.class);
+
+    private static final Quota DEFAULT_QUOTA = new Quota(1, 0);
+    private static final String UNKNOWN_APP = "UNKNOWN";
+
+    private final ConcurrentMap<String, Quota> serviceQuotas = Maps.newConcurrentHashMap();
+    private final ConcurrentMap<String, Quota> appQuotas = Maps.newConcurrentHashMap();
+
+    private final int maxQueueDepth;
+    private final int maxFlows;
+    private final long flowIdleNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // 以下状态都只在lock中访问
+    private final Map<String, Flow> flows = Maps.newHashMap();
+    private final Map<String, Bulkhead> serviceBulkheads = Maps.newHashMap();
+    private final Map<String, Bulkhead> appBulkheads = Maps.newHashMap();
+    private final ArrayDeque<Flow> activeFlows = new ArrayDeque<>();
+    private long nextPurgeNanos;
+
+    public FairScheduler() {
+        this(PROCESSOR_FAIR_QUEUE_MAX_DEPTH);
+    }
+
+    public FairScheduler(int maxQueueDepth) {
+        this(maxQueueDepth, PROCESSOR_FAIR_MAX_FLOWS, PROCESSOR_FAIR_FLOW_IDLE_MILLIS);
+    }
+
+    public FairScheduler(int maxQueueDepth, int maxFlows, long flowIdleMillis) {
+        checkArgument(maxQueueDepth > 0, "maxQueueDepth must be positive");
+        checkArgument(maxFlows > 0, "maxFlows must be positive");
+        checkArgument(flowIdleMillis >= 0, "flowIdleMillis must not be negative");
+        this.maxQueueDepth = maxQueueDepth;
+        this.maxFlows = maxFlows;
+        flowIdleNanos = MILLISECONDS.toNanos(flowIdleMillis);
+        nextPurgeNanos = System.nanoTime();
+    }
+
+    /**
+     * Sets the weight and the max concurrency(0 means unlimited) of a service,
+     * it takes effect on the requests scheduled after.
+     */
+    public FairScheduler serviceQuota(String directory, int weight, int maxConcurrency) {
+        serviceQuotas.put(directory, new Quota(weight, maxConcurrency));
+        return this;
+    }
+
+    /**
+     * Sets the weight and the max concurrency(0 means unlimited) of a calling app,
+     * it takes effect on the requests scheduled after. An app with a quota always
+     * has a queue of its own.
+     */
+    public FairScheduler appQuota(String appName, int weight, int maxConcurrency) {
+        appQuotas.put(appName, new Quota(weight, maxConcurrency));
+        return this;
+    }
+
+    /**
+     * Enqueues the task of the service and the calling app, then hands a pull token to
+     * {@code workers}, the worker runs queued tasks in the fair order. Returns false if
+     * the queue is full or the token is rejected, and the task is not queued.
+     */
+    public boolean submit(String directory, String appName, Runnable task, Executor workers) {
+        Entry entry = offerEntry(directory, appName, task);
+        if (entry == null) {
+            return false;
+        }
+
+        Puller puller = new Puller(entry);
+        try {
+            workers.execute(puller);
+        } catch (RejectedExecutionException e) {
+            puller.rejected();
+        }
+        // 已经被其他处理线程取走的请求不能撤回, 由取走它的线程执行
+        return !puller.withdrawn;
+    }
+
+    /**
+     * Enqueues the task of the service and the calling app, then runs tasks in the fair order
+     * on the current thread. Returns false if the queue is full and the task is rejected.
+     */
+    public boolean execute(String directory, String appName, Runnable task) {
+        if (!offer(directory, appName, task)) {
+            return false;
+        }
+        drain();
+        return true;
+    }
+
+    /**
+     * Returns the number of tasks waiting in the queue of the service and the calling app.
+     */
+    public int depth(String directory, String appName) {
+        final ReentrantLock _lock = lock;
+        _lock.lock();
+        try {
+            Flow flow = flows.get(flowKey(directory, appName == null ? UNKNOWN_APP : appName));
+            return flow == null ? 0 : flow.queue.size();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of queues.
+     */
+    public int flows() {
+        final ReentrantLock _lock = lock;
+        _lock.lock();
+        try {
+            return flows.size();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    boolean offer(String directory, String appName, Runnable task) {
+        return offerEntry(directory, appName, task) != null;
+    }
+
+    private Entry offerEntry(String directory, String appName, Runnable task) {
+        if (appName == null) {
+            appName = UNKNOWN_APP;
+        }
+
+        final ReentrantLock _lock = lock;
+        _lock.lock();
+        try {
+            long now = System.nanoTime();
+            Flow flow = flow(directory, appName, now);
+            if (flow.queue.size() >= maxQueueDepth) {
+                return null;
+            }
+            Entry entry = new Entry(flow, task, now);
+            flow.queue.addLast(entry);
+            flow.lastUsedNanos = now;
+            if (!flow.active) {
+                flow.active = true;
+                flow.deficit = 0;
+                activeFlows.addLast(flow);
+            }
+            return entry;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    // 从队列中撤回还没有被取走的请求
+    private boolean withdraw(Entry entry) {
+        final ReentrantLock _lock = lock;
+        _lock.lock();
+        try {
+            // 变空的队列由runNext移出activeFlows
+            return entry.flow.queue.removeFirstOccurrence(entry);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    // 取出并执行请求, 直到没有可执行的请求(队列为空或者舱壁已满)
+    void drain() {
+        while (runNext()) {
+            // 执行完成的请求可能释放了已满的舱壁, 继续执行被阻塞的请求
+        }
+    }
+
+    /**
+     * Runs the next task in the fair order, returns false if there's no runnable task.
+     */
+    boolean runNext() {
+        Flow flow;
+        Entry entry;
+        final ReentrantLock _lock = lock;
+        _lock.lock();
+        try {
+            flow = null;
+            entry = null;
+            // 第一遍可能只是补充各个队列的赤字, 所以最多扫描两遍
+            for (int scanned = 0, limit = activeFlows.size() << 1; scanned < limit; scanned++) {
+                Flow f = activeFlows.peekFirst();
+                if (f == null) {
+                    break;
+                }
+                if (f.queue.isEmpty()) {
+                    activeFlows.pollFirst();
+                    f.active = false;
+                    continue;
+                }
+                if (!f.admits()) {
+                    // 舱壁已满, 保留赤字, 让出本轮
+                    activeFlows.addLast(activeFlows.pollFirst());
+                    continue;
+                }
+                if (f.deficit <= 0) {
+                    f.deficit += f.weight();
+                    activeFlows.addLast(activeFlows.pollFirst());
+                    continue;
+                }
+
+                f.deficit--;
+                entry = f.queue.pollFirst();
+                f.acquire();
+                if (f.queue.isEmpty()) {
+                    activeFlows.pollFirst();
+                    f.active = false;
+                }
+                flow = f;
+                break;
+            }
+        } finally {
+            _lock.unlock();
+        }
+
+        if (entry == null) {
+            return false;
+        }
+
+        flow.waitTimer.update(System.nanoTime() - entry.enqueueNanos, NANOSECONDS);
+        try {
+            entry.task.run();
+        } catch (Throwable t) {
+            logger.error("An exception has been caught while running task in {}.", flow, t);
+        }
+
+        _lock.lock();
+        try {
+            flow.release();
+            flow.lastUsedNanos = System.nanoTime();
+        } finally {
+            _lock.unlock();
+        }
+        return true;
+    }
+
+    private Flow flow(String directory, String appName, long now) {
+        Flow flow = flows.get(flowKey(directory, appName));
+        if (flow != null) {
+            return flow;
+        }
+
+        if (flows.size() >= maxFlows) {
+            purgeIdleFlows(now);
+            if (flows.size() >= maxFlows && !appQuotas.containsKey(appName)) {
+                // 没有空位, 合并到服务的默认队列
+                appName = UNKNOWN_APP;
+                flow = flows.get(flowKey(directory, appName));
+                if (flow != null) {
+                    return flow;
+                }
+            }
+        }
+
+        Bulkhead serviceBulkhead = serviceBulkheads.get(directory);
+        if (serviceBulkhead == null) {
+            serviceBulkhead = new Bulkhead(directory, serviceQuotas);
+            serviceBulkheads.put(directory, serviceBulkhead);
+        }
+        Bulkhead appBulkhead = appBulkheads.get(appName);
+        if (appBulkhead == null) {
+            appBulkhead = new Bulkhead(appName, appQuotas);
+            appBulkheads.put(appName, appBulkhead);
+        }
+        flow = new Flow(flowKey(directory, appName), serviceBulkhead, appBulkhead);
+        flows.put(flow.key, flow);
+        flow.depthGauge = registerDepthGauge(flow);
+        return flow;
+    }
+
+    // 清理空闲太久的队列, 同一个周期内最多扫描一次
+    private void purgeIdleFlows(long now) {
+        if (now - nextPurgeNanos < 0) {
+            return;
+        }
+        nextPurgeNanos = now + flowIdleNanos;
+
+        for (Iterator<Flow> it = flows.values().iterator(); it.hasNext();) {
+            Flow flow = it.next();
+            if (flow.active || flow.inFlight > 0 || now - flow.lastUsedNanos < flowIdleNanos) {
+                continue;
+            }
+            it.remove();
+            if (--flow.serviceBulkhead.flows == 0 && flow.serviceBulkhead.inFlight == 0) {
+                serviceBulkheads.remove(flow.serviceBulkhead.name);
+            }
+            if (--flow.appBulkhead.flows == 0 && flow.appBulkhead.inFlight == 0) {
+                appBulkheads.remove(flow.appBulkhead.name);
+            }
+            if (flow.depthGauge != null) {
+                MetricRegistry registry = Metrics.metricRegistry();
+                registry.remove(flow.depthGauge);
+                registry.remove(MetricRegistry.name(FairScheduler.class, "wait", flow.key));
+            }
+        }
+    }
+
+    private static String flowKey(String directory, String appName) {
+        return directory + '.' + appName;
+    }
+
+    private static String registerDepthGauge(final Flow flow) {
+        String name = MetricRegistry.name(FairScheduler.class, "depth", flow.key);
+        try {
+            Metrics.metricRegistry().register(name, new Gauge<Integer>() {
+
+                @Override
+                public Integer getValue() {
+                    return flow.queue.size(); // 只用于统计, 不需要精确
+                }
+            });
+            return name;
+        } catch (IllegalArgumentException ignored) {
+            // 同一个进程中的多个server可能有同名的队列, 只统计先注册的
+            return null;
+        }
+    }
+
+    /**
+     * 交给线程池的取任务令牌, 被线程池拒绝时撤回与它一起放入的请求.
+     */
+    final class Puller implements RejectedRunnable {
+
+        private final Entry entry;
+        volatile boolean withdrawn;
+
+        Puller(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void run() {
+            drain();
+        }
+
+        @Override
+        public void rejected() {
+            withdrawn = withdraw(entry);
+        }
+    }
+
+    static final class Quota {
+
+        final int weight;
+        final int maxConcurrency;
+
+        Quota(int weight, int maxConcurrency) {
+            checkArgument(weight > 0, "weight must be positive");
+            checkArgument(maxConcurrency >= 0, "maxConcurrency must not be negative");
+            this.weight = weight;
+            this.maxConcurrency = maxConcurrency;
+        }
+    }
+
+    static final class Bulkhead {
+
+        final String name;
+        final ConcurrentMap<String, Quota> quotas;
+        int inFlight;
+        int flows; // 引用它的队列数
+
+        Bulkhead(String name, ConcurrentMap<String, Quota> quotas) {
+            this.name = name;
+            this.quotas = quotas;
+        }
+
+        Quota quota() {
+            Quota quota = quotas.get(name);
+            return quota == null ? DEFAULT_QUOTA : quota;
+        }
+
+        boolean admits() {
+            int max = quota().maxConcurrency;
+            return max == 0 || inFlight < max;
+        }
+    }
+
+    static final class Flow {
+
+        final String key;
+        final Bulkhead serviceBulkhead;
+        final Bulkhead appBulkhead;
+        final ArrayDeque<Entry> queue = new ArrayDeque<>();
+        final Timer waitTimer;
+        String depthGauge;
+
+        boolean active;
+        int deficit;
+        int inFlight;
+        long lastUsedNanos;
+
+        Flow(String key, Bulkhead serviceBulkhead, Bulkhead appBulkhead) {
+            this.key = key;
+            this.serviceBulkhead = serviceBulkhead;
+            this.appBulkhead = appBulkhead;
+            serviceBulkhead.flows++;
+            appBulkhead.flows++;
+            waitTimer = Metrics.timer(FairScheduler.class, "wait", key);
+        }
+
+        int weight() {
+            return serviceBulkhead.quota().weight * appBulkhead.quota().weight;
+        }
+
+        boolean admits() {
+            return serviceBulkhead.admits() && appBulkhead.admits();
+        }
+
+        void acquire() {
+            inFlight++;
+            serviceBulkhead.inFlight++;
+            appBulkhead.inFlight++;
+        }
+
+        void release() {
+            inFlight--;
+            serviceBulkhead.inFlight--;
+            appBulkhead.inFlight--;
+        }
+
+        @Override
+        public String toString() {
+            return "Flow{" +
+                    "key=" + key +
+                    ", depth=" + queue.size() +
+                    '}';
+        }
+    }
+
+    static final class Entry {
+
+        final Flow flow;
+        final Runnable task;
+        final long enqueueNanos;
+
+        Entry(Flow flow, Runnable task, long enqueueNanos) {
+            this.flow = flow;
+            this.task = task;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+}
@@ -21,6 +21,8 @@ import org.jupiter.rpc.channel.JChannel;
 import org.jupiter.rpc.flow.control.FlowController;
 import org.jupiter.rpc.provider.LookupService;
 
+import java.util.concurrent.Executor;
+
 /**
  * jupiter
  * org.jupiter.rpc.provider.processor
@@ -38,4 +40,24 @@ public interface ProviderProcessor extends LookupService, FlowController<JReques
      * 处理异常
      */
     void handleException(JChannel channel, JRequest request, Throwable cause);
+
+    /**
+     * 不经处理直接拒绝请求(服务繁忙)
+     */
+    void handleRejected(JChannel channel, JRequest request);
+
+    /**
+     * 处理请求的共享线程池, 没有时请求直接在IO线程处理
+     */
+    Executor getExecutor();
+
+    /**
+     * 处理线程前的公平调度器, 没有时返回null
+     */
+    FairScheduler getFairScheduler();
+
+    /**
+     * 排在 {@code executor} 队列中的请求基于排队时间的过载保护, 每个线程池一个, 没有时返回null
+     */
+    CoDelShedder getLoadShedder(Executor executor);
 }
@@ -19,11 +19,14 @@ package org.jupiter.rpc.provider.processor.task;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
+import org.jupiter.common.concurrent.NamedThreadFactory;
 import org.jupiter.common.concurrent.RejectedRunnable;
 import org.jupiter.common.util.StringBuilderHelper;
 import org.jupiter.common.util.SystemClock;
 import org.jupiter.common.util.internal.logging.InternalLogger;
 import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.rpc.JPromise;
+import org.jupiter.rpc.Placement;
 import org.jupiter.rpc.JRequest;
 import org.jupiter.rpc.JResponse;
 import org.jupiter.rpc.Status;
@@ -34,20 +37,35 @@ import org.jupiter.rpc.exception.BadRequestException;
 import org.jupiter.rpc.exception.FlowControlException;
 import org.jupiter.rpc.exception.ServerBusyException;
 import org.jupiter.rpc.exception.ServiceNotFoundException;
+import org.jupiter.rpc.exception.TimeoutException;
 import org.jupiter.rpc.flow.control.ControlResult;
 import org.jupiter.rpc.flow.control.FlowController;
 import org.jupiter.rpc.metric.Metrics;
+import org.jupiter.rpc.model.metadata.ArgsCodec;
+import org.jupiter.rpc.model.metadata.ArgsWrapper;
+import org.jupiter.rpc.model.metadata.Identifiers;
 import org.jupiter.rpc.model.metadata.MessageWrapper;
 import org.jupiter.rpc.model.metadata.ResultWrapper;
+import org.jupiter.rpc.model.metadata.ServiceMethod;
 import org.jupiter.rpc.model.metadata.ServiceWrapper;
+import org.jupiter.rpc.provider.RequestCollapser;
+import org.jupiter.rpc.provider.ResultCache;
+import org.jupiter.rpc.provider.processor.CoDelShedder;
+import org.jupiter.rpc.provider.processor.FairScheduler;
 import org.jupiter.rpc.provider.processor.ProviderProcessor;
 
-import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static org.jupiter.common.util.Reflects.fastInvoke;
-import static org.jupiter.common.util.Reflects.findMatchingParameterTypes;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.jupiter.common.util.JConstants.PROCESSOR_INLINE_BLOCKING_THRESHOLD_MICROS;
+import static org.jupiter.common.util.JConstants.PROCESSOR_INLINE_BLOCKING_WINDOW_MILLIS;
+import static org.jupiter.common.util.JConstants.PROCESSOR_INLINE_DEMOTION_MILLIS;
+import static org.jupiter.common.util.JConstants.PROCESSOR_INLINE_MAX_BLOCKING_TIMES;
 import static org.jupiter.rpc.Status.*;
 import static org.jupiter.serialization.SerializerHolder.serializerImpl;
 
@@ -67,6 +85,20 @@ public class MessageTask implements RejectedRunnable {
     private static final Timer processingTimer              = Metrics.timer("processing");
     // 请求被拒绝次数统计
     private static final Meter rejectionMeter               = Metrics.meter("rejection");
+    // 因排队时间过长被过载保护拒绝的次数统计
+    private static final Meter shedMeter                    = Metrics.meter("shed");
+    // 请求在处理线程池队列中的排队时间统计
+    private static final Timer sojournTimer                 = Metrics.timer("queue.sojourn");
+    // 因调用方已超时而被丢弃的请求数统计
+    private static final Meter expiredMeter                 = Metrics.meter("expired");
+    // 按执行位置统计的请求数, 以及在IO线程执行的耗时和被降级, 恢复的方法数
+    private static final Meter inlineMeter                  = Metrics.meter("placement.inline");
+    private static final Meter sharedMeter                  = Metrics.meter("placement.shared");
+    private static final Meter dedicatedMeter               = Metrics.meter("placement.dedicated");
+    private static final Meter privateMeter                 = Metrics.meter("placement.private");
+    private static final Timer inlineTimer                  = Metrics.timer("placement.inline.time");
+    private static final Meter demotionMeter                = Metrics.meter("placement.demotion");
+    private static final Meter promotionMeter               = Metrics.meter("placement.promotion");
     // 请求数据大小统计(不包括Jupiter协议头的16个字节)
     private static final Histogram requestSizeHistogram     = Metrics.histogram("request.size");
     // 响应数据大小统计(不包括Jupiter协议头的16个字节)
@@ -75,11 +107,33 @@ public class MessageTask implements RejectedRunnable {
     private final ProviderProcessor processor;
     private final JChannel channel;
     private final JRequest request;
+    private long enqueueNanos;          // 进入处理线程池队列的时间
+    private boolean onIoThread;         // 在IO线程上完成路由, 除INLINE之外的方法还需要交给线程池执行
+
+    // 限流器放行的结果, 响应写出后归还
+    private ControlResult appPermit;
+    private ControlResult childPermit;
+
+    // 结果缓存与请求合并, 以方法参数的编码字节作为key
+    private byte[] argsBytes;
+    private boolean codecEncoded;
+    private ResultCache resultCache;
+    private RequestCollapser.Flight flight; // 合并请求中的leader才有, 结果分发给等待的follower
 
     public MessageTask(ProviderProcessor processor, JChannel channel, JRequest request) {
         this.processor = processor;
         this.channel = channel;
         this.request = request;
+        enqueueNanos = System.nanoTime();
+    }
+
+    /**
+     * Routes the request on the I/O thread without decoding the arguments, then executes
+     * the method inline if it's placed {@link Placement#INLINE}, or hands it off to an executor.
+     */
+    public void route() {
+        onIoThread = true;
+        run();
     }
 
     @Override
@@ -88,21 +142,50 @@ public class MessageTask implements RejectedRunnable {
         final ProviderProcessor _processor = processor;
         final JRequest _request = request;
 
+        // load shedding, 在反序列化之前拒绝, 不再为调用方可能已经放弃的请求浪费资源
+        if (!onIoThread && shed(_processor.getExecutor())) {
+            return;
+        }
+
         // deserialization
         final MessageWrapper msg;
         try {
             byte[] bytes = _request.bytes();
             _request.bytes(null);
             requestSizeHistogram.update(bytes.length);
-            msg = serializerImpl().readObject(bytes, MessageWrapper.class);
+            msg = MessageWrapper.decode(bytes);
             _request.message(msg);
         } catch (Throwable t) {
             rejected(BAD_REQUEST);
             return;
         }
 
+        // 调用方已经超时, 不再处理
+        if (isExpired(msg)) {
+            rejected(SERVER_TIMEOUT);
+            return;
+        }
+
         // lookup service
-        final ServiceWrapper service = _processor.lookupService(msg.getMetadata());
+        final ServiceWrapper service;
+        ServiceMethod method = null; // 用于决定执行位置, 按方法名调用的重载方法需要解码参数后才能确定
+        int serviceId = msg.getServiceId();
+        if (serviceId == Identifiers.NONE) {
+            service = _processor.lookupService(msg.getMetadata());
+            if (service != null) {
+                method = service.getMethod(msg.getMethodName());
+            }
+        } else {
+            service = _processor.lookupService(serviceId);
+            if (service != null) {
+                msg.setMetadata(service.getMetadata());
+                // 限流器可能按方法限流, 提前解析方法名称
+                method = service.getMethod(msg.getMethodId());
+                if (method != null) {
+                    msg.setMethodName(method.getName());
+                }
+            }
+        }
         if (service == null) {
             rejected(SERVICE_NOT_FOUND);
             return;
@@ -114,6 +197,7 @@ public class MessageTask implements RejectedRunnable {
             rejected(APP_FLOW_CONTROL, ctrlResult);
             return;
         }
+        appPermit = ctrlResult;
 
         // child(provider) flow control
         FlowController<JRequest> childController = service.getFlowController();
@@ -123,14 +207,157 @@ public class MessageTask implements RejectedRunnable {
                 rejected(PROVIDER_FLOW_CONTROL, ctrlResult);
                 return;
             }
+            childPermit = ctrlResult;
         }
 
         // processing
-        Executor childExecutor = service.getExecutor();
-        if (childExecutor == null) {
+        if (method != null && method.isDemoted() && method.tryPromote(System.nanoTime())) {
+            promotionMeter.mark();
+            logger.info("Method {} is promoted back to {}.", method.getCallInfo(), Placement.INLINE);
+        }
+        Placement placement = method == null ? Placement.DEFAULT : method.getPlacement();
+        switch (placement) {
+            case INLINE:
+                inlineMeter.mark();
+                processInline(service, method);
+                break;
+            case DEDICATED:
+                dedicatedMeter.mark();
+                execute(method.getPlacementExecutor(), service);
+                break;
+            default:
+                Executor childExecutor = placement == Placement.DEFAULT ? service.getExecutor() : null;
+                if (childExecutor == null) {
+                    sharedMeter.mark();
+                    processShared(service);
+                } else {
+                    privateMeter.mark();
+                    execute(childExecutor, service);
+                }
+        }
+    }
+
+    // 交给服务私有的线程池执行, 排队时间从此刻开始计算, 被拒绝时归还许可和预算并回复服务繁忙
+    private void execute(final Executor executor, final ServiceWrapper service) {
+        onIoThread = false;
+        enqueueNanos = System.nanoTime();
+        try {
+            executor.execute(new RejectedRunnable() {
+
+                @Override
+                public void run() {
+                    if (!shed(executor)) {
+                        process(service);
+                    }
+                }
+
+                @Override
+                public void rejected() {
+                    MessageTask.this.rejected();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected();
+        }
+    }
+
+    // 在executor的队列中排队太久时拒绝请求
+    private boolean shed(Executor executor) {
+        long now = System.nanoTime();
+        long sojournNanos = now - enqueueNanos;
+        sojournTimer.update(sojournNanos, NANOSECONDS);
+        CoDelShedder shedder = processor.getLoadShedder(executor);
+        if (shedder != null && shedder.shouldShed(sojournNanos, now)) {
+            shedMeter.mark();
+            rejected(SERVER_BUSY);
+            return true;
+        }
+        return false;
+    }
+
+    // 在IO线程执行, 一个窗口内多次被观察到阻塞的方法降级到共享线程池, 降级到期后再恢复
+    private void processInline(ServiceWrapper service, ServiceMethod method) {
+        if (!onIoThread) {
             process(service);
+            return;
+        }
+
+        long start = System.nanoTime();
+        process(service);
+        long elapsedNanos = System.nanoTime() - start;
+
+        inlineTimer.update(elapsedNanos, NANOSECONDS);
+        if (elapsedNanos > MICROSECONDS.toNanos(PROCESSOR_INLINE_BLOCKING_THRESHOLD_MICROS)
+                && method.recordInlineBlocking(
+                        PROCESSOR_INLINE_MAX_BLOCKING_TIMES,
+                        MILLISECONDS.toNanos(PROCESSOR_INLINE_BLOCKING_WINDOW_MILLIS),
+                        MILLISECONDS.toNanos(PROCESSOR_INLINE_DEMOTION_MILLIS),
+                        System.nanoTime())) {
+            demotionMeter.mark();
+            logger.warn("Method {} is observed to block the I/O thread, demoted to {}.",
+                    method.getCallInfo(), Placement.SHARED);
+        }
+    }
+
+    private void processShared(final ServiceWrapper service) {
+        final ProviderProcessor _processor = processor; // stack copy
+
+        final Executor executor = _processor.getExecutor();
+        FairScheduler scheduler = _processor.getFairScheduler();
+        if (scheduler != null) {
+            processFair(scheduler, executor, service);
+            return;
+        }
+
+        if (onIoThread && executor != null) {
+            // 在IO线程上完成了路由, 交给共享线程池, 排队时间从此刻开始计算
+            onIoThread = false;
+            enqueueNanos = System.nanoTime();
+            try {
+                executor.execute(new RejectedRunnable() {
+
+                    @Override
+                    public void run() {
+                        if (!shed(executor)) {
+                            process(service);
+                        }
+                    }
+
+                    @Override
+                    public void rejected() {
+                        MessageTask.this.rejected();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected();
+            }
+            return;
+        }
+
+        process(service);
+    }
+
+    // 按(服务, 调用方应用)公平调度, 不一定立即执行, 也可能先执行其他队列中的请求
+    private void processFair(FairScheduler scheduler, final Executor executor, final ServiceWrapper service) {
+        String directory = service.getMetadata().directory();
+        String appName = request.message().getAppName();
+
+        boolean accepted;
+        if (onIoThread && executor != null) {
+            // 请求排在调度器的队列中, 处理线程从调度器取出执行, 排队时间从此刻开始计算
+            onIoThread = false;
+            enqueueNanos = System.nanoTime();
+            accepted = scheduler.submit(directory, appName, new Runnable() {
+
+                @Override
+                public void run() {
+                    if (!shed(executor)) {
+                        process(service);
+                    }
+                }
+            }, executor);
         } else {
-            childExecutor.execute(new Runnable() {
+            accepted = scheduler.execute(directory, appName, new Runnable() {
 
                 @Override
                 public void run() {
@@ -138,6 +365,9 @@ public class MessageTask implements RejectedRunnable {
                 }
             });
         }
+        if (!accepted) {
+            rejected(SERVER_BUSY);
+        }
     }
 
     @Override
@@ -152,6 +382,9 @@ public class MessageTask implements RejectedRunnable {
     private void rejected(Status status, Object signal) {
         final JRequest _request = request; // stack copy
 
+        // 可能已被前面的限流器放行, 却被后面的环节拒绝
+        releaseResources();
+
         rejectionMeter.mark();
         ResultWrapper result = new ResultWrapper();
         switch (status) {
@@ -164,6 +397,10 @@ public class MessageTask implements RejectedRunnable {
             case SERVICE_NOT_FOUND:
                 result.setError(new ServiceNotFoundException(_request.message().toString()));
                 break;
+            case SERVER_TIMEOUT:
+                expiredMeter.mark();
+                result.setError(new TimeoutException("deadline exceeded: " + _request.message(), null, SERVER_TIMEOUT));
+                break;
             case APP_FLOW_CONTROL:
             case PROVIDER_FLOW_CONTROL:
                 if (signal != null && signal instanceof ControlResult) {
@@ -182,7 +419,7 @@ public class MessageTask implements RejectedRunnable {
         byte[] bytes = serializerImpl().writeObject(result);
 
         final long invokeId = _request.invokeId();
-        channel.write(JResponse.getInstance(invokeId, status, bytes), new JFutureListener<JChannel>() {
+        write(JResponse.getInstance(invokeId, status, bytes), new JFutureListener<JChannel>() {
 
             @Override
             public void operationSuccess(JChannel channel) throws Exception {
@@ -196,18 +433,62 @@ public class MessageTask implements RejectedRunnable {
         });
     }
 
+    private boolean isExpired(MessageWrapper msg) {
+        int timeoutMillis = msg.getTimeoutMillis();
+        long timestamp = request.timestamp(); // 请求被解码的时间
+        return timeoutMillis > 0 && timestamp > 0 && SystemClock.millisClock().now() - timestamp > timeoutMillis;
+    }
+
+    private static void decodeArgs(MessageWrapper msg, ArgsCodec codec) {
+        byte[] argsBytes = msg.getArgsBytes();
+        if (argsBytes != null) {
+            msg.setArgs(ArgsWrapper.decode(codec, argsBytes));
+            msg.setArgsBytes(null);
+        }
+    }
+
+    private static Object invoke(ServiceMethod method, Object provider, MessageWrapper msg, boolean typedInvocable) {
+        if (typedInvocable) {
+            byte[] argsBytes = msg.getArgsBytes();
+            msg.setArgsBytes(null);
+            return method.invoke(provider, argsBytes);
+        }
+        return method.invoke(provider, msg.getArgs());
+    }
+
+    @SuppressWarnings("unchecked")
     private void process(ServiceWrapper service) {
         final JRequest _request = request; // stack copy
 
+        MessageWrapper msg = _request.message();
+        // 可能在队列中等待了一段时间, 解码参数之前再检查一次
+        if (isExpired(msg)) {
+            rejected(SERVER_TIMEOUT);
+            return;
+        }
+
         try {
-            MessageWrapper msg = _request.message();
-            String methodName = msg.getMethodName();
+            ServiceMethod method;
+            int methodId = msg.getMethodId();
+            argsBytes = msg.getArgsBytes();
+            if (methodId == Identifiers.NONE) {
+                // 需要参数才能匹配重载方法
+                decodeArgs(msg, null);
+                method = service.getMethod(msg.getMethodName(), msg.getArgs());
+                if (method == null) {
+                    throw new NoSuchMethodException(msg.getMethodName());
+                }
+            } else {
+                // 方法的精确签名, 不再需要匹配重载方法
+                method = service.getMethod(methodId);
+                if (method == null) {
+                    throw new NoSuchMethodException("methodId: " + methodId);
+                }
+                msg.setMethodName(method.getName());
+                codecEncoded = method.getArgsCodec() != null;
+            }
             String traceId = msg.getTraceId();
-            String directory = msg.getMetadata().directory(); // 避免StringBuilderHelper被嵌套使用
-            String callInfo = StringBuilderHelper.get()
-                    .append(directory)
-                    .append('#')
-                    .append(methodName).toString();
+            String callInfo = method.getCallInfo();
 
             final long invokeId = _request.invokeId();
 
@@ -230,50 +511,222 @@ public class MessageTask implements RejectedRunnable {
                 }
             }
 
-            Object invokeResult = null;
-            Timer.Context timeCtx = Metrics.timer(callInfo).time();
-            try {
-                Object[] args = msg.getArgs();
-                List<Class<?>[]> parameterTypesList = service.getMethodParameterTypes(methodName);
-                if (parameterTypesList == null) {
-                    throw new NoSuchMethodException(methodName);
+            // 结果缓存, 命中时不再解码参数, 调用方法和序列化结果
+            resultCache = method.getResultCache();
+            if (resultCache != null) {
+                byte[] bytes = resultCache.get(argsBytes, codecEncoded);
+                if (bytes != null) {
+                    writeBytes(invokeId, bytes);
+                    return;
+                }
+            }
+
+            // 请求合并, 已有相同的请求正在执行时等待它的结果
+            RequestCollapser collapser = method.getCollapser();
+            if (collapser != null) {
+                flight = collapser.join(argsBytes, codecEncoded, new RequestCollapser.Waiter() {
+
+                    @Override
+                    public void complete(byte[] resultBytes) {
+                        writeBytes(invokeId, resultBytes);
+                    }
+
+                    @Override
+                    public void failure(Throwable cause) {
+                        handleException(cause);
+                    }
+                });
+                if (flight == null) {
+                    return;
                 }
-                invokeResult = fastInvoke(
-                        service.getServiceProvider(),
-                        methodName,
-                        findMatchingParameterTypes(parameterTypesList, args),
-                        args);
+            }
+
+            // 能够直接由参数字节调用时不再解码为 Object[], 按方法名调用时已经解码过
+            boolean typedInvocable = msg.getArgsBytes() != null && method.isTypedInvocable();
+            if (!typedInvocable) {
+                decodeArgs(msg, method.getArgsCodec());
+            }
+            Object provider = service.getServiceProvider();
+
+            final Timer.Context timeCtx = method.getTimer().time();
+            if (method.isAsync()) {
+                JPromise<Object> promise;
+                try {
+                    promise = (JPromise<Object>) invoke(method, provider, msg, typedInvocable);
+                } catch (Throwable t) {
+                    timeCtx.stop();
+                    throw t;
+                }
+                if (promise == null) {
+                    timeCtx.stop();
+                    writeResult(invokeId, null);
+                    return;
+                }
+
+                // 调用方超时后promise仍未完成则使其失败, 不再无限期地占用限流许可和请求字节数预算
+                final ScheduledFuture<?> timeout = scheduleTimeout(promise, msg);
+
+                // 不阻塞处理线程, promise完成时再序列化并写回响应
+                promise.addListener(new JPromise.Listener<Object>() {
+
+                    @Override
+                    public void complete(Object value) throws Exception {
+                        cancelTimeout(timeout);
+                        timeCtx.stop();
+                        try {
+                            writeResult(invokeId, value);
+                        } catch (Throwable t) {
+                            handleException(t);
+                        }
+                    }
+
+                    @Override
+                    public void failure(Throwable cause) {
+                        cancelTimeout(timeout);
+                        timeCtx.stop();
+                        handleException(cause);
+                    }
+                });
+                return;
+            }
+
+            Object invokeResult;
+            try {
+                invokeResult = invoke(method, provider, msg, typedInvocable);
             } finally {
                 timeCtx.stop();
             }
 
-            ResultWrapper result = new ResultWrapper();
-            result.setResult(invokeResult);
-            final byte[] bytes = serializerImpl().writeObject(result);
-
-            channel.write(JResponse.getInstance(invokeId, OK, bytes), new JFutureListener<JChannel>() {
+            writeResult(invokeId, invokeResult);
+        } catch (Throwable t) {
+            handleException(t);
+        }
+    }
 
-                @Override
-                public void operationSuccess(JChannel channel) throws Exception {
-                    long duration = SystemClock.millisClock().now() - _request.timestamp();
+    private ScheduledFuture<?> scheduleTimeout(final JPromise<Object> promise, final MessageWrapper msg) {
+        int timeoutMillis = msg.getTimeoutMillis();
+        if (timeoutMillis <= 0 || promise.isDone()) {
+            return null;
+        }
 
-                    responseSizeHistogram.update(bytes.length);
-                    processingTimer.update(duration, MILLISECONDS);
+        // 超时时间从请求被解码时开始计算, 与isExpired一致
+        long remainingMillis = timeoutMillis - (SystemClock.millisClock().now() - request.timestamp());
+        Runnable task = new Runnable() {
 
-                    logger.debug("Service response[id: {}, length: {}] sent out, duration: {} millis.",
-                            invokeId, bytes.length, duration);
+            @Override
+            public void run() {
+                if (promise.failure(new TimeoutException("deadline exceeded: " + msg, null, SERVER_TIMEOUT))) {
+                    expiredMeter.mark();
                 }
+            }
+        };
+        if (remainingMillis <= 0) {
+            task.run();
+            return null;
+        }
+        return PromiseTimerHolder.timer.schedule(task, remainingMillis, MILLISECONDS);
+    }
 
-                @Override
-                public void operationFailure(JChannel channel, Throwable cause) throws Exception {
-                    long duration = SystemClock.millisClock().now() - _request.timestamp();
+    private static void cancelTimeout(ScheduledFuture<?> timeout) {
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+    }
 
-                    logger.warn("Service response[id: {}, length: {}] sent failed, duration: {} millis, {}, {}.",
-                            invokeId, bytes.length, duration, channel, cause);
-                }
-            });
-        } catch (Throwable t) {
-            processor.handleException(channel, _request, t);
+    private void writeResult(long invokeId, Object invokeResult) {
+        ResultWrapper result = new ResultWrapper();
+        result.setResult(invokeResult);
+        byte[] bytes = serializerImpl().writeObject(result);
+
+        writeBytes(invokeId, bytes);
+
+        // 先放入缓存, 再结束合并, 之后到达的相同请求可以命中缓存
+        ResultCache cache = resultCache;
+        if (cache != null) {
+            cache.put(argsBytes, codecEncoded, bytes);
+        }
+        RequestCollapser.Flight _flight = flight;
+        if (_flight != null) {
+            flight = null;
+            _flight.complete(bytes);
+        }
+    }
+
+    private void writeBytes(final long invokeId, final byte[] bytes) {
+        final JRequest _request = request; // stack copy
+
+        write(JResponse.getInstance(invokeId, OK, bytes), new JFutureListener<JChannel>() {
+
+            @Override
+            public void operationSuccess(JChannel channel) throws Exception {
+                releaseResources();
+
+                long duration = SystemClock.millisClock().now() - _request.timestamp();
+
+                responseSizeHistogram.update(bytes.length);
+                processingTimer.update(duration, MILLISECONDS);
+
+                logger.debug("Service response[id: {}, length: {}] sent out, duration: {} millis.",
+                        invokeId, bytes.length, duration);
+            }
+
+            @Override
+            public void operationFailure(JChannel channel, Throwable cause) throws Exception {
+                releaseResources();
+
+                long duration = SystemClock.millisClock().now() - _request.timestamp();
+
+                logger.warn("Service response[id: {}, length: {}] sent failed, duration: {} millis, {}, {}.",
+                        invokeId, bytes.length, duration, channel, cause);
+            }
+        });
+    }
+
+    private void handleException(Throwable cause) {
+        releaseResources();
+        try {
+            processor.handleException(channel, request, cause);
+        } finally {
+            RequestCollapser.Flight _flight = flight;
+            if (_flight != null) {
+                flight = null;
+                _flight.failure(cause);
+            }
+        }
+    }
+
+    // 归还限流器的许可和请求字节数预算
+    private void releaseResources() {
+        request.releaseBudget();
+
+        ControlResult permit = appPermit;
+        if (permit != null) {
+            appPermit = null;
+            permit.release();
+        }
+        permit = childPermit;
+        if (permit != null) {
+            childPermit = null;
+            permit.release();
+        }
+    }
+
+    private void write(JResponse response, JFutureListener<JChannel> listener) {
+        // 批量请求的响应也合并为批量响应
+        if (request.batched()) {
+            channel.batchWrite(response, listener);
+        } else {
+            channel.write(response, listener);
+        }
+    }
+
+    private static class PromiseTimerHolder {
+        static final ScheduledThreadPoolExecutor timer =
+                new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("promise.timer", true));
+
+        static {
+            // 大部分promise在超时之前完成, 取消的任务立即从队列中移除
+            timer.setRemoveOnCancelPolicy(true);
         }
     }
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * jupiter
+ * org.jupiter.rpc
+ *
+ * @author jiachun.fjc
+ */
+public class JPromiseTest {
+
+    @Test
+    public void testComplete() throws Exception {
+        final JPromise<String> promise = new JPromise<>();
+        final AtomicReference<Object> before = new AtomicReference<>();
+        promise.addListener(new RecordListener(before));
+
+        try {
+            promise.get(10, TimeUnit.MILLISECONDS);
+            throw new AssertionError("should time out");
+        } catch (TimeoutException ignored) {}
+
+        Thread completer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                promise.complete("Hello Jupiter");
+            }
+        });
+        completer.start();
+
+        assertThat(promise.get(), is("Hello Jupiter"));
+        // listener在完成promise的线程上被通知
+        completer.join();
+        assertThat(before.get(), is((Object) "Hello Jupiter"));
+        assertThat(promise.complete("again"), is(false));
+
+        // 完成之后添加的listener立即被通知
+        AtomicReference<Object> after = new AtomicReference<>();
+        promise.addListener(new RecordListener(after));
+        assertThat(after.get(), is((Object) "Hello Jupiter"));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        JPromise<String> promise = new JPromise<>();
+        AtomicReference<Object> record = new AtomicReference<>();
+        promise.addListener(new RecordListener(record));
+
+        IllegalStateException cause = new IllegalStateException("downstream");
+        assertThat(promise.failure(cause), is(true));
+        assertThat(promise.isDone(), is(true));
+        assertThat(record.get(), sameInstance((Object) cause));
+
+        try {
+            promise.get();
+            throw new AssertionError("should fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), sameInstance((Throwable) cause));
+        }
+    }
+
+    static class RecordListener implements JPromise.Listener<String> {
+
+        private final AtomicReference<Object> record;
+
+        RecordListener(AtomicReference<Object> record) {
+            this.record = record;
+        }
+
+        @Override
+        public void complete(String value) throws Exception {
+            record.set(value);
+        }
+
+        @Override
+        public void failure(Throwable cause) {
+            record.set(cause);
+        }
+    }
+}
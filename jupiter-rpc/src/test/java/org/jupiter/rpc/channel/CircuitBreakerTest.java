@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.channel;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.jupiter.common.util.JConstants.CIRCUIT_BREAKER_CONSECUTIVE_FAILURES;
+import static org.jupiter.common.util.JConstants.CIRCUIT_BREAKER_MIN_REQUESTS;
+import static org.jupiter.rpc.channel.CircuitBreaker.State;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.channel
+ *
+ * @author jiachun.fjc
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void testConsecutiveFailures() {
+        final AtomicInteger ejections = new AtomicInteger();
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(null);
+        CircuitBreaker.Listener listener = new CircuitBreaker.Listener() {
+
+            @Override
+            public void onStateChanged(JChannelGroup group, State from, State to) {
+                if (to == State.OPEN) {
+                    ejections.incrementAndGet();
+                }
+            }
+        };
+        CircuitBreaker.addListener(listener);
+        try {
+            for (int i = 1; i < CIRCUIT_BREAKER_CONSECUTIVE_FAILURES; i++) {
+                circuitBreaker.onComplete(false, 0);
+            }
+            // 成功的请求会打断连续失败
+            circuitBreaker.onComplete(true, 0);
+            circuitBreaker.onComplete(false, 0);
+            assertThat(circuitBreaker.state(), is(State.CLOSED));
+            assertThat(circuitBreaker.allowRequest(), is(true));
+
+            for (int i = 1; i < CIRCUIT_BREAKER_CONSECUTIVE_FAILURES; i++) {
+                circuitBreaker.onComplete(false, 0);
+            }
+            assertThat(circuitBreaker.state(), is(State.OPEN));
+            assertThat(circuitBreaker.ejectionCount(), is(1));
+            assertThat(circuitBreaker.isEjected(), is(true));
+            assertThat(circuitBreaker.allowRequest(), is(false));
+            assertThat(circuitBreaker.admissionWeight(50), is(0));
+            assertThat(ejections.get(), is(1));
+        } finally {
+            CircuitBreaker.removeListener(listener);
+        }
+    }
+
+    @Test
+    public void testFailureRate() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(null);
+        for (int i = 0; i < CIRCUIT_BREAKER_MIN_REQUESTS - 2; i++) {
+            circuitBreaker.onComplete((i & 1) == 0, 0);
+        }
+        assertThat(circuitBreaker.state(), is(State.CLOSED));
+        assertThat(circuitBreaker.admissionWeight(50), is(50));
+
+        circuitBreaker.onComplete(true, 0);
+        circuitBreaker.onComplete(false, 0);
+        assertThat(circuitBreaker.state(), is(State.OPEN));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.channel;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.jupiter.common.util.JConstants.CONCURRENCY_LIMIT_INITIAL;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.channel
+ *
+ * @author jiachun.fjc
+ */
+public class ConcurrencyLimiterTest {
+
+    private static final long RTT = 1000000L;
+
+    @Test
+    public void testIncrease() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        assertThat(limiter.isAcceptable(CONCURRENCY_LIMIT_INITIAL - 1), is(true));
+        assertThat(limiter.isAcceptable(CONCURRENCY_LIMIT_INITIAL), is(false));
+
+        // 请求量很低时不增长
+        limiter.onSample(RTT, 1, false);
+        assertThat(limiter.limit(), is(CONCURRENCY_LIMIT_INITIAL));
+
+        // 没有排队时增长
+        for (int i = 0; i < 10; i++) {
+            limiter.onSample(RTT, limiter.limit(), false);
+        }
+        assertThat(limiter.limit(), greaterThan(CONCURRENCY_LIMIT_INITIAL));
+        assertThat(limiter.rttNoLoad(), is(RTT));
+    }
+
+    @Test
+    public void testDecrease() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        limiter.onSample(RTT, CONCURRENCY_LIMIT_INITIAL, false);
+        int limit = limiter.limit();
+
+        // RTT翻倍意味着有一半的请求在排队
+        for (int i = 0; i < 5; i++) {
+            limiter.onSample(RTT * 2, limiter.limit(), false);
+        }
+        assertThat(limiter.limit(), lessThan(limit));
+        assertThat(limiter.rttNoLoad(), is(RTT));
+
+        limit = limiter.limit();
+        limiter.onSample(RTT, limit, true);
+        assertThat(limiter.limit(), is((int) (limit * 0.9)));
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(RTT, 0, true);
+        }
+        assertThat(limiter.limit(), is(1));
+    }
+}
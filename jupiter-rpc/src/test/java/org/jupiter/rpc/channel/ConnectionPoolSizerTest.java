@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.channel;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.jupiter.common.util.JConstants.*;
+import static org.jupiter.rpc.channel.ConnectionPoolSizer.*;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.channel
+ *
+ * @author jiachun.fjc
+ */
+public class ConnectionPoolSizerTest {
+
+    @Test
+    public void testGrow() {
+        ConnectionPoolSizer sizer = new ConnectionPoolSizer();
+        sizer.setBounds(1, 4);
+
+        long now = 1000000;
+        int inFlight = CONNECTION_POOL_HIGH_IN_FLIGHT * 2 + 1;
+        assertThat(sizer.evaluate(2, inFlight, 0, false, 0, 0, now), is(GROW));
+        // 调整间隔内不会再次调整
+        assertThat(sizer.evaluate(3, inFlight, 0, false, 0, 0, now + 1), is(KEEP));
+
+        now += CONNECTION_POOL_RESIZE_INTERVAL_MILLIS;
+        assertThat(sizer.evaluate(3, 0, 0, true, 0, 0, now), is(GROW));
+
+        now += CONNECTION_POOL_RESIZE_INTERVAL_MILLIS;
+        assertThat(sizer.evaluate(4, inFlight * 2, 0, false, 0, 0, now), is(KEEP)); // 已达到上限
+    }
+
+    @Test
+    public void testShrink() {
+        ConnectionPoolSizer sizer = new ConnectionPoolSizer();
+        sizer.setBounds(1, 4);
+
+        long now = 1000000;
+        assertThat(sizer.evaluate(4, 0, 0, false, 0, 0, now), is(KEEP));
+        // 有数据积压时不会缩容
+        assertThat(sizer.evaluate(4, 0, 1024, false, 0, 0, now + CONNECTION_POOL_IDLE_MILLIS), is(KEEP));
+
+        now += CONNECTION_POOL_IDLE_MILLIS;
+        assertThat(sizer.evaluate(4, 0, 0, false, 0, 0, now), is(KEEP));
+        now += CONNECTION_POOL_IDLE_MILLIS;
+        assertThat(sizer.evaluate(4, 0, 0, false, 0, 0, now), is(SHRINK));
+
+        // 已达到下限
+        now += CONNECTION_POOL_IDLE_MILLIS * 2;
+        assertThat(sizer.evaluate(1, 0, 0, false, 0, 0, now), is(KEEP));
+    }
+}
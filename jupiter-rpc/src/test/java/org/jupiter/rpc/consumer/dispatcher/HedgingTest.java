@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.consumer.dispatcher;
+
+import org.jupiter.common.util.Lists;
+import org.jupiter.rpc.ConcurrencyLimitMode;
+import org.jupiter.rpc.JClient;
+import org.jupiter.rpc.JListener;
+import org.jupiter.rpc.JRequest;
+import org.jupiter.rpc.JResponse;
+import org.jupiter.rpc.channel.ConcurrencyLimiter;
+import org.jupiter.rpc.channel.CopyOnWriteGroupList;
+import org.jupiter.rpc.channel.JChannel;
+import org.jupiter.rpc.channel.JChannelGroup;
+import org.jupiter.rpc.channel.JFutureListener;
+import org.jupiter.rpc.consumer.future.DefaultInvokeFuture;
+import org.jupiter.rpc.consumer.future.InvokeFuture;
+import org.jupiter.rpc.exception.ConcurrencyLimitException;
+import org.jupiter.rpc.model.metadata.ResultWrapper;
+import org.jupiter.rpc.model.metadata.ServiceMetadata;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.jupiter.common.util.JConstants.CONCURRENCY_LIMIT_INITIAL;
+import static org.jupiter.rpc.Status.OK;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.consumer.dispatcher
+ *
+ * @author jiachun.fjc
+ */
+public class HedgingTest {
+
+    private final ServiceMetadata metadata = new ServiceMetadata("test", "1.0.0", "HedgingTest");
+
+    @Test
+    public void testHedge() throws Exception {
+        StubGroup primary = new StubGroup(18001);
+        StubGroup backup = new StubGroup(18002);
+        final AtomicReference<JListener.JResult> result = new AtomicReference<>();
+
+        DefaultRoundDispatcher dispatcher = new DefaultRoundDispatcher(metadata);
+        dispatcher.setTimeoutMillis(3000);
+        dispatcher.setHedgingPolicy(HedgingPolicy.fixedDelay(50, 1));
+        dispatcher.setListener(new JListener() {
+
+            @Override
+            public void complete(JRequest request, JResult r) throws Exception {
+                result.set(r);
+            }
+
+            @Override
+            public void failure(JRequest request, Throwable cause) {}
+        });
+
+        long start = System.nanoTime();
+        dispatcher.dispatch(client(primary, backup), "hello", new Object[] { "jupiter" });
+        JRequest request = primary.written.poll(1, MILLISECONDS);
+        assertThat(request, notNullValue());
+
+        // 延迟之后向另一个group发送相同的请求
+        JRequest hedgeRequest = backup.written.poll(3000, MILLISECONDS);
+        assertThat(hedgeRequest, notNullValue());
+        assertThat(System.nanoTime() - start, greaterThanOrEqualTo(MILLISECONDS.toNanos(50)));
+        assertThat(hedgeRequest.invokeId(), not(request.invokeId()));
+        assertThat(hedgeRequest.bytes(), sameInstance(request.bytes()));
+        assertThat(primary.inFlight.get(), is(1));
+        assertThat(backup.inFlight.get(), is(1));
+
+        // 先返回的响应胜出, 另一个迟到的响应被丢弃
+        assertThat(DefaultInvokeFuture.received(backup.channel, response(hedgeRequest)), is(true));
+        assertThat(DefaultInvokeFuture.received(primary.channel, response(request)), is(false));
+        assertThat(result.get().value(), is((Object) "hello jupiter"));
+        assertThat(result.get().remoteAddress(), is(backup.channel.remoteAddress()));
+
+        // 胜出的一方计入统计, 落败的一方既不算成功也不算失败
+        assertThat(backup.completed.get(), is(1));
+        assertThat(backup.inFlight.get(), is(0));
+        assertThat(primary.completed.get(), is(0));
+        assertThat(primary.cancelled.get(), is(1));
+        assertThat(primary.inFlight.get(), is(0));
+    }
+
+    @Test
+    public void testBudget() throws Throwable {
+        StubGroup primary = new StubGroup(18003);
+        StubGroup backup = new StubGroup(18004);
+        JClient client = client(primary, backup);
+
+        DefaultRoundDispatcher dispatcher = new DefaultRoundDispatcher(metadata);
+        dispatcher.setTimeoutMillis(3000);
+        // 每个请求积累半个对冲请求的预算
+        dispatcher.setHedgingPolicy(HedgingPolicy.fixedDelay(20, 0.5));
+
+        InvokeFuture first = dispatcher.dispatch(client, "hello", new Object[] { "first" });
+        assertThat(backup.written.poll(200, MILLISECONDS), nullValue());
+
+        InvokeFuture second = dispatcher.dispatch(client, "hello", new Object[] { "second" });
+        JRequest hedgeRequest = backup.written.poll(3000, MILLISECONDS);
+        assertThat(hedgeRequest, notNullValue());
+        assertThat(backup.written.poll(200, MILLISECONDS), nullValue());
+
+        JRequest request = primary.written.poll();
+        assertThat(DefaultInvokeFuture.received(primary.channel, response(request)), is(true));
+        assertThat(first.getResult(), is((Object) "hello first"));
+        assertThat(DefaultInvokeFuture.received(backup.channel, response(hedgeRequest)), is(true));
+        assertThat(second.getResult(), is((Object) "hello second"));
+        assertThat(DefaultInvokeFuture.received(primary.channel, response(primary.written.poll())), is(false));
+    }
+
+    @Test
+    public void testStaleKeyCleanup() throws Throwable {
+        StubGroup primary = new StubGroup(18005);
+        StubGroup backup = new StubGroup(18006);
+
+        DefaultRoundDispatcher dispatcher = new DefaultRoundDispatcher(metadata);
+        dispatcher.setTimeoutMillis(200);
+        dispatcher.setHedgingPolicy(HedgingPolicy.fixedDelay(20, 1));
+
+        InvokeFuture future = dispatcher.dispatch(client(primary, backup), "hello", new Object[] { "jupiter" });
+        JRequest request = primary.written.poll(1, MILLISECONDS);
+        JRequest hedgeRequest = backup.written.poll(3000, MILLISECONDS);
+        assertThat(DefaultInvokeFuture.received(backup.channel, response(hedgeRequest)), is(true));
+        assertThat(future.getResult(), is((Object) "hello jupiter"));
+
+        // 落败一方的invokeId保留到超时, 之后被TimeoutFutureScanner清理
+        Map<?, ?> roundFutures = roundFutures();
+        assertThat(roundFutures.containsKey(request.invokeId()), is(true));
+        long deadline = System.currentTimeMillis() + 3000;
+        while (roundFutures.containsKey(request.invokeId()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(roundFutures.containsKey(request.invokeId()), is(false));
+        assertThat(DefaultInvokeFuture.received(primary.channel, response(request)), is(false));
+        assertThat(primary.completed.get(), is(0));
+        assertThat(primary.inFlight.get(), is(0));
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Throwable {
+        StubGroup primary = new StubGroup(18007);
+        StubGroup backup = new StubGroup(18008);
+        JClient client = client(primary, backup);
+
+        DefaultRoundDispatcher dispatcher = new DefaultRoundDispatcher(metadata);
+        dispatcher.setTimeoutMillis(3000);
+        dispatcher.setConcurrencyLimitMode(ConcurrencyLimitMode.FAIL_FAST);
+
+        // 选中时占用名额, 达到限制后本地直接失败
+        for (int i = 0; i < CONCURRENCY_LIMIT_INITIAL; i++) {
+            dispatcher.dispatch(client, "hello", new Object[] { "jupiter" });
+        }
+        assertThat(primary.inFlight.get(), is(CONCURRENCY_LIMIT_INITIAL));
+        try {
+            dispatcher.dispatch(client, "hello", new Object[] { "jupiter" });
+            throw new AssertionError("expected ConcurrencyLimitException");
+        } catch (ConcurrencyLimitException ignored) {}
+        assertThat(primary.inFlight.get(), is(CONCURRENCY_LIMIT_INITIAL));
+
+        // 请求完成后归还名额
+        JRequest request = primary.written.poll();
+        assertThat(DefaultInvokeFuture.received(primary.channel, response(request)), is(true));
+        assertThat(primary.inFlight.get(), is(CONCURRENCY_LIMIT_INITIAL - 1));
+
+        // 写失败时归还名额, 不计入统计
+        primary.failWrites = true;
+        dispatcher.dispatch(client, "hello", new Object[] { "jupiter" });
+        assertThat(primary.inFlight.get(), is(CONCURRENCY_LIMIT_INITIAL - 1));
+        assertThat(primary.cancelled.get(), is(1));
+        assertThat(primary.completed.get(), is(1));
+    }
+
+    private static Map<?, ?> roundFutures() throws Exception {
+        Field field = DefaultInvokeFuture.class.getDeclaredField("roundFutures");
+        field.setAccessible(true);
+        return (Map<?, ?>) field.get(null);
+    }
+
+    private static JResponse response(JRequest request) {
+        ResultWrapper result = new ResultWrapper();
+        result.setResult("hello " + request.message().getArgs()[0]);
+        return JResponse.getInstance(request.invokeId(), OK, result);
+    }
+
+    private static JClient client(final StubGroup primary, final StubGroup backup) {
+        final CopyOnWriteGroupList directory = new CopyOnWriteGroupList();
+        directory.addIfAbsent(primary.group);
+        directory.addIfAbsent(backup.group);
+        return stub(JClient.class, new InvocationHandler() {
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "appName":
+                        return "test";
+                    case "selectGroup":
+                        return primary.group;
+                    case "directory":
+                        return directory;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> interfaceClass, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(HedgingTest.class.getClassLoader(), new Class<?>[] { interfaceClass }, handler);
+    }
+
+    /**
+     * 只有一个channel的group, 记录写出的请求与请求统计.
+     */
+    static final class StubGroup {
+
+        final BlockingQueue<JRequest> written = new LinkedBlockingQueue<>();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger cancelled = new AtomicInteger();
+        final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter();
+        volatile boolean failWrites;
+        final JChannel channel;
+        final JChannelGroup group;
+
+        StubGroup(int port) {
+            final InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+            channel = stub(JChannel.class, new InvocationHandler() {
+
+                @SuppressWarnings("unchecked")
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "id":
+                        case "toString":
+                            return "channel-" + address.getPort();
+                        case "remoteAddress":
+                            return address;
+                        case "write":
+                        case "batchWrite":
+                            written.add((JRequest) args[0]);
+                            if (failWrites) {
+                                ((JFutureListener<JChannel>) args[1]).operationFailure(
+                                        (JChannel) proxy, new IllegalStateException("write failed"));
+                            } else {
+                                ((JFutureListener<JChannel>) args[1]).operationSuccess((JChannel) proxy);
+                            }
+                            return proxy;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+            group = stub(JChannelGroup.class, new InvocationHandler() {
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "next":
+                            return channel;
+                        case "channels":
+                            return Lists.newArrayList(channel);
+                        case "isAvailable":
+                            return true;
+                        case "onRequestStart":
+                            inFlight.incrementAndGet();
+                            return null;
+                        case "tryRequestStart":
+                            for (;;) {
+                                int current = inFlight.get();
+                                if (current >= (Integer) args[0]) {
+                                    return false;
+                                }
+                                if (inFlight.compareAndSet(current, current + 1)) {
+                                    return true;
+                                }
+                            }
+                        case "concurrencyLimiter":
+                            return concurrencyLimiter;
+                        case "onRequestComplete":
+                            inFlight.decrementAndGet();
+                            completed.incrementAndGet();
+                            return null;
+                        case "onRequestCancel":
+                            inFlight.decrementAndGet();
+                            cancelled.incrementAndGet();
+                            return null;
+                        case "toString":
+                            return "group-" + address.getPort();
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.consumer.proxy;
+
+import org.jupiter.rpc.JPromise;
+import org.jupiter.rpc.consumer.invoker.ProxyInvoker;
+import org.jupiter.rpc.consumer.invoker.SyncInvoker;
+import org.jupiter.rpc.model.metadata.ArgsCodec;
+import org.jupiter.rpc.model.metadata.Identifiers;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.consumer.proxy
+ *
+ * @author jiachun.fjc
+ */
+public class ProxiesTest {
+
+    @Test
+    public void testInvoke() {
+        RecordInvoker invoker = new RecordInvoker("Hello Jupiter");
+        TestService proxy = Proxies.newProxy(TestService.class, invoker);
+
+        assertThat(proxy.hello("Jupiter"), is("Hello Jupiter"));
+        assertThat(invoker.methodName, is("hello"));
+        assertThat(invoker.methodId, is(Identifiers.methodId("hello", new Class<?>[] { String.class })));
+        assertThat(Arrays.asList(invoker.args), contains((Object) "Jupiter"));
+
+        proxy.hello(1, new int[] { 2 });
+        assertThat(invoker.methodName, is("hello"));
+        assertThat(invoker.methodId, is(Identifiers.methodId("hello", new Class<?>[] { int.class, int[].class })));
+        assertThat(invoker.args.length, is(2));
+
+        assertThat(proxy.getClass(), sameInstance((Object) Proxies.newProxy(TestService.class, invoker).getClass()));
+    }
+
+    @Test
+    public void testInvokeEncoded() {
+        RecordInvoker invoker = new RecordInvoker(null, false);
+        TestService proxy = Proxies.newProxy(TestService.class, invoker);
+
+        // 参数由生成的代理类直接编码, 与ArgsCodec的编码相同
+        proxy.hello(-1L, null, 'J');
+        Class<?>[] parameterTypes = { long.class, Integer.class, char.class };
+        assertThat(invoker.methodId, is(Identifiers.methodId("hello", parameterTypes)));
+        assertThat(invoker.args, nullValue());
+        assertThat(invoker.argsBytes, is(ArgsCodec.of(parameterTypes).encode(new Object[] { -1L, null, 'J' })));
+
+        proxy.hello("Jupiter");
+        assertThat(ArgsCodec.of(new Class<?>[] { String.class }).decode(invoker.argsBytes),
+                is(new Object[] { "Jupiter" }));
+
+        // 参数中有不能编码的类型时仍然装箱
+        proxy.hello(1, new int[] { 2 });
+        assertThat(invoker.args.length, is(2));
+    }
+
+    @Test
+    public void testPrimitiveReturn() {
+        TestService proxy = Proxies.newProxy(TestService.class, new RecordInvoker(null));
+        // 异步调用时invoker返回null
+        assertThat(proxy.count(), is(0L));
+        assertThat(proxy.enabled(), is(false));
+
+        proxy = Proxies.newProxy(TestService.class, new RecordInvoker(7L));
+        assertThat(proxy.count(), is(7L));
+    }
+
+    @Test
+    public void testPromiseReturn() throws Exception {
+        TestService proxy = Proxies.newProxy(TestService.class, new SyncInvoker(null, null) {
+
+            @Override
+            public Object $invoke(int methodId, String methodName, Object[] args) throws Throwable {
+                return "Hello Jupiter";
+            }
+
+            @Override
+            public boolean isArgsRequired() {
+                return true;
+            }
+        });
+        // 同步调用时远程的值被包装为已完成的promise
+        JPromise<String> promise = proxy.helloAsync("Jupiter");
+        assertThat(promise.isDone(), is(true));
+        assertThat(promise.get(), is("Hello Jupiter"));
+
+        proxy = Proxies.newProxy(TestService.class, new RecordInvoker(null));
+        assertThat(proxy.helloAsync("Jupiter"), nullValue());
+    }
+}
+
+interface TestService {
+
+    String hello(String name);
+
+    void hello(int i, int[] array);
+
+    void hello(long l, Integer i, char c);
+
+    long count();
+
+    boolean enabled();
+
+    JPromise<String> helloAsync(String name);
+}
+
+class RecordInvoker implements ProxyInvoker {
+
+    private final Object result;
+    private final boolean argsRequired;
+
+    int methodId;
+    String methodName;
+    Object[] args;
+    byte[] argsBytes;
+
+    RecordInvoker(Object result) {
+        this(result, true);
+    }
+
+    RecordInvoker(Object result, boolean argsRequired) {
+        this.result = result;
+        this.argsRequired = argsRequired;
+    }
+
+    @Override
+    public Object $invoke(int methodId, String methodName, Object[] args) throws Throwable {
+        this.methodId = methodId;
+        this.methodName = methodName;
+        this.args = args;
+        return result;
+    }
+
+    @Override
+    public Object $invokeEncoded(int methodId, String methodName, byte[] argsBytes) throws Throwable {
+        this.methodId = methodId;
+        this.methodName = methodName;
+        this.argsBytes = argsBytes;
+        return result;
+    }
+
+    @Override
+    public boolean isArgsRequired() {
+        return argsRequired;
+    }
+}
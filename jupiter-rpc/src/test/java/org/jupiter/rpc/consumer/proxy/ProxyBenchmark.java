@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.consumer.proxy;
+
+import org.jupiter.common.util.Reflects;
+import org.jupiter.rpc.consumer.invoker.ProxyInvoker;
+import org.jupiter.rpc.model.metadata.Identifiers;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * jdk Proxy vs javassist生成的代理类, invoker不做任何事, 只比较代理层的派发开销.
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.proxy
+ *
+ * @author jiachun.fjc
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.All)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ProxyBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ProxyBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    static final ProxyInvoker invoker = new BenchmarkInvoker();
+
+    static final BenchmarkService jdkProxy = Reflects.newProxy(BenchmarkService.class, new InvocationHandler() {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return invoker.$invoke(Identifiers.NONE, method.getName(), args);
+        }
+    });
+
+    static final BenchmarkService javassistProxy = Proxies.newProxy(BenchmarkService.class, invoker);
+
+    @Benchmark
+    public String jdkProxyInvoke() {
+        return jdkProxy.hello("Jupiter");
+    }
+
+    @Benchmark
+    public String javassistProxyInvoke() {
+        return javassistProxy.hello("Jupiter");
+    }
+}
+
+interface BenchmarkService {
+
+    String hello(String name);
+}
+
+class BenchmarkInvoker implements ProxyInvoker {
+
+    @Override
+    public Object $invoke(int methodId, String methodName, Object[] args) throws Throwable {
+        return methodName;
+    }
+
+    @Override
+    public Object $invokeEncoded(int methodId, String methodName, byte[] argsBytes) throws Throwable {
+        return methodName;
+    }
+
+    @Override
+    public boolean isArgsRequired() {
+        return false;
+    }
+}
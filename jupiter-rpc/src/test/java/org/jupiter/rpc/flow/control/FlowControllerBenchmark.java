@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.flow.control;
+
+import org.jupiter.rpc.JRequest;
+import org.jupiter.rpc.model.metadata.MessageWrapper;
+import org.jupiter.rpc.model.metadata.ServiceMetadata;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 64个线程争用同一个限流单元, 无锁实现 vs synchronized计数器.
+ * 限制设置得足够大, 只比较放行路径上的开销, 需要在多核机器上运行才能体现争用的差别.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+@Fork(1)
+@Threads(64)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class FlowControllerBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(FlowControllerBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    static final JRequest request;
+
+    static {
+        MessageWrapper msg = new MessageWrapper(new ServiceMetadata("test", "1.0.0", "BenchmarkService"));
+        msg.setAppName("benchmark");
+        msg.setMethodName("hello");
+        request = new JRequest();
+        request.message(msg);
+    }
+
+    SynchronizedFlowController synchronizedController;
+    TokenBucketFlowController tokenBucket;
+    SlidingWindowFlowController slidingWindow;
+    ConcurrencyFlowController concurrency;
+
+    @Setup(Level.Iteration)
+    public void newControllers() {
+        // 每轮迭代重新创建, 避免窗口内的计数达到上限
+        synchronizedController = new SynchronizedFlowController(Integer.MAX_VALUE);
+        tokenBucket = new TokenBucketFlowController(FlowControlKey.APP, 1000000000D, Integer.MAX_VALUE);
+        slidingWindow = new SlidingWindowFlowController(FlowControlKey.SERVICE, 1 << 23);
+        concurrency = new ConcurrencyFlowController(FlowControlKey.METHOD, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public boolean synchronizedCounter() {
+        return synchronizedController.flowControl(request).isAllowed();
+    }
+
+    @Benchmark
+    public boolean tokenBucket() {
+        return tokenBucket.flowControl(request).isAllowed();
+    }
+
+    @Benchmark
+    public boolean slidingWindow() {
+        return slidingWindow.flowControl(request).isAllowed();
+    }
+
+    @Benchmark
+    public boolean concurrency() {
+        ControlResult result = concurrency.flowControl(request);
+        result.release();
+        return result.isAllowed();
+    }
+
+    /**
+     * 常见的自定义实现, 按同样的key查找限流单元, 但在放行路径上加锁.
+     */
+    static final class SynchronizedFlowController extends KeyedFlowController<SynchronizedFlowController.Counter> {
+
+        private final int maxQps;
+
+        SynchronizedFlowController(int maxQps) {
+            super(FlowControlKey.APP);
+            this.maxQps = maxQps;
+        }
+
+        @Override
+        protected Counter newUnit() {
+            return new Counter();
+        }
+
+        @Override
+        protected ControlResult flowControl(String k, Counter unit) {
+            return unit.tryAcquire(maxQps) ? ControlResult.ALLOWED : reject(k, "qps exceeded");
+        }
+
+        static final class Counter extends KeyedFlowController.Unit {
+
+            private long windowStart;
+            private int count;
+
+            synchronized boolean tryAcquire(int maxQps) {
+                long now = System.currentTimeMillis();
+                if (now - windowStart >= 1000) {
+                    windowStart = now;
+                    count = 0;
+                }
+                return ++count <= maxQps;
+            }
+        }
+    }
+}
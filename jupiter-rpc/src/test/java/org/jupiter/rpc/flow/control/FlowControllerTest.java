@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.flow.control;
+
+import org.jupiter.rpc.JRequest;
+import org.jupiter.rpc.model.metadata.MessageWrapper;
+import org.jupiter.rpc.model.metadata.ServiceMetadata;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public class FlowControllerTest {
+
+    @Test
+    public void testTokenBucket() {
+        TokenBucketFlowController controller = new TokenBucketFlowController(FlowControlKey.APP, 1, 3);
+        JRequest request = request("app1", "hello");
+
+        // 桶的容量用完之后拒绝, 其它应用不受影响
+        for (int i = 0; i < 3; i++) {
+            assertThat(controller.flowControl(request).isAllowed(), is(true));
+        }
+        assertThat(controller.flowControl(request).isAllowed(), is(false));
+        assertThat(controller.flowControl(request("app2", "hello")).isAllowed(), is(true));
+
+        TokenBucketFlowController.Bucket bucket = new TokenBucketFlowController.Bucket(10, 1);
+        long now = System.nanoTime();
+        assertThat(bucket.tryAcquire(now), is(true));
+        assertThat(bucket.tryAcquire(now), is(false));
+        assertThat(bucket.tryAcquire(now + 100000000L), is(true)); // 100毫秒后产生1个令牌
+
+        controller.setRate("app1", 1000000, 10);
+        assertThat(controller.flowControl(request).isAllowed(), is(true));
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        SlidingWindowFlowController.Window window = new SlidingWindowFlowController.Window(3);
+        assertThat(window.tryAcquire(1000), is(true));
+        assertThat(window.tryAcquire(1150), is(true));
+        assertThat(window.tryAcquire(1550), is(true));
+        assertThat(window.tryAcquire(1900), is(false));
+        // 1000毫秒的桶滑出窗口
+        assertThat(window.tryAcquire(2000), is(true));
+        assertThat(window.tryAcquire(2050), is(false));
+
+        window.maxQps = 4;
+        assertThat(window.tryAcquire(2050), is(true));
+    }
+
+    @Test
+    public void testConcurrency() {
+        ConcurrencyFlowController controller = new ConcurrencyFlowController(FlowControlKey.METHOD, 2);
+        JRequest request = request("app1", "hello");
+        String key = FlowControlKey.METHOD.keyOf(request);
+
+        ControlResult first = controller.flowControl(request);
+        ControlResult second = controller.flowControl(request);
+        assertThat(second.isAllowed(), is(true));
+        assertThat(controller.flowControl(request).isAllowed(), is(false));
+        assertThat(controller.flowControl(request("app1", "bye")).isAllowed(), is(true));
+        assertThat(controller.inFlight(key), is(2));
+
+        first.release();
+        first.release(); // 多次归还只生效一次
+        assertThat(controller.inFlight(key), is(1));
+        assertThat(controller.flowControl(request).isAllowed(), is(true));
+
+        controller.setDefaultMaxInFlight(3);
+        assertThat(controller.flowControl(request).isAllowed(), is(true));
+        assertThat(controller.flowControl(request).isAllowed(), is(false));
+    }
+
+    @Test
+    public void testUnitBound() {
+        CountingFlowController controller = new CountingFlowController(2, 0);
+
+        // 达到上限时清理空闲的单元, 单独设置过的单元和还有请求在处理中的单元除外
+        controller.pin("app1");
+        assertThat(controller.flowControl(request("app1", "hello")).isAllowed(), is(true));
+        controller.busy = true;
+        assertThat(controller.flowControl(request("app2", "hello")).isAllowed(), is(true));
+        assertThat(controller.flowControl(request("app3", "hello")).isAllowed(), is(true));
+        assertThat(controller.size(), is(3)); // app1, app2, OVERFLOW
+        assertThat(controller.lastKey, is(KeyedFlowController.OVERFLOW_KEY));
+
+        controller.busy = false;
+        assertThat(controller.flowControl(request("app4", "hello")).isAllowed(), is(true));
+        assertThat(controller.lastKey, is("app4"));
+        assertThat(controller.size(), is(2)); // app1, app4
+    }
+
+    static final class CountingFlowController extends KeyedFlowController<CountingFlowController.Counter> {
+
+        volatile boolean busy;
+        volatile String lastKey;
+
+        CountingFlowController(int maxUnits, long unitIdleMillis) {
+            super(FlowControlKey.APP, maxUnits, unitIdleMillis);
+        }
+
+        void pin(String k) {
+            tune(k, new Tuning<Counter>() {
+
+                @Override
+                public void tune(Counter unit) {}
+            });
+        }
+
+        @Override
+        protected Counter newUnit() {
+            return new Counter();
+        }
+
+        @Override
+        protected boolean isPurgeable(Counter unit) {
+            return !busy;
+        }
+
+        @Override
+        protected ControlResult flowControl(String k, Counter unit) {
+            lastKey = k;
+            return ControlResult.ALLOWED;
+        }
+
+        static final class Counter extends KeyedFlowController.Unit {}
+    }
+
+    private static JRequest request(String appName, String methodName) {
+        MessageWrapper msg = new MessageWrapper(new ServiceMetadata("test", "1.0.0", "TestService"));
+        msg.setAppName(appName);
+        msg.setMethodName(methodName);
+        JRequest request = new JRequest();
+        request.message(msg);
+        return request;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.flow.control;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public class RequestBytesBudgetTest {
+
+    @Test
+    public void testBudget() {
+        RequestBytesBudget budget = new RequestBytesBudget(1000, 700);
+        RecordThrottle noisyThrottle = new RecordThrottle();
+        RecordThrottle quietThrottle = new RecordThrottle();
+        RequestBytesBudget.Account noisy = budget.newAccount(noisyThrottle);
+        RequestBytesBudget.Account quiet = budget.newAccount(quietThrottle);
+
+        // 超出单个连接的预算, 暂停读取但不拒绝
+        assertThat(noisy.acquire(400), is(true));
+        assertThat(noisy.acquire(400), is(true));
+        assertThat(noisyThrottle.paused, is(true));
+        assertThat(quietThrottle.paused, is(false));
+
+        // 超出全局预算, 拒绝请求, 只暂停占用多于平均份额的连接
+        assertThat(quiet.acquire(150), is(true));
+        assertThat(quiet.acquire(100), is(false));
+        assertThat(quietThrottle.paused, is(false));
+        quiet.release(100);
+        assertThat(budget.used(), is(950L));
+
+        // 全局降到3/4以下, 且连接自己降到一半以下时恢复
+        noisy.release(300);
+        assertThat(noisyThrottle.paused, is(true));
+        noisy.release(200);
+        assertThat(noisyThrottle.paused, is(false));
+        assertThat(noisy.isPaused(), is(false));
+
+        // 内存压力收紧预算
+        budget.setPressureFactor(0.5);
+        assertThat(budget.effectiveLimit(), is(500L));
+        assertThat(quiet.acquire(300), is(false));
+        assertThat(quietThrottle.paused, is(true));
+
+        assertThat(HeapPressureMonitor.factorOf(0.5), is(1.0));
+        assertThat(HeapPressureMonitor.factorOf(0.85), is(0.25));
+    }
+
+    @Test
+    public void testHeapPressureMonitor() {
+        RequestBytesBudget budget = new RequestBytesBudget(1000, 700);
+
+        // 两个acceptor共用一个监控线程, 最后一个关闭时停止并恢复预算
+        budget.startHeapPressureMonitor();
+        budget.startHeapPressureMonitor();
+        budget.setPressureFactor(0.5);
+        budget.stopHeapPressureMonitor();
+        assertThat(budget.getPressureFactor(), is(0.5));
+        budget.stopHeapPressureMonitor();
+        assertThat(budget.getPressureFactor(), is(1.0));
+        assertThat(budget.effectiveLimit(), is(1000L));
+
+        // 多余的stop不影响
+        budget.stopHeapPressureMonitor();
+    }
+
+    static class RecordThrottle implements RequestBytesBudget.Throttle {
+
+        boolean paused;
+
+        @Override
+        public void pause() {
+            paused = true;
+        }
+
+        @Override
+        public void resume() {
+            paused = false;
+        }
+    }
+}
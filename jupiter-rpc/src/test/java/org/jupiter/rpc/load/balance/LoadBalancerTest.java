@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.load.balance;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.load.balance
+ *
+ * @author jiachun.fjc
+ */
+public class LoadBalancerTest {
+
+    @Test
+    public void testLeastActive() {
+        LeastActiveLoadBalancer<Node> loadBalancer = new LeastActiveLoadBalancer<Node>() {
+
+            @Override
+            protected int getWeight(Node node) {
+                return node.weight;
+            }
+
+            @Override
+            protected int getActive(Node node) {
+                return node.active;
+            }
+        };
+
+        Node busy = new Node(100, 10, 0);
+        Node idle = new Node(1, 2, 0);
+        Node[] nodes = { busy, idle, new Node(100, 3, 0) };
+        for (int i = 0; i < 100; i++) {
+            assertThat(loadBalancer.select(nodes), sameInstance(idle));
+        }
+
+        // 请求数相同时, 权重为0的元素不会被选中
+        Node zeroWeight = new Node(0, 2, 0);
+        nodes = new Node[] { zeroWeight, idle, busy };
+        for (int i = 0; i < 100; i++) {
+            assertThat(loadBalancer.select(nodes), sameInstance(idle));
+        }
+    }
+
+    @Test
+    public void testP2cEwma() {
+        P2cEwmaLoadBalancer<Node> loadBalancer = new P2cEwmaLoadBalancer<Node>() {
+
+            @Override
+            protected int getWeight(Node node) {
+                return node.weight;
+            }
+
+            @Override
+            protected int getActive(Node node) {
+                return node.active;
+            }
+
+            @Override
+            protected long getLatencyEwma(Node node) {
+                return node.latency;
+            }
+        };
+
+        Node slow = new Node(50, 1, 100000000L);
+        Node fast = new Node(50, 1, 1000000L);
+        Node[] nodes = { slow, fast };
+        for (int i = 0; i < 100; i++) {
+            assertThat(loadBalancer.select(nodes), sameInstance(fast));
+        }
+
+        // 3个元素时, 最慢的元素永远不会被选中
+        Node medium = new Node(50, 1, 10000000L);
+        nodes = new Node[] { slow, fast, medium };
+        int fastCount = 0;
+        for (int i = 0; i < 3000; i++) {
+            Node selected = loadBalancer.select(nodes);
+            assertThat(selected, not(sameInstance(slow)));
+            if (selected == fast) {
+                fastCount++;
+            }
+        }
+        assertThat(fastCount, greaterThan(1500));
+    }
+
+    @Test
+    public void testConsistentHash() throws InterruptedException {
+        Node a = new Node("a"), b = new Node("b"), c = new Node("c");
+        Object[] abc = { a, b, c };
+        Object[] ab = { b, a };
+
+        ConsistentHashLoadBalancer<Node> full = new NodeConsistentHashLoadBalancer();
+        ConsistentHashLoadBalancer<Node> reduced = new NodeConsistentHashLoadBalancer();
+
+        int moved = 0;
+        for (long key = 0; key < 3000; key++) {
+            Node before = full.select(abc, key);
+            Node after = reduced.select(ab, key);
+            // 只有原本落在c上的key会被迁移
+            if (before != c) {
+                assertThat(after, sameInstance(before));
+            } else {
+                moved++;
+            }
+            assertThat(full.select(abc, key), sameInstance(before));
+        }
+        assertThat(moved, allOf(greaterThan(500), lessThan(1500)));
+
+        // 快照变化后在后台重建哈希环
+        long deadline = System.currentTimeMillis() + 5000;
+        for (;;) {
+            boolean rebuilt = true;
+            for (long key = 0; key < 3000; key++) {
+                if (full.select(ab, key) != reduced.select(ab, key)) {
+                    rebuilt = false;
+                    break;
+                }
+            }
+            if (rebuilt) {
+                break;
+            }
+            assertThat(System.currentTimeMillis(), lessThan(deadline));
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testRandomWeighted() {
+        RandomLoadBalancer<Node> loadBalancer = new RandomLoadBalancer<Node>() {
+
+            @Override
+            protected int getWeight(Node node) {
+                return node.weight;
+            }
+        };
+
+        Node heavy = new Node(90, 0, 0);
+        Node light = new Node(10, 0, 0);
+        Node zeroWeight = new Node(0, 0, 0);
+        Node[] nodes = { light, zeroWeight, heavy };
+        int heavyCount = 0;
+        for (int i = 0; i < 10000; i++) {
+            Node selected = loadBalancer.select(nodes);
+            assertThat(selected, not(sameInstance(zeroWeight)));
+            if (selected == heavy) {
+                heavyCount++;
+            }
+        }
+        assertThat(heavyCount, allOf(greaterThan(8500), lessThan(9500)));
+    }
+
+    static class NodeConsistentHashLoadBalancer extends ConsistentHashLoadBalancer<Node> {
+
+        @Override
+        protected String nodeKey(Node node) {
+            return node.name;
+        }
+    }
+
+    static class Node {
+        final String name;
+        final int weight;
+        final int active;
+        final long latency;
+
+        Node(String name) {
+            this(name, 50, 0, 0);
+        }
+
+        Node(int weight, int active, long latency) {
+            this(null, weight, active, latency);
+        }
+
+        Node(String name, int weight, int active, long latency) {
+            this.name = name;
+            this.weight = weight;
+            this.active = active;
+            this.latency = latency;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.model.metadata;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.model.metadata
+ *
+ * @author jiachun.fjc
+ */
+public class ArgsCodecTest {
+
+    @Test
+    public void testPrimitives() {
+        ArgsCodec codec = ArgsCodec.of(new Class<?>[] {
+                boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class });
+        assertThat(codec, notNullValue());
+
+        Object[] args = { true, (byte) -1, Short.MIN_VALUE, 'J', -1, Long.MIN_VALUE, 1.5F, -0.25D };
+        assertThat(codec.decode(codec.encode(args)), is(args));
+
+        args = new Object[] { false, Byte.MAX_VALUE, Short.MAX_VALUE, Character.MAX_VALUE,
+                Integer.MAX_VALUE, Long.MAX_VALUE, Float.NaN, Double.MAX_VALUE };
+        assertThat(codec.decode(codec.encode(args)), is(args));
+    }
+
+    @Test
+    public void testSmallLongs() {
+        ArgsCodec codec = ArgsCodec.of(new Class<?>[] { long.class, long.class });
+        byte[] bytes = codec.encode(new Object[] { 1L, -1L });
+        // zigzag + varint
+        assertThat(bytes.length, is(2));
+        assertThat(codec.decode(bytes), is(new Object[] { 1L, -1L }));
+    }
+
+    @Test
+    public void testNullable() {
+        ArgsCodec codec = ArgsCodec.of(new Class<?>[] { Long.class, String.class, String.class, Integer.class });
+        Object[] args = { null, "Jupiter, 木星", null, 7 };
+        assertThat(codec.decode(codec.encode(args)), is(args));
+    }
+
+    @Test
+    public void testGenerated() {
+        Class<?>[] parameterTypes = {
+                int.class, Long.class, String.class, boolean.class, Character.class, double.class, Short.class };
+        ArgsCodec codec = ArgsCodec.of(parameterTypes);
+        assertThat(codec, not(instanceOf(ArgsCodec.TableArgsCodec.class)));
+        assertThat(ArgsCodec.of(parameterTypes.clone()), sameInstance(codec));
+
+        // 生成的codec与按类型表编码的结果完全相同
+        ArgsCodec table = new ArgsCodec.TableArgsCodec(parameterTypes);
+        Object[] args = { -7, Long.MIN_VALUE, "Jupiter, 木星", true, 'J', 0.5D, (short) -1 };
+        assertThat(codec.encode(args), is(table.encode(args)));
+        assertThat(table.decode(codec.encode(args)), is(args));
+
+        args = new Object[] { Integer.MAX_VALUE, null, null, false, null, Double.NaN, null };
+        assertThat(codec.encode(args), is(table.encode(args)));
+        assertThat(codec.decode(table.encode(args)), is(args));
+    }
+
+    @Test
+    public void testTypedInvoker() throws Exception {
+        TypedInvoker invoker = ArgsCodecGenerator.newTypedInvoker(
+                CodecServiceImpl.class, CodecServiceImpl.class.getMethod("get", long.class));
+        ArgsCodec codec = ArgsCodec.of(new Class<?>[] { long.class });
+
+        assertThat(invoker.invoke(new CodecServiceImpl(), codec.encode(new Object[] { 7L })), is((Object) "7"));
+
+        // 服务方法抛出的异常与反射调用一样包装为InvocationTargetException
+        try {
+            invoker.invoke(new CodecServiceImpl(), codec.encode(new Object[] { -1L }));
+            fail();
+        } catch (InvocationTargetException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+
+        invoker = ArgsCodecGenerator.newTypedInvoker(
+                CodecServiceImpl.class, CodecServiceImpl.class.getMethod("sum", int.class, Integer.class));
+        codec = ArgsCodec.of(new Class<?>[] { int.class, Integer.class });
+        assertThat(invoker.invoke(new CodecServiceImpl(), codec.encode(new Object[] { 1, 2 })), is((Object) 3L));
+        assertThat(invoker.invoke(new CodecServiceImpl(), codec.encode(new Object[] { 1, null })), is((Object) 1L));
+    }
+
+    @Test
+    public void testUnsupported() {
+        assertThat(ArgsCodec.of(new Class<?>[0]), nullValue());
+        assertThat(ArgsCodec.of(new Class<?>[] { long.class, Object.class }), nullValue());
+        assertThat(ArgsCodec.of(new Class<?>[] { long[].class }), nullValue());
+
+        Map<Integer, ArgsCodec> codecs = ArgsCodec.methodsArgsCodec(CodecService.class);
+        assertThat(codecs.size(), is(1));
+        assertThat(codecs, hasKey(Identifiers.methodId("get", new Class<?>[] { long.class })));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() {
+        ArgsCodec codec = ArgsCodec.of(new Class<?>[] { String.class });
+        byte[] bytes = codec.encode(new Object[] { "Jupiter" });
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        codec.decode(truncated);
+    }
+}
+
+interface CodecService {
+
+    String get(long id);
+
+    String get(Object key);
+}
+
+class CodecServiceImpl implements CodecService {
+
+    @Override
+    public String get(long id) {
+        if (id < 0) {
+            throw new IllegalStateException("id: " + id);
+        }
+        return String.valueOf(id);
+    }
+
+    @Override
+    public String get(Object key) {
+        return String.valueOf(key);
+    }
+
+    public long sum(int a, Integer b) {
+        return b == null ? a : a + b;
+    }
+}
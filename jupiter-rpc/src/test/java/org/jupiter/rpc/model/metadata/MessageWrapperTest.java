@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.rpc.model.metadata;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.jupiter.serialization.SerializerHolder.serializerImpl;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.model.metadata
+ *
+ * @author jiachun.fjc
+ */
+public class MessageWrapperTest {
+
+    @Test
+    public void testById() {
+        MessageWrapper message = new MessageWrapper(7, -3);
+        message.setAppName("app");
+        message.setTraceId("trace");
+        message.setTimeoutMillis(3000);
+        message.setArgsBytes(new byte[] { 1, 2, 3 });
+
+        byte[] bytes = MessageWrapper.encode(message);
+        // 不反序列化即可读出标识
+        assertThat(MessageWrapper.serviceId(bytes), is(7));
+        assertThat(MessageWrapper.methodId(bytes), is(-3));
+
+        MessageWrapper decoded = MessageWrapper.decode(bytes);
+        assertThat(decoded.getServiceId(), is(7));
+        assertThat(decoded.getMethodId(), is(-3));
+        assertThat(decoded.getMetadata(), nullValue());
+        assertThat(decoded.getMethodName(), nullValue());
+        assertThat(decoded.getAppName(), is("app"));
+        assertThat(decoded.getTraceId(), is("trace"));
+        assertThat(decoded.getTimeoutMillis(), is(3000));
+        assertThat(decoded.getArgsBytes(), is(new byte[] { 1, 2, 3 }));
+    }
+
+    @Test
+    public void testByName() {
+        ServiceMetadata metadata = new ServiceMetadata("test", "1.0.0", "MessageWrapperTest");
+        MessageWrapper message = new MessageWrapper(metadata);
+        message.setMethodName("hello");
+        message.setArgsBytes(new byte[] { 9 });
+
+        byte[] bytes = MessageWrapper.encode(message);
+        assertThat(MessageWrapper.serviceId(bytes), is(Identifiers.NONE));
+        assertThat(MessageWrapper.methodId(bytes), is(Identifiers.NONE));
+
+        MessageWrapper decoded = MessageWrapper.decode(bytes);
+        assertThat(decoded.getServiceId(), is(Identifiers.NONE));
+        assertThat(decoded.getMetadata().directory(), is(metadata.directory()));
+        assertThat(decoded.getMethodName(), is("hello"));
+        assertThat(decoded.getArgsBytes(), is(new byte[] { 9 }));
+    }
+
+    @Test
+    public void testEmptyArgs() {
+        MessageWrapper message = new MessageWrapper(1, 2);
+        byte[] bytes = MessageWrapper.encode(message);
+        assertThat(MessageWrapper.decode(bytes).getArgsBytes(), nullValue());
+
+        message.setArgsBytes(new byte[0]);
+        assertThat(MessageWrapper.encode(message).length, is(bytes.length));
+        assertThat(MessageWrapper.decode(MessageWrapper.encode(message)).getArgsBytes(), nullValue());
+    }
+
+    @Test
+    public void testMalformed() {
+        MessageWrapper message = new MessageWrapper(1, 2);
+        message.setArgsBytes(new byte[] { 1, 2, 3 });
+        byte[] bytes = MessageWrapper.encode(message);
+
+        // 长度不足一个请求头
+        assertMalformed(new byte[MessageWrapper.HEAD_LENGTH - 1]);
+        assertThat(MessageWrapper.serviceId(new byte[4]), is(Identifiers.NONE));
+
+        // 路由字段长度越界
+        assertMalformed(withRoutingLength(bytes, bytes.length));
+        assertMalformed(withRoutingLength(bytes, -1));
+        assertMalformed(withRoutingLength(bytes, Integer.MAX_VALUE));
+
+        // 旧格式(整个请求体是一个序列化对象)或其它版本的请求体
+        byte[] legacy = serializerImpl().writeObject(message);
+        assertMalformed(legacy);
+        assertThat(MessageWrapper.serviceId(legacy), is(Identifiers.NONE));
+        byte[] otherVersion = bytes.clone();
+        otherVersion[3]++;
+        assertMalformed(otherVersion);
+        assertThat(MessageWrapper.methodId(otherVersion), is(Identifiers.NONE));
+    }
+
+    private static byte[] withRoutingLength(byte[] bytes, int routingLength) {
+        byte[] copy = bytes.clone();
+        copy[12] = (byte) (routingLength >>> 24);
+        copy[13] = (byte) (routingLength >>> 16);
+        copy[14] = (byte) (routingLength >>> 8);
+        copy[15] = (byte) routingLength;
+        return copy;
+    }
+
+    private static void assertMalformed(byte[] bytes) {
+        try {
+            MessageWrapper.decode(bytes);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new AssertionError("expected IllegalArgumentException");
+    }
+}
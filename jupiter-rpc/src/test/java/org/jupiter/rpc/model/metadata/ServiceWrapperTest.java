@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.model.metadata;
+
+import org.jupiter.common.util.Lists;
+import org.jupiter.common.util.Maps;
+import org.jupiter.rpc.Placement;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.model.metadata
+ *
+ * @author jiachun.fjc
+ */
+public class ServiceWrapperTest {
+
+    @Test
+    public void testDispatchTable() {
+        Map<String, List<Class<?>[]>> methodsParameterTypes = Maps.newHashMap();
+        List<Class<?>[]> hello = Lists.newArrayList();
+        hello.add(new Class<?>[] { String.class });
+        hello.add(new Class<?>[] { String.class, int.class });
+        methodsParameterTypes.put("hello", hello);
+        List<Class<?>[]> ping = Lists.newArrayList();
+        ping.add(new Class<?>[0]);
+        methodsParameterTypes.put("ping", ping);
+
+        ServiceWrapper wrapper = new ServiceWrapper("test", "1.0.0", "HelloService", new HelloServiceImpl(), methodsParameterTypes);
+        Object provider = wrapper.getServiceProvider();
+
+        ServiceMethod method = wrapper.getMethod(Identifiers.methodId("hello", new Class<?>[] { String.class, int.class }));
+        assertThat(method, notNullValue());
+        assertThat(method.invoke(provider, new Object[] { "jupiter", 2 }), is((Object) "Hello jupiter x2"));
+        assertThat(method.getCallInfo(), is("test-1.0.0-HelloService#hello"));
+
+        method = wrapper.getMethod(Identifiers.methodId("ping", new Class<?>[0]));
+        assertThat(method.invoke(provider, new Object[0]), is((Object) "pong"));
+
+        // 没有方法标识时按参数匹配重载的方法
+        method = wrapper.getMethod("hello", new Object[] { "jupiter" });
+        assertThat(method.invoke(provider, new Object[] { "jupiter" }), is((Object) "Hello jupiter"));
+
+        assertThat(wrapper.getMethod(Identifiers.methodId("hello", new Class<?>[] { int.class })), nullValue());
+        assertThat(wrapper.getMethod("bye", new Object[0]), nullValue());
+    }
+
+    @Test
+    public void testPlacement() {
+        Map<String, List<Class<?>[]>> methodsParameterTypes = Maps.newHashMap();
+        List<Class<?>[]> ping = Lists.newArrayList();
+        ping.add(new Class<?>[0]);
+        methodsParameterTypes.put("ping", ping);
+
+        ServiceWrapper wrapper = new ServiceWrapper("test", "1.0.0", "HelloService", new HelloServiceImpl(), methodsParameterTypes);
+        // 没有重载的方法可以只按方法名查找
+        ServiceMethod method = wrapper.getMethod("ping");
+        assertThat(method, sameInstance(wrapper.getMethod(Identifiers.methodId("ping", new Class<?>[0]))));
+        assertThat(method.getPlacement(), is(Placement.DEFAULT));
+
+        method.setPlacement(Placement.INLINE, null);
+        int version = ServiceMethod.placementVersion();
+        assertThat(method.recordInlineBlocking(3, 100, 1000, 0), is(false));
+        assertThat(method.recordInlineBlocking(3, 100, 1000, 10), is(false));
+        assertThat(method.getPlacement(), is(Placement.INLINE));
+        // 窗口过期后阻塞次数重新计算
+        assertThat(method.recordInlineBlocking(3, 100, 1000, 200), is(false));
+        assertThat(method.recordInlineBlocking(3, 100, 1000, 210), is(false));
+        // 窗口内第3次阻塞时降级, 只降级一次
+        assertThat(method.recordInlineBlocking(3, 100, 1000, 220), is(true));
+        assertThat(method.getPlacement(), is(Placement.SHARED));
+        assertThat(method.isDemoted(), is(true));
+        assertThat(method.recordInlineBlocking(3, 100, 1000, 230), is(false));
+        assertThat(ServiceMethod.placementVersion(), not(version));
+
+        // 降级到期后恢复, 再次降级时降级时长翻倍
+        assertThat(method.tryPromote(1219), is(false));
+        assertThat(method.tryPromote(1220), is(true));
+        assertThat(method.getPlacement(), is(Placement.INLINE));
+        for (int i = 0; i < 3; i++) {
+            method.recordInlineBlocking(3, 100, 1000, 1300);
+        }
+        assertThat(method.getPlacement(), is(Placement.SHARED));
+        assertThat(method.tryPromote(3299), is(false));
+        assertThat(method.tryPromote(3300), is(true));
+    }
+
+    public static class HelloServiceImpl {
+
+        public String hello(String name) {
+            return "Hello " + name;
+        }
+
+        public String hello(String name, int times) {
+            return "Hello " + name + " x" + times;
+        }
+
+        public String ping() {
+            return "pong";
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.provider;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.provider
+ *
+ * @author jiachun.fjc
+ */
+public class RequestCollapserTest {
+
+    @Test
+    public void testCollapse() {
+        RequestCollapser collapser = new RequestCollapser("test.collapse");
+        RecordingWaiter waiter = new RecordingWaiter();
+
+        RequestCollapser.Flight leader = collapser.join(new byte[] { 1 }, true, waiter);
+        assertThat(leader, notNullValue());
+        // 相同的参数等待leader的结果
+        assertThat(collapser.join(new byte[] { 1 }, true, waiter), nullValue());
+        assertThat(collapser.join(new byte[] { 1 }, true, waiter), nullValue());
+        // 不同的参数或编码方式各自执行
+        RequestCollapser.Flight other = collapser.join(new byte[] { 2 }, true, waiter);
+        assertThat(other, notNullValue());
+        assertThat(collapser.join(new byte[] { 1 }, false, waiter), notNullValue());
+        assertThat(collapser.size(), is(3));
+
+        byte[] result = { 9 };
+        leader.complete(result);
+        assertThat(waiter.results.size(), is(2));
+        assertThat(waiter.results.get(0), sameInstance(result));
+
+        // 完成之后到达的相同请求成为新的leader
+        assertThat(collapser.join(new byte[] { 1 }, true, waiter), notNullValue());
+
+        RuntimeException cause = new RuntimeException();
+        assertThat(collapser.join(new byte[] { 2 }, true, waiter), nullValue());
+        other.failure(cause);
+        assertThat(waiter.failures, contains((Throwable) cause));
+        // 只分发一次
+        other.complete(result);
+        assertThat(waiter.results.size(), is(2));
+    }
+
+    static class RecordingWaiter implements RequestCollapser.Waiter {
+
+        final List<byte[]> results = new CopyOnWriteArrayList<>();
+        final List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void complete(byte[] resultBytes) {
+            results.add(resultBytes);
+        }
+
+        @Override
+        public void failure(Throwable cause) {
+            failures.add(cause);
+        }
+    }
+}
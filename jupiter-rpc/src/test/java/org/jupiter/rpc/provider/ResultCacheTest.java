@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.provider;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.provider
+ *
+ * @author jiachun.fjc
+ */
+public class ResultCacheTest {
+
+    @Test
+    public void testHitAndMiss() {
+        ResultCache cache = new ResultCache("test.hit", 60000, 16);
+        byte[] value = { 1, 2, 3 };
+
+        assertThat(cache.get(new byte[] { 7 }, true), nullValue());
+        cache.put(new byte[] { 7 }, true, value);
+        // 按字节内容比较, 不要求是同一个数组
+        assertThat(cache.get(new byte[] { 7 }, true), sameInstance(value));
+        // 不同的编码方式不共享缓存项
+        assertThat(cache.get(new byte[] { 7 }, false), nullValue());
+        assertThat(cache.get(new byte[] { 8 }, true), nullValue());
+    }
+
+    @Test
+    public void testTtl() throws InterruptedException {
+        ResultCache cache = new ResultCache("test.ttl", 20, 16);
+        cache.put(null, true, new byte[] { 1 });
+        assertThat(cache.get(null, true), notNullValue());
+
+        Thread.sleep(50);
+        assertThat(cache.get(null, true), nullValue());
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void testEviction() {
+        ResultCache cache = new ResultCache("test.eviction", 60000, 64);
+        for (int i = 0; i < 1024; i++) {
+            cache.put(new byte[] { (byte) i, (byte) (i >>> 8) }, true, new byte[] { 1 });
+        }
+        assertThat(cache.size(), lessThanOrEqualTo(64));
+
+        // 过大的结果不缓存
+        cache.clear();
+        cache.put(new byte[0], true, new byte[1024 * 1024]);
+        assertThat(cache.size(), is(0));
+    }
+}
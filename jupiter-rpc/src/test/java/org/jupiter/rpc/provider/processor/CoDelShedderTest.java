@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.provider.processor;
+
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.provider.processor
+ *
+ * @author jiachun.fjc
+ */
+public class CoDelShedderTest {
+
+    @Test
+    public void testShed() {
+        CoDelShedder shedder = new CoDelShedder(10, 100);
+        long base = System.nanoTime();
+
+        // 第一个周期内排队时间一直超标, 但还没有判定过载
+        assertThat(shedder.shouldShed(millis(50), base + millis(10)), is(false));
+        assertThat(shedder.shouldShed(millis(40), base + millis(50)), is(false));
+
+        // 整个周期内最小排队时间都超过目标值, 进入过载状态, 只拒绝排队时间超过目标值2倍的请求
+        assertThat(shedder.shouldShed(millis(50), base + millis(101)), is(true));
+        assertThat(shedder.isOverloaded(), is(true));
+        assertThat(shedder.shouldShed(millis(15), base + millis(120)), is(false));
+        assertThat(shedder.shouldShed(millis(5), base + millis(150)), is(false));
+
+        // 队列被消化, 下一个周期退出过载状态
+        assertThat(shedder.shouldShed(millis(30), base + millis(205)), is(false));
+        assertThat(shedder.isOverloaded(), is(false));
+    }
+
+    private static long millis(long millis) {
+        return MILLISECONDS.toNanos(millis);
+    }
+}
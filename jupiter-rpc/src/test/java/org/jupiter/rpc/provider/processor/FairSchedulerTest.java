@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.rpc.provider.processor;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.jupiter.common.util.Lists.newArrayList;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.provider.processor
+ *
+ * @author jiachun.fjc
+ */
+public class FairSchedulerTest {
+
+    @Test
+    public void testWeightedRoundRobin() {
+        FairScheduler scheduler = new FairScheduler(16)
+                .serviceQuota("hot", 2, 0);
+        List<String> order = newArrayList();
+        for (int i = 0; i < 4; i++) {
+            assertThat(scheduler.offer("hot", "app", new Record(order, "H")), is(true));
+            assertThat(scheduler.offer("cold", "app", new Record(order, "C")), is(true));
+        }
+        assertThat(scheduler.depth("hot", "app"), is(4));
+
+        for (int i = 0; i < 8; i++) {
+            scheduler.runNext();
+        }
+        // 每轮hot最多执行2个, cold执行1个
+        assertThat(order, contains("H", "H", "C", "H", "H", "C", "C", "C"));
+        assertThat(scheduler.depth("hot", "app"), is(0));
+
+        FairScheduler full = new FairScheduler(1);
+        assertThat(full.offer("hot", "app", new Record(order, "H")), is(true));
+        assertThat(full.offer("hot", "app", new Record(order, "H")), is(false));
+        assertThat(full.offer("hot", "other", new Record(order, "H")), is(true));
+    }
+
+    @Test
+    public void testBulkhead() {
+        final FairScheduler scheduler = new FairScheduler(16)
+                .appQuota("noisy", 1, 1);
+        final List<String> order = newArrayList();
+        scheduler.execute("service", "noisy", new Runnable() {
+
+            @Override
+            public void run() {
+                order.add("N1");
+                // noisy的舱壁已满, 其它应用的请求不受影响
+                scheduler.execute("service", "noisy", new Record(order, "N2"));
+                scheduler.execute("service", "quiet", new Record(order, "Q"));
+                assertThat(scheduler.depth("service", "noisy"), is(1));
+            }
+        });
+        // 释放舱壁后当前线程继续执行被阻塞的请求
+        assertThat(order, contains("N1", "Q", "N2"));
+        assertThat(scheduler.depth("service", "noisy"), is(0));
+    }
+
+    @Test
+    public void testPull() {
+        FairScheduler scheduler = new FairScheduler(16)
+                .serviceQuota("hot", 2, 0);
+        final List<Runnable> tokens = newArrayList();
+        Executor workers = new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                tokens.add(command);
+            }
+        };
+        List<String> order = newArrayList();
+        for (int i = 0; i < 3; i++) {
+            assertThat(scheduler.submit("cold", "app", new Record(order, "C"), workers), is(true));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertThat(scheduler.submit("hot", "app", new Record(order, "H"), workers), is(true));
+        }
+        assertThat(tokens.size(), is(6));
+
+        // 线程池中的先后顺序不决定执行顺序, 拿到令牌的处理线程按调度顺序取出请求
+        tokens.get(0).run();
+        assertThat(order, contains("C", "H", "H", "C", "H", "C"));
+        tokens.get(1).run();
+        assertThat(order.size(), is(6));
+
+        Executor exhausted = new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+        assertThat(scheduler.submit("cold", "app", new Record(order, "C"), exhausted), is(false));
+        assertThat(scheduler.depth("cold", "app"), is(0));
+    }
+
+    @Test
+    public void testFlowCap() {
+        FairScheduler scheduler = new FairScheduler(16, 2, 0)
+                .appQuota("vip", 1, 0);
+        List<String> order = newArrayList();
+        assertThat(scheduler.offer("service", "a", new Record(order, "A")), is(true));
+        assertThat(scheduler.offer("service", "b", new Record(order, "B")), is(true));
+        // 队列数量达到上限, 未配置配额的应用合并到默认队列, 配置了配额的应用仍有自己的队列
+        assertThat(scheduler.offer("service", "c", new Record(order, "C")), is(true));
+        assertThat(scheduler.offer("service", "d", new Record(order, "D")), is(true));
+        assertThat(scheduler.offer("service", "vip", new Record(order, "V")), is(true));
+        assertThat(scheduler.depth("service", null), is(2));
+        assertThat(scheduler.depth("service", "c"), is(0));
+        assertThat(scheduler.depth("service", "vip"), is(1));
+        assertThat(scheduler.flows(), is(4));
+
+        scheduler.drain();
+        assertThat(order.size(), is(5));
+        // 空闲的队列被清理后又有了空位
+        assertThat(scheduler.offer("service", "e", new Record(order, "E")), is(true));
+        assertThat(scheduler.depth("service", "e"), is(1));
+        assertThat(scheduler.flows(), is(1));
+    }
+
+    static class Record implements Runnable {
+
+        private final List<String> order;
+        private final String name;
+
+        Record(List<String> order, String name) {
+            this.order = order;
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            order.add(name);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.jupiter.rpc.flow.control.RequestBytesBudget;
 import org.jupiter.rpc.provider.processor.DefaultProviderProcessor;
 import org.jupiter.transport.JConfig;
 import org.jupiter.transport.JOption;
@@ -149,7 +150,7 @@ public class JNettyTcpAcceptor extends NettyTcpAcceptor {
                 ch.pipeline().addLast(
                         new IdleStateChecker(timer, READER_IDLE_TIME_SECONDS, 0, 0),
                         idleStateTrigger,
-                        new ProtocolDecoder(),
+                        new ProtocolDecoder(RequestBytesBudget.global()),
                         encoder,
                         handler);
             }
@@ -174,8 +174,8 @@ public class JNettyTcpConnector extends NettyTcpConnector {
         };
         watchdog.setReconnect(true);
 
+        final ChannelFuture future;
         try {
-            ChannelFuture future;
             synchronized (bootstrapLock()) {
                 boot.handler(new ChannelInitializer<Channel>() {
 
@@ -196,12 +196,6 @@ public class JNettyTcpConnector extends NettyTcpConnector {
             throw new ConnectFailedException("connects to [" + address + "] fails", t);
         }
 
-        return new JConnection(address) {
-
-            @Override
-            public void setReconnect(boolean reconnect) {
-                watchdog.setReconnect(reconnect);
-            }
-        };
+        return new NettyConnection(address, future, watchdog);
     }
 }
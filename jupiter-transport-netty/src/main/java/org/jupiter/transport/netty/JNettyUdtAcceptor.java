@@ -21,6 +21,7 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.udt.UdtChannel;
 import io.netty.channel.udt.nio.NioUdtProvider;
+import org.jupiter.rpc.flow.control.RequestBytesBudget;
 import org.jupiter.rpc.provider.processor.DefaultProviderProcessor;
 import org.jupiter.transport.JConfig;
 import org.jupiter.transport.JOption;
@@ -127,7 +128,7 @@ public class JNettyUdtAcceptor extends NettyUdtAcceptor {
                         ch.pipeline().addLast(
                                 new IdleStateChecker(timer, READER_IDLE_TIME_SECONDS, 0, 0),
                                 idleStateTrigger,
-                                new ProtocolDecoder(),
+                                new ProtocolDecoder(RequestBytesBudget.global()),
                                 encoder,
                                 handler);
                     }
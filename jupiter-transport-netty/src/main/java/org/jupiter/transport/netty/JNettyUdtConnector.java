@@ -152,8 +152,8 @@ public class JNettyUdtConnector extends NettyUdtConnector {
             }};
         watchdog.setReconnect(true);
 
+        final ChannelFuture future;
         try {
-            ChannelFuture future;
             synchronized (bootstrapLock()) {
                 boot.handler(new ChannelInitializer<UdtChannel>() {
 
@@ -174,12 +174,6 @@ public class JNettyUdtConnector extends NettyUdtConnector {
             throw new ConnectFailedException("connects to [" + address + "] fails", t);
         }
 
-        return new JConnection(address) {
-
-            @Override
-            public void setReconnect(boolean reconnect) {
-                watchdog.setReconnect(reconnect);
-            }
-        };
+        return new NettyConnection(address, future, watchdog);
     }
 }
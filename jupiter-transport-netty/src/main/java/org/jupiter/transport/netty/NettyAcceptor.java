@@ -28,6 +28,7 @@ import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.internal.PlatformDependent;
 import org.jupiter.common.concurrent.NamedThreadFactory;
 import org.jupiter.rpc.AbstractJServer;
+import org.jupiter.rpc.flow.control.RequestBytesBudget;
 import org.jupiter.transport.JAcceptor;
 import org.jupiter.transport.JConfig;
 import org.jupiter.transport.JOption;
@@ -36,8 +37,10 @@ import org.jupiter.transport.netty.estimator.JMessageSizeEstimator;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.jupiter.common.util.JConstants.AVAILABLE_PROCESSORS;
+import static org.jupiter.common.util.JConstants.PROCESSOR_BYTES_BUDGET_HEAP_PRESSURE;
 
 /**
  * jupiter
@@ -57,6 +60,8 @@ public abstract class NettyAcceptor extends AbstractJServer implements JAcceptor
     private EventLoopGroup worker;
     private int nWorkers;
 
+    private final AtomicBoolean heapPressureMonitored = new AtomicBoolean(false);
+
     protected volatile ByteBufAllocator allocator;
 
     public NettyAcceptor(Protocol protocol, SocketAddress localAddress) {
@@ -86,6 +91,10 @@ public abstract class NettyAcceptor extends AbstractJServer implements JAcceptor
         child.setOption(JOption.IO_RATIO, 100);
         child.setOption(JOption.PREFER_DIRECT, true);
         child.setOption(JOption.USE_POOLED_ALLOCATOR, true);
+
+        if (PROCESSOR_BYTES_BUDGET_HEAP_PRESSURE && heapPressureMonitored.compareAndSet(false, true)) {
+            RequestBytesBudget.global().startHeapPressureMonitor();
+        }
     }
 
     @Override
@@ -102,6 +111,10 @@ public abstract class NettyAcceptor extends AbstractJServer implements JAcceptor
     public void shutdownGracefully() {
         boss.shutdownGracefully().awaitUninterruptibly();
         worker.shutdownGracefully().awaitUninterruptibly();
+
+        if (heapPressureMonitored.compareAndSet(true, false)) {
+            RequestBytesBudget.global().stopHeapPressureMonitor();
+        }
     }
 
     @Override
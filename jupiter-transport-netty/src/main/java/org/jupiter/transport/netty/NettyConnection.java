@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.transport.netty;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import org.jupiter.rpc.UnresolvedAddress;
+import org.jupiter.transport.JConnection;
+import org.jupiter.transport.netty.handler.connector.ConnectionWatchdog;
+
+/**
+ * 基于netty connect future的 {@link JConnection}.
+ *
+ * jupiter
+ * org.jupiter.transport.netty
+ *
+ * @author jiachun.fjc
+ */
+public class NettyConnection extends JConnection {
+
+    private final ChannelFuture future;
+    private final ConnectionWatchdog watchdog;
+
+    public NettyConnection(UnresolvedAddress address, ChannelFuture future, ConnectionWatchdog watchdog) {
+        super(address);
+        this.future = future;
+        this.watchdog = watchdog;
+    }
+
+    @Override
+    public boolean isReconnect() {
+        return watchdog.isReconnect();
+    }
+
+    @Override
+    public void setReconnect(boolean reconnect) {
+        watchdog.setReconnect(reconnect);
+    }
+
+    @Override
+    public void operationComplete(final OperationListener listener) {
+        future.addListener(new ChannelFutureListener() {
+
+            @Override
+            public void operationComplete(ChannelFuture f) throws Exception {
+                if (!f.isSuccess()) {
+                    listener.complete(false);
+                    return;
+                }
+                // connect future的通知先于channelActive(加入JChannelGroup), 延后回调以保证连接已经可用
+                f.channel().eventLoop().execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        listener.complete(true);
+                    }
+                });
+            }
+        });
+    }
+}
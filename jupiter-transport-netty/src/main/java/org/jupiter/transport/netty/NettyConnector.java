@@ -16,6 +16,7 @@
 
 package org.jupiter.transport.netty;
 
+import com.codahale.metrics.Timer;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.PooledByteBufAllocator;
@@ -23,11 +24,18 @@ import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.internal.PlatformDependent;
 import org.jupiter.common.concurrent.NamedThreadFactory;
+import org.jupiter.common.util.Lists;
+import org.jupiter.common.util.Maps;
 import org.jupiter.common.util.Strings;
+import org.jupiter.common.util.SystemClock;
 import org.jupiter.common.util.internal.JUnsafe;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
 import org.jupiter.registry.NotifyListener;
 import org.jupiter.registry.OfflineListener;
 import org.jupiter.registry.RegisterMeta;
@@ -35,21 +43,31 @@ import org.jupiter.rpc.AbstractJClient;
 import org.jupiter.rpc.Directory;
 import org.jupiter.rpc.ServiceProvider;
 import org.jupiter.rpc.UnresolvedAddress;
+import org.jupiter.rpc.channel.ConnectionPoolSizer;
 import org.jupiter.rpc.channel.JChannelGroup;
+import org.jupiter.rpc.metric.Metrics;
 import org.jupiter.rpc.model.metadata.ServiceMetadata;
 import org.jupiter.transport.*;
+import org.jupiter.transport.netty.channel.NettyChannel;
 import org.jupiter.transport.netty.channel.NettyChannelGroup;
 import org.jupiter.transport.netty.estimator.JMessageSizeEstimator;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static org.jupiter.common.util.JConstants.AVAILABLE_PROCESSORS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.jupiter.common.util.JConstants.*;
 import static org.jupiter.common.util.Preconditions.checkNotNull;
+import static org.jupiter.common.util.StackTraceUtil.stackTrace;
 
 /**
  * jupiter
@@ -59,6 +77,11 @@ import static org.jupiter.common.util.Preconditions.checkNotNull;
  */
 public abstract class NettyConnector extends AbstractJClient implements JConnector<JConnection> {
 
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(NettyConnector.class);
+
+    // 从开始连接到第一个连接可用的时间
+    private static final Timer timeToReadyTimer = Metrics.timer(NettyConnector.class, "time-to-ready");
+
     protected final Protocol protocol;
     protected final HashedWheelTimer timer = new HashedWheelTimer(new NamedThreadFactory("connector.timer"));
 
@@ -68,6 +91,10 @@ public abstract class NettyConnector extends AbstractJClient implements JConnect
 
     protected volatile ByteBufAllocator allocator;
 
+    private final ConnectionOrchestrator orchestrator = new ConnectionOrchestrator(this, CONNECTION_ESTABLISH_PARALLELISM);
+    // 正在建立连接的服务节点
+    private final ConcurrentMap<UnresolvedAddress, Boolean> connectingAddresses = Maps.newConcurrentHashMap();
+
     public NettyConnector(Protocol protocol) {
         this(protocol, AVAILABLE_PROCESSORS + 1);
     }
@@ -99,6 +126,13 @@ public abstract class NettyConnector extends AbstractJClient implements JConnect
         child.setOption(JOption.USE_POOLED_ALLOCATOR, true);
 
         doInit();
+
+        if (CONNECTION_POOL_DYNAMIC) {
+            timer.newTimeout(new ConnectionPoolResizer(), 1, SECONDS);
+        }
+        if (CONNECTION_LAZY && CONNECTION_IDLE_REAP_MILLIS > 0) {
+            timer.newTimeout(new IdleConnectionReaper(), 1, SECONDS);
+        }
     }
 
     protected abstract void doInit();
@@ -129,86 +163,222 @@ public abstract class NettyConnector extends AbstractJClient implements JConnect
             // Attempts to elide conditional wake-ups when the lock is uncontended.
             private final AtomicBoolean signalNeeded = new AtomicBoolean(false);
 
+            // 上一次通知的全量服务节点
+            private final Object snapshotLock = new Object();
+            private final ProviderSnapshot snapshot = new ProviderSnapshot();
+
             @Override
             public void start() {
                 subscribe(directory, new NotifyListener() {
 
                     @Override
                     public void notify(List<RegisterMeta> allRegisterMeta) {
-                        for (RegisterMeta meta : allRegisterMeta) {
-                            UnresolvedAddress address = new UnresolvedAddress(meta.getHost(), meta.getPort());
-                            JChannelGroup group = group(address);
-                            if (!group.isAvailable()) {
-                                connectTo(address, group, meta);
+                        List<JChannelGroup> added = Lists.newArrayList();
+                        List<JChannelGroup> removed = Lists.newArrayList();
+
+                        synchronized (snapshotLock) {
+                            // 与上一次的全量数据对比, 只处理新增, 删除和变化的服务节点
+                            ProviderSnapshot.Diff diff = snapshot.reconcile(allRegisterMeta);
+                            if (diff == null) {
+                                // 服务下线通过CHILD_REMOVED事件和连接断开处理, 空的全量数据很可能来自注册中心的异常
+                                logger.warn("Ignored empty registry snapshot of {}, keeps {} providers.",
+                                        directory.directory(), snapshot.size());
+                                return;
+                            }
+
+                            for (RegisterMeta meta : diff.added) {
+                                UnresolvedAddress address = ProviderSnapshot.addressOf(meta);
+                                JChannelGroup group = group(address);
+                                added.add(group);
+                                ensureConnecting(address, group, meta);
+                            }
+                            for (RegisterMeta meta : diff.changed) {
+                                UnresolvedAddress address = ProviderSnapshot.addressOf(meta);
+                                JChannelGroup group = group(address);
+                                update(address, group, meta);
+                                ensureConnecting(address, group, meta);
+                            }
+                            for (RegisterMeta meta : diff.unchanged) {
+                                UnresolvedAddress address = ProviderSnapshot.addressOf(meta);
+                                ensureConnecting(address, group(address), meta);
+                            }
+                            for (UnresolvedAddress address : diff.removed) {
+                                removed.add(group(address));
                             }
-                            // 添加ChannelGroup到指定directory
-                            addChannelGroup(directory, group);
+
+                            // 每个directory的group列表只重建一次
+                            addChannelGroups(directory, added);
+                            removeChannelGroups(directory, removed);
                         }
 
-                        if (!allRegisterMeta.isEmpty() && signalNeeded.getAndSet(false)) {
-                            final ReentrantLock _look = lock;
-                            _look.lock();
-                            try {
-                                notifyCondition.signalAll();
-                            } finally {
-                                _look.unlock();
+                        for (JChannelGroup group : removed) {
+                            if (!group.isAvailable()) {
+                                JConnectionManager.cancelReconnect(group.remoteAddress()); // 取消自动重连
                             }
                         }
+
+                        if (!added.isEmpty()) {
+                            signalAvailable();
+                        }
                     }
 
                     @Override
                     public void notify(RegisterMeta registerMeta, NotifyEvent event) {
-                        UnresolvedAddress address = new UnresolvedAddress(registerMeta.getHost(), registerMeta.getPort());
+                        UnresolvedAddress address = ProviderSnapshot.addressOf(registerMeta);
                         JChannelGroup group = group(address);
                         if (event == NotifyEvent.CHILD_ADDED) {
-                            if (!group.isAvailable()) {
-                                connectTo(address, group, registerMeta);
-                            }
-                            // 添加ChannelGroup到指定directory
-                            addChannelGroup(directory, group);
-
-                            if (signalNeeded.getAndSet(false)) {
-                                final ReentrantLock _look = lock;
-                                _look.lock();
-                                try {
-                                    notifyCondition.signalAll();
-                                } finally {
-                                    _look.unlock();
+                            synchronized (snapshotLock) {
+                                RegisterMeta old = snapshot.put(address, registerMeta);
+                                if (old != null && ProviderSnapshot.isChanged(old, registerMeta)) {
+                                    update(address, group, registerMeta);
                                 }
+                                ensureConnecting(address, group, registerMeta);
+                                // 添加ChannelGroup到指定directory
+                                addChannelGroup(directory, group);
                             }
+
+                            signalAvailable();
                         } else if (event == NotifyEvent.CHILD_REMOVED) {
-                            removeChannelGroup(directory, group);
+                            synchronized (snapshotLock) {
+                                snapshot.remove(address);
+                                removeChannelGroup(directory, group);
+                            }
                             if (!group.isAvailable()) {
                                 JConnectionManager.cancelReconnect(address); // 取消自动重连
                             }
                         }
                     }
 
-                    private void connectTo(final UnresolvedAddress address, final JChannelGroup group, RegisterMeta registerMeta) {
-                        int connCount = registerMeta.getConnCount();
+                    // 服务节点的权重, 建议连接数, 区域发生了变化
+                    private void update(UnresolvedAddress address, JChannelGroup group, RegisterMeta meta) {
+                        int connCount = applyRegisterMeta(group, meta);
+                        int missing = connCount - group.size();
+                        if (group.isEmpty() || missing <= 0) {
+                            return; // 没有连接的group由connectTo处理, 多余的连接由连接池缩容关闭
+                        }
+                        JConnection.OperationListener listener = newWarnOnFailureListener(address);
+                        for (int i = 0; i < missing; i++) {
+                            orchestrator.connect(address, listener);
+                        }
+                    }
+
+                    // 返回建议连接数
+                    private int applyRegisterMeta(JChannelGroup group, RegisterMeta meta) {
+                        int connCount = meta.getConnCount();
                         connCount = connCount < 1 ? 1 : connCount;
 
-                        group.setWeight(registerMeta.getWeight()); // 设置权重
+                        group.setWeight(meta.getWeight()); // 设置权重
+                        if (!Objects.equals(group.getZone(), meta.getZone())) {
+                            group.setZone(meta.getZone()); // 设置区域
+                            onZoneChanged(group);
+                        }
                         group.setCapacity(connCount);
-                        for (int i = 0; i < connCount; i++) {
-                            JConnection connection = connect(address);
-                            JConnectionManager.manage(connection);
+                        if (group instanceof NettyChannelGroup) {
+                            // 服务提供者建议的连接数作为初始连接数, 之后根据负载在范围内动态调整
+                            ((NettyChannelGroup) group).setPoolBounds(
+                                    CONNECTION_POOL_MIN, Math.max(CONNECTION_POOL_MAX, connCount));
+                        }
+                        return connCount;
+                    }
+
+                    private void ensureConnecting(UnresolvedAddress address, JChannelGroup group, RegisterMeta registerMeta) {
+                        if (group.isAvailable()) {
+                            return;
+                        }
+                        // 已经安装了延迟连接的group只需恢复延迟连接, 新的建议连接数已由update应用
+                        if (CONNECTION_LAZY && group instanceof NettyChannelGroup
+                                && ((NettyChannelGroup) group).resumeLazyConnect()) {
+                            return;
+                        }
+                        connectTo(address, group, registerMeta);
+                    }
+
+                    private void connectTo(final UnresolvedAddress address, final JChannelGroup group, RegisterMeta registerMeta) {
+                        if (connectingAddresses.putIfAbsent(address, Boolean.TRUE) != null) {
+                            return; // 正在建立连接
+                        }
+
+                        int connCount = applyRegisterMeta(group, registerMeta);
 
+                        // 每个group只注册一次下线通知, 下线之后才重新注册
+                        if (!(group instanceof NettyChannelGroup) || ((NettyChannelGroup) group).markOfflineListening()) {
                             offlineListening(address, new OfflineListener() {
 
                                 @Override
                                 public void offline() {
                                     JConnectionManager.cancelReconnect(address); // 取消自动重连
+                                    if (group instanceof NettyChannelGroup) {
+                                        ((NettyChannelGroup) group).onOffline(); // 取消延迟连接
+                                    }
                                     if (!group.isAvailable()) {
                                         removeChannelGroup(directory, group);
                                     }
                                 }
                             });
                         }
+
+                        if (CONNECTION_LAZY && group instanceof NettyChannelGroup) {
+                            // 第一次被选中时才建立连接, 异步连接, 调用者只需等待第一个连接建立
+                            final NettyChannelGroup nettyGroup = (NettyChannelGroup) group;
+                            nettyGroup.setLazyConnector(new Runnable() {
+
+                                @Override
+                                public void run() {
+                                    // 全部失败时退避一段时间, 之后再次被选中时重新连接
+                                    JConnection.OperationListener listener = new JConnection.OperationListener() {
+
+                                        @Override
+                                        public void complete(boolean isSuccess) {
+                                            nettyGroup.onLazyConnectComplete(isSuccess);
+                                        }
+                                    };
+                                    // 连接器只安装一次, 建议连接数在连接时读取
+                                    int connCount = Math.max(1, nettyGroup.getCapacity());
+                                    for (int i = 0; i < connCount; i++) {
+                                        orchestrator.connect(address, listener);
+                                    }
+                                }
+                            });
+                            connectingAddresses.remove(address);
+                            return;
+                        }
+
+                        // 并行建立连接, 第一个连接建立之后立即通知等待者
+                        final long startNanos = System.nanoTime();
+                        final AtomicInteger remaining = new AtomicInteger(connCount);
+                        final AtomicBoolean ready = new AtomicBoolean(false);
+                        for (int i = 0; i < connCount; i++) {
+                            orchestrator.connect(address, new JConnection.OperationListener() {
+
+                                @Override
+                                public void complete(boolean isSuccess) {
+                                    if (isSuccess && ready.compareAndSet(false, true)) {
+                                        timeToReadyTimer.update(System.nanoTime() - startNanos, NANOSECONDS);
+                                        connectingAddresses.remove(address);
+                                        signalAvailable();
+                                    }
+                                    if (remaining.decrementAndGet() == 0 && !ready.get()) {
+                                        connectingAddresses.remove(address); // 全部失败, 下次通知时重新连接
+                                    }
+                                }
+                            });
+                        }
                     }
                 });
             }
 
+            private void signalAvailable() {
+                if (signalNeeded.getAndSet(false)) {
+                    final ReentrantLock _look = lock;
+                    _look.lock();
+                    try {
+                        notifyCondition.signalAll();
+                    } finally {
+                        _look.unlock();
+                    }
+                }
+            }
+
             @Override
             public boolean waitForAvailable(long timeoutMillis) {
                 if (isDirectoryAvailable(directory)) {
@@ -246,6 +416,7 @@ public abstract class NettyConnector extends AbstractJClient implements JConnect
 
     @Override
     public void shutdownGracefully() {
+        cancelScheduledTasks();
         worker.shutdownGracefully();
     }
 
@@ -277,6 +448,116 @@ public abstract class NettyConnector extends AbstractJClient implements JConnect
                 .option(ChannelOption.MESSAGE_SIZE_ESTIMATOR, JMessageSizeEstimator.DEFAULT);
     }
 
+    private static JConnection.OperationListener newWarnOnFailureListener(final UnresolvedAddress address) {
+        return new JConnection.OperationListener() {
+
+            @Override
+            public void complete(boolean isSuccess) {
+                if (!isSuccess) {
+                    logger.warn("Connects to {} failed.", address);
+                }
+            }
+        };
+    }
+
+    /**
+     * 每秒检查一次到每个服务节点的连接负载, 按需新建或关闭连接, 每秒调整的连接总数受
+     * {@link org.jupiter.common.util.JConstants#CONNECTION_POOL_MAX_CHANGES_PER_SECOND} 限制.
+     */
+    private class ConnectionPoolResizer implements TimerTask {
+
+        @Override
+        public void run(Timeout timeout) throws Exception {
+            try {
+                long now = SystemClock.millisClock().now();
+                int budget = CONNECTION_POOL_MAX_CHANGES_PER_SECOND;
+                for (JChannelGroup group : groups()) {
+                    if (budget <= 0) {
+                        break;
+                    }
+                    // 有连接正在重连时不调整
+                    if (!(group instanceof NettyChannelGroup) || group.size() < group.getCapacity()) {
+                        continue;
+                    }
+
+                    NettyChannelGroup nettyGroup = (NettyChannelGroup) group;
+                    int decision = nettyGroup.evaluatePoolSize(now);
+                    if (decision == ConnectionPoolSizer.GROW) {
+                        grow(nettyGroup);
+                        budget--;
+                    } else if (decision == ConnectionPoolSizer.SHRINK) {
+                        shrink(nettyGroup);
+                        budget--;
+                    }
+                }
+            } catch (Throwable t) {
+                logger.error("Resizes connection pools failed: {}.", stackTrace(t));
+            } finally {
+                timer.newTimeout(this, 1, SECONDS);
+            }
+        }
+
+        private void grow(final NettyChannelGroup group) {
+            final UnresolvedAddress address = group.remoteAddress();
+            group.setCapacity(group.size() + 1);
+            orchestrator.connect(address, new JConnection.OperationListener() {
+
+                @Override
+                public void complete(boolean isSuccess) {
+                    if (!isSuccess) {
+                        // 回退容量, 否则 size < capacity 的group不会再被调整
+                        group.setCapacity(Math.max(group.size(), 1));
+
+                        logger.warn("Grows connection pool failed, address: {}.", address);
+                    }
+                }
+            });
+
+            logger.info("Grows connection pool to {}, address: {}.", group.getCapacity(), address);
+        }
+
+        private void shrink(NettyChannelGroup group) {
+            final NettyChannel channel = group.retireChannel();
+            if (channel == null) {
+                return;
+            }
+            // 等待已发出的请求响应之后再关闭连接
+            timer.newTimeout(new TimerTask() {
+
+                @Override
+                public void run(Timeout timeout) throws Exception {
+                    channel.close();
+                }
+            }, DEFAULT_TIMEOUT, MILLISECONDS);
+
+            logger.info("Shrinks connection pool to {}, address: {}.", group.getCapacity(), group.remoteAddress());
+        }
+    }
+
+    /**
+     * 关闭长时间没有使用的延迟连接的group的所有连接(同时释放心跳等定时任务), 下次被选中时重新连接.
+     */
+    private class IdleConnectionReaper implements TimerTask {
+
+        @Override
+        public void run(Timeout timeout) throws Exception {
+            try {
+                long now = SystemClock.millisClock().now();
+                for (JChannelGroup group : groups()) {
+                    if (group instanceof NettyChannelGroup
+                            && ((NettyChannelGroup) group).reapIfIdle(now, CONNECTION_IDLE_REAP_MILLIS)) {
+
+                        logger.info("Closed idle connections, address: {}.", group.remoteAddress());
+                    }
+                }
+            } catch (Throwable t) {
+                logger.error("Reaps idle connections failed: {}.", stackTrace(t));
+            } finally {
+                timer.newTimeout(this, 1, SECONDS);
+            }
+        }
+    }
+
     /**
      * A {@link Bootstrap} that makes it easy to bootstrap a {@link io.netty.channel.Channel} to use
      * for clients.
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.transport.netty;
+
+import org.jupiter.common.util.Lists;
+import org.jupiter.common.util.Maps;
+import org.jupiter.registry.RegisterMeta;
+import org.jupiter.rpc.UnresolvedAddress;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 一个directory上一次通知的全量服务节点, 与新的全量数据对比得到新增, 变化和删除的服务节点.
+ *
+ * 不是线程安全的, 由调用者加锁.
+ *
+ * jupiter
+ * org.jupiter.transport.netty
+ *
+ * @author jiachun.fjc
+ */
+final class ProviderSnapshot {
+
+    private Map<UnresolvedAddress, RegisterMeta> metas = Maps.newHashMap();
+
+    /**
+     * Replaces the snapshot with {@code allRegisterMeta} and returns the difference, returns
+     * null and keeps the snapshot if {@code allRegisterMeta} is empty but the snapshot is not.
+     */
+    Diff reconcile(List<RegisterMeta> allRegisterMeta) {
+        if (allRegisterMeta.isEmpty() && !metas.isEmpty()) {
+            // 服务下线通过CHILD_REMOVED事件和连接断开处理, 空的全量数据很可能来自注册中心的异常
+            return null;
+        }
+
+        Diff diff = new Diff();
+        Map<UnresolvedAddress, RegisterMeta> snapshot = metas; // 处理完之后被替换
+        Map<UnresolvedAddress, RegisterMeta> latest = Maps.newHashMapWithExpectedSize(allRegisterMeta.size());
+        for (RegisterMeta meta : allRegisterMeta) {
+            UnresolvedAddress address = addressOf(meta);
+            if (latest.containsKey(address)) {
+                continue; // 重复的服务节点
+            }
+            latest.put(address, meta);
+
+            RegisterMeta old = snapshot.remove(address);
+            if (old == null) {
+                diff.added.add(meta);
+            } else if (isChanged(old, meta)) {
+                diff.changed.add(meta);
+            } else {
+                diff.unchanged.add(meta);
+            }
+        }
+        // 剩下的是已经被删除的服务节点
+        diff.removed.addAll(snapshot.keySet());
+        metas = latest;
+        return diff;
+    }
+
+    /**
+     * Adds or replaces a provider, returns the previous one.
+     */
+    RegisterMeta put(UnresolvedAddress address, RegisterMeta meta) {
+        return metas.put(address, meta);
+    }
+
+    /**
+     * Removes a provider, returns the removed one.
+     */
+    RegisterMeta remove(UnresolvedAddress address) {
+        return metas.remove(address);
+    }
+
+    int size() {
+        return metas.size();
+    }
+
+    static UnresolvedAddress addressOf(RegisterMeta meta) {
+        return new UnresolvedAddress(meta.getHost(), meta.getPort());
+    }
+
+    /**
+     * 服务节点的权重, 建议连接数, 区域发生了变化.
+     */
+    static boolean isChanged(RegisterMeta old, RegisterMeta meta) {
+        return old.getWeight() != meta.getWeight()
+                || old.getConnCount() != meta.getConnCount()
+                || !Objects.equals(old.getZone(), meta.getZone());
+    }
+
+    static final class Diff {
+
+        final List<RegisterMeta> added = Lists.newArrayList();
+        final List<RegisterMeta> changed = Lists.newArrayList();
+        final List<RegisterMeta> unchanged = Lists.newArrayList();
+        final List<UnresolvedAddress> removed = Lists.newArrayList();
+    }
+}
@@ -19,13 +19,30 @@ package org.jupiter.transport.netty.channel;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.util.Attribute;
 import io.netty.util.AttributeKey;
+import org.jupiter.common.concurrent.atomic.AtomicUpdater;
+import org.jupiter.common.util.Lists;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.rpc.BytesHolder;
+import org.jupiter.rpc.JBatch;
+import org.jupiter.rpc.JRequest;
 import org.jupiter.rpc.channel.JChannel;
 import org.jupiter.rpc.channel.JFutureListener;
 import org.jupiter.transport.netty.handler.connector.ConnectionWatchdog;
 
 import java.net.SocketAddress;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.jupiter.common.util.JConstants.BATCH_DELAY_MICROS;
+import static org.jupiter.common.util.JConstants.BATCH_MAX_SIZE;
+import static org.jupiter.common.util.StackTraceUtil.stackTrace;
 
 /**
  * 对Netty {@link Channel}的包装, 通过静态方法 {@link NettyChannel#attachChannel(Channel)} 获取一个实例,
@@ -38,8 +55,15 @@ import java.net.SocketAddress;
  */
 public class NettyChannel implements JChannel {
 
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(NettyChannel.class);
+
     private static final AttributeKey<NettyChannel> NETTY_CHANNEL_KEY = AttributeKey.valueOf("netty.channel");
 
+    private static final AtomicIntegerFieldUpdater<NettyChannel> batchScheduledUpdater =
+            AtomicUpdater.newAtomicIntegerFieldUpdater(NettyChannel.class, "batchScheduled");
+    private static final AtomicIntegerFieldUpdater<NettyChannel> batchPendingUpdater =
+            AtomicUpdater.newAtomicIntegerFieldUpdater(NettyChannel.class, "batchPending");
+
     /**
      * Returns the {@link NettyChannel} for given {@link Channel}, this method never return null.
      */
@@ -58,6 +82,20 @@ public class NettyChannel implements JChannel {
 
     private final Channel channel;
 
+    // 批量写
+    private final Queue<BatchEntry> batchQueue = new ConcurrentLinkedQueue<>();
+    private final Runnable batchFlushTask = new Runnable() {
+
+        @Override
+        public void run() {
+            flushBatch();
+        }
+    };
+    @SuppressWarnings("unused")
+    private volatile int batchScheduled = 0; // 0: 没有等待执行的flush任务, 1: 已提交flush任务
+    @SuppressWarnings("unused")
+    private volatile int batchPending = 0;
+
     private NettyChannel(Channel channel) {
         this.channel = channel;
     }
@@ -102,6 +140,25 @@ public class NettyChannel implements JChannel {
         return watchdog != null && watchdog.isReconnect();
     }
 
+    /**
+     * Sets the reconnect flag of the {@link ConnectionWatchdog}, a channel that no longer needs
+     * reconnecting (i.e. closed by connection pool shrinking) should be marked as false.
+     */
+    public void setMarkedReconnect(boolean reconnect) {
+        ConnectionWatchdog watchdog = channel.pipeline().get(ConnectionWatchdog.class);
+        if (watchdog != null) {
+            watchdog.setReconnect(reconnect);
+        }
+    }
+
+    /**
+     * Returns the number of bytes waiting in the outbound buffer to be written.
+     */
+    public long pendingWriteBytes() {
+        ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
+        return outboundBuffer == null ? 0 : outboundBuffer.totalPendingWriteBytes();
+    }
+
     @Override
     public boolean isAutoRead() {
         return channel.config().isAutoRead();
@@ -159,6 +216,74 @@ public class NettyChannel implements JChannel {
         return jChannel;
     }
 
+    @Override
+    public JChannel batchWrite(BytesHolder msg, JFutureListener<JChannel> listener) {
+        batchQueue.add(new BatchEntry(msg, listener));
+        int pending = batchPendingUpdater.incrementAndGet(this);
+        if (batchScheduledUpdater.compareAndSet(this, 0, 1)) {
+            if (BATCH_DELAY_MICROS > 0 && pending < BATCH_MAX_SIZE) {
+                channel.eventLoop().schedule(batchFlushTask, BATCH_DELAY_MICROS, MICROSECONDS);
+            } else {
+                channel.eventLoop().execute(batchFlushTask);
+            }
+        } else if (pending == BATCH_MAX_SIZE) {
+            // 时间窗口内已攒够一批, 不再等待
+            channel.eventLoop().execute(batchFlushTask);
+        }
+        return this;
+    }
+
+    // 只在IO线程中执行
+    private void flushBatch() {
+        // 先重置状态再取消息, 之后到达的消息会提交新的flush任务
+        batchScheduledUpdater.set(this, 0);
+
+        List<BatchEntry> requests = Lists.newArrayListWithCapacity(BATCH_MAX_SIZE);
+        List<BatchEntry> responses = Lists.newArrayListWithCapacity(BATCH_MAX_SIZE);
+        boolean written = false;
+        BatchEntry entry;
+        while ((entry = batchQueue.poll()) != null) {
+            batchPendingUpdater.decrementAndGet(this);
+
+            List<BatchEntry> entries = entry.msg instanceof JRequest ? requests : responses;
+            entries.add(entry);
+            if (entries.size() >= BATCH_MAX_SIZE) {
+                writeBatch(entries);
+                entries.clear();
+                written = true;
+            }
+        }
+        if (!requests.isEmpty()) {
+            writeBatch(requests);
+            written = true;
+        }
+        if (!responses.isEmpty()) {
+            writeBatch(responses);
+            written = true;
+        }
+        if (written) {
+            channel.flush();
+        }
+    }
+
+    private void writeBatch(List<BatchEntry> entries) {
+        if (entries.size() == 1) {
+            BatchEntry entry = entries.get(0);
+            channel.write(entry.msg).addListener(new BatchListener(this, entry.listener));
+            return;
+        }
+
+        List<BytesHolder> messages = Lists.newArrayListWithCapacity(entries.size());
+        @SuppressWarnings("unchecked")
+        JFutureListener<JChannel>[] listeners = new JFutureListener[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            BatchEntry entry = entries.get(i);
+            messages.add(entry.msg);
+            listeners[i] = entry.listener;
+        }
+        channel.write(new JBatch(messages)).addListener(new BatchListener(this, listeners));
+    }
+
     @Override
     public boolean equals(Object obj) {
         return this == obj || (obj instanceof NettyChannel && channel.equals(((NettyChannel) obj).channel));
@@ -173,4 +298,43 @@ public class NettyChannel implements JChannel {
     public String toString() {
         return channel.toString();
     }
+
+    static final class BatchEntry {
+
+        final BytesHolder msg;
+        final JFutureListener<JChannel> listener;
+
+        BatchEntry(BytesHolder msg, JFutureListener<JChannel> listener) {
+            this.msg = msg;
+            this.listener = listener;
+        }
+    }
+
+    static final class BatchListener implements ChannelFutureListener {
+
+        private final JChannel jChannel;
+        private final JFutureListener<JChannel>[] listeners;
+
+        @SafeVarargs
+        BatchListener(JChannel jChannel, JFutureListener<JChannel>... listeners) {
+            this.jChannel = jChannel;
+            this.listeners = listeners;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            // 一个listener抛出异常不能影响同一批次中的其他listener
+            for (JFutureListener<JChannel> listener : listeners) {
+                try {
+                    if (future.isSuccess()) {
+                        listener.operationSuccess(jChannel);
+                    } else {
+                        listener.operationFailure(jChannel, future.cause());
+                    }
+                } catch (Throwable t) {
+                    logger.warn("An exception was thrown by {}.operationComplete(), {}.", listener, stackTrace(t));
+                }
+            }
+        }
+    }
 }
@@ -24,6 +24,9 @@ import org.jupiter.common.util.SystemClock;
 import org.jupiter.common.util.SystemPropertyUtil;
 import org.jupiter.common.util.internal.JUnsafe;
 import org.jupiter.rpc.UnresolvedAddress;
+import org.jupiter.rpc.channel.CircuitBreaker;
+import org.jupiter.rpc.channel.ConcurrencyLimiter;
+import org.jupiter.rpc.channel.ConnectionPoolSizer;
 import org.jupiter.rpc.channel.JChannel;
 import org.jupiter.rpc.channel.JChannelGroup;
 
@@ -32,6 +35,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -58,6 +62,29 @@ public class NettyChannelGroup implements JChannelGroup {
             AtomicUpdater.newAtomicIntegerFieldUpdater(NettyChannelGroup.class, "signalNeeded");
     private static final AtomicIntegerFieldUpdater<NettyChannelGroup> indexUpdater =
             AtomicUpdater.newAtomicIntegerFieldUpdater(NettyChannelGroup.class, "index");
+    private static final AtomicIntegerFieldUpdater<NettyChannelGroup> inFlightUpdater =
+            AtomicUpdater.newAtomicIntegerFieldUpdater(NettyChannelGroup.class, "inFlight");
+    private static final AtomicIntegerFieldUpdater<NettyChannelGroup> lazyStateUpdater =
+            AtomicUpdater.newAtomicIntegerFieldUpdater(NettyChannelGroup.class, "lazyState");
+    private static final AtomicIntegerFieldUpdater<NettyChannelGroup> offlineListeningUpdater =
+            AtomicUpdater.newAtomicIntegerFieldUpdater(NettyChannelGroup.class, "offlineListening");
+    private static final AtomicLongFieldUpdater<NettyChannelGroup> latencyEwmaUpdater =
+            AtomicUpdater.newAtomicLongFieldUpdater(NettyChannelGroup.class, "latencyEwma");
+
+    // EWMA的平滑系数为 1 / 2^LATENCY_EWMA_SHIFT, 同TCP的RTT估算
+    private static final int LATENCY_EWMA_SHIFT = 3;
+
+    // 延迟连接的状态
+    private static final int LAZY_NONE = 0;         // 非延迟连接, 或者已经建立了连接
+    private static final int LAZY_IDLE = 1;         // 还没有建立连接, 第一次被使用时开始连接
+    private static final int LAZY_CONNECTING = 2;   // 正在建立连接
+    private static final int LAZY_REAPING = 3;      // 正在回收空闲连接, 期间被使用则取消回收
+
+    // 延迟连接失败后的退避时间(毫秒), 每次失败翻倍
+    private static final long LAZY_CONNECT_MIN_BACKOFF_MILLIS = 500;
+    private static final long LAZY_CONNECT_MAX_BACKOFF_MILLIS = 30 * 1000;
+    // lastUsedMillis过期超过此值才写入, 避免每次选择都写同一个共享变量
+    private static final long LAST_USED_TICK_MILLIS = 1000;
 
     private final CopyOnWriteArrayList<NettyChannel> channels = new CopyOnWriteArrayList<>();
 
@@ -71,6 +98,9 @@ public class NettyChannelGroup implements JChannelGroup {
     };
 
     private final UnresolvedAddress address;
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(this);
+    private final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter();
+    private final ConnectionPoolSizer poolSizer = new ConnectionPoolSizer();
 
     private final ReentrantLock lock = new ReentrantLock();
     private final Condition notifyCondition = lock.newCondition();
@@ -83,8 +113,18 @@ public class NettyChannelGroup implements JChannelGroup {
     private volatile int capacity = Integer.MAX_VALUE;
     private volatile int weight = DEFAULT_WEIGHT; // the weight if this group
     private volatile int warmUp = DEFAULT_WARM_UP; // warm-up time
+    private volatile String zone; // the zone of this group
     private volatile long timestamp = SystemClock.millisClock().now();
     private volatile long deadlineMillis = -1;
+    private volatile int inFlight = 0; // 正在进行中的请求数
+    private volatile long latencyEwma = 0; // 响应时间的指数加权移动平均值(纳秒)
+    private volatile Runnable lazyConnector; // 延迟连接时建立连接的任务
+    private volatile int lazyState = LAZY_NONE;
+    private volatile long lazyBackoffMillis = 0;
+    private volatile long lazyRetryMillis = 0; // 退避结束之前不再尝试延迟连接
+    private volatile long lastUsedMillis = SystemClock.millisClock().now();
+    @SuppressWarnings("unused")
+    private volatile int offlineListening = 0; // 0: false, 1: true, 注册中心的下线通知只触发一次
 
     public NettyChannelGroup(UnresolvedAddress address) {
         this.address = address;
@@ -97,11 +137,24 @@ public class NettyChannelGroup implements JChannelGroup {
 
     @Override
     public JChannel next() {
+        long now = SystemClock.millisClock().now();
+        if (now - lastUsedMillis >= LAST_USED_TICK_MILLIS) {
+            lastUsedMillis = now;
+        }
+        if (lazyState == LAZY_REAPING) {
+            // 与reapIfIdle并发, 取消回收
+            lazyStateUpdater.compareAndSet(this, LAZY_REAPING, LAZY_NONE);
+        }
         for (;;) {
             // snapshot of channels array
             Object[] elements = copyOnWriteArrayListUpdater.get(channels);
             int length = elements.length;
             if (length == 0) {
+                ensureConnected();
+                if (lazyState == LAZY_IDLE) {
+                    // 延迟连接失败后的退避期间, 不必等待
+                    throw new IllegalStateException("no channel, lazy connect backing off");
+                }
                 if (waitForAvailable(1000)) { // wait a moment
                     continue;
                 }
@@ -133,6 +186,8 @@ public class NettyChannelGroup implements JChannelGroup {
         if (added) {
             ((NettyChannel) channel).channel().closeFuture().addListener(remover);
             deadlineMillis = -1;
+            lazyState = LAZY_NONE;
+            lazyBackoffMillis = 0;
 
             if (signalNeededUpdater.getAndSet(this, 0) != 0) { // signal needed: true
                 final ReentrantLock _look = lock;
@@ -173,12 +228,31 @@ public class NettyChannelGroup implements JChannelGroup {
 
     @Override
     public boolean isAvailable() {
-        return !channels.isEmpty();
+        // 延迟连接的group在建立连接之前也是可用的
+        return !channels.isEmpty() || lazyState != LAZY_NONE;
+    }
+
+    @Override
+    public boolean ensureConnected() {
+        if (!channels.isEmpty()) {
+            return true;
+        }
+        if (lazyState == LAZY_IDLE
+                && SystemClock.millisClock().now() >= lazyRetryMillis
+                && lazyStateUpdater.compareAndSet(this, LAZY_IDLE, LAZY_CONNECTING)) {
+            try {
+                lazyConnector.run();
+            } catch (Throwable t) {
+                lazyState = LAZY_IDLE;
+                JUnsafe.throwException(t);
+            }
+        }
+        return false;
     }
 
     @Override
     public boolean waitForAvailable(long timeoutMillis) {
-        if (isAvailable()) {
+        if (!channels.isEmpty()) {
             return true;
         }
 
@@ -187,11 +261,11 @@ public class NettyChannelGroup implements JChannelGroup {
         final ReentrantLock _look = lock;
         _look.lock();
         try {
-            while (!isAvailable()) {
+            while (channels.isEmpty()) {
                 signalNeededUpdater.set(this, 1); // set signal needed to true
                 notifyCondition.await(timeoutMillis, MILLISECONDS);
 
-                available = isAvailable();
+                available = !channels.isEmpty();
 
                 if (available || (System.nanoTime() - start) > MILLISECONDS.toNanos(timeoutMillis)) {
                     break;
@@ -216,6 +290,16 @@ public class NettyChannelGroup implements JChannelGroup {
         this.weight = weight;
     }
 
+    @Override
+    public String getZone() {
+        return zone;
+    }
+
+    @Override
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
     @Override
     public int getWarmUp() {
         return warmUp;
@@ -241,6 +325,208 @@ public class NettyChannelGroup implements JChannelGroup {
         return deadlineMillis;
     }
 
+    @Override
+    public int inFlight() {
+        return inFlight;
+    }
+
+    @Override
+    public long latencyEwma() {
+        return latencyEwma;
+    }
+
+    @Override
+    public void onRequestStart() {
+        inFlightUpdater.getAndIncrement(this);
+    }
+
+    @Override
+    public boolean tryRequestStart(int limit) {
+        for (;;) {
+            int _inFlight = inFlight;
+            if (_inFlight >= limit) {
+                return false;
+            }
+            if (inFlightUpdater.compareAndSet(this, _inFlight, _inFlight + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void onRequestComplete(long latencyNanos, boolean success) {
+        int _inFlight = inFlightUpdater.getAndDecrement(this);
+        circuitBreaker.onComplete(success, latencyNanos);
+        concurrencyLimiter.onSample(latencyNanos, _inFlight, !success);
+
+        for (;;) {
+            long ewma = latencyEwma;
+            long update = ewma == 0 ? latencyNanos : ewma + ((latencyNanos - ewma) >> LATENCY_EWMA_SHIFT);
+            if (latencyEwmaUpdater.compareAndSet(this, ewma, update)) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void onRequestCancel() {
+        inFlightUpdater.getAndDecrement(this);
+    }
+
+    @Override
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public ConcurrencyLimiter concurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Connects lazily, the {@code connector} runs (in the caller thread, should not block)
+     * when this group is selected for the first time, or for the first time after reaped.
+     */
+    public void setLazyConnector(Runnable connector) {
+        lazyConnector = connector;
+        if (channels.isEmpty()) {
+            lazyStateUpdater.compareAndSet(this, LAZY_NONE, LAZY_IDLE);
+        }
+    }
+
+    /**
+     * Connects lazily again with the installed connector after this group lost all its
+     * channels, returns false if no connector is installed.
+     */
+    public boolean resumeLazyConnect() {
+        if (lazyConnector == null) {
+            return false;
+        }
+        if (channels.isEmpty()) {
+            lazyStateUpdater.compareAndSet(this, LAZY_NONE, LAZY_IDLE);
+        }
+        return true;
+    }
+
+    /**
+     * Invoked when a lazy connection attempt completes, the group backs off
+     * (exponentially) before the next attempt if no connection is available.
+     */
+    public void onLazyConnectComplete(boolean isSuccess) {
+        if (isSuccess || !channels.isEmpty()) {
+            return;
+        }
+        long backoff = Math.min(Math.max(lazyBackoffMillis << 1, LAZY_CONNECT_MIN_BACKOFF_MILLIS),
+                LAZY_CONNECT_MAX_BACKOFF_MILLIS);
+        lazyBackoffMillis = backoff;
+        lazyRetryMillis = SystemClock.millisClock().now() + backoff;
+        lazyStateUpdater.compareAndSet(this, LAZY_CONNECTING, LAZY_IDLE);
+    }
+
+    /**
+     * Returns true only for the first caller, which should register the offline
+     * listener of this group, until {@link #onOffline()}.
+     */
+    public boolean markOfflineListening() {
+        return offlineListeningUpdater.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * The provider is offline, stops connecting lazily and removes the connector,
+     * the offline listener (fired only once) should be registered again if the
+     * provider comes back.
+     */
+    public void onOffline() {
+        lazyConnector = null;
+        lazyState = LAZY_NONE;
+        offlineListening = 0;
+    }
+
+    /**
+     * Closes all channels of a lazily connected group if it has not been used for {@code idleMillis},
+     * the group will reconnect when it is selected next time.
+     */
+    public boolean reapIfIdle(long now, long idleMillis) {
+        if (lazyConnector == null || lazyState != LAZY_NONE || inFlight > 0 || now - lastUsedMillis < idleMillis) {
+            return false;
+        }
+
+        Object[] elements = copyOnWriteArrayListUpdater.get(channels);
+        if (elements.length == 0) {
+            return false;
+        }
+
+        if (!lazyStateUpdater.compareAndSet(this, LAZY_NONE, LAZY_REAPING)) {
+            return false;
+        }
+        // 进入REAPING之后再检查一次, 期间被next()选中则放弃回收
+        if (inFlight > 0 || now - lastUsedMillis < idleMillis
+                || !lazyStateUpdater.compareAndSet(this, LAZY_REAPING, LAZY_IDLE)) {
+            lazyStateUpdater.compareAndSet(this, LAZY_REAPING, LAZY_NONE);
+            return false;
+        }
+
+        for (Object element : elements) {
+            NettyChannel channel = (NettyChannel) element;
+            channel.setMarkedReconnect(false);
+            channels.remove(channel);
+            channel.close();
+        }
+        return true;
+    }
+
+    /**
+     * Sets the bounds of the connection count.
+     */
+    public void setPoolBounds(int minSize, int maxSize) {
+        poolSizer.setBounds(minSize, maxSize);
+    }
+
+    /**
+     * Returns {@link ConnectionPoolSizer#GROW}, {@link ConnectionPoolSizer#SHRINK}
+     * or {@link ConnectionPoolSizer#KEEP} according to the current load of connections.
+     */
+    public int evaluatePoolSize(long now) {
+        // snapshot of channels array
+        Object[] elements = copyOnWriteArrayListUpdater.get(channels);
+        long maxPendingBytes = 0;
+        boolean unwritable = false;
+        for (Object element : elements) {
+            NettyChannel channel = (NettyChannel) element;
+            maxPendingBytes = Math.max(maxPendingBytes, channel.pendingWriteBytes());
+            unwritable |= !channel.isWritable();
+        }
+        return poolSizer.evaluate(
+                elements.length, inFlight, maxPendingBytes, unwritable, latencyEwma, concurrencyLimiter.rttNoLoad(), now);
+    }
+
+    /**
+     * Removes the least loaded channel from this group and decreases the capacity, the channel will
+     * not be selected anymore and will not be reconnected, the caller should close it after the
+     * in-flight requests on it complete.
+     */
+    public NettyChannel retireChannel() {
+        Object[] elements = copyOnWriteArrayListUpdater.get(channels);
+        if (elements.length <= 1) {
+            return null;
+        }
+
+        NettyChannel retired = null;
+        long minPendingBytes = Long.MAX_VALUE;
+        for (Object element : elements) {
+            NettyChannel channel = (NettyChannel) element;
+            long pendingBytes = channel.pendingWriteBytes();
+            if (pendingBytes < minPendingBytes) {
+                minPendingBytes = pendingBytes;
+                retired = channel;
+            }
+        }
+
+        capacity = elements.length - 1;
+        retired.setMarkedReconnect(false);
+        return channels.remove(retired) ? retired : null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -264,6 +550,13 @@ public class NettyChannelGroup implements JChannelGroup {
                 "channels=" + channels +
                 ", weight=" + weight +
                 ", warmUp=" + warmUp +
+                ", zone=" + zone +
+                ", inFlight=" + inFlight +
+                ", latencyEwma=" + latencyEwma +
+                ", circuitBreaker=" + circuitBreaker.state() +
+                ", concurrencyLimit=" + concurrencyLimiter.limit() +
+                ", capacity=" + capacity +
+                ", lazyState=" + lazyState +
                 ", time=" + formatter.format(new Date(timestamp)) +
                 ", address=" + address +
                 '}';
@@ -17,13 +17,16 @@
 package org.jupiter.transport.netty.handler;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ReplayingDecoder;
+import io.netty.util.AttributeKey;
 import org.jupiter.common.util.Signal;
 import org.jupiter.common.util.SystemClock;
 import org.jupiter.common.util.SystemPropertyUtil;
 import org.jupiter.rpc.JRequest;
 import org.jupiter.rpc.JResponse;
+import org.jupiter.rpc.flow.control.RequestBytesBudget;
 import org.jupiter.transport.JProtocolHeader;
 
 import java.util.List;
@@ -49,6 +52,9 @@ import static org.jupiter.transport.exception.IoSignals.*;
  * + 8 // 消息 id long 类型
  * + 4 // 消息体body长度, int类型
  *
+ * 批量请求(BATCH_REQUEST)的Invoke Id位置为请求个数, 消息体为多个 [Invoke Id(8) + Body Length(4) + Body Content],
+ * 批量响应(BATCH_RESPONSE)的Invoke Id位置为响应个数, 消息体为多个 [Invoke Id(8) + Status(1) + Body Length(4) + Body Content].
+ *
  * jupiter
  * org.jupiter.transport.netty.handler
  *
@@ -59,13 +65,48 @@ public class ProtocolDecoder extends ReplayingDecoder<ProtocolDecoder.State> {
     // 协议体最大限制, 默认5M
     private static final int MAX_BODY_SIZE = SystemPropertyUtil.getInt("jupiter.protocol.max.body.size", 1024 * 1024 * 5);
 
+    // 批量消息中每个请求/响应的固定头部长度: invokeId(8) [+ status(1)] + length(4)
+    private static final int BATCH_REQUEST_ENTRY_HEAD = 12;
+    private static final int BATCH_RESPONSE_ENTRY_HEAD = 13;
+
+    // 当前连接的请求字节数预算账户
+    public static final AttributeKey<RequestBytesBudget.Account> BUDGET_ACCOUNT_KEY = AttributeKey.valueOf("budget.account");
+
+    private final RequestBytesBudget budget;
+    private RequestBytesBudget.Account account;
+
     public ProtocolDecoder() {
+        this(null);
+    }
+
+    /**
+     * 服务端的decoder把解码的请求字节数计入 {@code budget}, 超出预算时暂停读取.
+     */
+    public ProtocolDecoder(RequestBytesBudget budget) {
         super(State.HEADER_MAGIC);
+        this.budget = budget;
     }
 
     // 协议头
     private final JProtocolHeader header = new JProtocolHeader();
 
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        if (budget != null) {
+            account = budget.newAccount(new ChannelThrottle(ctx.channel()));
+            ctx.channel().attr(BUDGET_ACCOUNT_KEY).set(account);
+        }
+        super.handlerAdded(ctx);
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        if (account != null) {
+            account.close();
+        }
+        super.handlerRemoved0(ctx);
+    }
+
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
         switch (state()) {
@@ -96,6 +137,7 @@ public class ProtocolDecoder extends ReplayingDecoder<ProtocolDecoder.State> {
                         JRequest request = new JRequest(header.id());
                         request.timestamp(SystemClock.millisClock().now());
                         request.bytes(bytes);
+                        charge(request, bodyLength);
                         out.add(request);
 
                         break;
@@ -109,6 +151,39 @@ public class ProtocolDecoder extends ReplayingDecoder<ProtocolDecoder.State> {
 
                         break;
                     }
+                    case BATCH_REQUEST: {
+                        // 拆分为多个JRequest, 之后的处理与单个请求相同
+                        int bodyLength = checkBodyLength(header.bodyLength());
+                        int count = checkBatchSize(header.id(), bodyLength, BATCH_REQUEST_ENTRY_HEAD);
+                        ByteBuf body = in.readSlice(bodyLength);
+                        long timestamp = SystemClock.millisClock().now();
+                        for (int i = 0; i < count; i++) {
+                            JRequest request = new JRequest(body.readLong());
+                            byte[] bytes = new byte[checkEntryLength(body.readInt(), body)];
+                            body.readBytes(bytes);
+                            request.timestamp(timestamp);
+                            request.bytes(bytes);
+                            request.batched(true);
+                            charge(request, bytes.length);
+                            out.add(request);
+                        }
+
+                        break;
+                    }
+                    case BATCH_RESPONSE: {
+                        int bodyLength = checkBodyLength(header.bodyLength());
+                        int count = checkBatchSize(header.id(), bodyLength, BATCH_RESPONSE_ENTRY_HEAD);
+                        ByteBuf body = in.readSlice(bodyLength);
+                        for (int i = 0; i < count; i++) {
+                            long id = body.readLong();
+                            byte status = body.readByte();
+                            byte[] bytes = new byte[checkEntryLength(body.readInt(), body)];
+                            body.readBytes(bytes);
+                            out.add(JResponse.getInstance(id, status, bytes));
+                        }
+
+                        break;
+                    }
                     default:
                         throw ILLEGAL_SIGN;
                 }
@@ -116,6 +191,12 @@ public class ProtocolDecoder extends ReplayingDecoder<ProtocolDecoder.State> {
         }
     }
 
+    private void charge(JRequest request, int bytes) {
+        if (account != null) {
+            request.charge(account, bytes);
+        }
+    }
+
     private static void checkMagic(short magic) throws Signal {
         if (MAGIC != magic) {
             throw ILLEGAL_MAGIC;
@@ -123,12 +204,58 @@ public class ProtocolDecoder extends ReplayingDecoder<ProtocolDecoder.State> {
     }
 
     private static int checkBodyLength(int size) throws Signal {
+        if (size < 0) {
+            throw ILLEGAL_LENGTH;
+        }
         if (size > MAX_BODY_SIZE) {
             throw BODY_TOO_LARGE;
         }
         return size;
     }
 
+    // 批量消息的数量写在消息id中, 每条消息至少占用entryHead个字节
+    private static int checkBatchSize(long count, int bodyLength, int entryHead) throws Signal {
+        if (count <= 0 || count > bodyLength / entryHead) {
+            throw ILLEGAL_BATCH;
+        }
+        return (int) count;
+    }
+
+    // 在分配内存之前检查, 批量消息中的单条消息不能超出消息体剩余的部分
+    private static int checkEntryLength(int size, ByteBuf body) throws Signal {
+        if (size < 0 || size > body.readableBytes()) {
+            throw ILLEGAL_LENGTH;
+        }
+        return size;
+    }
+
+    static final class ChannelThrottle implements RequestBytesBudget.Throttle {
+
+        private final Channel channel;
+
+        ChannelThrottle(Channel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void pause() {
+            channel.config().setAutoRead(false);
+        }
+
+        @Override
+        public void resume() {
+            // 不可写时由writability的变化恢复读取
+            if (channel.isWritable()) {
+                channel.config().setAutoRead(true);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return channel.toString();
+        }
+    }
+
     enum State {
         HEADER_MAGIC,
         HEADER_SIGN,
@@ -22,9 +22,12 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import org.jupiter.common.util.Reflects;
 import org.jupiter.rpc.BytesHolder;
+import org.jupiter.rpc.JBatch;
 import org.jupiter.rpc.JRequest;
 import org.jupiter.rpc.JResponse;
 
+import java.util.List;
+
 import static org.jupiter.transport.JProtocolHeader.*;
 
 /**
@@ -45,6 +48,8 @@ import static org.jupiter.transport.JProtocolHeader.*;
  * + 8 // 消息 id long 类型
  * + 4 // 消息体body长度, int类型
  *
+ * 批量请求/响应的格式见 {@link ProtocolDecoder}.
+ *
  * jupiter
  * org.jupiter.transport.netty.handler
  *
@@ -59,6 +64,8 @@ public class ProtocolEncoder extends MessageToByteEncoder<BytesHolder> {
             doEncodeRequest((JRequest) msg, out);
         } else if (msg instanceof JResponse) {
             doEncodeResponse((JResponse) msg, out);
+        } else if (msg instanceof JBatch) {
+            doEncodeBatch((JBatch) msg, out);
         } else {
             throw new IllegalArgumentException(Reflects.simpleClassName(msg));
         }
@@ -75,6 +82,36 @@ public class ProtocolEncoder extends MessageToByteEncoder<BytesHolder> {
                 .writeBytes(bytes);
     }
 
+    private void doEncodeBatch(JBatch batch, ByteBuf out) {
+        List<? extends BytesHolder> messages = batch.messages();
+        // 同一批次中的消息都是JRequest或者都是JResponse
+        boolean isRequest = messages.get(0) instanceof JRequest;
+
+        int bodyLength = 0;
+        for (BytesHolder m : messages) {
+            bodyLength += (isRequest ? 12 : 13) + m.size();
+        }
+
+        out.writeShort(MAGIC)
+                .writeByte(isRequest ? BATCH_REQUEST : BATCH_RESPONSE)
+                .writeByte(0x00)
+                .writeLong(messages.size())
+                .writeInt(bodyLength);
+
+        for (BytesHolder m : messages) {
+            byte[] bytes = m.bytes();
+            if (isRequest) {
+                out.writeLong(((JRequest) m).invokeId());
+            } else {
+                JResponse response = (JResponse) m;
+                out.writeLong(response.id())
+                        .writeByte(response.status());
+            }
+            out.writeInt(bytes.length)
+                    .writeBytes(bytes);
+        }
+    }
+
     private void doEncodeResponse(JResponse response, ByteBuf out) {
         byte[] bytes = response.bytes();
 
@@ -25,10 +25,12 @@ import org.jupiter.common.util.internal.logging.InternalLogger;
 import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
 import org.jupiter.rpc.JRequest;
 import org.jupiter.rpc.channel.JChannel;
+import org.jupiter.rpc.flow.control.RequestBytesBudget;
 import org.jupiter.rpc.provider.processor.ProviderProcessor;
 import org.jupiter.common.util.Signal;
 import org.jupiter.transport.exception.IoSignals;
 import org.jupiter.transport.netty.channel.NettyChannel;
+import org.jupiter.transport.netty.handler.ProtocolDecoder;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -59,7 +61,12 @@ public class AcceptorHandler extends ChannelInboundHandlerAdapter {
             JChannel jChannel = NettyChannel.attachChannel(ctx.channel());
             JRequest request = (JRequest) msg;
             try {
-                processor.handleRequest(jChannel, request);
+                if (request.overBudget()) {
+                    // 超出全局内存预算, 立即拒绝
+                    processor.handleRejected(jChannel, request);
+                } else {
+                    processor.handleRequest(jChannel, request);
+                }
             } catch (Throwable t) {
                 processor.handleException(jChannel, request, t);
             }
@@ -105,7 +112,11 @@ public class AcceptorHandler extends ChannelInboundHandlerAdapter {
             logger.warn("{} is writable(rehabilitate), low water mask: {}, the number of flushed entries that are not written yet: {}.",
                     ch, ch.config().getWriteBufferLowWaterMark(), ch.unsafe().outboundBuffer().size());
 
-            ch.config().setAutoRead(true);
+            // 因为超出请求字节数预算而暂停读取的连接, 等预算恢复后再读取
+            RequestBytesBudget.Account account = ch.attr(ProtocolDecoder.BUDGET_ACCOUNT_KEY).get();
+            if (account == null || !account.isPaused()) {
+                ch.config().setAutoRead(true);
+            }
         }
     }
 
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jupiter.transport.netty;
+
+import org.jupiter.common.util.Lists;
+import org.jupiter.registry.RegisterMeta;
+import org.jupiter.rpc.UnresolvedAddress;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * jupiter
+ * org.jupiter.transport.netty
+ *
+ * @author jiachun.fjc
+ */
+public class ProviderSnapshotTest {
+
+    @Test
+    public void testReconcile() {
+        ProviderSnapshot snapshot = new ProviderSnapshot();
+
+        RegisterMeta a = meta(18001, 50, 4, "hz");
+        RegisterMeta b = meta(18002, 50, 4, "hz");
+        RegisterMeta c = meta(18003, 50, 4, "hz");
+        ProviderSnapshot.Diff diff = snapshot.reconcile(Lists.newArrayList(a, b, c, meta(18001, 99, 1, "sh")));
+        assertThat(diff.added, contains(a, b, c)); // 重复的服务节点只保留第一个
+        assertThat(diff.added.get(0).getWeight(), is(50));
+        assertThat(diff.changed, empty());
+        assertThat(diff.removed, empty());
+        assertThat(snapshot.size(), is(3));
+
+        // 权重, 建议连接数, 区域的变化, 以及删除
+        RegisterMeta aWeight = meta(18001, 100, 4, "hz");
+        RegisterMeta bConnCount = meta(18002, 50, 8, "hz");
+        RegisterMeta d = meta(18004, 50, 4, null);
+        diff = snapshot.reconcile(Lists.newArrayList(aWeight, bConnCount, d));
+        assertThat(diff.added, contains(d));
+        assertThat(diff.changed, contains(aWeight, bConnCount));
+        assertThat(diff.unchanged, empty());
+        assertThat(diff.removed, contains(ProviderSnapshot.addressOf(c)));
+
+        RegisterMeta dZone = meta(18004, 50, 4, "sh");
+        diff = snapshot.reconcile(Lists.newArrayList(aWeight, bConnCount, dZone));
+        assertThat(diff.added, empty());
+        assertThat(diff.changed, contains(dZone));
+        assertThat(diff.unchanged, contains(aWeight, bConnCount));
+        assertThat(diff.removed, empty());
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        ProviderSnapshot snapshot = new ProviderSnapshot();
+        // 第一次的空数据正常处理
+        ProviderSnapshot.Diff diff = snapshot.reconcile(Collections.<RegisterMeta>emptyList());
+        assertThat(diff, notNullValue());
+        assertThat(diff.added, empty());
+
+        // 已经有服务节点时忽略空数据, 保留原有的服务节点
+        RegisterMeta a = meta(18001, 50, 4, "hz");
+        snapshot.reconcile(Lists.newArrayList(a));
+        assertThat(snapshot.reconcile(Collections.<RegisterMeta>emptyList()), nullValue());
+        assertThat(snapshot.size(), is(1));
+        diff = snapshot.reconcile(Lists.newArrayList(a));
+        assertThat(diff.unchanged, contains(a));
+    }
+
+    @Test
+    public void testEvents() {
+        ProviderSnapshot snapshot = new ProviderSnapshot();
+        RegisterMeta a = meta(18001, 50, 4, "hz");
+        UnresolvedAddress address = ProviderSnapshot.addressOf(a);
+
+        // CHILD_ADDED/CHILD_REMOVED事件与全量数据共用同一个快照
+        assertThat(snapshot.put(address, a), nullValue());
+        assertThat(snapshot.reconcile(Lists.newArrayList(a)).unchanged, contains(a));
+        assertThat(snapshot.remove(address), is(a));
+        assertThat(snapshot.reconcile(Lists.newArrayList(a)).added, contains(a));
+    }
+
+    private static RegisterMeta meta(int port, int weight, int connCount, String zone) {
+        RegisterMeta meta = new RegisterMeta();
+        meta.setHost("127.0.0.1");
+        meta.setPort(port);
+        meta.setWeight(weight);
+        meta.setConnCount(connCount);
+        meta.setZone(zone);
+        return meta;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.transport.netty.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.jupiter.common.util.Lists;
+import org.jupiter.rpc.JBatch;
+import org.jupiter.rpc.JRequest;
+import org.jupiter.rpc.JResponse;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.jupiter.rpc.Status.OK;
+import static org.jupiter.rpc.Status.SERVER_ERROR;
+import static org.jupiter.transport.JProtocolHeader.BATCH_REQUEST;
+import static org.jupiter.transport.JProtocolHeader.BATCH_RESPONSE;
+import static org.jupiter.transport.JProtocolHeader.MAGIC;
+import static org.jupiter.transport.exception.IoSignals.ILLEGAL_BATCH;
+import static org.jupiter.transport.exception.IoSignals.ILLEGAL_LENGTH;
+import static org.junit.Assert.fail;
+
+/**
+ * jupiter
+ * org.jupiter.transport.netty.handler
+ *
+ * @author jiachun.fjc
+ */
+public class ProtocolCodecTest {
+
+    @Test
+    public void testBatchRequest() {
+        List<JRequest> requests = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            JRequest request = new JRequest(100 + i);
+            request.bytes(new byte[] { (byte) i, (byte) (i + 1) });
+            requests.add(request);
+        }
+        // 空的消息体也要能正确拆分
+        JRequest empty = new JRequest(200);
+        empty.bytes(new byte[0]);
+        requests.add(empty);
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new ProtocolDecoder());
+        assertThat(decoder.writeInbound(encode(new JBatch(requests))), is(true));
+
+        for (JRequest expected : requests) {
+            JRequest actual = (JRequest) decoder.readInbound();
+            assertThat(actual.invokeId(), is(expected.invokeId()));
+            assertThat(actual.bytes(), is(expected.bytes()));
+            assertThat(actual.batched(), is(true));
+        }
+        assertThat(decoder.readInbound() == null, is(true));
+    }
+
+    @Test
+    public void testBatchResponse() {
+        List<JResponse> responses = Lists.newArrayList();
+        responses.add(JResponse.getInstance(1, OK, new byte[] { 1, 2, 3 }));
+        responses.add(JResponse.getInstance(2, SERVER_ERROR, new byte[] { 4 }));
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new ProtocolDecoder());
+        assertThat(decoder.writeInbound(encode(new JBatch(responses))), is(true));
+
+        for (JResponse expected : responses) {
+            JResponse actual = (JResponse) decoder.readInbound();
+            assertThat(actual.id(), is(expected.id()));
+            assertThat(actual.status(), is(expected.status()));
+            assertThat(actual.bytes(), is(expected.bytes()));
+        }
+        assertThat(decoder.readInbound() == null, is(true));
+    }
+
+    @Test
+    public void testIllegalEntryLength() {
+        ByteBuf body = Unpooled.buffer()
+                .writeLong(1)
+                .writeInt(-1);
+        assertDecodeFailure(frame(BATCH_REQUEST, 1, body), ILLEGAL_LENGTH);
+
+        // 单条消息的长度超出了消息体剩余的部分
+        body = Unpooled.buffer()
+                .writeLong(1)
+                .writeByte(OK.value())
+                .writeInt(Integer.MAX_VALUE)
+                .writeBytes(new byte[8]);
+        assertDecodeFailure(frame(BATCH_RESPONSE, 1, body), ILLEGAL_LENGTH);
+    }
+
+    @Test
+    public void testIllegalBatchSize() {
+        ByteBuf body = Unpooled.buffer()
+                .writeLong(1)
+                .writeInt(0);
+        // 消息体只能容纳1条消息
+        assertDecodeFailure(frame(BATCH_REQUEST, 2, body.copy()), ILLEGAL_BATCH);
+        assertDecodeFailure(frame(BATCH_REQUEST, Long.MAX_VALUE, body.copy()), ILLEGAL_BATCH);
+        assertDecodeFailure(frame(BATCH_REQUEST, -1, body), ILLEGAL_BATCH);
+    }
+
+    private static ByteBuf encode(JBatch batch) {
+        EmbeddedChannel encoder = new EmbeddedChannel(new ProtocolEncoder());
+        assertThat(encoder.writeOutbound(batch), is(true));
+        return (ByteBuf) encoder.readOutbound();
+    }
+
+    private static ByteBuf frame(byte sign, long id, ByteBuf body) {
+        return Unpooled.buffer()
+                .writeShort(MAGIC)
+                .writeByte(sign)
+                .writeByte(0x00)
+                .writeLong(id)
+                .writeInt(body.readableBytes())
+                .writeBytes(body);
+    }
+
+    private static void assertDecodeFailure(ByteBuf frame, Throwable expected) {
+        EmbeddedChannel decoder = new EmbeddedChannel(new ProtocolDecoder());
+        try {
+            decoder.writeInbound(frame);
+            fail();
+        } catch (DecoderException e) {
+            assertThat(e.getCause(), is(expected));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jupiter.transport;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.rpc.UnresolvedAddress;
+import org.jupiter.rpc.metric.Metrics;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.jupiter.common.util.Preconditions.checkArgument;
+import static org.jupiter.common.util.Preconditions.checkNotNull;
+import static org.jupiter.common.util.StackTraceUtil.stackTrace;
+
+/**
+ * 异步并行的建立连接, 同时建立中的连接数不超过 {@code parallelism}, 超过的排队等待.
+ *
+ * 服务消费者启动时面对大量服务节点, 或者与注册中心重连之后, 不再一个接一个的同步建立连接;
+ * 每个连接建立完成(连接已经加入 {@link org.jupiter.rpc.channel.JChannelGroup})后回调 listener.
+ *
+ * jupiter
+ * org.jupiter.transport
+ *
+ * @author jiachun.fjc
+ */
+public class ConnectionOrchestrator {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ConnectionOrchestrator.class);
+
+    // 从提交到连接建立完成的时间(包括排队时间)
+    private static final Timer establishTimer = Metrics.timer(ConnectionOrchestrator.class, "establish");
+    private static final Meter failureMeter = Metrics.meter(ConnectionOrchestrator.class, "failure");
+
+    private final JConnector<JConnection> connector;
+    private final int parallelism;
+
+    private final Queue<Task> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inProgress = new AtomicInteger(0);
+
+    public ConnectionOrchestrator(JConnector<JConnection> connector, int parallelism) {
+        checkArgument(parallelism > 0, "parallelism must be positive");
+        this.connector = checkNotNull(connector, "connector");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Connects to the {@code address} asynchronously, the {@code listener} is
+     * notified when the connection is established or failed.
+     */
+    public void connect(UnresolvedAddress address, JConnection.OperationListener listener) {
+        pendingTasks.add(new Task(address, listener));
+        drain();
+    }
+
+    public int pendingCount() {
+        return pendingTasks.size();
+    }
+
+    public int inProgressCount() {
+        return inProgress.get();
+    }
+
+    private void drain() {
+        for (;;) {
+            int n = inProgress.get();
+            if (n >= parallelism || pendingTasks.isEmpty()) {
+                return;
+            }
+            if (!inProgress.compareAndSet(n, n + 1)) {
+                continue;
+            }
+
+            Task task = pendingTasks.poll();
+            if (task == null) {
+                inProgress.decrementAndGet();
+                continue;
+            }
+            start(task);
+        }
+    }
+
+    private void start(final Task task) {
+        JConnection connection;
+        try {
+            connection = connector.connect(task.address, true);
+        } catch (Throwable t) {
+            logger.warn("Connects to {} failed: {}.", task.address, stackTrace(t));
+
+            onComplete(task, false);
+            return;
+        }
+
+        JConnectionManager.manage(connection);
+        connection.operationComplete(new JConnection.OperationListener() {
+
+            @Override
+            public void complete(boolean isSuccess) {
+                if (!isSuccess) {
+                    logger.warn("Connects to {} failed.", task.address);
+                }
+                onComplete(task, isSuccess);
+            }
+        });
+    }
+
+    private void onComplete(Task task, boolean isSuccess) {
+        inProgress.decrementAndGet();
+        if (isSuccess) {
+            establishTimer.update(System.nanoTime() - task.startNanos, NANOSECONDS);
+        } else {
+            failureMeter.mark();
+        }
+        try {
+            task.listener.complete(isSuccess);
+        } catch (Throwable t) {
+            logger.error("Notify connect listener failed: {}.", stackTrace(t));
+        } finally {
+            drain();
+        }
+    }
+
+    private static class Task {
+
+        final UnresolvedAddress address;
+        final JConnection.OperationListener listener;
+        final long startNanos = System.nanoTime();
+
+        Task(UnresolvedAddress address, JConnection.OperationListener listener) {
+            this.address = address;
+            this.listener = listener;
+        }
+    }
+}
@@ -36,5 +36,18 @@ public abstract class JConnection {
         return address;
     }
 
+    public abstract boolean isReconnect();
+
     public abstract void setReconnect(boolean reconnect);
+
+    /**
+     * Adds a listener which is notified when the first connection attempt is done,
+     * the listener is notified immediately if the attempt is already done.
+     */
+    public abstract void operationComplete(OperationListener listener);
+
+    public interface OperationListener {
+
+        void complete(boolean isSuccess);
+    }
 }
@@ -42,6 +42,12 @@ public class JConnectionManager {
                 list = newList;
             }
         }
+        // 不再需要重连的连接(连接池缩容时关闭的连接)不再管理
+        for (JConnection c : list) {
+            if (!c.isReconnect()) {
+                list.remove(c);
+            }
+        }
         list.add(connection);
     }
 
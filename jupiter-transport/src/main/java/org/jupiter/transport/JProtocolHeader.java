@@ -54,6 +54,10 @@ public class JProtocolHeader {
     public static final byte REQUEST = 1;
     /** Response */
     public static final byte RESPONSE = 2;
+    /** 多个Request合并的批量请求, Invoke Id位置为请求个数 */
+    public static final byte BATCH_REQUEST = 3;
+    /** 多个Response合并的批量响应, Invoke Id位置为响应个数 */
+    public static final byte BATCH_RESPONSE = 4;
 
     /** ============================================================================================================= */
 
@@ -42,6 +42,10 @@ public class IoSignals {
     public static final Signal READER_IDLE      = valueOf(IoSignals.class, "READER_IDLE");
     /** Protocol body 太大 */
     public static final Signal BODY_TOO_LARGE   = valueOf(IoSignals.class, "BODY_TOO_LARGE");
+    /** 错误的消息体长度 */
+    public static final Signal ILLEGAL_LENGTH   = valueOf(IoSignals.class, "ILLEGAL_LENGTH");
+    /** 错误的批量消息数量 */
+    public static final Signal ILLEGAL_BATCH    = valueOf(IoSignals.class, "ILLEGAL_BATCH");
 
     public static void handleSignal(Signal signal, JChannel channel) {
         logger.error("{} on {}, will force to close this channel.", signal.name(), channel);